@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.benchmark.stream;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+import com.twitter.distributedlog.AsyncLogWriter;
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.DistributedLogConfiguration;
+import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.LogRecord;
+import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
+import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.util.Future;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.commons.cli.CommandLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark on the contention of many threads writing to a same stream through a single
+ * {@link com.twitter.distributedlog.AsyncLogWriter}.
+ *
+ * <p>For each number of writer threads, it writes the records once with the synchronized write path
+ * and once with the lock-free write queue enabled, and reports the throughput of both modes.
+ */
+public class WriterContentionBenchmark extends StreamBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriterContentionBenchmark.class);
+
+    private static final String DEFAULT_NUM_THREADS = "1,2,4,8,16,32,64";
+
+    protected int[] numThreadsList;
+    protected int numRecordsPerThread = 10000;
+    protected int recordSize = 100;
+
+    public WriterContentionBenchmark() {
+        options.addOption("t", "threads", true,
+            "Comma separated list of the number of writer threads to benchmark. Default is " + DEFAULT_NUM_THREADS);
+        options.addOption("n", "num-records", true, "Number of records written by each writer thread");
+        options.addOption("z", "record-size", true, "Size of each record, in bytes");
+    }
+
+    @Override
+    protected void parseCommandLine(CommandLine cmdline) {
+        String[] threads = cmdline.getOptionValue("t", DEFAULT_NUM_THREADS).split(",");
+        numThreadsList = new int[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            numThreadsList[i] = Integer.parseInt(threads[i].trim());
+        }
+        if (cmdline.hasOption("n")) {
+            numRecordsPerThread = Integer.parseInt(cmdline.getOptionValue("n"));
+        }
+        if (cmdline.hasOption("z")) {
+            recordSize = Integer.parseInt(cmdline.getOptionValue("z"));
+        }
+    }
+
+    @Override
+    protected void benchmark(DistributedLogNamespace namespace, String logName, StatsLogger statsLogger) {
+        for (int numThreads : numThreadsList) {
+            for (boolean mpscQueueEnabled : new boolean[] { false, true }) {
+                String mode = mpscQueueEnabled ? "mpsc" : "synchronized";
+                try {
+                    double throughput = benchmark(namespace, logName, numThreads, mpscQueueEnabled,
+                            statsLogger.scope(mode).scope("threads_" + numThreads));
+                    logger.info("Mode = {}, Threads = {} : {} records/second.",
+                            new Object[] { mode, numThreads, String.format("%.2f", throughput) });
+                } catch (Exception e) {
+                    logger.error("Failed to run benchmark for mode {} with {} threads : ",
+                            new Object[] { mode, numThreads, e });
+                }
+            }
+        }
+    }
+
+    private double benchmark(DistributedLogNamespace namespace,
+                             String logName,
+                             int numThreads,
+                             boolean mpscQueueEnabled,
+                             StatsLogger statsLogger) throws Exception {
+        DistributedLogConfiguration logConf = new DistributedLogConfiguration();
+        logConf.loadConf(conf);
+        logConf.setWriterMpscQueueEnabled(mpscQueueEnabled);
+
+        final OpStatsLogger writeStats = statsLogger.getOpStatsLogger("write");
+        final byte[] payload = new byte[recordSize];
+        final AtomicLong txid = new AtomicLong(System.currentTimeMillis());
+
+        DistributedLogManager dlm = namespace.openLog(logName,
+                Optional.of(logConf),
+                Optional.<DynamicDistributedLogConfiguration>absent(),
+                Optional.<StatsLogger>absent());
+        try {
+            final AsyncLogWriter writer = FutureUtils.result(dlm.openAsyncLogWriter());
+            try {
+                final CountDownLatch startLatch = new CountDownLatch(1);
+                final List<Future<DLSN>> lastWrites = new ArrayList<Future<DLSN>>(numThreads);
+                List<Thread> threads = new ArrayList<Thread>(numThreads);
+                for (int i = 0; i < numThreads; i++) {
+                    Thread thread = new Thread("contention-writer-" + i) {
+                        @Override
+                        public void run() {
+                            try {
+                                startLatch.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            Future<DLSN> lastWrite = null;
+                            for (int j = 0; j < numRecordsPerThread; j++) {
+                                Stopwatch stopwatch = Stopwatch.createStarted();
+                                // assign the txid in the same critical section as the write,
+                                // so the records reach the writer in txid order
+                                synchronized (txid) {
+                                    lastWrite = writer.write(new LogRecord(txid.incrementAndGet(), payload));
+                                }
+                                writeStats.registerSuccessfulEvent(stopwatch.elapsed(TimeUnit.MICROSECONDS));
+                            }
+                            if (null != lastWrite) {
+                                synchronized (lastWrites) {
+                                    lastWrites.add(lastWrite);
+                                }
+                            }
+                        }
+                    };
+                    thread.start();
+                    threads.add(thread);
+                }
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                startLatch.countDown();
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                FutureUtils.result(Future.collect(lastWrites));
+                long elapsedMs = Math.max(1L, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+                return numThreads * (double) numRecordsPerThread * 1000 / elapsedMs;
+            } finally {
+                FutureUtils.result(writer.asyncClose());
+            }
+        } finally {
+            closeLog(dlm);
+        }
+    }
+
+    private void closeLog(DistributedLogManager dlm) {
+        try {
+            dlm.close();
+        } catch (IOException ioe) {
+            logger.warn("Failed to close log {} : ", streamName, ioe);
+        }
+    }
+}
@@ -39,6 +39,10 @@ public class ClientConfig {
     long periodicDumpOwnershipCacheIntervalMs = TimeUnit.MINUTES.toMillis(10);
     boolean enableHandshakeTracing = false;
     boolean enableChecksum = true;
+    boolean writeCoalescingEnabled = false;
+    int writeCoalescingMaxBytes = 16 * 1024;
+    int writeCoalescingMaxRecords = 128;
+    long writeCoalescingLingerMicros = 1000;
 
     public ClientConfig setMaxRedirects(int maxRedirects) {
         this.maxRedirects = maxRedirects;
@@ -167,6 +171,42 @@ public class ClientConfig {
         return this.enableChecksum;
     }
 
+    public ClientConfig setWriteCoalescingEnabled(boolean enabled) {
+        this.writeCoalescingEnabled = enabled;
+        return this;
+    }
+
+    public boolean isWriteCoalescingEnabled() {
+        return this.writeCoalescingEnabled;
+    }
+
+    public ClientConfig setWriteCoalescingMaxBytes(int maxBytes) {
+        this.writeCoalescingMaxBytes = maxBytes;
+        return this;
+    }
+
+    public int getWriteCoalescingMaxBytes() {
+        return this.writeCoalescingMaxBytes;
+    }
+
+    public ClientConfig setWriteCoalescingMaxRecords(int maxRecords) {
+        this.writeCoalescingMaxRecords = maxRecords;
+        return this;
+    }
+
+    public int getWriteCoalescingMaxRecords() {
+        return this.writeCoalescingMaxRecords;
+    }
+
+    public ClientConfig setWriteCoalescingLingerMicros(long lingerMicros) {
+        this.writeCoalescingLingerMicros = lingerMicros;
+        return this;
+    }
+
+    public long getWriteCoalescingLingerMicros() {
+        return this.writeCoalescingLingerMicros;
+    }
+
     public static ClientConfig newConfig(ClientConfig config) {
         ClientConfig newConfig = new ClientConfig();
         newConfig.setMaxRedirects(config.getMaxRedirects())
@@ -181,7 +221,11 @@ public class ClientConfig {
                  .setPeriodicDumpOwnershipCacheEnabled(config.isPeriodicDumpOwnershipCacheEnabled())
                  .setPeriodicDumpOwnershipCacheIntervalMs(config.getPeriodicDumpOwnershipCacheIntervalMs())
                  .setHandshakeTracingEnabled(config.isHandshakeTracingEnabled())
-                 .setChecksumEnabled(config.isChecksumEnabled());
+                 .setChecksumEnabled(config.isChecksumEnabled())
+                 .setWriteCoalescingEnabled(config.isWriteCoalescingEnabled())
+                 .setWriteCoalescingMaxBytes(config.getWriteCoalescingMaxBytes())
+                 .setWriteCoalescingMaxRecords(config.getWriteCoalescingMaxRecords())
+                 .setWriteCoalescingLingerMicros(config.getWriteCoalescingLingerMicros());
         return newConfig;
     }
 }
@@ -26,6 +26,7 @@ import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.LogRecordSetBuffer;
+import com.twitter.distributedlog.LogRecordWithDLSN;
 import com.twitter.distributedlog.client.monitor.MonitorServiceClient;
 import com.twitter.distributedlog.client.ownership.OwnershipCache;
 import com.twitter.distributedlog.client.proxy.ClusterClient;
@@ -46,6 +47,9 @@ import com.twitter.distributedlog.service.DLSocketAddress;
 import com.twitter.distributedlog.service.DistributedLogClient;
 import com.twitter.distributedlog.thrift.service.BulkWriteResponse;
 import com.twitter.distributedlog.thrift.service.HeartbeatOptions;
+import com.twitter.distributedlog.thrift.service.ReadContext;
+import com.twitter.distributedlog.thrift.service.ReadRecord;
+import com.twitter.distributedlog.thrift.service.ReadResponse;
 import com.twitter.distributedlog.thrift.service.ResponseHeader;
 import com.twitter.distributedlog.thrift.service.ServerInfo;
 import com.twitter.distributedlog.thrift.service.ServerStatus;
@@ -128,6 +132,9 @@ public class DistributedLogClientImpl implements DistributedLogClient, MonitorSe
     // Cluster Client (for routing service)
     private final Optional<ClusterClient> clusterClient;
 
+    // Write coalescing, null if it is disabled
+    private final WriteCoalescer writeCoalescer;
+
     // Close Status
     private boolean closed = false;
     private final ReentrantReadWriteLock closeLock =
@@ -560,6 +567,77 @@ public class DistributedLogClientImpl implements DistributedLogClient, MonitorSe
         }
     }
 
+    class ReadOp extends StreamOp {
+        final DLSN fromDlsn;
+        final ReadContext readCtx;
+        final Promise<List<LogRecordWithDLSN>> result = new Promise<List<LogRecordWithDLSN>>();
+
+        ReadOp(String name, DLSN fromDlsn, int maxRecords, long waitTimeMs) {
+            super(name, clientStats.getOpStats("read"));
+            this.fromDlsn = fromDlsn;
+            this.readCtx = new ReadContext();
+            this.readCtx.setMaxRecords(maxRecords);
+            this.readCtx.setWaitTimeMs(waitTimeMs);
+        }
+
+        @Override
+        void beforeComplete(ProxyClient sc, ResponseHeader responseHeader) {
+            // reads are served by any proxy, so don't update the ownership
+        }
+
+        @Override
+        Future<ResponseHeader> sendRequest(final ProxyClient sc) {
+            return sc.getService().readBulk(stream, fromDlsn.serialize(), readCtx)
+                .addEventListener(new FutureEventListener<ReadResponse>() {
+                @Override
+                public void onSuccess(ReadResponse response) {
+                    if (response.getHeader().getCode() == StatusCode.SUCCESS) {
+                        ReadOp.this.complete(sc.getAddress(), response);
+                    }
+                }
+                @Override
+                public void onFailure(Throwable cause) {
+                    // handled by the ResponseHeader listener
+                }
+            }).map(new AbstractFunction1<ReadResponse, ResponseHeader>() {
+                @Override
+                public ResponseHeader apply(ReadResponse response) {
+                    return response.getHeader();
+                }
+            });
+        }
+
+        void complete(SocketAddress address, ReadResponse response) {
+            super.complete(address);
+            List<LogRecordWithDLSN> records;
+            if (response.isSetRecords()) {
+                records = new ArrayList<LogRecordWithDLSN>(response.getRecords().size());
+                for (ReadRecord record : response.getRecords()) {
+                    records.add(new LogRecordWithDLSN(
+                            DLSN.deserialize(record.getDlsn()),
+                            record.getTxid(),
+                            record.getPayload(),
+                            record.isSetSequenceId() ? record.getSequenceId() : -1L,
+                            record.isSetPosition() ? record.getPosition() : 0,
+                            record.isSetFlags() ? record.getFlags() : 0L));
+                }
+            } else {
+                records = Collections.emptyList();
+            }
+            result.setValue(records);
+        }
+
+        @Override
+        void fail(SocketAddress address, Throwable t) {
+            super.fail(address, t);
+            result.setException(t);
+        }
+
+        Future<List<LogRecordWithDLSN>> result() {
+            return result;
+        }
+    }
+
     // Stats
     private final ClientStats clientStats;
 
@@ -601,6 +679,17 @@ public class DistributedLogClientImpl implements DistributedLogClient, MonitorSe
                 clientStats);       // client stats
         this.clusterClient = clusterClient;
         this.clientManager.registerProxyListener(this);
+        if (clientConfig.isWriteCoalescingEnabled()) {
+            this.writeCoalescer = new WriteCoalescer(
+                    clientName,
+                    this,
+                    clientConfig.getWriteCoalescingMaxBytes(),
+                    clientConfig.getWriteCoalescingMaxRecords(),
+                    clientConfig.getWriteCoalescingLingerMicros(),
+                    statsReceiver);
+        } else {
+            this.writeCoalescer = null;
+        }
 
         // Cache Stats
         StatsReceiver cacheStatReceiver = statsReceiver.scope("cache");
@@ -707,6 +796,10 @@ public class DistributedLogClientImpl implements DistributedLogClient, MonitorSe
     }
 
     public void close() {
+        // send the coalesced writes before closing the client
+        if (null != writeCoalescer) {
+            writeCoalescer.close();
+        }
         closeLock.writeLock().lock();
         try {
             if (closed) {
@@ -758,6 +851,9 @@ public class DistributedLogClientImpl implements DistributedLogClient, MonitorSe
 
     @Override
     public Future<DLSN> write(String stream, ByteBuffer data) {
+        if (null != writeCoalescer) {
+            return writeCoalescer.write(stream, data);
+        }
         final WriteOp op = new WriteOp(stream, data);
         sendRequest(op);
         return op.result();
@@ -809,6 +905,17 @@ public class DistributedLogClientImpl implements DistributedLogClient, MonitorSe
         return op.result();
     }
 
+    @Override
+    public Future<List<LogRecordWithDLSN>> readStream(String stream,
+                                                      DLSN fromDlsn,
+                                                      int maxRecords,
+                                                      long waitTime,
+                                                      TimeUnit timeUnit) {
+        final ReadOp op = new ReadOp(stream, fromDlsn, maxRecords, timeUnit.toMillis(waitTime));
+        sendRequest(op);
+        return op.result();
+    }
+
     private void sendRequest(final StreamOp op) {
         closeLock.readLock().lock();
         try {
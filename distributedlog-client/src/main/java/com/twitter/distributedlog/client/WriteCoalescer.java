@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.client;
+
+import static com.twitter.distributedlog.LogRecord.MAX_LOGRECORDSET_SIZE;
+import static com.twitter.distributedlog.LogRecord.MAX_LOGRECORD_SIZE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.LogRecordSet;
+import com.twitter.distributedlog.exceptions.LogRecordTooLongException;
+import com.twitter.distributedlog.exceptions.WriteException;
+import com.twitter.distributedlog.io.CompressionCodec;
+import com.twitter.distributedlog.service.DistributedLogClient;
+import com.twitter.finagle.stats.Counter;
+import com.twitter.finagle.stats.Stat;
+import com.twitter.finagle.stats.StatsReceiver;
+import com.twitter.util.Future;
+import com.twitter.util.FutureEventListener;
+import com.twitter.util.Promise;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesce the writes to a same stream into {@link LogRecordSet}s.
+ *
+ * <p>Records written to a stream are appended to the stream's pending record set. The record set is
+ * sent as a single record set write when it reaches the max number of bytes or records, or when its
+ * first record has waited for the linger time. The DLSN returned for the record set is mapped back to
+ * each record by its slot in the record set.
+ *
+ * <p>A stream only holds a pending record set while it has records waiting to be sent. The record set
+ * is allocated on the first record written after a flush, and the stream's batch is removed once its
+ * record set is sent, so idle streams don't hold any memory.
+ *
+ * <h3>Metrics</h3>
+ * All the metrics are exposed under `write_coalescer`.
+ * <ul>
+ * <li> `coalesced_writes`: counter. the number of writes coalesced into record sets.
+ * <li> `batches`: counter. the number of record sets sent.
+ * <li> `batch_num_records`: stat. the number of records per record set.
+ * </ul>
+ */
+class WriteCoalescer {
+
+    /**
+     * Pending record set of a stream.
+     */
+    class StreamBatch implements Runnable {
+
+        final String stream;
+        // created on the first record, null if there is no pending record
+        LogRecordSet.Writer recordSetWriter = null;
+        ScheduledFuture<?> lingerFuture = null;
+        // whether the batch is removed from the coalescer after it is sent
+        boolean removed = false;
+
+        StreamBatch(String stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * Append the record to the pending record set.
+         *
+         * @return future representing the DLSN of the record, or null if the batch is already
+         *         removed and the record should be written to a new batch.
+         */
+        synchronized Future<DLSN> write(ByteBuffer data) {
+            if (removed) {
+                return null;
+            }
+            int logRecordSize = data.remaining();
+            if (null == recordSetWriter) {
+                recordSetWriter = newRecordSetWriter();
+            } else if ((recordSetWriter.getNumBytes() + logRecordSize) > MAX_LOGRECORDSET_SIZE) {
+                // if exceed max number of bytes
+                cancelLinger();
+                send();
+                recordSetWriter = newRecordSetWriter();
+            }
+            Promise<DLSN> writePromise = new Promise<DLSN>();
+            try {
+                recordSetWriter.writeRecord(data, writePromise);
+            } catch (LogRecordTooLongException e) {
+                if (recordSetWriter.getNumRecords() == 0) {
+                    flush();
+                }
+                return Future.exception(e);
+            } catch (WriteException e) {
+                recordSetWriter.abortTransmit(e);
+                recordSetWriter = null;
+                cancelLinger();
+                remove();
+                return Future.exception(e);
+            }
+            coalescedWrites.incr();
+            if (recordSetWriter.getNumBytes() >= maxBytes
+                    || recordSetWriter.getNumRecords() >= maxRecords
+                    || lingerMicros <= 0) {
+                flush();
+            } else if (null == lingerFuture) {
+                scheduleLinger();
+            }
+            return writePromise;
+        }
+
+        private void scheduleLinger() {
+            try {
+                lingerFuture = scheduler.schedule(this, lingerMicros, TimeUnit.MICROSECONDS);
+            } catch (RejectedExecutionException ree) {
+                // the coalescer is closed, don't hold the records
+                flush();
+            }
+        }
+
+        private void cancelLinger() {
+            if (null != lingerFuture) {
+                lingerFuture.cancel(false);
+                lingerFuture = null;
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            lingerFuture = null;
+            flush();
+        }
+
+        /**
+         * Send the pending record set and remove the batch.
+         */
+        synchronized void flush() {
+            cancelLinger();
+            send();
+            remove();
+        }
+
+        /**
+         * Remove the batch from the coalescer. It is called under the batch's lock after the
+         * pending record set is sent, so the record sets sent by the next batch of the stream
+         * are always sent after the ones of this batch.
+         */
+        private void remove() {
+            removed = true;
+            streamBatches.remove(stream, this);
+        }
+
+        /**
+         * Send the pending record set. It is called under the batch's lock, so the record sets
+         * of a stream are sent in the order they were built.
+         */
+        private void send() {
+            if (null == recordSetWriter) {
+                return;
+            }
+            final LogRecordSet.Writer recordSetToFlush = recordSetWriter;
+            recordSetWriter = null;
+            if (recordSetToFlush.getNumRecords() == 0) {
+                return;
+            }
+            batches.incr();
+            batchNumRecords.add(recordSetToFlush.getNumRecords());
+            client.writeRecordSet(stream, recordSetToFlush).addEventListener(new FutureEventListener<DLSN>() {
+                @Override
+                public void onSuccess(DLSN dlsn) {
+                    recordSetToFlush.completeTransmit(
+                            dlsn.getLogSegmentSequenceNo(),
+                            dlsn.getEntryId(),
+                            dlsn.getSlotId());
+                }
+
+                @Override
+                public void onFailure(Throwable cause) {
+                    recordSetToFlush.abortTransmit(cause);
+                }
+            });
+        }
+    }
+
+    private final DistributedLogClient client;
+    private final int maxBytes;
+    private final int maxRecords;
+    private final long lingerMicros;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, StreamBatch> streamBatches =
+            new ConcurrentHashMap<String, StreamBatch>();
+
+    // Stats
+    private final Counter coalescedWrites;
+    private final Counter batches;
+    private final Stat batchNumRecords;
+
+    WriteCoalescer(String clientName,
+                   DistributedLogClient client,
+                   int maxBytes,
+                   int maxRecords,
+                   long lingerMicros,
+                   StatsReceiver statsReceiver) {
+        this.client = client;
+        this.maxBytes = Math.min(maxBytes, MAX_LOGRECORDSET_SIZE);
+        this.maxRecords = maxRecords;
+        this.lingerMicros = lingerMicros;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("DLClient-" + clientName + "-coalescer-%d")
+                        .build());
+        StatsReceiver coalescerStatsReceiver = statsReceiver.scope("write_coalescer");
+        this.coalescedWrites = coalescerStatsReceiver.counter0("coalesced_writes");
+        this.batches = coalescerStatsReceiver.counter0("batches");
+        this.batchNumRecords = coalescerStatsReceiver.stat0("batch_num_records");
+    }
+
+    private LogRecordSet.Writer newRecordSetWriter() {
+        return LogRecordSet.newWriter(maxBytes, CompressionCodec.Type.NONE);
+    }
+
+    /**
+     * Write a record to the given <i>stream</i>.
+     *
+     * @param stream
+     *          stream to write to
+     * @param data
+     *          record to write
+     * @return future representing the DLSN of the record.
+     */
+    Future<DLSN> write(String stream, ByteBuffer data) {
+        int logRecordSize = data.remaining();
+        if (logRecordSize > MAX_LOGRECORD_SIZE) {
+            return Future.exception(new LogRecordTooLongException(
+                    "Log record of size " + logRecordSize + " written when only "
+                            + MAX_LOGRECORD_SIZE + " is allowed"));
+        }
+        while (true) {
+            StreamBatch batch = streamBatches.get(stream);
+            if (null == batch) {
+                StreamBatch newBatch = new StreamBatch(stream);
+                StreamBatch oldBatch = streamBatches.putIfAbsent(stream, newBatch);
+                batch = null == oldBatch ? newBatch : oldBatch;
+            }
+            Future<DLSN> writeFuture = batch.write(data);
+            if (null != writeFuture) {
+                return writeFuture;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int getNumPendingStreams() {
+        return streamBatches.size();
+    }
+
+    /**
+     * Send all the pending record sets.
+     */
+    void flush() {
+        for (StreamBatch batch : streamBatches.values()) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * Send all the pending record sets and stop the linger timer.
+     */
+    void close() {
+        scheduler.shutdown();
+        flush();
+    }
+}
@@ -40,7 +40,6 @@ import java.net.SocketAddress;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -124,10 +123,75 @@ public class ConsistentHashRoutingService extends ServerSetRoutingService {
         }
     }
 
+    /**
+     * An immutable snapshot of the hash ring.
+     *
+     * <p>The replica hashes are kept in a sorted primitive array, and the address owning
+     * each hash is kept at the same index in a parallel array, so lookups are binary searches
+     * that don't allocate.
+     */
+    static class Ring {
+
+        static final Ring EMPTY = new Ring(new long[0], new SocketAddress[0]);
+
+        static Ring of(SortedMap<Long, SocketAddress> circle) {
+            long[] hashes = new long[circle.size()];
+            SocketAddress[] addresses = new SocketAddress[circle.size()];
+            int idx = 0;
+            for (Map.Entry<Long, SocketAddress> entry : circle.entrySet()) {
+                hashes[idx] = entry.getKey();
+                addresses[idx] = entry.getValue();
+                ++idx;
+            }
+            return new Ring(hashes, addresses);
+        }
+
+        private final long[] hashes;
+        private final SocketAddress[] addresses;
+
+        private Ring(long[] hashes, SocketAddress[] addresses) {
+            this.hashes = hashes;
+            this.addresses = addresses;
+        }
+
+        int size() {
+            return hashes.length;
+        }
+
+        long hashAt(int idx) {
+            return hashes[idx];
+        }
+
+        SocketAddress addressAt(int idx) {
+            return addresses[idx];
+        }
+
+        /**
+         * Find the index of the first hash that is not less than the given <i>hash</i>.
+         *
+         * @param hash hash to look up
+         * @return index of the first hash that is not less than <i>hash</i>, or
+         *         {@link #size()} if all the hashes are less than <i>hash</i>.
+         */
+        int ceilingIndex(long hash) {
+            int idx = Arrays.binarySearch(hashes, hash);
+            return idx >= 0 ? idx : -idx - 1;
+        }
+
+        SortedMap<Long, SocketAddress> toSortedMap() {
+            SortedMap<Long, SocketAddress> circle = new TreeMap<Long, SocketAddress>();
+            for (int i = 0; i < hashes.length; i++) {
+                circle.put(hashes[i], addresses[i]);
+            }
+            return circle;
+        }
+    }
+
     static class ConsistentHash {
         private final HashFunction hashFunction;
         private final int numOfReplicas;
-        private final SortedMap<Long, SocketAddress> circle;
+        // membership changes build a new ring and swap it in, lookups read the current ring without locking.
+        private volatile Ring ring;
 
         // Stats
         protected final Counter hostAddedCounter;
@@ -138,7 +202,7 @@ public class ConsistentHashRoutingService extends ServerSetRoutingService {
                        StatsReceiver statsReceiver) {
             this.hashFunction = hashFunction;
             this.numOfReplicas = numOfReplicas;
-            this.circle = new TreeMap<Long, SocketAddress>();
+            this.ring = Ring.EMPTY;
 
             this.hostAddedCounter = statsReceiver.counter0("adds");
             this.hostRemovedCounter = statsReceiver.counter0("removes");
@@ -169,15 +233,18 @@ public class ConsistentHashRoutingService extends ServerSetRoutingService {
         }
 
         public synchronized void add(int shardId, SocketAddress address) {
+            SortedMap<Long, SocketAddress> circle = ring.toSortedMap();
             String addressStr = address.toString();
             for (int i = 0; i < numOfReplicas; i++) {
                 Long hash = replicaHash(shardId, i, addressStr);
                 circle.put(hash, address);
             }
+            ring = Ring.of(circle);
             hostAddedCounter.incr();
         }
 
         public synchronized void remove(int shardId, SocketAddress address) {
+            SortedMap<Long, SocketAddress> circle = ring.toSortedMap();
             for (int i = 0; i < numOfReplicas; i++) {
                 long hash = replicaHash(shardId, i, address);
                 SocketAddress oldAddress = circle.get(hash);
@@ -185,6 +252,7 @@ public class ConsistentHashRoutingService extends ServerSetRoutingService {
                     circle.remove(hash);
                 }
             }
+            ring = Ring.of(circle);
             hostRemovedCounter.incr();
         }
 
@@ -193,46 +261,45 @@ public class ConsistentHashRoutingService extends ServerSetRoutingService {
             return find(hash, rContext);
         }
 
-        private synchronized SocketAddress find(long hash, RoutingContext rContext) {
-            if (circle.isEmpty()) {
+        private SocketAddress find(long hash, RoutingContext rContext) {
+            final Ring snapshot = ring;
+            final int size = snapshot.size();
+            if (0 == size) {
                 return null;
             }
 
-            Iterator<Map.Entry<Long, SocketAddress>> iterator =
-                    circle.tailMap(hash).entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<Long, SocketAddress> entry = iterator.next();
-                if (!rContext.isTriedHost(entry.getValue())) {
-                    return entry.getValue();
+            // walk the ring clockwise from the first hash not less than the given hash
+            int idx = snapshot.ceilingIndex(hash);
+            for (int i = 0; i < size; i++, idx++) {
+                if (idx >= size) {
+                    idx = 0;
                 }
-            }
-            // the tail map has been checked
-            iterator = circle.headMap(hash).entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<Long, SocketAddress> entry = iterator.next();
-                if (!rContext.isTriedHost(entry.getValue())) {
-                    return entry.getValue();
+                SocketAddress address = snapshot.addressAt(idx);
+                if (!rContext.isTriedHost(address)) {
+                    return address;
                 }
             }
 
             return null;
         }
 
-        private synchronized Pair<Long, SocketAddress> get(long hash) {
-            if (circle.isEmpty()) {
+        private Pair<Long, SocketAddress> get(long hash) {
+            final Ring snapshot = ring;
+            if (0 == snapshot.size()) {
                 return null;
             }
 
-            if (!circle.containsKey(hash)) {
-                SortedMap<Long, SocketAddress> tailMap = circle.tailMap(hash);
-                hash = tailMap.isEmpty() ? circle.firstKey() : tailMap.firstKey();
+            int idx = snapshot.ceilingIndex(hash);
+            if (idx >= snapshot.size()) {
+                idx = 0;
             }
-            return Pair.of(hash, circle.get(hash));
+            return Pair.of(snapshot.hashAt(idx), snapshot.addressAt(idx));
         }
 
-        synchronized void dumpHashRing() {
-            for (Map.Entry<Long, SocketAddress> entry : circle.entrySet()) {
-                logger.info(entry.getKey() + " : " + entry.getValue());
+        void dumpHashRing() {
+            final Ring snapshot = ring;
+            for (int i = 0; i < snapshot.size(); i++) {
+                logger.info(snapshot.hashAt(i) + " : " + snapshot.addressAt(i));
             }
         }
 
@@ -19,9 +19,11 @@ package com.twitter.distributedlog.service;
 
 import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.LogRecordSetBuffer;
+import com.twitter.distributedlog.LogRecordWithDLSN;
 import com.twitter.util.Future;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interface for distributedlog client.
@@ -101,6 +103,36 @@ public interface DistributedLogClient {
      */
     Future<Void> create(String stream);
 
+    /**
+     * Read records of a given <i>stream</i> starting from <i>fromDlsn</i> (inclusive).
+     *
+     * <p>The records are read through the proxies rather than bookkeeper directly. The proxy
+     * shares a read-ahead cache among all the readers of a stream, so the readers tailing the
+     * stream don't each read the entries from bookkeeper. The proxies cap <i>maxRecords</i> and
+     * <i>waitTime</i> to their own limits.
+     *
+     * <p>If there is no record after <i>fromDlsn</i> yet, the request waits up to <i>waitTime</i>
+     * for new records, and is satisfied with an empty list if nothing arrives. The wait time
+     * should be less than the request timeout of the client.
+     *
+     * @param stream
+     *          Stream Name.
+     * @param fromDlsn
+     *          DLSN to read from.
+     * @param maxRecords
+     *          Max number of records to return.
+     * @param waitTime
+     *          Max time to wait for new records at the tail of the stream.
+     * @param timeUnit
+     *          Time unit of the wait time.
+     * @return a future representing the list of records read.
+     */
+    Future<List<LogRecordWithDLSN>> readStream(String stream,
+                                               DLSN fromDlsn,
+                                               int maxRecords,
+                                               long waitTime,
+                                               TimeUnit timeUnit);
+
     /**
      * Close the client.
      */
@@ -496,6 +496,63 @@ public final class DistributedLogClientBuilder {
         return newBuilder;
     }
 
+    /**
+     * Enable/Disable coalescing writes to a same stream.
+     *
+     * <p>If it is enabled, the records written by {@link DistributedLogClient#write(String, java.nio.ByteBuffer)}
+     * to a same stream are coalesced into record sets, which are sent in a single request when they reach
+     * {@link #writeCoalescingMaxBytes(int)} bytes or {@link #writeCoalescingMaxRecords(int)} records, or
+     * after {@link #writeCoalescingLingerMicros(long)}. It is disabled by default.
+     *
+     * @param enabled
+     *          flag to enable/disable write coalescing
+     * @return client builder
+     */
+    public DistributedLogClientBuilder writeCoalescing(boolean enabled) {
+        DistributedLogClientBuilder newBuilder = newBuilder(this);
+        newBuilder.clientConfig.setWriteCoalescingEnabled(enabled);
+        return newBuilder;
+    }
+
+    /**
+     * Set the max number of bytes of a coalesced record set.
+     *
+     * @param maxBytes
+     *          max number of bytes of a coalesced record set
+     * @return client builder
+     */
+    public DistributedLogClientBuilder writeCoalescingMaxBytes(int maxBytes) {
+        DistributedLogClientBuilder newBuilder = newBuilder(this);
+        newBuilder.clientConfig.setWriteCoalescingMaxBytes(maxBytes);
+        return newBuilder;
+    }
+
+    /**
+     * Set the max number of records of a coalesced record set.
+     *
+     * @param maxRecords
+     *          max number of records of a coalesced record set
+     * @return client builder
+     */
+    public DistributedLogClientBuilder writeCoalescingMaxRecords(int maxRecords) {
+        DistributedLogClientBuilder newBuilder = newBuilder(this);
+        newBuilder.clientConfig.setWriteCoalescingMaxRecords(maxRecords);
+        return newBuilder;
+    }
+
+    /**
+     * Set the max time that a record waits to be coalesced with other records, in micros.
+     *
+     * @param lingerMicros
+     *          max linger time in micros
+     * @return client builder
+     */
+    public DistributedLogClientBuilder writeCoalescingLingerMicros(long lingerMicros) {
+        DistributedLogClientBuilder newBuilder = newBuilder(this);
+        newBuilder.clientConfig.setWriteCoalescingLingerMicros(lingerMicros);
+        return newBuilder;
+    }
+
     /**
      * Configure the finagle name string for the server-side routing service.
      *
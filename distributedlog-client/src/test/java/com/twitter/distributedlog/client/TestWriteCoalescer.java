@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.client;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.LogRecord;
+import com.twitter.distributedlog.LogRecordSetBuffer;
+import com.twitter.distributedlog.exceptions.LogRecordTooLongException;
+import com.twitter.distributedlog.service.DistributedLogClient;
+import com.twitter.finagle.stats.NullStatsReceiver;
+import com.twitter.util.Await;
+import com.twitter.util.Future;
+import com.twitter.util.Promise;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Test {@link WriteCoalescer}.
+ */
+public class TestWriteCoalescer {
+
+    private static ByteBuffer newRecord(int i) {
+        return ByteBuffer.wrap(("record-" + i).getBytes(UTF_8));
+    }
+
+    @Test(timeout = 20000)
+    public void testFlushWhenReachingMaxRecords() throws Exception {
+        DistributedLogClient client = mock(DistributedLogClient.class);
+        Promise<DLSN> writePromise = new Promise<DLSN>();
+        when(client.writeRecordSet(anyString(), any(LogRecordSetBuffer.class))).thenReturn(writePromise);
+
+        WriteCoalescer coalescer = new WriteCoalescer(
+                "test", client, 16 * 1024, 10, Long.MAX_VALUE, NullStatsReceiver.get());
+        try {
+            List<Future<DLSN>> results = new ArrayList<Future<DLSN>>();
+            for (int i = 0; i < 9; i++) {
+                results.add(coalescer.write("stream", newRecord(i)));
+            }
+            verify(client, never()).writeRecordSet(anyString(), any(LogRecordSetBuffer.class));
+            results.add(coalescer.write("stream", newRecord(9)));
+            verify(client, times(1)).writeRecordSet(eq("stream"), any(LogRecordSetBuffer.class));
+
+            for (Future<DLSN> result : results) {
+                assertFalse(result.isDefined());
+            }
+            writePromise.setValue(new DLSN(1L, 2L, 0L));
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("Record " + i + " should be mapped to its slot",
+                        new DLSN(1L, 2L, i), Await.result(results.get(i)));
+            }
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testFlushWhenReachingMaxBytes() throws Exception {
+        DistributedLogClient client = mock(DistributedLogClient.class);
+        when(client.writeRecordSet(anyString(), any(LogRecordSetBuffer.class)))
+                .thenReturn(Future.value(new DLSN(1L, 2L, 0L)));
+
+        WriteCoalescer coalescer = new WriteCoalescer(
+                "test", client, 1024, Integer.MAX_VALUE, Long.MAX_VALUE, NullStatsReceiver.get());
+        try {
+            Future<DLSN> result = coalescer.write("stream", ByteBuffer.wrap(new byte[2048]));
+            verify(client, times(1)).writeRecordSet(eq("stream"), any(LogRecordSetBuffer.class));
+            assertEquals(new DLSN(1L, 2L, 0L), Await.result(result));
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testFlushAfterLinger() throws Exception {
+        DistributedLogClient client = mock(DistributedLogClient.class);
+        when(client.writeRecordSet(anyString(), any(LogRecordSetBuffer.class)))
+                .thenReturn(Future.value(new DLSN(1L, 2L, 0L)));
+
+        WriteCoalescer coalescer = new WriteCoalescer(
+                "test", client, 16 * 1024, Integer.MAX_VALUE, 1000L, NullStatsReceiver.get());
+        try {
+            Future<DLSN> result0 = coalescer.write("stream-0", newRecord(0));
+            Future<DLSN> result1 = coalescer.write("stream-1", newRecord(1));
+            Future<DLSN> result2 = coalescer.write("stream-1", newRecord(2));
+            verify(client, timeout(10000).times(1)).writeRecordSet(eq("stream-0"), any(LogRecordSetBuffer.class));
+            verify(client, timeout(10000).times(1)).writeRecordSet(eq("stream-1"), any(LogRecordSetBuffer.class));
+            assertEquals(new DLSN(1L, 2L, 0L), Await.result(result0));
+            assertEquals(new DLSN(1L, 2L, 0L), Await.result(result1));
+            assertEquals(new DLSN(1L, 2L, 1L), Await.result(result2));
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testFailedRecordSetWrite() throws Exception {
+        DistributedLogClient client = mock(DistributedLogClient.class);
+        Promise<DLSN> writePromise = new Promise<DLSN>();
+        when(client.writeRecordSet(anyString(), any(LogRecordSetBuffer.class))).thenReturn(writePromise);
+
+        WriteCoalescer coalescer = new WriteCoalescer(
+                "test", client, 16 * 1024, 2, Long.MAX_VALUE, NullStatsReceiver.get());
+        try {
+            Future<DLSN> result0 = coalescer.write("stream", newRecord(0));
+            Future<DLSN> result1 = coalescer.write("stream", newRecord(1));
+            writePromise.setException(new Exception("test-exception"));
+            assertTrue(result0.isDefined() && result0.poll().get().isThrow());
+            assertTrue(result1.isDefined() && result1.poll().get().isThrow());
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testFlushOnClose() throws Exception {
+        DistributedLogClient client = mock(DistributedLogClient.class);
+        when(client.writeRecordSet(anyString(), any(LogRecordSetBuffer.class)))
+                .thenReturn(Future.value(new DLSN(1L, 2L, 0L)));
+
+        WriteCoalescer coalescer = new WriteCoalescer(
+                "test", client, 16 * 1024, Integer.MAX_VALUE, Long.MAX_VALUE, NullStatsReceiver.get());
+        Future<DLSN> result = coalescer.write("stream", newRecord(0));
+        verify(client, never()).writeRecordSet(anyString(), any(LogRecordSetBuffer.class));
+        coalescer.close();
+        verify(client, times(1)).writeRecordSet(eq("stream"), any(LogRecordSetBuffer.class));
+        assertEquals(new DLSN(1L, 2L, 0L), Await.result(result));
+    }
+
+    @Test(timeout = 20000)
+    public void testRemoveBatchAfterFlush() throws Exception {
+        DistributedLogClient client = mock(DistributedLogClient.class);
+        when(client.writeRecordSet(anyString(), any(LogRecordSetBuffer.class)))
+                .thenReturn(Future.value(new DLSN(1L, 2L, 0L)));
+
+        WriteCoalescer coalescer = new WriteCoalescer(
+                "test", client, 16 * 1024, Integer.MAX_VALUE, Long.MAX_VALUE, NullStatsReceiver.get());
+        try {
+            Future<DLSN> result0 = coalescer.write("stream", newRecord(0));
+            assertEquals(1, coalescer.getNumPendingStreams());
+            coalescer.flush();
+            assertEquals("The batch should be removed once it is sent", 0, coalescer.getNumPendingStreams());
+            assertEquals(new DLSN(1L, 2L, 0L), Await.result(result0));
+
+            Future<DLSN> result1 = coalescer.write("stream", newRecord(1));
+            assertEquals(1, coalescer.getNumPendingStreams());
+            coalescer.flush();
+            verify(client, times(2)).writeRecordSet(eq("stream"), any(LogRecordSetBuffer.class));
+            assertEquals(new DLSN(1L, 2L, 0L), Await.result(result1));
+            assertEquals(0, coalescer.getNumPendingStreams());
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    @Test(timeout = 20000, expected = LogRecordTooLongException.class)
+    public void testWriteTooLongRecord() throws Exception {
+        DistributedLogClient client = mock(DistributedLogClient.class);
+        WriteCoalescer coalescer = new WriteCoalescer(
+                "test", client, 16 * 1024, 10, 1000L, NullStatsReceiver.get());
+        try {
+            Await.result(coalescer.write("stream", ByteBuffer.wrap(new byte[LogRecord.MAX_LOGRECORD_SIZE + 1])));
+        } finally {
+            coalescer.close();
+        }
+    }
+}
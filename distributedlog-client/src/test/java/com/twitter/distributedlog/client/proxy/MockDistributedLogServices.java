@@ -21,6 +21,8 @@ import com.twitter.distributedlog.thrift.service.BulkWriteResponse;
 import com.twitter.distributedlog.thrift.service.ClientInfo;
 import com.twitter.distributedlog.thrift.service.DistributedLogService;
 import com.twitter.distributedlog.thrift.service.HeartbeatOptions;
+import com.twitter.distributedlog.thrift.service.ReadContext;
+import com.twitter.distributedlog.thrift.service.ReadResponse;
 import com.twitter.distributedlog.thrift.service.ServerInfo;
 import com.twitter.distributedlog.thrift.service.WriteContext;
 import com.twitter.distributedlog.thrift.service.WriteResponse;
@@ -109,6 +111,16 @@ public class MockDistributedLogServices {
             return Future.value(new WriteResponse());
         }
 
+        @Override
+        public Future<ReadResponse> readNext(String stream, String dlsn, ReadContext ctx) {
+            return Future.value(new ReadResponse());
+        }
+
+        @Override
+        public Future<ReadResponse> readBulk(String stream, String dlsn, ReadContext ctx) {
+            return Future.value(new ReadResponse());
+        }
+
         @Override
         public Future<Void> setAcceptNewStream(boolean enabled) {
             return Future.value(null);
@@ -26,8 +26,10 @@ import static org.junit.Assert.fail;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.twitter.distributedlog.client.resolver.DefaultRegionResolver;
 import com.twitter.distributedlog.service.DLSocketAddress;
+import com.twitter.distributedlog.thrift.service.StatusCode;
 import com.twitter.finagle.Address;
 import com.twitter.finagle.Addresses;
 import com.twitter.finagle.ChannelWriteException;
@@ -37,7 +39,9 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -49,6 +53,61 @@ import org.junit.Test;
  */
 public class TestConsistentHashRoutingService {
 
+    @Test(timeout = 60000)
+    public void testConsistentHashRing() throws Exception {
+        ConsistentHashRoutingService.ConsistentHash ring = new ConsistentHashRoutingService.ConsistentHash(
+                Hashing.md5(), 97, NullStatsReceiver.get());
+        RoutingService.RoutingContext emptyContext =
+                RoutingService.RoutingContext.of(new DefaultRegionResolver());
+        assertEquals(null, ring.get("stream", emptyContext));
+
+        List<SocketAddress> hosts = new ArrayList<SocketAddress>();
+        for (int i = 0; i < 3; i++) {
+            SocketAddress host = new InetSocketAddress("127.0.0.1", 3181 + i);
+            hosts.add(host);
+            ring.add(i, host);
+        }
+
+        Map<String, SocketAddress> placements = new HashMap<String, SocketAddress>();
+        for (int i = 0; i < 100; i++) {
+            String stream = "stream-" + i;
+            SocketAddress host = ring.get(stream, emptyContext);
+            assertTrue(hosts.contains(host));
+            assertEquals("Lookups should be stable", host, ring.get(stream, emptyContext));
+            placements.put(stream, host);
+        }
+
+        // tried hosts are skipped by walking along the ring
+        String stream = "stream-0";
+        RoutingService.RoutingContext routingContext =
+                RoutingService.RoutingContext.of(new DefaultRegionResolver());
+        Set<SocketAddress> triedHosts = Sets.newHashSet();
+        for (int i = 0; i < hosts.size(); i++) {
+            SocketAddress host = ring.get(stream, routingContext);
+            assertNotNull(host);
+            assertTrue("Should not route to a tried host " + host, triedHosts.add(host));
+            routingContext.addTriedHost(host, StatusCode.WRITE_EXCEPTION);
+        }
+        assertEquals(null, ring.get(stream, routingContext));
+
+        // removing a host only moves the streams placed on that host
+        SocketAddress removedHost = hosts.get(0);
+        ring.remove(0, removedHost);
+        for (Map.Entry<String, SocketAddress> placement : placements.entrySet()) {
+            SocketAddress host = ring.get(placement.getKey(), emptyContext);
+            assertFalse(removedHost.equals(host));
+            if (!removedHost.equals(placement.getValue())) {
+                assertEquals(placement.getValue(), host);
+            }
+        }
+
+        // adding the host back restores the placements
+        ring.add(0, removedHost);
+        for (Map.Entry<String, SocketAddress> placement : placements.entrySet()) {
+            assertEquals(placement.getValue(), ring.get(placement.getKey(), emptyContext));
+        }
+    }
+
     @Test(timeout = 60000)
     public void testBlackoutHost() throws Exception {
         TestName name = new TestName();
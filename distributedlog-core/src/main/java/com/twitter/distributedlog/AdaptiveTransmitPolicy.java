@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy deciding how many bytes a {@link BKLogSegmentWriter} buffers before transmitting,
+ * and how long buffered records may wait for a transmit, based on what the writer observes.
+ *
+ * <p>The policy tracks a moving average of the add latency reported by bookkeeper, a moving
+ * average of its deviation and a moving average of the incoming byte rate. The p99 add latency
+ * is estimated as <i>mean + 3 * deviation</i>. The remaining budget of the target latency is
+ * used as the flush delay, and the number of bytes expected to arrive within that delay is used
+ * as the transmission threshold:
+ * <ul>
+ * <li>when bookies are slow and no budget is left, or the stream is idle (no outstanding transmits
+ * and not enough incoming bytes to make a batch worth waiting for), records are transmitted immediately.
+ * <li>under load, records are batched up to the bytes that arrive within the remaining budget,
+ * bounded by the max transmit size.
+ * </ul>
+ *
+ * <h3>Metrics</h3>
+ * All the metrics are exposed under `transmit/adaptive`.
+ * <ul>
+ * <li> `threshold`: opstats. the transmission thresholds (in bytes) picked by the policy.
+ * <li> `flush_delay`: opstats. the flush delays (in micros) picked by the policy.
+ * </ul>
+ */
+class AdaptiveTransmitPolicy {
+
+    // interval between two evaluations of the decisions
+    static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // time constant to age the incoming rate average
+    static final long RATE_AVERAGING_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // weight of a new add latency in the latency averages
+    static final double LATENCY_SMOOTHING_FACTOR = 0.1;
+    // smallest batch that is worth delaying a transmit for, when there are no outstanding transmits
+    static final int MIN_BATCH_BYTES = 1024;
+
+    private final long targetLatencyMicros;
+    private final int maxTransmissionThreshold;
+    private final OpStatsLogger thresholdStatsLogger;
+    private final OpStatsLogger flushDelayStatsLogger;
+
+    // observations
+    private boolean addLatencyObserved = false;
+    private double addLatencyMeanMicros = 0.0;
+    private double addLatencyDeviationMicros = 0.0;
+    private double bytesPerMicro = 0.0;
+    private long bytesSinceLastSample = 0L;
+    private long lastSampleNanos;
+
+    // decisions
+    private int transmissionThreshold = 0;
+    private long flushDelayMicros = 0L;
+
+    AdaptiveTransmitPolicy(long targetLatencyMs,
+                           int maxTransmissionThreshold,
+                           StatsLogger statsLogger) {
+        this.targetLatencyMicros = TimeUnit.MILLISECONDS.toMicros(targetLatencyMs);
+        this.maxTransmissionThreshold = maxTransmissionThreshold;
+        StatsLogger adaptiveStatsLogger = statsLogger.scope("transmit").scope("adaptive");
+        this.thresholdStatsLogger = adaptiveStatsLogger.getOpStatsLogger("threshold");
+        this.flushDelayStatsLogger = adaptiveStatsLogger.getOpStatsLogger("flush_delay");
+        this.lastSampleNanos = System.nanoTime();
+    }
+
+    /**
+     * Record an add request completed by bookkeeper.
+     *
+     * @param latencyMicros
+     *          latency from transmitting the entry until it was acknowledged, in micros.
+     */
+    synchronized void onTransmitComplete(long latencyMicros) {
+        if (!addLatencyObserved) {
+            addLatencyMeanMicros = latencyMicros;
+            addLatencyDeviationMicros = latencyMicros / 2.0;
+            addLatencyObserved = true;
+            return;
+        }
+        double diff = latencyMicros - addLatencyMeanMicros;
+        addLatencyMeanMicros += LATENCY_SMOOTHING_FACTOR * diff;
+        addLatencyDeviationMicros += LATENCY_SMOOTHING_FACTOR * (Math.abs(diff) - addLatencyDeviationMicros);
+    }
+
+    /**
+     * Record a user record written to the writer.
+     *
+     * @param numBytes
+     *          number of bytes written.
+     * @param outstandingTransmits
+     *          number of transmits that haven't been acknowledged.
+     */
+    void onWrite(int numBytes, int outstandingTransmits) {
+        onWrite(numBytes, outstandingTransmits, System.nanoTime());
+    }
+
+    @VisibleForTesting
+    synchronized void onWrite(int numBytes, int outstandingTransmits, long nowNanos) {
+        long elapsedNanos = nowNanos - lastSampleNanos;
+        if (elapsedNanos >= SAMPLE_INTERVAL_NANOS) {
+            // weight the new sample by the time it covers, so a long idle period resets the rate
+            double weight = 1.0 - Math.exp(-(double) elapsedNanos / RATE_AVERAGING_WINDOW_NANOS);
+            double sampleBytesPerMicro = bytesSinceLastSample / (elapsedNanos / 1000.0);
+            bytesPerMicro += weight * (sampleBytesPerMicro - bytesPerMicro);
+            bytesSinceLastSample = 0L;
+            lastSampleNanos = nowNanos;
+            updateDecisions(outstandingTransmits);
+        }
+        bytesSinceLastSample += numBytes;
+    }
+
+    private void updateDecisions(int outstandingTransmits) {
+        long p99AddLatencyMicros = (long) (addLatencyMeanMicros + 3 * addLatencyDeviationMicros);
+        long delayMicros = Math.max(0L, targetLatencyMicros - p99AddLatencyMicros);
+        double expectedBytes = bytesPerMicro * delayMicros;
+        if (0L == delayMicros || (0 == outstandingTransmits && expectedBytes < MIN_BATCH_BYTES)) {
+            transmissionThreshold = 0;
+            flushDelayMicros = 0L;
+        } else {
+            transmissionThreshold = (int) Math.min(maxTransmissionThreshold, expectedBytes);
+            flushDelayMicros = delayMicros;
+        }
+        thresholdStatsLogger.registerSuccessfulEvent(transmissionThreshold);
+        flushDelayStatsLogger.registerSuccessfulEvent(flushDelayMicros);
+    }
+
+    /**
+     * Get the number of buffered bytes after which the writer should transmit.
+     *
+     * @return transmission threshold in bytes.
+     */
+    synchronized int getTransmissionThreshold() {
+        return transmissionThreshold;
+    }
+
+    /**
+     * Get the max time that buffered records should wait before they are transmitted.
+     *
+     * @return flush delay in micros.
+     */
+    synchronized long getFlushDelayMicros() {
+        return flushDelayMicros;
+    }
+
+}
@@ -18,39 +18,63 @@
 package com.twitter.distributedlog;
 
 import com.google.common.base.Preconditions;
+import com.twitter.distributedlog.exceptions.LogEmptyException;
+import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.distributedlog.util.Utils;
+import com.twitter.util.Duration;
+import com.twitter.util.Future;
+import com.twitter.util.TimeoutException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reader to read a log stream written by {@link AppendOnlyStreamWriter} as a sequence of bytes.
+ *
+ * <p>By default, records are read one by one through a synchronous {@link LogReader}. If
+ * {@link DistributedLogConfiguration#getAppendOnlyStreamReaderPrefetchRecords()} is positive, records
+ * are prefetched in batches through an {@link AsyncLogReader} and reads are served from the payload
+ * buffers of the prefetched records (zero-copy if {@link DistributedLogConfiguration#getReaderZeroCopyEnabled()}
+ * is enabled). {@link #skipTo(long)} then seeks to the record containing the position through
+ * {@link DistributedLogManager#getDLSNNotLessThanTxId(long)}, since the transaction id of each record
+ * is the position of the byte following it in the stream.
+ */
 public class AppendOnlyStreamReader extends InputStream {
     static final Logger LOG = LoggerFactory.getLogger(AppendOnlyStreamReader.class);
 
-    private LogRecordWithInputStream currentLogRecord = null;
+    private LogRecordWithPayload currentLogRecord = null;
     private final DistributedLogManager dlm;
-    private LogReader reader;
+    private final int prefetchRecords;
+    private final Duration waitTime;
+    private RecordSource source;
     private long currentPosition;
-    private static final int SKIP_BUFFER_SIZE = 512;
 
-    // Cache the input stream for a log record.
-    private static class LogRecordWithInputStream {
-        private final InputStream payloadStream;
+    // Cache the payload buffer for a log record.
+    private static class LogRecordWithPayload {
+        private final ByteBuffer payload;
+        private final int payloadLength;
         private final LogRecordWithDLSN logRecord;
 
-        LogRecordWithInputStream(LogRecordWithDLSN logRecord) {
+        LogRecordWithPayload(LogRecordWithDLSN logRecord) {
             Preconditions.checkNotNull(logRecord);
+            this.logRecord = logRecord;
+            this.payload = logRecord.getPayloadBuffer();
+            this.payloadLength = payload.remaining();
 
             LOG.debug("Got record dlsn = {}, txid = {}, len = {}",
-                new Object[] {logRecord.getDlsn(), logRecord.getTransactionId(), logRecord.getPayload().length});
-
-            this.logRecord = logRecord;
-            this.payloadStream = logRecord.getPayLoadInputStream();
+                new Object[] {logRecord.getDlsn(), logRecord.getTransactionId(), payloadLength});
         }
 
-        InputStream getPayLoadInputStream() {
-            return payloadStream;
+        ByteBuffer getPayload() {
+            return payload;
         }
 
         LogRecordWithDLSN getLogRecord() {
@@ -60,7 +84,94 @@ public class AppendOnlyStreamReader extends InputStream {
         // The last txid of the log record is the position of the next byte in the stream.
         // Subtract length to get starting offset.
         long getOffset() {
-            return logRecord.getTransactionId() - logRecord.getPayload().length;
+            return logRecord.getTransactionId() - payloadLength;
+        }
+    }
+
+    /**
+     * Source of the records read by the stream reader.
+     */
+    private interface RecordSource {
+
+        /**
+         * Read the next record.
+         *
+         * @return next record, or null if no record is available.
+         */
+        LogRecordWithDLSN nextRecord() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * Read records one by one through a synchronous log reader.
+     */
+    private static class SyncRecordSource implements RecordSource {
+
+        private final LogReader reader;
+
+        SyncRecordSource(LogReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public LogRecordWithDLSN nextRecord() throws IOException {
+            LogRecordWithDLSN record = reader.readNext(false);
+            if (null == record) {
+                record = reader.readNext(false);
+            }
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Prefetch records in batches through an async log reader. The next batch is requested as soon
+     * as the current batch is handed out, so it is read while the current batch is consumed.
+     */
+    private static class PrefetchRecordSource implements RecordSource {
+
+        private final AsyncLogReader reader;
+        private final int prefetchRecords;
+        private final Duration waitTime;
+        private Future<List<LogRecordWithDLSN>> pendingRead;
+        private Iterator<LogRecordWithDLSN> records = Collections.emptyIterator();
+
+        PrefetchRecordSource(AsyncLogReader reader, int prefetchRecords, Duration waitTime) {
+            this.reader = reader;
+            this.prefetchRecords = prefetchRecords;
+            this.waitTime = waitTime;
+            this.pendingRead = reader.readBulk(prefetchRecords);
+        }
+
+        @Override
+        public LogRecordWithDLSN nextRecord() throws IOException {
+            if (records.hasNext()) {
+                return records.next();
+            }
+            List<LogRecordWithDLSN> batch;
+            try {
+                batch = FutureUtils.result(pendingRead, waitTime);
+            } catch (IOException ioe) {
+                if (ioe.getCause() instanceof TimeoutException) {
+                    // no records are available within the wait time, keep the read pending
+                    LOG.debug("No record");
+                    return null;
+                }
+                throw ioe;
+            }
+            pendingRead = reader.readBulk(prefetchRecords);
+            records = batch.iterator();
+            return records.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+            Utils.close(reader);
         }
     }
 
@@ -70,35 +181,67 @@ public class AppendOnlyStreamReader extends InputStream {
      * @param dlm the Distributed Log Manager to access the stream
      */
     AppendOnlyStreamReader(DistributedLogManager dlm)
+        throws IOException {
+        this(dlm, 0, 0L);
+    }
+
+    /**
+     * Construct ledger input stream
+     *
+     * @param dlm the Distributed Log Manager to access the stream
+     * @param prefetchRecords number of records prefetched by block reads, 0 to read records one by one
+     * @param waitTimeMs time to wait for prefetched records
+     */
+    AppendOnlyStreamReader(DistributedLogManager dlm, int prefetchRecords, long waitTimeMs)
         throws IOException {
         this.dlm = dlm;
-        reader = dlm.getInputStream(0);
+        this.prefetchRecords = prefetchRecords;
+        this.waitTime = Duration.fromTimeUnit(waitTimeMs, TimeUnit.MILLISECONDS);
+        if (prefetchRecords > 0) {
+            source = new PrefetchRecordSource(
+                    FutureUtils.result(dlm.openAsyncLogReader(DLSN.InitialDLSN)), prefetchRecords, waitTime);
+        } else {
+            source = new SyncRecordSource(dlm.getInputStream(0));
+        }
         currentPosition = 0;
     }
 
+    /**
+     * Open a record source positioned at the record containing <i>position</i>.
+     */
+    private RecordSource openRecordSource(long position) throws IOException {
+        if (prefetchRecords > 0) {
+            DLSN dlsn;
+            try {
+                dlsn = FutureUtils.result(dlm.getDLSNNotLessThanTxId(position));
+            } catch (LogEmptyException lee) {
+                // nothing is written yet, wait for the first record as the synchronous reader does
+                dlsn = DLSN.InitialDLSN;
+            }
+            return new PrefetchRecordSource(
+                    FutureUtils.result(dlm.openAsyncLogReader(dlsn)), prefetchRecords, waitTime);
+        } else {
+            return new SyncRecordSource(dlm.getInputStream(position));
+        }
+    }
+
     /**
      * Get input stream representing next entry in the
      * ledger.
      *
      * @return input stream, or null if no more entries
      */
-    private LogRecordWithInputStream nextLogRecord() throws IOException {
-        return nextLogRecord(reader);
+    private LogRecordWithPayload nextLogRecord() throws IOException {
+        return nextLogRecord(source);
     }
 
-    private static LogRecordWithInputStream nextLogRecord(LogReader reader) throws IOException {
-        LogRecordWithDLSN record = reader.readNext(false);
-
+    private static LogRecordWithPayload nextLogRecord(RecordSource source) throws IOException {
+        LogRecordWithDLSN record = source.nextRecord();
         if (null != record) {
-            return new LogRecordWithInputStream(record);
+            return new LogRecordWithPayload(record);
         } else {
-            record = reader.readNext(false);
-            if (null != record) {
-                return new LogRecordWithInputStream(record);
-            } else {
-                LOG.debug("No record");
-                return null;
-            }
+            LOG.debug("No record");
+            return null;
         }
     }
 
@@ -123,13 +266,15 @@ public class AppendOnlyStreamReader extends InputStream {
         }
 
         while (read < len) {
-            int thisread = currentLogRecord.getPayLoadInputStream().read(b, off + read, (len - read));
-            if (thisread == -1) {
+            ByteBuffer payload = currentLogRecord.getPayload();
+            if (!payload.hasRemaining()) {
                 currentLogRecord = nextLogRecord();
                 if (currentLogRecord == null) {
                     return read;
                 }
             } else {
+                int thisread = Math.min(payload.remaining(), len - read);
+                payload.get(b, off + read, thisread);
                 LOG.debug("Offset saved = {}, persisted = {}",
                     currentPosition, currentLogRecord.getLogRecord().getTransactionId());
                 currentPosition += thisread;
@@ -139,6 +284,30 @@ public class AppendOnlyStreamReader extends InputStream {
         return read;
     }
 
+    /**
+     * Skip <i>numBytes</i> bytes by advancing the payload buffers, without copying them.
+     *
+     * @return number of bytes skipped.
+     */
+    private long skipBytes(long numBytes) throws IOException {
+        long skipped = 0L;
+        while (skipped < numBytes) {
+            ByteBuffer payload = currentLogRecord.getPayload();
+            if (!payload.hasRemaining()) {
+                currentLogRecord = nextLogRecord();
+                if (currentLogRecord == null) {
+                    break;
+                }
+            } else {
+                int thisskip = (int) Math.min(payload.remaining(), numBytes - skipped);
+                payload.position(payload.position() + thisskip);
+                currentPosition += thisskip;
+                skipped += thisskip;
+            }
+        }
+        return skipped;
+    }
+
     /**
      * Position the reader at the given offset. If we fail to skip to the desired position
      * and don't hit end of stream, return false.
@@ -153,46 +322,44 @@ public class AppendOnlyStreamReader extends InputStream {
             return true;
         }
 
-        LogReader skipReader = dlm.getInputStream(position);
-        LogRecordWithInputStream logRecord = null;
+        RecordSource skipSource = openRecordSource(position);
+        LogRecordWithPayload logRecord = null;
         try {
-            logRecord = nextLogRecord(skipReader);
+            logRecord = nextLogRecord(skipSource);
         } catch (IOException ex) {
-            skipReader.close();
+            skipSource.close();
             throw ex;
         }
 
         if (null == logRecord) {
+            skipSource.close();
             return false;
         }
 
         // We may end up with a reader positioned *before* the requested position if
         // we're near the tail and the writer is still active, or if the desired position
         // is not at a log record payload boundary.
-        // Transaction ID gives us the starting position of the log record. Read ahead
+        // Transaction ID gives us the starting position of the log record. Skip ahead
         // if necessary.
         currentPosition = logRecord.getOffset();
         currentLogRecord = logRecord;
-        LogReader oldReader = reader;
-        reader = skipReader;
+        RecordSource oldSource = source;
+        source = skipSource;
 
-        // Close the oldreader after swapping AppendOnlyStreamReader state. Close may fail
+        // Close the old source after swapping AppendOnlyStreamReader state. Close may fail
         // and we need to make sure it leaves AppendOnlyStreamReader in a consistent state.
-        oldReader.close();
-
-        byte[] skipBuffer = new byte[SKIP_BUFFER_SIZE];
-        while (currentPosition < position) {
-            long bytesToRead = Math.min(position - currentPosition, SKIP_BUFFER_SIZE);
-            long bytesRead = read(skipBuffer, 0, (int)bytesToRead);
-            if (bytesRead < bytesToRead) {
-                return false;
-            }
-        }
+        oldSource.close();
 
-        return true;
+        long bytesToSkip = position - currentPosition;
+        return bytesToSkip <= 0 || skipBytes(bytesToSkip) == bytesToSkip;
     }
 
     public long position() {
         return currentPosition;
     }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
 }
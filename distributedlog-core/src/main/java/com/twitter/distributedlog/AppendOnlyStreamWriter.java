@@ -19,15 +19,39 @@ package com.twitter.distributedlog;
 
 import com.twitter.distributedlog.exceptions.UnexpectedException;
 import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.util.Await;
 import com.twitter.util.Future;
 import com.twitter.util.FutureEventListener;
+import com.twitter.util.Promise;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writer to write a log stream as a sequence of bytes.
+ *
+ * <h3>Group Commit</h3>
+ * If group commit is enabled, concurrent {@link #force(boolean)} calls share a single
+ * {@link BKAsyncLogWriter#flushAndCommit()}. A force call joins the pending commit if there is one,
+ * which is issued once the outstanding commit completes, or after the group commit window if there
+ * isn't any outstanding commit. A pending commit is issued early once <i>groupCommitMaxCallers</i>
+ * callers joined it. A force call never joins a commit that is already issued, so the writes made
+ * before it are always covered by its commit.
+ *
+ * <h3>Metrics</h3>
+ * All the metrics are exposed under `append_only_stream_writer`.
+ * <ul>
+ * <li> `group_commit_callers`: opstats. the number of force calls served by each group commit.
+ * </ul>
+ */
 public class AppendOnlyStreamWriter implements Closeable {
     static final Logger LOG = LoggerFactory.getLogger(AppendOnlyStreamWriter.class);
 
@@ -37,11 +61,38 @@ public class AppendOnlyStreamWriter implements Closeable {
     BKAsyncLogWriter logWriter;
     long requestPos = 0;
 
+    // Group Commit
+    private final boolean groupCommitEnabled;
+    private final long groupCommitWindowMs;
+    private final int groupCommitMaxCallers;
+    private final OrderedScheduler scheduler;
+    private final OpStatsLogger groupCommitCallersStat;
+    // the commit waiting to be issued, joined by the force calls. guarded by this
+    private Promise<Long> pendingCommit = null;
+    private int numPendingCommitCallers = 0;
+    private boolean commitOutstanding = false;
+
     public AppendOnlyStreamWriter(BKAsyncLogWriter logWriter, long pos) {
+        this(logWriter, pos, false, 0L, 1, null, NullStatsLogger.INSTANCE);
+    }
+
+    AppendOnlyStreamWriter(BKAsyncLogWriter logWriter,
+                           long pos,
+                           boolean groupCommitEnabled,
+                           long groupCommitWindowMs,
+                           int groupCommitMaxCallers,
+                           OrderedScheduler scheduler,
+                           StatsLogger statsLogger) {
         LOG.debug("initialize at position {}", pos);
         this.logWriter = logWriter;
         this.syncPos[0] = pos;
         this.requestPos = pos;
+        this.groupCommitEnabled = groupCommitEnabled;
+        this.groupCommitWindowMs = null == scheduler ? 0L : groupCommitWindowMs;
+        this.groupCommitMaxCallers = Math.max(1, groupCommitMaxCallers);
+        this.scheduler = scheduler;
+        this.groupCommitCallersStat = statsLogger.scope("append_only_stream_writer")
+                .getOpStatsLogger("group_commit_callers");
     }
 
     public Future<DLSN> write(byte[] data) {
@@ -53,7 +104,7 @@ public class AppendOnlyStreamWriter implements Closeable {
     public void force(boolean metadata) throws IOException {
         long pos = 0;
         try {
-            pos = Await.result(logWriter.flushAndCommit());
+            pos = Await.result(groupCommitEnabled ? joinGroupCommit() : logWriter.flushAndCommit());
         } catch (IOException ioe) {
             throw ioe;
         } catch (Exception ex) {
@@ -61,7 +112,83 @@ public class AppendOnlyStreamWriter implements Closeable {
             throw new UnexpectedException("unexpected exception in AppendOnlyStreamWriter.force", ex);
         }
         synchronized (syncPos) {
-            syncPos[0] = pos;
+            // concurrent force calls may complete out of order, never move the position backwards
+            if (pos > syncPos[0]) {
+                syncPos[0] = pos;
+            }
+        }
+    }
+
+    private Future<Long> joinGroupCommit() {
+        final Promise<Long> commit;
+        boolean issueNow = false;
+        synchronized (this) {
+            if (null == pendingCommit) {
+                pendingCommit = new Promise<Long>();
+                numPendingCommitCallers = 0;
+                if (!commitOutstanding) {
+                    if (groupCommitWindowMs > 0) {
+                        final Promise<Long> commitToIssue = pendingCommit;
+                        scheduler.schedule(logWriter.getStreamName(), new Runnable() {
+                            @Override
+                            public void run() {
+                                issueGroupCommit(commitToIssue);
+                            }
+                        }, groupCommitWindowMs, TimeUnit.MILLISECONDS);
+                    } else {
+                        issueNow = true;
+                    }
+                }
+            }
+            commit = pendingCommit;
+            ++numPendingCommitCallers;
+            if (!commitOutstanding && numPendingCommitCallers >= groupCommitMaxCallers) {
+                issueNow = true;
+            }
+        }
+        if (issueNow) {
+            issueGroupCommit(commit);
+        }
+        return commit;
+    }
+
+    private void issueGroupCommit(final Promise<Long> commit) {
+        int numCallers;
+        synchronized (this) {
+            // the commit is already issued, or it will be issued when the outstanding commit completes
+            if (pendingCommit != commit || commitOutstanding) {
+                return;
+            }
+            numCallers = numPendingCommitCallers;
+            pendingCommit = null;
+            numPendingCommitCallers = 0;
+            commitOutstanding = true;
+        }
+        groupCommitCallersStat.registerSuccessfulEvent(numCallers);
+        logWriter.flushAndCommit().addEventListener(new FutureEventListener<Long>() {
+            @Override
+            public void onSuccess(Long pos) {
+                FutureUtils.setValue(commit, pos);
+                completeGroupCommit();
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                FutureUtils.setException(commit, cause);
+                completeGroupCommit();
+            }
+        });
+    }
+
+    private void completeGroupCommit() {
+        Promise<Long> nextCommit;
+        synchronized (this) {
+            commitOutstanding = false;
+            nextCommit = pendingCommit;
+        }
+        // the force calls made while the commit was outstanding already waited, issue their commit now
+        if (null != nextCommit) {
+            issueGroupCommit(nextCommit);
         }
     }
 
@@ -43,6 +43,10 @@ public interface AsyncLogReader extends AsyncCloseable {
      * Read next <i>numEntries</i> entries. The future is only satisfied with non-empty list
      * of entries. It doesn't block until returning exact <i>numEntries</i>. It is a best effort
      * call.
+     * <p>
+     * If zero-copy reads are enabled (see {@link DistributedLogConfiguration#getReaderZeroCopyEnabled()}),
+     * the payloads of the returned records could be accessed via {@link LogRecord#getPayloadBuffer()}
+     * without copying. The records read from the same entry share a single buffer.
      *
      * @param numEntries
      *          num entries
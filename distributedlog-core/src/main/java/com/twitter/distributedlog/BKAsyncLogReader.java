@@ -420,7 +420,10 @@ class BKAsyncLogReader implements AsyncLogReader, Runnable, AsyncNotification {
                     bkDistributedLogManager.getReaderEntryStore(),
                     bkDistributedLogManager.getScheduler(),
                     Ticker.systemTicker(),
-                    bkDistributedLogManager.alertStatsLogger);
+                    bkDistributedLogManager.alertStatsLogger,
+                    bkDistributedLogManager.getOffHeapEntryCache(),
+                    null,
+                    true);
             readHandler.checkLogStreamExists().addEventListener(new FutureEventListener<Void>() {
                 @Override
                 public void onSuccess(Void value) {
@@ -26,6 +26,8 @@ import com.twitter.distributedlog.exceptions.WriteException;
 import com.twitter.distributedlog.feature.CoreFeatureKeys;
 import com.twitter.distributedlog.util.FailpointUtils;
 import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.distributedlog.util.WriteBytesLimiter;
+import com.twitter.util.Function0;
 import com.twitter.util.Future;
 import com.twitter.util.FutureEventListener;
 import com.twitter.util.Promise;
@@ -40,12 +42,17 @@ import org.slf4j.LoggerFactory;
 import scala.Function1;
 import scala.Option;
 import scala.runtime.AbstractFunction1;
+import scala.runtime.BoxedUnit;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * BookKeeper based {@link AsyncLogWriter} implementation.
@@ -63,7 +70,22 @@ import java.util.List;
  * <li> `log_writer/pending_request_dispatch`: counter. the number of queued operations that are dispatched
  * after log segment is rolled. it is an metric on measuring how many operations has been queued because of
  * log segment rolling.
+ * <li> `log_writer/write_queue_drain`: opstats. the number of records issued by each run of the drain task,
+ * when the lock-free write queue is enabled.
  * </ul>
+ *
+ * <h3>Lock-free Write Queue</h3>
+ * When {@link DistributedLogConfiguration#isWriterMpscQueueEnabled()} is enabled, {@link #write(LogRecord)}
+ * and {@link #writeBulk(List)} don't contend on the writer. The records are appended to a lock-free
+ * multi-producer queue, and a single drain task running on the executor that the stream is pinned to
+ * issues them to the log segment writer in the order they were enqueued. The records drained in one run
+ * are flushed together.
+ *
+ * <h3>Byte Based Write Limiting</h3>
+ * When {@link DistributedLogConfiguration#getGlobalOutstandingWriteBytesLimit()} is enabled, each write
+ * acquires the bytes of its records from the {@link WriteBytesLimiter} shared by the writers of the namespace
+ * before it is issued, and releases them when it is acknowledged. A write over the limits is either rejected
+ * or issued once it is admitted, see {@link DistributedLogConfiguration#getOutstandingWriteBytesLimitWaitEnabled()}.
  * See {@link BKLogSegmentWriter} for segment writer stats.
  */
 public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWriter {
@@ -131,6 +153,25 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
         }
     }
 
+    // Records (or bulks of records) enqueued to the lock-free write queue.
+    static class QueuedWrite {
+
+        final List<LogRecord> records;
+        final List<Promise<DLSN>> promises;
+
+        QueuedWrite(List<LogRecord> records) {
+            this.records = records;
+            this.promises = new ArrayList<Promise<DLSN>>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                this.promises.add(new Promise<DLSN>());
+            }
+        }
+    }
+
+    // max number of queued writes issued by a single run of the drain task,
+    // so a busy stream doesn't starve other streams sharing the same executor.
+    static final int MAX_QUEUED_WRITES_PER_DRAIN = 1024;
+
     private final boolean streamFailFast;
     private final boolean disableRollOnSegmentError;
     private LinkedList<PendingLogRecord> pendingRequests = null;
@@ -144,6 +185,20 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
     private final OpStatsLogger bulkWriteOpStatsLogger;
     private final OpStatsLogger getWriterOpStatsLogger;
     private final Counter pendingRequestDispatch;
+    private final OpStatsLogger writeQueueDrainStatsLogger;
+
+    // Lock-free write queue, null if it is disabled
+    private final ConcurrentLinkedQueue<QueuedWrite> writeQueue;
+    private final AtomicBoolean writeQueueDrainScheduled = new AtomicBoolean(false);
+    private final Runnable drainWriteQueueTask = new Runnable() {
+        @Override
+        public void run() {
+            drainWriteQueue();
+        }
+    };
+
+    // byte based write limiter of this writer, null if it is disabled
+    private final WriteBytesLimiter.WriterLimiter bytesLimiter;
 
     private final Feature disableLogSegmentRollingFeature;
 
@@ -167,6 +222,18 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
         this.bulkWriteOpStatsLogger = statsLogger.getOpStatsLogger("bulk_write");
         this.getWriterOpStatsLogger = statsLogger.getOpStatsLogger("get_writer");
         this.pendingRequestDispatch = statsLogger.getCounter("pending_request_dispatch");
+        this.writeQueueDrainStatsLogger = statsLogger.getOpStatsLogger("write_queue_drain");
+        if (conf.isWriterMpscQueueEnabled()) {
+            this.writeQueue = new ConcurrentLinkedQueue<QueuedWrite>();
+        } else {
+            this.writeQueue = null;
+        }
+        WriteBytesLimiter writeBytesLimiter = bkdlm.getWriteBytesLimiter();
+        if (null != writeBytesLimiter) {
+            this.bytesLimiter = writeBytesLimiter.newWriterLimiter(bkdlm.getStreamName(), dynConf);
+        } else {
+            this.bytesLimiter = null;
+        }
     }
 
     @VisibleForTesting
@@ -323,12 +390,12 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
         });
     }
 
-    private List<Future<DLSN>> asyncWriteBulk(List<LogRecord> records) {
+    private List<Future<DLSN>> asyncWriteBulk(List<LogRecord> records, boolean flush) {
         final ArrayList<Future<DLSN>> results = new ArrayList<Future<DLSN>>(records.size());
         Iterator<LogRecord> iterator = records.iterator();
         while (iterator.hasNext()) {
             LogRecord record = iterator.next();
-            Future<DLSN> future = asyncWrite(record, !iterator.hasNext());
+            Future<DLSN> future = asyncWrite(record, flush && !iterator.hasNext());
             results.add(future);
 
             // Abort early if an individual write has already failed.
@@ -352,6 +419,110 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
         }
     }
 
+    private Future<DLSN> enqueueWrite(LogRecord record) {
+        QueuedWrite queuedWrite = new QueuedWrite(Collections.singletonList(record));
+        enqueueWrite(queuedWrite);
+        return queuedWrite.promises.get(0);
+    }
+
+    private List<Future<DLSN>> enqueueWriteBulk(List<LogRecord> records) {
+        QueuedWrite queuedWrite = new QueuedWrite(records);
+        enqueueWrite(queuedWrite);
+        return new ArrayList<Future<DLSN>>(queuedWrite.promises);
+    }
+
+    private void enqueueWrite(QueuedWrite queuedWrite) {
+        writeQueue.offer(queuedWrite);
+        scheduleWriteQueueDrain();
+    }
+
+    private void scheduleWriteQueueDrain() {
+        if (!writeQueueDrainScheduled.compareAndSet(false, true)) {
+            // the drain task is already scheduled, it would pick up the queued writes.
+            return;
+        }
+        try {
+            bkDistributedLogManager.getScheduler().submit(getStreamName(), drainWriteQueueTask);
+        } catch (RejectedExecutionException ree) {
+            writeQueueDrainScheduled.set(false);
+            cancelQueuedWrites();
+        }
+    }
+
+    /**
+     * Issue the queued writes to the log segment writer. It is only executed by the drain task,
+     * so the writes are issued in the order they were enqueued.
+     */
+    private void drainWriteQueue() {
+        int numQueuedWrites = 0;
+        int numRecords = 0;
+        QueuedWrite current = writeQueue.poll();
+        while (null != current) {
+            ++numQueuedWrites;
+            QueuedWrite next = numQueuedWrites < MAX_QUEUED_WRITES_PER_DRAIN ? writeQueue.poll() : null;
+            // only flush on the last write drained in this run, so the drained records are transmitted together
+            boolean flush = null == next;
+            if (current.records.size() == 1) {
+                asyncWrite(current.records.get(0), flush).proxyTo(current.promises.get(0));
+            } else {
+                List<Future<DLSN>> results = asyncWriteBulk(current.records, flush);
+                for (int i = 0; i < results.size(); i++) {
+                    results.get(i).proxyTo(current.promises.get(i));
+                }
+            }
+            numRecords += current.records.size();
+            current = next;
+        }
+        writeQueueDrainStatsLogger.registerSuccessfulEvent(numRecords);
+        writeQueueDrainScheduled.set(false);
+        // writes might be enqueued after the last poll but before the drain task is marked as done
+        if (!writeQueue.isEmpty()) {
+            scheduleWriteQueueDrain();
+        }
+    }
+
+    private void cancelQueuedWrites() {
+        WriteCancelledException wce = new WriteCancelledException(getStreamName());
+        QueuedWrite queuedWrite;
+        while (null != (queuedWrite = writeQueue.poll())) {
+            for (Promise<DLSN> promise : queuedWrite.promises) {
+                FutureUtils.setException(promise, wce);
+            }
+        }
+    }
+
+    /**
+     * Return a future that is satisfied after the writes enqueued so far have been issued
+     * to the log segment writer. It is satisfied immediately if the lock-free write queue is disabled.
+     */
+    private Future<Void> waitForQueuedWrites() {
+        if (null == writeQueue) {
+            return Future.Void();
+        }
+        Promise<Void> promise = new Promise<Void>();
+        waitForQueuedWrites(promise);
+        return promise;
+    }
+
+    private void waitForQueuedWrites(final Promise<Void> promise) {
+        try {
+            bkDistributedLogManager.getScheduler().submit(getStreamName(), new Runnable() {
+                @Override
+                public void run() {
+                    if (writeQueueDrainScheduled.get()) {
+                        // the drain task is still scheduled, check again after it runs
+                        waitForQueuedWrites(promise);
+                    } else {
+                        FutureUtils.setValue(promise, null);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            cancelQueuedWrites();
+            FutureUtils.setValue(promise, null);
+        }
+    }
+
     private void rollLogSegmentAndIssuePendingRequests(final long firstTxId) {
         getLogSegmentWriter(firstTxId, true, true)
                 .addEventListener(new FutureEventListener<BKLogSegmentWriter>() {
@@ -428,11 +599,58 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
     public Future<DLSN> write(final LogRecord record) {
         final Stopwatch stopwatch = Stopwatch.createStarted();
         return FutureUtils.stats(
-                asyncWrite(record, true),
+                null == bytesLimiter ? doWrite(record) : doLimitedWrite(record),
                 writeOpStatsLogger,
                 stopwatch);
     }
 
+    private Future<DLSN> doWrite(LogRecord record) {
+        return null == writeQueue ? asyncWrite(record, true) : enqueueWrite(record);
+    }
+
+    private List<Future<DLSN>> doWriteBulk(List<LogRecord> records) {
+        return null == writeQueue ? asyncWriteBulk(records, true) : enqueueWriteBulk(records);
+    }
+
+    private Function0<BoxedUnit> releaseBytes(final int bytes) {
+        return new Function0<BoxedUnit>() {
+            @Override
+            public BoxedUnit apply() {
+                bytesLimiter.release(bytes);
+                return BoxedUnit.UNIT;
+            }
+        };
+    }
+
+    private Future<DLSN> doLimitedWrite(final LogRecord record) {
+        final int bytes = record.getPersistentSize();
+        return bytesLimiter.acquire(bytes).flatMap(new AbstractFunction1<Void, Future<DLSN>>() {
+            @Override
+            public Future<DLSN> apply(Void value) {
+                return doWrite(record).ensure(releaseBytes(bytes));
+            }
+        });
+    }
+
+    private Future<List<Future<DLSN>>> doLimitedWriteBulk(final List<LogRecord> records) {
+        final int[] recordBytes = new int[records.size()];
+        int totalBytes = 0;
+        for (int i = 0; i < recordBytes.length; i++) {
+            recordBytes[i] = records.get(i).getPersistentSize();
+            totalBytes += recordBytes[i];
+        }
+        return bytesLimiter.acquire(totalBytes).map(new AbstractFunction1<Void, List<Future<DLSN>>>() {
+            @Override
+            public List<Future<DLSN>> apply(Void value) {
+                List<Future<DLSN>> results = doWriteBulk(records);
+                for (int i = 0; i < results.size(); i++) {
+                    results.get(i).ensure(releaseBytes(recordBytes[i]));
+                }
+                return results;
+            }
+        });
+    }
+
     /**
      * Write many log records to the stream. The return type here is unfortunate but its a direct result
      * of having to combine FuturePool and the asyncWriteBulk method which returns a future as well. The
@@ -445,7 +663,7 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
     public Future<List<Future<DLSN>>> writeBulk(final List<LogRecord> records) {
         final Stopwatch stopwatch = Stopwatch.createStarted();
         return FutureUtils.stats(
-                Future.value(asyncWriteBulk(records)),
+                null == bytesLimiter ? Future.value(doWriteBulk(records)) : doLimitedWriteBulk(records),
                 bulkWriteOpStatsLogger,
                 stopwatch);
     }
@@ -485,6 +703,19 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
     }
 
     Future<Long> markEndOfStream() {
+        if (null == writeQueue) {
+            return doMarkEndOfStream();
+        }
+        // the end of stream marker has to be written after the writes that are already queued
+        return waitForQueuedWrites().flatMap(new AbstractFunction1<Void, Future<Long>>() {
+            @Override
+            public Future<Long> apply(Void value) {
+                return doMarkEndOfStream();
+            }
+        });
+    }
+
+    private Future<Long> doMarkEndOfStream() {
         final Stopwatch stopwatch = Stopwatch.createStarted();
         Future<BKLogSegmentWriter> logSegmentWriterFuture;
         synchronized (this) {
@@ -505,8 +736,28 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
                 stopwatch);
     }
 
+    private void closeBytesLimiter() {
+        if (null != bytesLimiter) {
+            bytesLimiter.close(new WriteCancelledException(getStreamName()));
+        }
+    }
+
     @Override
     protected Future<Void> asyncCloseAndComplete() {
+        closeBytesLimiter();
+        if (null == writeQueue) {
+            return doAsyncCloseAndComplete();
+        }
+        // complete the log segment after the writes that are already queued
+        return waitForQueuedWrites().flatMap(new AbstractFunction1<Void, Future<Void>>() {
+            @Override
+            public Future<Void> apply(Void value) {
+                return doAsyncCloseAndComplete();
+            }
+        });
+    }
+
+    private Future<Void> doAsyncCloseAndComplete() {
         Future<BKLogSegmentWriter> logSegmentWriterFuture;
         synchronized (this) {
             logSegmentWriterFuture = this.rollingFuture;
@@ -541,6 +792,10 @@ public class BKAsyncLogWriter extends BKAbstractLogWriter implements AsyncLogWri
     @Override
     public Future<Void> asyncAbort() {
         Future<Void> result = super.asyncAbort();
+        closeBytesLimiter();
+        if (null != writeQueue) {
+            cancelQueuedWrites();
+        }
         synchronized (this) {
             if (pendingRequests != null) {
                 for (PendingLogRecord pendingLogRecord : pendingRequests) {
@@ -34,12 +34,14 @@ import com.twitter.distributedlog.logsegment.LogSegmentEntryWriter;
 import com.twitter.distributedlog.metadata.LogMetadataForReader;
 import com.twitter.distributedlog.metadata.LogMetadataForWriter;
 import com.twitter.distributedlog.io.AsyncCloseable;
+import com.twitter.distributedlog.io.BufferPool;
 import com.twitter.distributedlog.lock.DistributedLock;
 import com.twitter.distributedlog.lock.NopDistributedLock;
 import com.twitter.distributedlog.lock.ZKDistributedLock;
 import com.twitter.distributedlog.logsegment.LogSegmentFilter;
 import com.twitter.distributedlog.logsegment.LogSegmentMetadataCache;
 import com.twitter.distributedlog.metadata.LogStreamMetadataStore;
+import com.twitter.distributedlog.readahead.OffHeapEntryCache;
 import com.twitter.distributedlog.namespace.NamespaceDriver;
 import com.twitter.distributedlog.stats.BroadCastStatsLogger;
 import com.twitter.distributedlog.subscription.SubscriptionsStore;
@@ -52,6 +54,7 @@ import com.twitter.distributedlog.util.PermitLimiter;
 import com.twitter.distributedlog.util.PermitManager;
 import com.twitter.distributedlog.util.SchedulerUtils;
 import com.twitter.distributedlog.util.Utils;
+import com.twitter.distributedlog.util.WriteBytesLimiter;
 import com.twitter.util.ExceptionalFunction;
 import com.twitter.util.ExceptionalFunction0;
 import com.twitter.util.Function;
@@ -142,10 +145,13 @@ class BKDistributedLogManager implements DistributedLogManager {
     // Writer Related Variables
     //
     private final PermitLimiter writeLimiter;
+    private final BufferPool bufferPool;
+    private final WriteBytesLimiter writeBytesLimiter;
 
     //
     // Reader Related Variables
     ///
+    private final OffHeapEntryCache offHeapEntryCache;
     // read handler for listener.
     private BKLogReadHandler readHandlerForListener = null;
     private final PendingReaders pendingReaders;
@@ -167,6 +173,9 @@ class BKDistributedLogManager implements DistributedLogManager {
      * @param regionId region id that would be encrypted as part of log segment metadata
      *                 to indicate which region that the log segment will be created
      * @param writeLimiter write limiter
+     * @param bufferPool pool to allocate the transmit buffers of writers
+     * @param writeBytesLimiter byte based write limiter shared by the writers of the namespace
+     * @param offHeapEntryCache off heap cache shared by the readers of the namespace, null if disabled
      * @param featureProvider provider to offer features
      * @param statsLogger stats logger to receive stats
      * @param perLogStatsLogger stats logger to receive per log stats
@@ -182,6 +191,9 @@ class BKDistributedLogManager implements DistributedLogManager {
                             String clientId,
                             Integer regionId,
                             PermitLimiter writeLimiter,
+                            BufferPool bufferPool,
+                            WriteBytesLimiter writeBytesLimiter,
+                            OffHeapEntryCache offHeapEntryCache,
                             FeatureProvider featureProvider,
                             AsyncFailureInjector failureInjector,
                             StatsLogger statsLogger,
@@ -201,6 +213,9 @@ class BKDistributedLogManager implements DistributedLogManager {
         this.clientId = clientId;
         this.streamIdentifier = conf.getUnpartitionedStreamName();
         this.writeLimiter = writeLimiter;
+        this.bufferPool = bufferPool;
+        this.writeBytesLimiter = writeBytesLimiter;
+        this.offHeapEntryCache = offHeapEntryCache;
         // Feature Provider
         this.featureProvider = featureProvider;
         // Failure Injector
@@ -228,6 +243,14 @@ class BKDistributedLogManager implements DistributedLogManager {
         return conf;
     }
 
+    WriteBytesLimiter getWriteBytesLimiter() {
+        return writeBytesLimiter;
+    }
+
+    OffHeapEntryCache getOffHeapEntryCache() {
+        return offHeapEntryCache;
+    }
+
     OrderedScheduler getScheduler() {
         return scheduler;
     }
@@ -408,6 +431,7 @@ class BKDistributedLogManager implements DistributedLogManager {
                 clientId,
                 regionId,
                 writeLimiter,
+                bufferPool,
                 featureProvider,
                 dynConf,
                 lock);
@@ -483,7 +507,12 @@ class BKDistributedLogManager implements DistributedLogManager {
         } catch (LogNotFoundException ex) {
             position = 0;
         }
-        return new AppendOnlyStreamWriter(startAsyncLogSegmentNonPartitioned(), position);
+        return new AppendOnlyStreamWriter(startAsyncLogSegmentNonPartitioned(), position,
+                conf.getAppendOnlyStreamWriterGroupCommitEnabled(),
+                conf.getAppendOnlyStreamWriterGroupCommitWindowMs(),
+                conf.getAppendOnlyStreamWriterGroupCommitMaxCallers(),
+                scheduler,
+                statsLogger);
     }
 
     /**
@@ -492,7 +521,9 @@ class BKDistributedLogManager implements DistributedLogManager {
      * @return the writer interface to generate log records
      */
     public AppendOnlyStreamReader getAppendOnlyStreamReader() throws IOException {
-        return new AppendOnlyStreamReader(this);
+        return new AppendOnlyStreamReader(this,
+                conf.getAppendOnlyStreamReaderPrefetchRecords(),
+                conf.getAppendOnlyStreamReaderWaitTimeMs());
     }
 
     /**
@@ -713,6 +744,87 @@ class BKDistributedLogManager implements DistributedLogManager {
         });
     }
 
+    /**
+     * Opening a log reader positioning by time <code>timestampMs</code>.
+     *
+     * <p>
+     * - retrieve log segments for the stream
+     * - if the log segment list is empty, positioning by the last dlsn
+     * - otherwise, find the first log segment that is inprogress or completed at or after <code>timestampMs</code>
+     *   - if all log segments are completed before <code>timestampMs</code>, positioning after the last record.
+     *   - otherwise, if the log segment is indexed, positioning by the last sampled entry that is written
+     *     before <code>timestampMs</code>; or positioning by the start of the log segment.
+     * </p>
+     *
+     * @see DLUtils#findLogSegmentNotBeforeTime(List, long)
+     * @see LogSegmentIndex#floorIndexOfTime(long)
+     * @param timestampMs
+     *          timestamp in milliseconds to start reading from
+     * @return future representing the open result.
+     */
+    @Override
+    public Future<AsyncLogReader> openAsyncLogReaderAtTime(final long timestampMs) {
+        final Promise<DLSN> dlsnPromise = new Promise<DLSN>();
+        getLogSegmentsAsync().flatMap(new AbstractFunction1<List<LogSegmentMetadata>, Future<DLSN>>() {
+            @Override
+            public Future<DLSN> apply(List<LogSegmentMetadata> segments) {
+                return getDLSNNotBeforeTime(timestampMs, segments);
+            }
+        }).addEventListener(new FutureEventListener<DLSN>() {
+
+            @Override
+            public void onSuccess(DLSN dlsn) {
+                dlsnPromise.setValue(dlsn);
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                if (cause instanceof LogEmptyException) {
+                    dlsnPromise.setValue(DLSN.InitialDLSN);
+                } else {
+                    dlsnPromise.setException(cause);
+                }
+            }
+        });
+        return dlsnPromise.flatMap(new AbstractFunction1<DLSN, Future<AsyncLogReader>>() {
+            @Override
+            public Future<AsyncLogReader> apply(DLSN dlsn) {
+                return openAsyncLogReader(dlsn);
+            }
+        });
+    }
+
+    private Future<DLSN> getDLSNNotBeforeTime(long timestampMs,
+                                              List<LogSegmentMetadata> segments) {
+        if (segments.isEmpty()) {
+            return getLastDLSNAsync();
+        }
+        int segmentIdx = DLUtils.findLogSegmentNotBeforeTime(segments, timestampMs);
+        if (segmentIdx < 0) {
+            // all the records are written before the provided time
+            return getLastLogRecordAsync().map(new AbstractFunction1<LogRecordWithDLSN, DLSN>() {
+                @Override
+                public DLSN apply(LogRecordWithDLSN record) {
+                    return record.getDlsn().getNextDLSN();
+                }
+            });
+        }
+        LogSegmentMetadata segment = segments.get(segmentIdx);
+        long entryId = 0L;
+        LogSegmentIndex index = segment.getIndex();
+        if (null != index) {
+            int floorIdx = index.floorIndexOfTime(timestampMs);
+            if (floorIdx >= 0) {
+                entryId = index.getEntryId(floorIdx);
+            }
+        }
+        DLSN dlsn = new DLSN(segment.getLogSegmentSequenceNumber(), entryId, 0L);
+        if (dlsn.compareTo(segment.getMinActiveDLSN()) < 0) {
+            dlsn = segment.getMinActiveDLSN();
+        }
+        return Future.value(dlsn);
+    }
+
     @Override
     public AsyncLogReader getAsyncLogReader(DLSN fromDLSN) throws IOException {
         return FutureUtils.result(openAsyncLogReader(fromDLSN));
@@ -18,8 +18,10 @@
 package com.twitter.distributedlog;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Ticker;
 import com.twitter.distributedlog.acl.AccessControlManager;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.callback.NamespaceListener;
 import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
 import com.twitter.distributedlog.exceptions.AlreadyClosedException;
@@ -27,9 +29,11 @@ import com.twitter.distributedlog.exceptions.InvalidStreamNameException;
 import com.twitter.distributedlog.exceptions.LogNotFoundException;
 import com.twitter.distributedlog.injector.AsyncFailureInjector;
 import com.twitter.distributedlog.io.AsyncCloseable;
+import com.twitter.distributedlog.io.BufferPool;
 import com.twitter.distributedlog.logsegment.LogSegmentMetadataCache;
 import com.twitter.distributedlog.namespace.DistributedLogNamespace;
 import com.twitter.distributedlog.namespace.NamespaceDriver;
+import com.twitter.distributedlog.readahead.OffHeapEntryCache;
 import com.twitter.distributedlog.util.ConfUtils;
 import com.twitter.distributedlog.util.FutureUtils;
 import com.twitter.distributedlog.util.MonitoredScheduledThreadPoolExecutor;
@@ -37,16 +41,21 @@ import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.distributedlog.util.PermitLimiter;
 import com.twitter.distributedlog.util.SchedulerUtils;
 import com.twitter.distributedlog.util.Utils;
+import com.twitter.distributedlog.util.WriteBytesLimiter;
 import org.apache.bookkeeper.feature.FeatureProvider;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 import static com.twitter.distributedlog.namespace.NamespaceDriver.Role.WRITER;
 import static com.twitter.distributedlog.util.DLUtils.validateName;
@@ -78,6 +87,12 @@ import static com.twitter.distributedlog.util.DLUtils.validateName;
  * used by this namespace. See {@link MonitoredScheduledThreadPoolExecutor}.
  * <li> `scope`/writeLimiter/* : stats about the global write limiter used by this namespace.
  * See {@link PermitLimiter}.
+ * <li> `scope`/bufferPool/* : stats about the pool of transmit buffers used by the writers of this namespace.
+ * See {@link BufferPool}.
+ * <li> `scope`/writeBytesLimiter/* : stats about the byte based write limiter shared by the writers of this
+ * namespace. See {@link WriteBytesLimiter}.
+ * <li> `scope`/readahead_cache/* : stats about the off heap cache shared by the readers of this namespace.
+ * See {@link OffHeapEntryCache}.
  * </ul>
  *
  * <h4>DistributedLogManager</h4>
@@ -96,6 +111,9 @@ public class BKDistributedLogNamespace implements DistributedLogNamespace {
     // resources
     private final OrderedScheduler scheduler;
     private final PermitLimiter writeLimiter;
+    private final BufferPool bufferPool;
+    private final WriteBytesLimiter writeBytesLimiter;
+    private final OffHeapEntryCache offHeapEntryCache;
     private final AsyncFailureInjector failureInjector;
     // log segment metadata store
     private final LogSegmentMetadataCache logSegmentMetadataCache;
@@ -114,6 +132,9 @@ public class BKDistributedLogNamespace implements DistributedLogNamespace {
             OrderedScheduler scheduler,
             FeatureProvider featureProvider,
             PermitLimiter writeLimiter,
+            BufferPool bufferPool,
+            WriteBytesLimiter writeBytesLimiter,
+            OffHeapEntryCache offHeapEntryCache,
             AsyncFailureInjector failureInjector,
             StatsLogger statsLogger,
             StatsLogger perLogStatsLogger,
@@ -125,6 +146,9 @@ public class BKDistributedLogNamespace implements DistributedLogNamespace {
         this.scheduler = scheduler;
         this.featureProvider = featureProvider;
         this.writeLimiter = writeLimiter;
+        this.bufferPool = bufferPool;
+        this.writeBytesLimiter = writeBytesLimiter;
+        this.offHeapEntryCache = offHeapEntryCache;
         this.failureInjector = failureInjector;
         this.statsLogger = statsLogger;
         this.perLogStatsLogger = perLogStatsLogger;
@@ -222,11 +246,53 @@ public class BKDistributedLogNamespace implements DistributedLogNamespace {
         return FutureUtils.result(driver.getLogMetadataStore().getLogs());
     }
 
+    @Override
+    public List<String> getLogs(@Nullable String startAfter, int maxLogs) throws IOException {
+        checkState();
+        Preconditions.checkArgument(maxLogs > 0, "Invalid max logs per page : %s", maxLogs);
+        return FutureUtils.result(driver.getLogMetadataStore().getLogs(startAfter, maxLogs));
+    }
+
+    @Override
+    public MultiStreamReader openMultiStreamReader(Map<String, DLSN> streams)
+            throws InvalidStreamNameException, IOException {
+        checkState();
+        BKMultiStreamReader reader = new BKMultiStreamReader(this, conf, scheduler, statsLogger);
+        try {
+            for (Map.Entry<String, DLSN> stream : streams.entrySet()) {
+                reader.addStream(stream.getKey(), stream.getValue());
+            }
+        } catch (IOException ioe) {
+            Utils.closeQuietly(reader);
+            throw ioe;
+        }
+        return reader;
+    }
+
+    @Override
+    public MultiStreamReader openMultiStreamReader(Pattern pattern, DLSN fromDLSN)
+            throws IOException {
+        checkState();
+        BKMultiStreamReader reader = new BKMultiStreamReader(this, conf, scheduler, statsLogger);
+        try {
+            reader.addStreams(pattern, fromDLSN);
+        } catch (IOException ioe) {
+            Utils.closeQuietly(reader);
+            throw ioe;
+        }
+        return reader;
+    }
+
     @Override
     public void registerNamespaceListener(NamespaceListener listener) {
         driver.getLogMetadataStore().registerNamespaceListener(listener);
     }
 
+    @Override
+    public void registerNamespaceChangeListener(NamespaceChangeListener listener) {
+        driver.getLogMetadataStore().registerNamespaceChangeListener(listener);
+    }
+
     @Override
     public synchronized AccessControlManager createAccessControlManager() throws IOException {
         checkState();
@@ -280,6 +346,9 @@ public class BKDistributedLogNamespace implements DistributedLogNamespace {
                 clientId,                           /* Client Id */
                 regionId,                           /* Region Id */
                 writeLimiter,                       /* Write Limiter */
+                bufferPool,                         /* Buffer Pool */
+                writeBytesLimiter,                  /* Write Bytes Limiter */
+                offHeapEntryCache,                  /* Off Heap Entry Cache */
                 featureProvider.scope("dl"),        /* Feature Provider */
                 failureInjector,                    /* Failure Injector */
                 statsLogger,                        /* Stats Logger */
@@ -312,6 +381,14 @@ public class BKDistributedLogNamespace implements DistributedLogNamespace {
         Utils.close(driver);
         // close the write limiter
         this.writeLimiter.close();
+        // release the pooled buffers
+        if (null != bufferPool) {
+            this.bufferPool.close();
+        }
+        // release the off heap cache
+        if (null != offHeapEntryCache) {
+            this.offHeapEntryCache.close();
+        }
         // Shutdown the schedulers
         SchedulerUtils.shutdownScheduler(scheduler, conf.getSchedulerShutdownTimeoutMs(),
                 TimeUnit.MILLISECONDS);
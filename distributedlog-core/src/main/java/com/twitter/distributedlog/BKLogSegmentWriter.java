@@ -34,7 +34,6 @@ import com.twitter.distributedlog.exceptions.EndOfStreamException;
 import com.twitter.distributedlog.exceptions.FlushException;
 import com.twitter.distributedlog.exceptions.LockingException;
 import com.twitter.distributedlog.exceptions.LogRecordTooLongException;
-import com.twitter.distributedlog.exceptions.TransactionIdOutOfOrderException;
 import com.twitter.distributedlog.exceptions.WriteCancelledException;
 import com.twitter.distributedlog.exceptions.WriteException;
 import com.twitter.distributedlog.exceptions.InvalidEnvelopedEntryException;
@@ -42,6 +41,7 @@ import com.twitter.distributedlog.feature.CoreFeatureKeys;
 import com.twitter.distributedlog.injector.FailureInjector;
 import com.twitter.distributedlog.injector.RandomDelayFailureInjector;
 import com.twitter.distributedlog.io.Buffer;
+import com.twitter.distributedlog.io.BufferPool;
 import com.twitter.distributedlog.io.CompressionCodec;
 import com.twitter.distributedlog.io.CompressionUtils;
 import com.twitter.distributedlog.lock.DistributedLock;
@@ -49,6 +49,7 @@ import com.twitter.distributedlog.logsegment.LogSegmentEntryWriter;
 import com.twitter.distributedlog.logsegment.LogSegmentWriter;
 import com.twitter.distributedlog.stats.BroadCastStatsLogger;
 import com.twitter.distributedlog.stats.OpStatsListener;
+import com.twitter.distributedlog.util.DLUtils;
 import com.twitter.distributedlog.util.FailpointUtils;
 import com.twitter.distributedlog.util.FutureUtils;
 import com.twitter.distributedlog.util.OrderedScheduler;
@@ -56,6 +57,7 @@ import com.twitter.distributedlog.util.PermitLimiter;
 import com.twitter.distributedlog.util.SafeQueueingFuturePool;
 import com.twitter.distributedlog.util.SimplePermitLimiter;
 import com.twitter.distributedlog.util.Sizable;
+import com.twitter.distributedlog.util.Utils;
 import com.twitter.util.Function0;
 import com.twitter.util.Future;
 import com.twitter.util.FutureEventListener;
@@ -79,7 +81,6 @@ import scala.runtime.AbstractFunction1;
 import scala.runtime.BoxedUnit;
 
 import static com.google.common.base.Charsets.UTF_8;
-import static com.twitter.distributedlog.LogRecord.MAX_LOGRECORD_SIZE;
 import static com.twitter.distributedlog.LogRecord.MAX_LOGRECORDSET_SIZE;
 
 /**
@@ -102,6 +103,8 @@ import static com.twitter.distributedlog.LogRecord.MAX_LOGRECORDSET_SIZE;
  * <li> seg_writer/add_complete/{callback,queued,deferred}: opstats. latency components of add completions.
  * <li> seg_writer/pendings: counter. the number of records pending by the segment writers.
  * <li> transmit/outstanding/requests: per stream gauge. the number of outstanding transmits each stream.
+ * <li> transmit/adaptive/{threshold,flush_delay}: opstats. the transmission thresholds and flush delays picked
+ * by the adaptive batching policy, if it is enabled. See {@link AdaptiveTransmitPolicy}.
  * </ul>
  */
 class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Sizable {
@@ -114,6 +117,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
     private Entry.Writer recordSetWriter;
     private final AtomicInteger outstandingTransmits;
     private final int transmissionThreshold;
+    private final AdaptiveTransmitPolicy adaptiveTransmitPolicy;
     protected final LogSegmentEntryWriter entryWriter;
     private final CompressionCodec.Type compressionType;
     private final ReentrantLock transmitLock = new ReentrantLock();
@@ -149,6 +153,12 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
     private Promise<Void> closeFuture = null;
     private final boolean enableRecordCounts;
     private int positionWithinLogSegment = 0;
+    // the first record of the current record set, tracked for the log segment index
+    private long recordSetFirstTxId = DistributedLogConstants.INVALID_TXID;
+    private int recordSetFirstPosition = 0;
+    private long recordSetFirstWriteTimeMs = 0L;
+    // sparse index of the entries written, null if indexing is disabled
+    private final LogSegmentIndex.Builder indexBuilder;
     private final long logSegmentSequenceNumber;
     // Used only for values that *could* change (e.g. buffer size etc.)
     private final DistributedLogConfiguration conf;
@@ -195,6 +205,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
 
     private final AlertStatsLogger alertStatsLogger;
     private final WriteLimiter writeLimiter;
+    private final BufferPool bufferPool;
     private final FailureInjector writeDelayInjector;
 
     /**
@@ -213,10 +224,19 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                                  StatsLogger perLogStatsLogger,
                                  AlertStatsLogger alertStatsLogger,
                                  PermitLimiter globalWriteLimiter,
+                                 BufferPool bufferPool,
                                  FeatureProvider featureProvider,
                                  DynamicDistributedLogConfiguration dynConf)
         throws IOException {
         super();
+        // bookkeeper wraps the added arrays without copying them, and an add is acknowledged once
+        // the ack quorum responds. if the entry might still be in flight to the other bookies of
+        // the write quorum after that, its buffer can't be recycled, so don't pool the buffers.
+        if (entryWriter.isAddCompletedByAllReplicas()) {
+            this.bufferPool = bufferPool;
+        } else {
+            this.bufferPool = null;
+        }
 
         // set up a write limiter
         PermitLimiter streamWriteLimiter = null;
@@ -286,7 +306,22 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
         } else {
             this.transmissionThreshold = configuredTransmissionThreshold;
         }
+        if (conf.getWriterAdaptiveBatchingTargetLatencyMs() > 0 && null != scheduler) {
+            this.adaptiveTransmitPolicy = new AdaptiveTransmitPolicy(
+                    conf.getWriterAdaptiveBatchingTargetLatencyMs(),
+                    MAX_LOGRECORDSET_SIZE,
+                    statsLogger);
+        } else {
+            this.adaptiveTransmitPolicy = null;
+        }
         this.compressionType = CompressionUtils.stringToType(conf.getCompressionType());
+        if (conf.getLogSegmentIndexInterval() > 0
+                && logSegmentMetadataVersion >= LogSegmentMetadata.LogSegmentMetadataVersion.VERSION_V6_BINARY.value) {
+            this.indexBuilder = new LogSegmentIndex.Builder(
+                    conf.getLogSegmentIndexInterval(), LogSegmentIndex.DEFAULT_MAX_SIZE);
+        } else {
+            this.indexBuilder = null;
+        }
 
         this.logSegmentSequenceNumber = logSegmentSequenceNumber;
         this.recordSetWriter = Entry.newEntry(
@@ -294,6 +329,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                 Math.max(transmissionThreshold, 1024),
                 envelopeBeforeTransmit(),
                 compressionType,
+                bufferPool,
                 envelopeStatsLogger);
         this.packetPrevious = null;
         this.startTxId = startTxId;
@@ -429,6 +465,18 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
         return lastEntryId;
     }
 
+    /**
+     * Get the sparse index of the entries acknowledged so far.
+     *
+     * @return index of the log segment, or null if indexing is disabled or no entry is indexed.
+     */
+    synchronized LogSegmentIndex getIndex() {
+        if (null == indexBuilder) {
+            return null;
+        }
+        return indexBuilder.build();
+    }
+
     /**
      * Get the last dlsn of the last acknowledged record.
      *
@@ -463,6 +511,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                 Math.max(transmissionThreshold, getAverageTransmitSize()),
                 envelopeBeforeTransmit(),
                 compressionType,
+                bufferPool,
                 envelopeStatsLogger);
     }
 
@@ -497,6 +546,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
             }
             Throwable reason = new WriteCancelledException(streamName, FutureUtils.transmitException(rc));
             recordSet.abortTransmit(reason);
+            packet.release();
         }
         LOG.info("Stream {} aborted {} writes", fullyQualifiedLogSegment, numRecords);
     }
@@ -719,10 +769,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
             throw new EndOfStreamException("Writing to a stream after it has been marked as completed");
         }
 
-        if ((record.getTransactionId() < 0) ||
-            (record.getTransactionId() == DistributedLogConstants.MAX_TXID)) {
-            throw new TransactionIdOutOfOrderException(record.getTransactionId());
-        }
+        DLUtils.validateTransactionId(record.getTransactionId());
 
         // Inject write delay if configured to do so
         writeDelayInjector.inject();
@@ -780,14 +827,9 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
     synchronized public Future<DLSN> writeInternal(LogRecord record)
             throws LogRecordTooLongException, LockingException, BKTransmitException,
                    WriteException, InvalidEnvelopedEntryException {
+        record.validateSize();
         int logRecordSize = record.getPersistentSize();
 
-        if (logRecordSize > MAX_LOGRECORD_SIZE) {
-            throw new LogRecordTooLongException(String.format(
-                    "Log Record of size %d written when only %d is allowed",
-                    logRecordSize, MAX_LOGRECORD_SIZE));
-        }
-
         // If we will exceed the max number of bytes allowed per entry
         // initiate a transmit before accepting the new log record
         if ((recordSetWriter.getNumBytes() + logRecordSize) > MAX_LOGRECORDSET_SIZE) {
@@ -802,6 +844,12 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
             record.setPositionWithinLogSegment(positionWithinLogSegment);
         }
 
+        if (null != indexBuilder && recordSetWriter.getNumRecords() == 0) {
+            recordSetFirstTxId = record.getTransactionId();
+            recordSetFirstPosition = positionWithinLogSegment;
+            recordSetFirstWriteTimeMs = Utils.nowInMillis();
+        }
+
         Promise<DLSN> writePromise = new Promise<DLSN>();
         writePromise.addEventListener(new OpStatsListener<DLSN>(writeTime));
         recordSetWriter.writeRecord(record, writePromise);
@@ -814,6 +862,9 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
             // only update last tx id for user records
             lastTxId = record.getTransactionId();
             outstandingBytes += (20 + record.getPayload().length);
+            if (null != adaptiveTransmitPolicy) {
+                adaptiveTransmitPolicy.onWrite(20 + record.getPayload().length, outstandingTransmits.get());
+            }
         }
         return writePromise;
     }
@@ -973,6 +1024,12 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
     void scheduleFlushWithDelayIfNeeded(final Callable<?> callable,
                                         final AtomicReference<ScheduledFuture<?>> scheduledFutureRef) {
         final long delayMs = Math.max(0, minDelayBetweenImmediateFlushMs - lastTransmit.elapsed(TimeUnit.MILLISECONDS));
+        scheduleFlushWithDelayIfNeeded(callable, scheduledFutureRef, TimeUnit.MILLISECONDS.toMicros(delayMs));
+    }
+
+    void scheduleFlushWithDelayIfNeeded(final Callable<?> callable,
+                                        final AtomicReference<ScheduledFuture<?>> scheduledFutureRef,
+                                        final long delayMicros) {
         final ScheduledFuture<?> scheduledFuture = scheduledFutureRef.get();
         if ((null == scheduledFuture) || scheduledFuture.isDone()) {
             scheduledFutureRef.set(scheduler.schedule(new Runnable() {
@@ -991,14 +1048,32 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                         }
                     }
                 }
-            }, delayMs, TimeUnit.MILLISECONDS));
+            }, delayMicros, TimeUnit.MICROSECONDS));
+        }
+    }
+
+    // Schedule the flush to run within the given delay: a pending flush that is due later
+    // is cancelled and rescheduled, so a shorter flush delay takes effect immediately.
+    @VisibleForTesting
+    void scheduleFlushWithinDelay(final Callable<?> callable,
+                                  final AtomicReference<ScheduledFuture<?>> scheduledFutureRef,
+                                  final long delayMicros) {
+        final ScheduledFuture<?> scheduledFuture = scheduledFutureRef.get();
+        if (null != scheduledFuture && scheduledFuture.getDelay(TimeUnit.MICROSECONDS) > delayMicros) {
+            // a flush that is already running can't be cancelled, but it flushes the buffered records anyway
+            scheduledFuture.cancel(false);
         }
+        scheduleFlushWithDelayIfNeeded(callable, scheduledFutureRef, delayMicros);
     }
 
     // Based on transmit buffer size, immediate flush, etc., should we flush the current
     // packet now.
     void flushIfNeeded() throws BKTransmitException, WriteException, InvalidEnvelopedEntryException,
             LockingException, FlushException {
+        if (null != adaptiveTransmitPolicy) {
+            adaptiveFlushIfNeeded();
+            return;
+        }
         if (outstandingBytes > transmissionThreshold) {
             // If flush delay is disabled, flush immediately, else schedule appropriately.
             if (0 == minDelayBetweenImmediateFlushMs) {
@@ -1024,6 +1099,27 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
         }
     }
 
+    // Transmit when the buffered bytes reach the threshold picked by the adaptive policy,
+    // otherwise make sure the buffered records are transmitted within the picked flush delay.
+    private void adaptiveFlushIfNeeded() throws BKTransmitException, WriteException, InvalidEnvelopedEntryException,
+            LockingException, FlushException {
+        if (outstandingBytes > adaptiveTransmitPolicy.getTransmissionThreshold()) {
+            checkStateAndTransmit();
+        } else if (outstandingBytes > 0) {
+            scheduleFlushWithinDelay(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    checkStateAndTransmit();
+                    return null;
+                }
+            }, transmitSchedFutureRef, adaptiveTransmitPolicy.getFlushDelayMicros());
+            if (scheduledFlushException.get() != null) {
+                throw new FlushException("Last flush encountered an error while writing data to the backend",
+                    getLastTxId(), getLastTxIdAcknowledged(), scheduledFlushException.get());
+            }
+        }
+    }
+
     private void checkWriteLock() throws LockingException {
         try {
             if (FailpointUtils.checkFailPoint(FailpointUtils.FailPointName.FP_WriteInternalLostLock)) {
@@ -1057,6 +1153,9 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
     private Future<Integer> transmit()
         throws BKTransmitException, LockingException, WriteException, InvalidEnvelopedEntryException {
         EntryBuffer recordSetToTransmit;
+        long firstTxId;
+        int firstPosition;
+        long firstWriteTimeMs;
         transmitLock.lock();
         try {
             synchronized (this) {
@@ -1082,6 +1181,9 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                 recordSetToTransmit = recordSetWriter;
                 recordSetWriter = newRecordSetWriter();
                 outstandingBytes = 0;
+                firstTxId = recordSetFirstTxId;
+                firstPosition = recordSetFirstPosition;
+                firstWriteTimeMs = recordSetFirstWriteTimeMs;
 
                 if (recordSetToTransmit.hasUserRecords()) {
                     numBytes += recordSetToTransmit.getNumBytes();
@@ -1099,6 +1201,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                 }
                 LOG.error("Exception while enveloping entries for segment: {}",
                           new Object[] {fullyQualifiedLogSegment}, e);
+                recordSetToTransmit.release();
                 // If a write fails here, we need to set the transmit result to an error so that
                 // no future writes go through and violate ordering guarantees.
                 transmitResult.set(BKException.Code.WriteException);
@@ -1114,7 +1217,8 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                 // update the transmit timestamp
                 lastTransmitNanos = MathUtils.nowInNano();
 
-                BKTransmitPacket packet = new BKTransmitPacket(recordSetToTransmit);
+                BKTransmitPacket packet = new BKTransmitPacket(
+                        recordSetToTransmit, firstTxId, firstPosition, firstWriteTimeMs);
                 packetPrevious = packet;
                 entryWriter.asyncAddEntry(toSend.getData(), 0, toSend.size(),
                                           this, packet);
@@ -1171,8 +1275,12 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
         final BKTransmitPacket transmitPacket = (BKTransmitPacket) ctx;
 
         // Time from transmit until receipt of addComplete callback
-        addCompleteTime.registerSuccessfulEvent(TimeUnit.MICROSECONDS.convert(
-            System.nanoTime() - transmitPacket.getTransmitTime(), TimeUnit.NANOSECONDS));
+        long addCompleteMicros = TimeUnit.MICROSECONDS.convert(
+            System.nanoTime() - transmitPacket.getTransmitTime(), TimeUnit.NANOSECONDS);
+        addCompleteTime.registerSuccessfulEvent(addCompleteMicros);
+        if (null != adaptiveTransmitPolicy && BKException.Code.OK == rc) {
+            adaptiveTransmitPolicy.onTransmitComplete(addCompleteMicros);
+        }
 
         if (BKException.Code.OK == rc) {
             EntryBuffer recordSet = transmitPacket.getRecordSet();
@@ -1271,6 +1379,13 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
                     if (null != lastDLSNInPacket && lastDLSN.compareTo(lastDLSNInPacket) < 0) {
                         lastDLSN = lastDLSNInPacket;
                     }
+                    if (null != indexBuilder) {
+                        indexBuilder.addEntry(
+                                entryId,
+                                transmitPacket.getFirstTxId(),
+                                transmitPacket.getFirstPosition(),
+                                transmitPacket.getFirstWriteTimeMs());
+                    }
                 }
             }
         }
@@ -1280,6 +1395,8 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
         } else {
             recordSet.abortTransmit(FutureUtils.transmitException(transmitResult.get()));
         }
+        // the transmitted bytes are written to all the replicas at this point if the buffers are pooled
+        transmitPacket.release();
 
         if (cancelPendingPromises) {
             // Since the writer is in a bad state no more packets will be tramsitted, and its safe to
@@ -1293,6 +1410,7 @@ class BKLogSegmentWriter implements LogSegmentWriter, AddCallback, Runnable, Siz
             packetCurrentSaved.getRecordSet().abortTransmit(
                     new WriteCancelledException(streamName,
                             FutureUtils.transmitException(transmitResult.get())));
+            packetCurrentSaved.release();
         }
     }
 
@@ -28,6 +28,7 @@ import com.twitter.distributedlog.exceptions.LogSegmentNotFoundException;
 import com.twitter.distributedlog.exceptions.TransactionIdOutOfOrderException;
 import com.twitter.distributedlog.exceptions.UnexpectedException;
 import com.twitter.distributedlog.function.GetLastTxIdFunction;
+import com.twitter.distributedlog.io.BufferPool;
 import com.twitter.distributedlog.logsegment.LogSegmentEntryStore;
 import com.twitter.distributedlog.logsegment.LogSegmentEntryWriter;
 import com.twitter.distributedlog.metadata.LogMetadataForWriter;
@@ -81,6 +82,10 @@ import static com.twitter.distributedlog.impl.ZKLogSegmentFilters.WRITE_HANDLE_F
  * <li> `segments`/open : opstats. latency characteristics on starting a new log segment.
  * <li> `segments`/close : opstats. latency characteristics on completing an inprogress log segment.
  * <li> `segments`/recover : opstats. latency characteristics on recovering a log segment.
+ * <li> `segments`/recovery/read_last_record : opstats. latency characteristics on fencing an inprogress
+ * log segment and reading its last record during recovery.
+ * <li> `segments`/recovery/complete : opstats. latency characteristics on completing an inprogress
+ * log segment during recovery.
  * <li> `segments`/delete : opstats. latency characteristics on deleting a log segment.
  * </ul>
  */
@@ -106,10 +111,12 @@ class BKLogWriteHandler extends BKLogHandler {
     protected final MaxTxId maxTxId;
     protected final MaxLogSegmentSequenceNo maxLogSegmentSequenceNo;
     protected final boolean validateLogSegmentSequenceNumber;
+    protected final int recoveryConcurrency;
     protected final int regionId;
     protected final RollingPolicy rollingPolicy;
     protected Future<? extends DistributedLock> lockFuture = null;
     protected final PermitLimiter writeLimiter;
+    protected final BufferPool bufferPool;
     protected final FeatureProvider featureProvider;
     protected final DynamicDistributedLogConfiguration dynConf;
     protected final MetadataUpdater metadataUpdater;
@@ -145,7 +152,13 @@ class BKLogWriteHandler extends BKLogHandler {
                         }
                     }
 
-                    return FutureUtils.processList(segmentList, recoverLogSegmentFunction, scheduler).map(
+                    Function<LogSegmentMetadata, Future<LogSegmentMetadata>> recoverFunc;
+                    if (recoveryConcurrency > 1) {
+                        recoverFunc = new ParallelRecoverLogSegmentFunction(segmentList, recoveryConcurrency);
+                    } else {
+                        recoverFunc = recoverLogSegmentFunction;
+                    }
+                    return FutureUtils.processList(segmentList, recoverFunc, scheduler).map(
                             GetLastTxIdFunction.INSTANCE);
                 }
             };
@@ -155,6 +168,8 @@ class BKLogWriteHandler extends BKLogHandler {
     private final OpStatsLogger closeOpStats;
     private final OpStatsLogger openOpStats;
     private final OpStatsLogger recoverOpStats;
+    private final OpStatsLogger recoverReadLastRecordOpStats;
+    private final OpStatsLogger recoverCompleteOpStats;
     private final OpStatsLogger deleteOpStats;
 
     /**
@@ -173,6 +188,7 @@ class BKLogWriteHandler extends BKLogHandler {
                       String clientId,
                       int regionId,
                       PermitLimiter writeLimiter,
+                      BufferPool bufferPool,
                       FeatureProvider featureProvider,
                       DynamicDistributedLogConfiguration dynConf,
                       DistributedLock lock /** owned by handler **/) {
@@ -189,6 +205,7 @@ class BKLogWriteHandler extends BKLogHandler {
         this.logSegmentAllocator = segmentAllocator;
         this.perLogStatsLogger = perLogStatsLogger;
         this.writeLimiter = writeLimiter;
+        this.bufferPool = bufferPool;
         this.featureProvider = featureProvider;
         this.dynConf = dynConf;
         this.lock = lock;
@@ -200,6 +217,7 @@ class BKLogWriteHandler extends BKLogHandler {
             this.regionId = DistributedLogConstants.LOCAL_REGION_ID;
         }
         this.validateLogSegmentSequenceNumber = conf.isLogSegmentSequenceNumberValidationEnabled();
+        this.recoveryConcurrency = conf.getLogRecoveryConcurrency();
 
         // Construct the max sequence no
         maxLogSegmentSequenceNo = new MaxLogSegmentSequenceNo(logMetadata.getMaxLSSNData());
@@ -230,6 +248,9 @@ class BKLogWriteHandler extends BKLogHandler {
         closeOpStats = segmentsStatsLogger.getOpStatsLogger("close");
         recoverOpStats = segmentsStatsLogger.getOpStatsLogger("recover");
         deleteOpStats = segmentsStatsLogger.getOpStatsLogger("delete");
+        StatsLogger recoveryStatsLogger = segmentsStatsLogger.scope("recovery");
+        recoverReadLastRecordOpStats = recoveryStatsLogger.getOpStatsLogger("read_last_record");
+        recoverCompleteOpStats = recoveryStatsLogger.getOpStatsLogger("complete");
     }
 
     private Future<List<LogSegmentMetadata>> getCachedLogSegmentsAfterFirstFetch(
@@ -645,6 +666,7 @@ class BKLogWriteHandler extends BKLogHandler {
                             perLogStatsLogger,
                             alertStatsLogger,
                             writeLimiter,
+                            bufferPool,
                             featureProvider,
                             dynConf));
                 } catch (IOException ioe) {
@@ -699,6 +721,7 @@ class BKLogWriteHandler extends BKLogHandler {
                         writer.getPositionWithinLogSegment(),
                         writer.getLastDLSN().getEntryId(),
                         writer.getLastDLSN().getSlotId(),
+                        writer.getIndex(),
                         promise);
             }
 
@@ -801,6 +824,7 @@ class BKLogWriteHandler extends BKLogHandler {
                 recordCount,
                 lastEntryId,
                 lastSlotId,
+                null,
                 promise);
         return FutureUtils.result(promise);
     }
@@ -813,6 +837,7 @@ class BKLogWriteHandler extends BKLogHandler {
                                                 final int recordCount,
                                                 final long lastEntryId,
                                                 final long lastSlotId,
+                                                final LogSegmentIndex index,
                                                 final Promise<LogSegmentMetadata> promise) {
         fetchForWrite.addEventListener(new FutureEventListener<Versioned<List<LogSegmentMetadata>>>() {
             @Override
@@ -831,6 +856,7 @@ class BKLogWriteHandler extends BKLogHandler {
                         recordCount,
                         lastEntryId,
                         lastSlotId,
+                        index,
                         promise);
             }
         });
@@ -845,6 +871,7 @@ class BKLogWriteHandler extends BKLogHandler {
             int recordCount,
             long lastEntryId,
             long lastSlotId,
+            LogSegmentIndex index,
             final Promise<LogSegmentMetadata> promise) {
         try {
             lock.checkOwnershipAndReacquire();
@@ -930,7 +957,8 @@ class BKLogWriteHandler extends BKLogHandler {
                         recordCount,
                         lastEntryId,
                         lastSlotId,
-                        startSequenceId);
+                        startSequenceId,
+                        index);
         setLastLedgerRollingTimeMillis(completedLogSegment.getCompletionTime());
 
         // prepare the transaction
@@ -979,14 +1007,38 @@ class BKLogWriteHandler extends BKLogHandler {
                 return Future.value(l);
             }
 
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            return recoverLogSegment(l, readLastRecord(l), stopwatch);
+        }
+
+        /**
+         * Fence the inprogress log segment <i>l</i> and read its last record.
+         */
+        Future<LogRecordWithDLSN> readLastRecord(LogSegmentMetadata l) {
             LOG.info("Recovering last record in log segment {} for {}.", l, getFullyQualifiedName());
-            return asyncReadLastRecord(l, true, true, true).flatMap(
+            return FutureUtils.stats(
+                    asyncReadLastRecord(l, true, true, true),
+                    recoverReadLastRecordOpStats,
+                    Stopwatch.createStarted());
+        }
+
+        /**
+         * Complete the inprogress log segment <i>l</i> once its last record is read.
+         */
+        Future<LogSegmentMetadata> recoverLogSegment(final LogSegmentMetadata l,
+                                                     Future<LogRecordWithDLSN> lastRecordFuture,
+                                                     Stopwatch stopwatch) {
+            Future<LogSegmentMetadata> recoverFuture = lastRecordFuture.flatMap(
                     new AbstractFunction1<LogRecordWithDLSN, Future<LogSegmentMetadata>>() {
                         @Override
                         public Future<LogSegmentMetadata> apply(LogRecordWithDLSN lastRecord) {
-                            return completeLogSegment(l, lastRecord);
+                            return FutureUtils.stats(
+                                    completeLogSegment(l, lastRecord),
+                                    recoverCompleteOpStats,
+                                    Stopwatch.createStarted());
                         }
                     });
+            return FutureUtils.stats(recoverFuture, recoverOpStats, stopwatch);
         }
 
         private Future<LogSegmentMetadata> completeLogSegment(LogSegmentMetadata l,
@@ -1026,12 +1078,88 @@ class BKLogWriteHandler extends BKLogHandler {
                     recordCount,
                     lastEntryId,
                     lastSlotId,
+                    null,
                     promise);
             return promise;
         }
 
     }
 
+    /**
+     * Recover the inprogress log segments of a log concurrently.
+     * <p>The last records of up to <i>concurrency</i> inprogress log segments are fenced and read
+     * in parallel, as reading the last record is the slowest phase of recovery. The log segments
+     * are still completed one by one in the order they are processed, as completing a log segment
+     * validates the log segment sequence number against the inprogress log segments before it.
+     */
+    class ParallelRecoverLogSegmentFunction extends Function<LogSegmentMetadata, Future<LogSegmentMetadata>> {
+
+        private final List<LogSegmentMetadata> segments;
+        private final List<Promise<LogRecordWithDLSN>> lastRecordPromises;
+        private final List<Stopwatch> stopwatches;
+        private int nextSegmentIdx = 0;
+        private boolean aborted = false;
+
+        ParallelRecoverLogSegmentFunction(List<LogSegmentMetadata> segmentList, int concurrency) {
+            this.segments = new ArrayList<LogSegmentMetadata>(segmentList.size());
+            for (LogSegmentMetadata segment : segmentList) {
+                if (segment.isInProgress()) {
+                    this.segments.add(segment);
+                }
+            }
+            this.lastRecordPromises = new ArrayList<Promise<LogRecordWithDLSN>>(segments.size());
+            this.stopwatches = new ArrayList<Stopwatch>(segments.size());
+            for (int i = 0; i < segments.size(); i++) {
+                this.lastRecordPromises.add(new Promise<LogRecordWithDLSN>());
+                this.stopwatches.add(Stopwatch.createUnstarted());
+            }
+            for (int i = 0; i < Math.min(concurrency, segments.size()); i++) {
+                readNextLastRecord();
+            }
+        }
+
+        private void readNextLastRecord() {
+            final int idx;
+            synchronized (this) {
+                if (aborted || nextSegmentIdx >= segments.size()) {
+                    return;
+                }
+                idx = nextSegmentIdx++;
+                stopwatches.get(idx).start();
+            }
+            recoverLogSegmentFunction.readLastRecord(segments.get(idx)).addEventListener(
+                    new FutureEventListener<LogRecordWithDLSN>() {
+                @Override
+                public void onSuccess(LogRecordWithDLSN lastRecord) {
+                    lastRecordPromises.get(idx).setValue(lastRecord);
+                    readNextLastRecord();
+                }
+
+                @Override
+                public void onFailure(Throwable cause) {
+                    // stop fencing the remaining log segments, the recovery will fail anyway
+                    synchronized (ParallelRecoverLogSegmentFunction.this) {
+                        aborted = true;
+                    }
+                    lastRecordPromises.get(idx).setException(cause);
+                }
+            });
+        }
+
+        @Override
+        public Future<LogSegmentMetadata> apply(LogSegmentMetadata l) {
+            if (!l.isInProgress()) {
+                return Future.value(l);
+            }
+            int idx = segments.indexOf(l);
+            if (idx < 0) {
+                return recoverLogSegmentFunction.apply(l);
+            }
+            return recoverLogSegmentFunction.recoverLogSegment(
+                    l, lastRecordPromises.get(idx), stopwatches.get(idx));
+        }
+    }
+
     Future<List<LogSegmentMetadata>> setLogSegmentsOlderThanDLSNTruncated(final DLSN dlsn) {
         if (DLSN.InvalidDLSN == dlsn) {
             List<LogSegmentMetadata> emptyList = new ArrayList<LogSegmentMetadata>(0);
@@ -0,0 +1,575 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
+import com.twitter.distributedlog.exceptions.AlreadyClosedException;
+import com.twitter.distributedlog.exceptions.EndOfStreamException;
+import com.twitter.distributedlog.exceptions.LogNotFoundException;
+import com.twitter.distributedlog.exceptions.ReadCancelledException;
+import com.twitter.distributedlog.function.VoidFunctions;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
+import com.twitter.distributedlog.readahead.ReadAheadBudget;
+import com.twitter.distributedlog.util.OrderedScheduler;
+import com.twitter.distributedlog.util.Utils;
+import com.twitter.util.Future;
+import com.twitter.util.FutureEventListener;
+import com.twitter.util.Futures;
+import com.twitter.util.Promise;
+import com.twitter.util.Throw;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * BookKeeper based {@link MultiStreamReader} implementation.
+ *
+ * <p>Each stream is read ahead by its own {@link ReadAheadEntryReader}, while the readahead
+ * readers share a {@link ReadAheadBudget} and skip their own idle reader check tasks. A single
+ * delivery loop, submitted to the scheduler under the name of this reader, serves the pending
+ * read requests by polling the streams that notified data availability in round-robin order,
+ * one record from each stream at a time.
+ *
+ * <h3>Metrics</h3>
+ * All the metrics are exposed under `multi_stream_reader`.
+ * <ul>
+ * <li> `multi_stream_reader`/delay_until_promise_satisfied: opstats. total latency for the read requests.
+ * <li> `multi_stream_reader`/streams_added: counter. number of streams started to be read.
+ * <li> `multi_stream_reader`/streams_removed: counter. number of streams stopped being read, either
+ * removed by the caller or reaching the end of stream.
+ * </ul>
+ */
+class BKMultiStreamReader implements MultiStreamReader, Runnable {
+
+    static final Logger LOG = LoggerFactory.getLogger(BKMultiStreamReader.class);
+
+    private static final AtomicLong READER_ID = new AtomicLong(0L);
+
+    private final String name;
+    private final DistributedLogNamespace namespace;
+    private final OrderedScheduler scheduler;
+    private final ReadAheadBudget readAheadBudget;
+    private final ConcurrentHashMap<String, StreamReader> streams =
+            new ConcurrentHashMap<String, StreamReader>();
+    // streams that might have records available, in round-robin order
+    private final ConcurrentLinkedQueue<StreamReader> readyStreams =
+            new ConcurrentLinkedQueue<StreamReader>();
+    private final ConcurrentLinkedQueue<PendingReadRequest> pendingRequests =
+            new ConcurrentLinkedQueue<PendingReadRequest>();
+    private final AtomicInteger scheduleCount = new AtomicInteger(0);
+    private final AtomicReference<Throwable> lastException = new AtomicReference<Throwable>(null);
+    private final ScheduledFuture<?> idleReaderCheckTask;
+    private Promise<Void> closeFuture = null;
+
+    // Stats
+    private final OpStatsLogger delayUntilPromiseSatisfied;
+    private final Counter streamsAdded;
+    private final Counter streamsRemoved;
+
+    private class PendingReadRequest {
+        private final Stopwatch enqueueTime;
+        private final int maxRecords;
+        private final List<Pair<String, LogRecordWithDLSN>> records;
+        private final Promise<List<Pair<String, LogRecordWithDLSN>>> promise;
+
+        PendingReadRequest(int maxRecords) {
+            this.maxRecords = maxRecords;
+            this.enqueueTime = Stopwatch.createStarted();
+            this.records = new ArrayList<Pair<String, LogRecordWithDLSN>>(Math.min(maxRecords, 16));
+            this.promise = new Promise<List<Pair<String, LogRecordWithDLSN>>>();
+        }
+
+        boolean hasReadRecords() {
+            return records.size() > 0;
+        }
+
+        boolean hasReadEnoughRecords() {
+            return records.size() >= maxRecords;
+        }
+
+        void addRecord(String streamName, LogRecordWithDLSN record) {
+            records.add(Pair.of(streamName, record));
+        }
+
+        void setException(Throwable throwable) {
+            if (promise.updateIfEmpty(new Throw<List<Pair<String, LogRecordWithDLSN>>>(throwable))) {
+                delayUntilPromiseSatisfied.registerFailedEvent(enqueueTime.elapsed(TimeUnit.MICROSECONDS));
+            }
+        }
+
+        void complete() {
+            delayUntilPromiseSatisfied.registerSuccessfulEvent(enqueueTime.stop().elapsed(TimeUnit.MICROSECONDS));
+            promise.setValue(records);
+        }
+    }
+
+    /**
+     * Reader of a single stream. Its entry and record state are only accessed by the delivery loop.
+     */
+    private class StreamReader implements AsyncNotification {
+        private final String streamName;
+        private final BKDistributedLogManager dlm;
+        private final BKLogReadHandler readHandler;
+        private final ReadAheadEntryReader readAheadReader;
+        private final DLSN startDLSN;
+        private final AtomicBoolean ready = new AtomicBoolean(false);
+        private volatile DLSN position;
+        private volatile boolean closed = false;
+        // the first error notified for this stream, thrown on next read
+        private final AtomicReference<IOException> lastError = new AtomicReference<IOException>(null);
+        private Entry.Reader currentEntry = null;
+        private LogRecordWithDLSN nextRecord = null;
+
+        StreamReader(String streamName, BKDistributedLogManager dlm, DLSN fromDLSN) {
+            this.streamName = streamName;
+            this.dlm = dlm;
+            this.startDLSN = this.position = fromDLSN;
+            this.readHandler = dlm.createReadHandler(Optional.<String>absent(), this, true);
+            this.readAheadReader = new ReadAheadEntryReader(
+                    streamName,
+                    fromDLSN,
+                    dlm.getConf(),
+                    readHandler,
+                    dlm.getReaderEntryStore(),
+                    dlm.getScheduler(),
+                    Ticker.systemTicker(),
+                    dlm.alertStatsLogger,
+                    dlm.getOffHeapEntryCache(),
+                    readAheadBudget,
+                    false);
+        }
+
+        void start() {
+            readHandler.checkLogStreamExists().addEventListener(new FutureEventListener<Void>() {
+                @Override
+                public void onSuccess(Void value) {
+                    try {
+                        readHandler.registerListener(readAheadReader);
+                        readHandler.asyncStartFetchLogSegments().addEventListener(
+                                new FutureEventListener<Versioned<List<LogSegmentMetadata>>>() {
+                                    @Override
+                                    public void onSuccess(Versioned<List<LogSegmentMetadata>> logSegments) {
+                                        readAheadReader.addStateChangeNotification(StreamReader.this);
+                                        readAheadReader.start(logSegments.getValue());
+                                    }
+
+                                    @Override
+                                    public void onFailure(Throwable cause) {
+                                        notifyOnError(cause);
+                                    }
+                                });
+                    } catch (Exception exc) {
+                        notifyOnError(exc);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable cause) {
+                    notifyOnError(cause);
+                }
+            });
+        }
+
+        DLSN getPosition() {
+            return position;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Add the stream to the ready streams if it isn't there yet.
+         *
+         * @param scheduleDelivery whether to schedule the delivery loop
+         */
+        void markReady(boolean scheduleDelivery) {
+            if (closed || !ready.compareAndSet(false, true)) {
+                return;
+            }
+            readyStreams.add(this);
+            if (scheduleDelivery) {
+                scheduleDelivery();
+            }
+        }
+
+        void unmarkReady() {
+            ready.set(false);
+        }
+
+        private LogRecordWithDLSN readNextEntryRecord() throws IOException {
+            if (null == currentEntry) {
+                currentEntry = readAheadReader.getNextReadAheadEntry(0L, TimeUnit.MILLISECONDS);
+                if (null == currentEntry) {
+                    return null;
+                }
+            }
+            if (null == nextRecord) {
+                nextRecord = currentEntry.nextRecord();
+                if (null == nextRecord) {
+                    currentEntry = null;
+                    return readNextEntryRecord();
+                }
+            }
+            LogRecordWithDLSN recordToReturn = nextRecord;
+            nextRecord = currentEntry.nextRecord();
+            return recordToReturn;
+        }
+
+        /**
+         * Read the next user record of the stream.
+         *
+         * @return next user record, or null if there isn't any record available.
+         * @throws IOException if the stream encounters errors or reaches the end of stream
+         */
+        LogRecordWithDLSN readNextRecord() throws IOException {
+            IOException error = lastError.get();
+            if (null != error) {
+                throw error;
+            }
+            LogRecordWithDLSN record;
+            do {
+                record = readNextEntryRecord();
+            } while (null != record && (record.isControl() || record.getDlsn().compareTo(startDLSN) < 0));
+            if (null == record) {
+                return null;
+            }
+            if (record.isEndOfStream()) {
+                throw new EndOfStreamException("End of Stream Reached for " + readHandler.getFullyQualifiedName());
+            }
+            position = record.getDlsn().getNextDLSN();
+            return record;
+        }
+
+        void checkIfReadAheadIsIdle() {
+            readAheadReader.checkIfReadAheadIsIdle();
+        }
+
+        Future<Void> asyncClose() {
+            closed = true;
+            readHandler.unregisterListener(readAheadReader);
+            readAheadReader.removeStateChangeNotification(this);
+            return Utils.closeSequence(scheduler, true,
+                    readAheadReader,
+                    readHandler,
+                    dlm
+            );
+        }
+
+        @Override
+        public void notifyOnError(Throwable cause) {
+            // the error might come from checking the stream or fetching its log segments before
+            // the readahead reader is started, so keep it to throw on next read
+            if (cause instanceof IOException) {
+                lastError.compareAndSet(null, (IOException) cause);
+            } else {
+                lastError.compareAndSet(null, new IOException(cause));
+            }
+            markReady(true);
+        }
+
+        @Override
+        public void notifyOnOperationComplete() {
+            markReady(true);
+        }
+    }
+
+    BKMultiStreamReader(DistributedLogNamespace namespace,
+                        DistributedLogConfiguration conf,
+                        OrderedScheduler scheduler,
+                        StatsLogger statsLogger) {
+        this.name = "multi-stream-reader-" + READER_ID.incrementAndGet();
+        this.namespace = namespace;
+        this.scheduler = scheduler;
+        this.readAheadBudget = new ReadAheadBudget(
+                conf.getMultiStreamReaderReadAheadMaxRecords(), conf.getReadAheadBatchSize());
+
+        // Stats
+        StatsLogger readerStatsLogger = statsLogger.scope("multi_stream_reader");
+        this.delayUntilPromiseSatisfied = readerStatsLogger.getOpStatsLogger("delay_until_promise_satisfied");
+        this.streamsAdded = readerStatsLogger.getCounter("streams_added");
+        this.streamsRemoved = readerStatsLogger.getCounter("streams_removed");
+
+        // one idle readahead check for all the streams
+        int idleWarnThresholdMillis = conf.getReaderIdleWarnThresholdMillis();
+        if (idleWarnThresholdMillis > 0 && idleWarnThresholdMillis < Integer.MAX_VALUE) {
+            this.idleReaderCheckTask = scheduler.scheduleAtFixedRate(name, new Runnable() {
+                @Override
+                public void run() {
+                    for (StreamReader stream : streams.values()) {
+                        stream.checkIfReadAheadIsIdle();
+                    }
+                }
+            }, idleWarnThresholdMillis, idleWarnThresholdMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.idleReaderCheckTask = null;
+        }
+    }
+
+    /**
+     * Read the streams matching <i>pattern</i>, including the ones created after the reader
+     * is opened, from <i>fromDLSN</i>.
+     *
+     * @param pattern pattern of the stream names
+     * @param fromDLSN position to start reading the streams from
+     * @throws IOException if it fails to list the streams of the namespace
+     */
+    void addStreams(final Pattern pattern, final DLSN fromDLSN) throws IOException {
+        addMatchedStreams(namespace.getLogs(), pattern, fromDLSN);
+        namespace.registerNamespaceChangeListener(new NamespaceChangeListener() {
+            @Override
+            public void onStreamsAdded(final Collection<String> streamNames) {
+                // opening streams blocks on metadata lookups, so don't do it in the callback thread
+                scheduler.submit(name, new Runnable() {
+                    @Override
+                    public void run() {
+                        addMatchedStreams(streamNames.iterator(), pattern, fromDLSN);
+                    }
+                });
+            }
+
+            @Override
+            public void onStreamsRemoved(Collection<String> streamNames) {
+                // only the new streams matter when following a pattern
+            }
+        });
+    }
+
+    private void addMatchedStreams(Iterator<String> streamNames, Pattern pattern, DLSN fromDLSN) {
+        while (streamNames.hasNext()) {
+            String streamName = streamNames.next();
+            if (!pattern.matcher(streamName).matches()) {
+                continue;
+            }
+            synchronized (this) {
+                if (null != closeFuture) {
+                    return;
+                }
+            }
+            try {
+                addStream(streamName, fromDLSN);
+            } catch (IOException ioe) {
+                LOG.warn("{} : failed to add stream {} : ", new Object[] { name, streamName, ioe });
+            }
+        }
+    }
+
+    @VisibleForTesting
+    ReadAheadBudget getReadAheadBudget() {
+        return readAheadBudget;
+    }
+
+    @Override
+    public Set<String> getStreamNames() {
+        return Sets.newHashSet(streams.keySet());
+    }
+
+    @Override
+    public void addStream(String streamName, DLSN fromDLSN) throws IOException {
+        checkClosed();
+        if (streams.containsKey(streamName)) {
+            return;
+        }
+        BKDistributedLogManager dlm = (BKDistributedLogManager) namespace.openLog(streamName);
+        StreamReader stream = new StreamReader(streamName, dlm, fromDLSN);
+        synchronized (this) {
+            if (null == closeFuture && null == streams.putIfAbsent(streamName, stream)) {
+                streamsAdded.inc();
+                stream.start();
+                return;
+            }
+        }
+        // the reader is closed or the stream is added concurrently
+        stream.asyncClose();
+        checkClosed();
+    }
+
+    private synchronized void checkClosed() throws AlreadyClosedException {
+        if (null != closeFuture) {
+            throw new AlreadyClosedException("Multi stream reader " + name + " is already closed");
+        }
+    }
+
+    @Override
+    public Future<Void> removeStream(String streamName) {
+        StreamReader stream = streams.remove(streamName);
+        if (null == stream) {
+            return Future.Void();
+        }
+        streamsRemoved.inc();
+        return stream.asyncClose();
+    }
+
+    @Override
+    public Map<String, DLSN> getPositions() {
+        Map<String, DLSN> positions = Maps.newHashMapWithExpectedSize(streams.size());
+        for (StreamReader stream : streams.values()) {
+            positions.put(stream.streamName, stream.getPosition());
+        }
+        return positions;
+    }
+
+    @Override
+    public Future<List<Pair<String, LogRecordWithDLSN>>> readBulk(int maxRecords) {
+        PendingReadRequest request = new PendingReadRequest(maxRecords);
+        synchronized (this) {
+            if (null != closeFuture) {
+                request.setException(lastException.get());
+                return request.promise;
+            }
+            pendingRequests.add(request);
+        }
+        scheduleDelivery();
+        return request.promise;
+    }
+
+    private void scheduleDelivery() {
+        if (0 == scheduleCount.getAndIncrement()) {
+            scheduler.submit(name, this);
+        }
+    }
+
+    @Override
+    public void run() {
+        int numScheduled = scheduleCount.get();
+        do {
+            try {
+                deliver();
+            } catch (Throwable cause) {
+                LOG.error("{} : caught unexpected exception on delivering records : ", name, cause);
+                setLastException(cause);
+                cancelAllPendingReads(cause);
+            }
+        } while ((numScheduled = scheduleCount.addAndGet(-numScheduled)) > 0);
+    }
+
+    private void deliver() {
+        PendingReadRequest request;
+        while (null != (request = pendingRequests.peek())) {
+            if (null != lastException.get()) {
+                cancelAllPendingReads(lastException.get());
+                return;
+            }
+            StreamReader stream;
+            while (!request.hasReadEnoughRecords() && null != (stream = readyStreams.poll())) {
+                // unmark before reading, so a notification arriving after the read re-adds the stream
+                stream.unmarkReady();
+                if (stream.isClosed()) {
+                    continue;
+                }
+                LogRecordWithDLSN record;
+                try {
+                    record = stream.readNextRecord();
+                } catch (IOException ioe) {
+                    if (ioe instanceof EndOfStreamException || ioe instanceof LogNotFoundException) {
+                        LOG.info("{} : stop reading stream {} : {}",
+                                new Object[] { name, stream.streamName, ioe.getMessage() });
+                        if (streams.remove(stream.streamName, stream)) {
+                            streamsRemoved.inc();
+                            stream.asyncClose();
+                        }
+                        continue;
+                    }
+                    LOG.warn("{} : encountered exception on reading stream {} : ",
+                            new Object[] { name, stream.streamName, ioe });
+                    setLastException(ioe);
+                    break;
+                }
+                if (null != record) {
+                    request.addRecord(stream.streamName, record);
+                    // move the stream to the tail, so the other streams are served first
+                    stream.markReady(false);
+                }
+            }
+            if (null != lastException.get()) {
+                continue;
+            }
+            if (!request.hasReadRecords()) {
+                // wait for the streams to notify data availability
+                return;
+            }
+            pendingRequests.poll();
+            request.complete();
+        }
+    }
+
+    private void setLastException(Throwable cause) {
+        lastException.compareAndSet(null, cause);
+    }
+
+    private void cancelAllPendingReads(Throwable cause) {
+        PendingReadRequest request;
+        while (null != (request = pendingRequests.poll())) {
+            request.setException(cause);
+        }
+    }
+
+    @Override
+    public Future<Void> asyncClose() {
+        Promise<Void> closePromise;
+        synchronized (this) {
+            if (null != closeFuture) {
+                return closeFuture;
+            }
+            closePromise = closeFuture = new Promise<Void>();
+            setLastException(new ReadCancelledException(name, "Reader was closed"));
+        }
+        if (null != idleReaderCheckTask) {
+            idleReaderCheckTask.cancel(true);
+        }
+        cancelAllPendingReads(lastException.get());
+
+        List<Future<Void>> closeFutures = Lists.newArrayListWithExpectedSize(streams.size());
+        for (String streamName : Lists.newArrayList(streams.keySet())) {
+            StreamReader stream = streams.remove(streamName);
+            if (null != stream) {
+                closeFutures.add(stream.asyncClose());
+            }
+        }
+        Futures.collect(closeFutures).map(VoidFunctions.LIST_TO_VOID_FUNC).proxyTo(closePromise);
+        return closePromise;
+    }
+}
@@ -98,7 +98,10 @@ class BKSyncLogReader implements LogReader, AsyncNotification {
                     bkdlm.getReaderEntryStore(),
                     bkdlm.getScheduler(),
                     Ticker.systemTicker(),
-                    bkdlm.alertStatsLogger);
+                    bkdlm.alertStatsLogger,
+                    bkdlm.getOffHeapEntryCache(),
+                    null,
+                    true);
         readHandler.registerListener(readAheadReader);
         readHandler.asyncStartFetchLogSegments()
                 .map(new AbstractFunction1<Versioned<List<LogSegmentMetadata>>, BoxedUnit>() {
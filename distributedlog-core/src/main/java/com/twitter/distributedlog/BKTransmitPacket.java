@@ -29,11 +29,25 @@ class BKTransmitPacket {
     private final EntryBuffer recordSet;
     private final long transmitTime;
     private final Promise<Integer> transmitComplete;
+    // the first record in the record set, used for indexing the entry
+    private final long firstTxId;
+    private final int firstPosition;
+    private final long firstWriteTimeMs;
 
     BKTransmitPacket(EntryBuffer recordSet) {
+        this(recordSet, DistributedLogConstants.INVALID_TXID, 0, 0L);
+    }
+
+    BKTransmitPacket(EntryBuffer recordSet,
+                     long firstTxId,
+                     int firstPosition,
+                     long firstWriteTimeMs) {
         this.recordSet = recordSet;
         this.transmitTime = System.nanoTime();
         this.transmitComplete = new Promise<Integer>();
+        this.firstTxId = firstTxId;
+        this.firstPosition = firstPosition;
+        this.firstWriteTimeMs = firstWriteTimeMs;
     }
 
     EntryBuffer getRecordSet() {
@@ -87,4 +101,25 @@ class BKTransmitPacket {
         return transmitTime;
     }
 
+    long getFirstTxId() {
+        return firstTxId;
+    }
+
+    int getFirstPosition() {
+        return firstPosition;
+    }
+
+    long getFirstWriteTimeMs() {
+        return firstWriteTimeMs;
+    }
+
+    /**
+     * Release the buffers held by the record set of this packet.
+     * <p>It should only be called after the packet is acknowledged or aborted,
+     * since bookkeeper may still hold the transmitted bytes until then.
+     */
+    void release() {
+        recordSet.release();
+    }
+
 }
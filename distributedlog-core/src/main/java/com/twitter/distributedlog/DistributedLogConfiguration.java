@@ -109,6 +109,10 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final int BKDL_ZK_RETRY_BACKOFF_MAX_MILLIS_DEFAULT = 30000;
     public static final String BKDL_ZKCLIENT_NUM_RETRY_THREADS = "zkcNumRetryThreads";
     public static final int BKDL_ZKCLIENT_NUM_RETRY_THREADS_DEFAULT = 1;
+    public static final String BKDL_ZK_METADATA_BATCH_WINDOW_MS = "zkMetadataBatchWindowMs";
+    public static final int BKDL_ZK_METADATA_BATCH_WINDOW_MS_DEFAULT = 0;
+    public static final String BKDL_ZK_METADATA_BATCH_MAX_OPS = "zkMetadataBatchMaxOps";
+    public static final int BKDL_ZK_METADATA_BATCH_MAX_OPS_DEFAULT = 100;
 
     //
     // BookKeeper Related Settings
@@ -185,6 +189,8 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final int BKDL_SCHEDULER_SHUTDOWN_TIMEOUT_MS_DEFAULT = 5000;
     public static final String BKDL_USE_DAEMON_THREAD = "useDaemonThread";
     public static final boolean BKDL_USE_DAEMON_THREAD_DEFAULT = false;
+    public static final String BKDL_STRIPED_SCHEDULER_ENABLED = "stripedSchedulerEnabled";
+    public static final boolean BKDL_STRIPED_SCHEDULER_ENABLED_DEFAULT = false;
 
     // Metadata Parameters
     public static final String BKDL_LEDGER_METADATA_LAYOUT_VERSION = "ledgerMetadataLayoutVersion";
@@ -199,6 +205,8 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
             DistributedLogConstants.FIRST_LOGSEGMENT_SEQNO;
     public static final String BKDL_LOGSEGMENT_SEQUENCE_NUMBER_VALIDATION_ENABLED = "logSegmentSequenceNumberValidationEnabled";
     public static final boolean BKDL_LOGSEGMENT_SEQUENCE_NUMBER_VALIDATION_ENABLED_DEFAULT = true;
+    public static final String BKDL_LOG_RECOVERY_CONCURRENCY = "logRecoveryConcurrency";
+    public static final int BKDL_LOG_RECOVERY_CONCURRENCY_DEFAULT = 1;
     public static final String BKDL_ENABLE_RECORD_COUNTS = "enableRecordCounts";
     public static final boolean BKDL_ENABLE_RECORD_COUNTS_DEFAULT = true;
     public static final String BKDL_MAXID_SANITYCHECK = "maxIdSanityCheck";
@@ -242,6 +250,10 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final boolean BKDL_FAILFAST_ON_STREAM_NOT_READY_DEFAULT = false;
     public static final String BKDL_DISABLE_ROLLING_ON_LOG_SEGMENT_ERROR = "disableRollingOnLogSegmentError";
     public static final boolean BKDL_DISABLE_ROLLING_ON_LOG_SEGMENT_ERROR_DEFAULT = false;
+    public static final String BKDL_WRITER_MPSC_QUEUE_ENABLED = "writerMpscQueueEnabled";
+    public static final boolean BKDL_WRITER_MPSC_QUEUE_ENABLED_DEFAULT = false;
+    public static final String BKDL_LOGSEGMENT_INDEX_INTERVAL = "logSegmentIndexInterval";
+    public static final int BKDL_LOGSEGMENT_INDEX_INTERVAL_DEFAULT = 0;
 
     // Durability Settings
     public static final String BKDL_IS_DURABLE_WRITE_ENABLED = "isDurableWriteEnabled";
@@ -259,6 +271,10 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final int BKDL_MINIMUM_DELAY_BETWEEN_IMMEDIATE_FLUSH_MILLISECONDS_DEFAULT = 0;
     public static final String BKDL_PERIODIC_KEEP_ALIVE_MILLISECONDS = "periodicKeepAliveMilliSeconds";
     public static final int BKDL_PERIODIC_KEEP_ALIVE_MILLISECONDS_DEFAULT = 0;
+    public static final String BKDL_WRITER_BUFFER_POOL_SIZE_BYTES = "writerBufferPoolSizeBytes";
+    public static final long BKDL_WRITER_BUFFER_POOL_SIZE_BYTES_DEFAULT = 0L;
+    public static final String BKDL_WRITER_ADAPTIVE_BATCHING_TARGET_LATENCY_MS = "writerAdaptiveBatchingTargetLatencyMs";
+    public static final int BKDL_WRITER_ADAPTIVE_BATCHING_TARGET_LATENCY_MS_DEFAULT = 0;
 
     // Retention/Truncation Settings
     public static final String BKDL_RETENTION_PERIOD_IN_HOURS = "logSegmentRetentionHours";
@@ -303,6 +319,21 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final int BKDL_GLOBAL_OUTSTANDING_WRITE_LIMIT_DEFAULT = -1;
     public static final String BKDL_OUTSTANDING_WRITE_LIMIT_DARKMODE = "outstandingWriteLimitDarkmode";
     public static final boolean BKDL_OUTSTANDING_WRITE_LIMIT_DARKMODE_DEFAULT = true;
+    public static final String BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT = "globalOutstandingWriteBytesLimit";
+    public static final long BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT_DEFAULT = -1L;
+    public static final String BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT = "perWriterOutstandingWriteBytesLimit";
+    public static final long BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT_DEFAULT = -1L;
+    public static final String BKDL_OUTSTANDING_WRITE_BYTES_LIMIT_WAIT_ENABLED = "outstandingWriteBytesLimitWaitEnabled";
+    public static final boolean BKDL_OUTSTANDING_WRITE_BYTES_LIMIT_WAIT_ENABLED_DEFAULT = false;
+    public static final String BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_ENABLED =
+            "appendOnlyStreamWriterGroupCommitEnabled";
+    public static final boolean BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_ENABLED_DEFAULT = false;
+    public static final String BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_WINDOW_MS =
+            "appendOnlyStreamWriterGroupCommitWindowMs";
+    public static final int BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_WINDOW_MS_DEFAULT = 0;
+    public static final String BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_MAX_CALLERS =
+            "appendOnlyStreamWriterGroupCommitMaxCallers";
+    public static final int BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_MAX_CALLERS_DEFAULT = 64;
 
     //
     // DL Reader Settings
@@ -315,6 +346,12 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final int BKDL_READLACLONGPOLL_TIMEOUT_DEFAULT = 1000;
     public static final String BKDL_DESERIALIZE_RECORDSET_ON_READS = "deserializeRecordSetOnReads";
     public static final boolean BKDL_DESERIALIZE_RECORDSET_ON_READS_DEFAULT = true;
+    public static final String BKDL_READER_ZERO_COPY_ENABLED = "readerZeroCopyEnabled";
+    public static final boolean BKDL_READER_ZERO_COPY_ENABLED_DEFAULT = false;
+    public static final String BKDL_APPEND_ONLY_STREAM_READER_PREFETCH_RECORDS = "appendOnlyStreamReaderPrefetchRecords";
+    public static final int BKDL_APPEND_ONLY_STREAM_READER_PREFETCH_RECORDS_DEFAULT = 0;
+    public static final String BKDL_APPEND_ONLY_STREAM_READER_WAIT_TIME_MS = "appendOnlyStreamReaderWaitTimeMs";
+    public static final int BKDL_APPEND_ONLY_STREAM_READER_WAIT_TIME_MS_DEFAULT = 100;
 
     // Idle reader settings
     public static final String BKDL_READER_IDLE_WARN_THRESHOLD_MILLIS = "readerIdleWarnThresholdMillis";
@@ -341,6 +378,16 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final String BKDL_READAHEAD_BATCHSIZE = "readAheadBatchSize";
     public static final String BKDL_READAHEAD_BATCHSIZE_OLD = "ReadAheadBatchSize";
     public static final int BKDL_READAHEAD_BATCHSIZE_DEFAULT = 2;
+    public static final String BKDL_READAHEAD_CACHE_OFFHEAP_ENABLED = "readAheadCacheOffHeapEnabled";
+    public static final boolean BKDL_READAHEAD_CACHE_OFFHEAP_ENABLED_DEFAULT = false;
+    public static final String BKDL_READAHEAD_CACHE_MAX_BYTES = "readAheadCacheMaxBytes";
+    public static final long BKDL_READAHEAD_CACHE_MAX_BYTES_DEFAULT = 256 * 1024 * 1024L;
+    public static final String BKDL_READ_ENTRY_CACHE_MAX_BYTES = "readEntryCacheMaxBytes";
+    public static final long BKDL_READ_ENTRY_CACHE_MAX_BYTES_DEFAULT = 0L;
+    public static final String BKDL_READ_ENTRY_CACHE_EVICTION_POLICY = "readEntryCacheEvictionPolicy";
+    public static final String BKDL_READ_ENTRY_CACHE_EVICTION_POLICY_DEFAULT = "lru";
+    public static final String BKDL_MULTI_STREAM_READER_READAHEAD_MAX_RECORDS = "multiStreamReaderReadAheadMaxRecords";
+    public static final int BKDL_MULTI_STREAM_READER_READAHEAD_MAX_RECORDS_DEFAULT = 10000;
     public static final String BKDL_READAHEAD_WAITTIME = "readAheadWaitTime";
     public static final String BKDL_READAHEAD_WAITTIME_OLD = "ReadAheadWaitTime";
     public static final int BKDL_READAHEAD_WAITTIME_DEFAULT = 200;
@@ -385,6 +432,8 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public final static boolean BKDL_ENABLE_TASK_EXECUTION_STATS_DEFAULT = false;
     public final static String BKDL_TASK_EXECUTION_WARN_TIME_MICROS = "taskExecutionWarnTimeMicros";
     public final static long BKDL_TASK_EXECUTION_WARN_TIME_MICROS_DEFAULT = 100000;
+    public final static String BKDL_TASK_EXECUTION_TRACE_SAMPLE_RATE = "taskExecutionTraceSampleRate";
+    public final static int BKDL_TASK_EXECUTION_TRACE_SAMPLE_RATE_DEFAULT = 100;
     public static final String BKDL_ENABLE_PERSTREAM_STAT = "enablePerStreamStat";
     public static final boolean BKDL_ENABLE_PERSTREAM_STAT_DEFAULT = false;
 
@@ -446,6 +495,12 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
     public static final int BKDL_BPS_HARD_SERVICE_LIMIT_DEFAULT = -1;
     public static final String BKDL_BPS_STREAM_ACQUIRE_SERVICE_LIMIT = "bpsStreamAcquireServiceLimit";
     public static final int BKDL_BPS_STREAM_ACQUIRE_SERVICE_LIMIT_DEFAULT = -1;
+    public static final String BKDL_RPS_SOFT_READ_SERVICE_LIMIT = "rpsSoftReadServiceLimit";
+    public static final int BKDL_RPS_SOFT_READ_SERVICE_LIMIT_DEFAULT = -1;
+    public static final String BKDL_RPS_HARD_READ_SERVICE_LIMIT = "rpsHardReadServiceLimit";
+    public static final int BKDL_RPS_HARD_READ_SERVICE_LIMIT_DEFAULT = -1;
+    public static final String BKDL_TOKEN_BUCKET_RATE_LIMITER_ENABLED = "tokenBucketRateLimiterEnabled";
+    public static final boolean BKDL_TOKEN_BUCKET_RATE_LIMITER_ENABLED_DEFAULT = false;
 
     // Settings for Partitioning
 
@@ -738,6 +793,59 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the time window to batch metadata transactions, in milliseconds.
+     * <p>Metadata transactions (e.g. creating or completing log segments) of different
+     * streams that are executed within the window are coalesced into a single zookeeper
+     * <i>multi</i> request, and concurrent reads of the same log segment metadata are
+     * coalesced into a single zookeeper read. A transaction that fails in a batch doesn't
+     * fail the other transactions in the batch.
+     * The default value is 0, which disables batching.
+     *
+     * @return time window to batch metadata transactions, in milliseconds.
+     */
+    public int getZKMetadataBatchWindowMs() {
+        return this.getInt(BKDL_ZK_METADATA_BATCH_WINDOW_MS, BKDL_ZK_METADATA_BATCH_WINDOW_MS_DEFAULT);
+    }
+
+    /**
+     * Set the time window to batch metadata transactions, in milliseconds.
+     *
+     * @param batchWindowMs time window to batch metadata transactions, in milliseconds.
+     * @return distributed log configuration
+     * @see #getZKMetadataBatchWindowMs()
+     */
+    public DistributedLogConfiguration setZKMetadataBatchWindowMs(int batchWindowMs) {
+        setProperty(BKDL_ZK_METADATA_BATCH_WINDOW_MS, batchWindowMs);
+        return this;
+    }
+
+    /**
+     * Get the max number of zookeeper operations in a batched metadata request.
+     * <p>A batch is sent as soon as it reaches this number of operations, without waiting
+     * for the end of the batch window. It should be kept small enough to fit the request
+     * in zookeeper's <i>jute.maxbuffer</i>.
+     * The default value is 100.
+     *
+     * @return max number of zookeeper operations in a batched metadata request.
+     * @see #getZKMetadataBatchWindowMs()
+     */
+    public int getZKMetadataBatchMaxOps() {
+        return this.getInt(BKDL_ZK_METADATA_BATCH_MAX_OPS, BKDL_ZK_METADATA_BATCH_MAX_OPS_DEFAULT);
+    }
+
+    /**
+     * Set the max number of zookeeper operations in a batched metadata request.
+     *
+     * @param maxOps max number of zookeeper operations in a batched metadata request.
+     * @return distributed log configuration
+     * @see #getZKMetadataBatchMaxOps()
+     */
+    public DistributedLogConfiguration setZKMetadataBatchMaxOps(int maxOps) {
+        setProperty(BKDL_ZK_METADATA_BATCH_MAX_OPS, maxOps);
+        return this;
+    }
+
     /**
      * Get ZK client number of retry executor threads.
      * By default it is 1.
@@ -1292,6 +1400,33 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Whether to use the striped scheduler as the executor of distributedlog namespace.
+     * <p>The striped scheduler keeps the ordering guarantees of the default scheduler, but
+     * it is backed by lock-free per-thread task queues and a hashed wheel timer rather
+     * than scheduled thread pool executors, and it only traces sampled tasks.
+     * It is disabled by default.
+     *
+     * @return true if the striped scheduler is enabled, otherwise false.
+     * @see com.twitter.distributedlog.util.StripedOrderedScheduler
+     */
+    public boolean isStripedSchedulerEnabled() {
+        return getBoolean(BKDL_STRIPED_SCHEDULER_ENABLED, BKDL_STRIPED_SCHEDULER_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Enable or disable using the striped scheduler as the executor of distributedlog namespace.
+     *
+     * @param enabled
+     *          flag to enable/disable the striped scheduler.
+     * @return configuration
+     * @see #isStripedSchedulerEnabled()
+     */
+    public DistributedLogConfiguration setStripedSchedulerEnabled(boolean enabled) {
+        setProperty(BKDL_STRIPED_SCHEDULER_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get the number of dedicated readahead worker threads used by distributedlog namespace.
      * <p>If this value is non-positive, it would share the normal executor (see {@link #getNumWorkerThreads()}
@@ -1532,6 +1667,34 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the max number of incomplete log segments of a log that are recovered concurrently.
+     * <p>When a writer takes over a log, it recovers the inprogress log segments left by the
+     * previous writer: it fences each ledger, reads its last record and completes the log segment
+     * metadata. If the concurrency is larger than 1, the writer fences and reads the last records
+     * of up to this number of log segments in parallel, while the log segment metadata is still
+     * completed one by one in log segment sequence number order.
+     * <p>By default it is 1, which recovers the log segments sequentially.
+     *
+     * @return max number of log segments recovered concurrently.
+     */
+    public int getLogRecoveryConcurrency() {
+        return this.getInt(BKDL_LOG_RECOVERY_CONCURRENCY, BKDL_LOG_RECOVERY_CONCURRENCY_DEFAULT);
+    }
+
+    /**
+     * Set the max number of incomplete log segments of a log that are recovered concurrently.
+     *
+     * @param concurrency
+     *          max number of log segments recovered concurrently.
+     * @return distributedlog configuration
+     * @see #getLogRecoveryConcurrency()
+     */
+    public DistributedLogConfiguration setLogRecoveryConcurrency(int concurrency) {
+        setProperty(BKDL_LOG_RECOVERY_CONCURRENCY, concurrency);
+        return this;
+    }
+
     /**
      * Whether we should publish record counts in the log records and metadata.
      * <p>By default it is true. This is a legacy setting for log segment version 1. It
@@ -1847,6 +2010,64 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Whether the async log writer uses a lock-free queue to accept writes.
+     * <p>If it is enabled, producers append records into a lock-free multi-producer
+     * queue instead of contending on the writer's monitor. A single drain task, which runs
+     * on the executor that the stream is pinned to, dequeues the records, batches them and
+     * issues them to the log segment writer in the order they were enqueued.
+     * It helps when many threads write to a same stream concurrently.
+     * <p>By default it is disabled.
+     *
+     * @return true if the lock-free write queue is enabled, otherwise false.
+     */
+    public boolean isWriterMpscQueueEnabled() {
+        return getBoolean(BKDL_WRITER_MPSC_QUEUE_ENABLED, BKDL_WRITER_MPSC_QUEUE_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Enable/Disable the lock-free write queue for async log writers.
+     *
+     * @param enabled
+     *          flag to enable/disable the lock-free write queue.
+     * @return distributedlog configuration
+     * @see #isWriterMpscQueueEnabled()
+     */
+    public DistributedLogConfiguration setWriterMpscQueueEnabled(boolean enabled) {
+        setProperty(BKDL_WRITER_MPSC_QUEUE_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the interval, in number of entries, of the sparse index built for log segments.
+     * <p>If it is positive, the log segment writer samples an entry every <i>interval</i>
+     * entries and records the transaction id, the position and the write time of its first
+     * record. The index is stored in the metadata of the log segment when the log segment is
+     * completed, and it is used for narrowing down the entries to read when positioning a reader
+     * by transaction id. The number of sampled entries is bounded: the interval is doubled when
+     * a log segment has too many entries. The index is only stored when the log segment metadata
+     * layout version is not less than {@link LogSegmentMetadata.LogSegmentMetadataVersion#VERSION_V6_BINARY}.
+     * <p>By default it is 0, which disables the index.
+     *
+     * @return interval of the log segment index.
+     */
+    public int getLogSegmentIndexInterval() {
+        return getInt(BKDL_LOGSEGMENT_INDEX_INTERVAL, BKDL_LOGSEGMENT_INDEX_INTERVAL_DEFAULT);
+    }
+
+    /**
+     * Set the interval, in number of entries, of the sparse index built for log segments.
+     *
+     * @param interval
+     *          interval of the log segment index. 0 or negative value disables the index.
+     * @return distributedlog configuration
+     * @see #getLogSegmentIndexInterval()
+     */
+    public DistributedLogConfiguration setLogSegmentIndexInterval(int interval) {
+        setProperty(BKDL_LOGSEGMENT_INDEX_INTERVAL, interval);
+        return this;
+    }
+
     //
     // DL Durability Settings
     //
@@ -1904,6 +2125,65 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the max number of bytes kept by the pool of transmit buffers shared
+     * by the writers of a namespace.
+     * <p>If the setting is set with a positive value, the writers allocate their
+     * transmit buffers from a shared pool and recycle them after the buffers are
+     * acknowledged by bookkeeper, which reduces the garbage produced by the write path.
+     * When the ack quorum size is smaller than the write quorum size, an entry might still
+     * be sent to the remaining bookies after it is acknowledged, so the writers of such
+     * log segments don't pool their transmit buffers.
+     * By default it is 0, which means transmit buffers are not pooled.
+     *
+     * @return max number of bytes kept by the pool of transmit buffers.
+     */
+    public long getWriterBufferPoolSizeBytes() {
+        return getLong(BKDL_WRITER_BUFFER_POOL_SIZE_BYTES, BKDL_WRITER_BUFFER_POOL_SIZE_BYTES_DEFAULT);
+    }
+
+    /**
+     * Set the max number of bytes kept by the pool of transmit buffers shared
+     * by the writers of a namespace.
+     *
+     * @param sizeBytes max number of bytes kept by the pool of transmit buffers.
+     * @return distributed log configuration
+     * @see #getWriterBufferPoolSizeBytes()
+     */
+    public DistributedLogConfiguration setWriterBufferPoolSizeBytes(long sizeBytes) {
+        setProperty(BKDL_WRITER_BUFFER_POOL_SIZE_BYTES, sizeBytes);
+        return this;
+    }
+
+    /**
+     * Get the target p99 write latency of the adaptive transmit batching, in milliseconds.
+     * <p>If the setting is set with a positive value, the log segment writers pick the
+     * transmission threshold and the flush delay by themselves, from the observed add latency
+     * of bookkeeper, the number of outstanding transmits and the incoming record rate, so the
+     * estimated p99 latency stays within the target. It gives large batches under load and
+     * immediate flushes when a stream is idle, and it overrides {@link #getOutputBufferSize()}
+     * and {@link #getMinDelayBetweenImmediateFlushMs()} for data transmits.
+     * <p>By default it is 0, which means adaptive batching is disabled.
+     *
+     * @return target p99 write latency in milliseconds.
+     */
+    public int getWriterAdaptiveBatchingTargetLatencyMs() {
+        return getInt(BKDL_WRITER_ADAPTIVE_BATCHING_TARGET_LATENCY_MS,
+                BKDL_WRITER_ADAPTIVE_BATCHING_TARGET_LATENCY_MS_DEFAULT);
+    }
+
+    /**
+     * Set the target p99 write latency of the adaptive transmit batching, in milliseconds.
+     *
+     * @param targetLatencyMs target p99 write latency in milliseconds.
+     * @return distributed log configuration
+     * @see #getWriterAdaptiveBatchingTargetLatencyMs()
+     */
+    public DistributedLogConfiguration setWriterAdaptiveBatchingTargetLatencyMs(int targetLatencyMs) {
+        setProperty(BKDL_WRITER_ADAPTIVE_BATCHING_TARGET_LATENCY_MS, targetLatencyMs);
+        return this;
+    }
+
     /**
      * Get Periodic Log Flush Frequency in milliseconds.
      * <p>If the setting is set with a positive value, the data in output buffer
@@ -2411,6 +2691,174 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the max bytes of outstanding writes across all the writers of a namespace.
+     * <p>Outstanding writes are the records written but not yet acknowledged by bookkeeper.
+     * If the setting is set with a positive value when the namespace is built, the byte based
+     * write limiting is enabled, and the limit could be changed via dynamic configuration
+     * afterwards. Once more than half of the limit is used, each writer is limited to its
+     * fair share of the limit. By default it is disabled.
+     *
+     * @return the max bytes of outstanding writes of a namespace
+     * @see #getPerWriterOutstandingWriteBytesLimit()
+     * @see #getOutstandingWriteBytesLimitWaitEnabled()
+     */
+    public long getGlobalOutstandingWriteBytesLimit() {
+        return getLong(BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT,
+                BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT_DEFAULT);
+    }
+
+    /**
+     * Set the max bytes of outstanding writes across all the writers of a namespace.
+     *
+     * @param limit
+     *          max bytes of outstanding writes of a namespace
+     * @return dl configuration
+     * @see #getGlobalOutstandingWriteBytesLimit()
+     */
+    public DistributedLogConfiguration setGlobalOutstandingWriteBytesLimit(long limit) {
+        setProperty(BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT, limit);
+        return this;
+    }
+
+    /**
+     * Get the max bytes of outstanding writes per writer.
+     * <p>It only takes effect when the namespace level byte based write limiting is enabled.
+     * A writer without outstanding writes is always allowed to write one record, no matter
+     * how large it is. By default it is disabled, and a writer is only bounded by its fair
+     * share of {@link #getGlobalOutstandingWriteBytesLimit()}.
+     *
+     * @return the max bytes of outstanding writes per writer
+     * @see #getGlobalOutstandingWriteBytesLimit()
+     */
+    public long getPerWriterOutstandingWriteBytesLimit() {
+        return getLong(BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT,
+                BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT_DEFAULT);
+    }
+
+    /**
+     * Set the max bytes of outstanding writes per writer.
+     *
+     * @param limit
+     *          max bytes of outstanding writes per writer
+     * @return dl configuration
+     * @see #getPerWriterOutstandingWriteBytesLimit()
+     */
+    public DistributedLogConfiguration setPerWriterOutstandingWriteBytesLimit(long limit) {
+        setProperty(BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT, limit);
+        return this;
+    }
+
+    /**
+     * Whether writes over the byte based write limits wait for outstanding writes to complete.
+     * <p>If it is enabled, the future of a write over the limits is satisfied after the write
+     * is admitted and completed. Otherwise, the write is rejected immediately with
+     * {@link com.twitter.distributedlog.exceptions.OverCapacityException}.
+     * <p>By default it is disabled.
+     *
+     * @return true if writes over the limits wait, false if they are rejected.
+     * @see #getGlobalOutstandingWriteBytesLimit()
+     */
+    public boolean getOutstandingWriteBytesLimitWaitEnabled() {
+        return getBoolean(BKDL_OUTSTANDING_WRITE_BYTES_LIMIT_WAIT_ENABLED,
+                BKDL_OUTSTANDING_WRITE_BYTES_LIMIT_WAIT_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Enable or disable waiting for outstanding writes when writes are over the byte based write limits.
+     *
+     * @param enabled
+     *          flag whether writes over the limits wait
+     * @return dl configuration
+     * @see #getOutstandingWriteBytesLimitWaitEnabled()
+     */
+    public DistributedLogConfiguration setOutstandingWriteBytesLimitWaitEnabled(boolean enabled) {
+        setProperty(BKDL_OUTSTANDING_WRITE_BYTES_LIMIT_WAIT_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether to group commit the concurrent {@link AppendOnlyStreamWriter#force(boolean)} calls.
+     * <p>If enabled, the force calls made while a commit is outstanding or within
+     * {@link #getAppendOnlyStreamWriterGroupCommitWindowMs()} share a single flush and commit of
+     * the log writer, instead of issuing one commit each.
+     * <p>The default value is false.
+     *
+     * @return true if group commit is enabled, otherwise false.
+     */
+    public boolean getAppendOnlyStreamWriterGroupCommitEnabled() {
+        return getBoolean(BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_ENABLED,
+                BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Enable or disable group commit of the append only stream writers.
+     *
+     * @param enabled
+     *          flag whether to enable group commit.
+     * @return distributedlog configuration
+     * @see #getAppendOnlyStreamWriterGroupCommitEnabled()
+     */
+    public DistributedLogConfiguration setAppendOnlyStreamWriterGroupCommitEnabled(boolean enabled) {
+        setProperty(BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the time in milliseconds that a group commit waits for more force calls to join
+     * before it is issued, when there isn't any outstanding commit.
+     * <p>The wait is bounded by this window and ends early once
+     * {@link #getAppendOnlyStreamWriterGroupCommitMaxCallers()} callers joined the commit. If it is
+     * not positive, a commit is issued immediately when there isn't any outstanding commit, and
+     * only the force calls made while a commit is outstanding are grouped.
+     * <p>The default value is 0.
+     *
+     * @return group commit window in milliseconds.
+     */
+    public int getAppendOnlyStreamWriterGroupCommitWindowMs() {
+        return getInt(BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_WINDOW_MS,
+                BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_WINDOW_MS_DEFAULT);
+    }
+
+    /**
+     * Set the time in milliseconds that a group commit waits for more force calls to join.
+     *
+     * @param windowMs
+     *          group commit window in milliseconds.
+     * @return distributedlog configuration
+     * @see #getAppendOnlyStreamWriterGroupCommitWindowMs()
+     */
+    public DistributedLogConfiguration setAppendOnlyStreamWriterGroupCommitWindowMs(int windowMs) {
+        setProperty(BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_WINDOW_MS, windowMs);
+        return this;
+    }
+
+    /**
+     * Get the number of force calls that issue a pending group commit without waiting for the
+     * rest of the group commit window.
+     * <p>The default value is 64.
+     *
+     * @return max number of callers of a group commit.
+     * @see #getAppendOnlyStreamWriterGroupCommitWindowMs()
+     */
+    public int getAppendOnlyStreamWriterGroupCommitMaxCallers() {
+        return getInt(BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_MAX_CALLERS,
+                BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_MAX_CALLERS_DEFAULT);
+    }
+
+    /**
+     * Set the number of force calls that issue a pending group commit.
+     *
+     * @param maxCallers
+     *          max number of callers of a group commit.
+     * @return distributedlog configuration
+     * @see #getAppendOnlyStreamWriterGroupCommitMaxCallers()
+     */
+    public DistributedLogConfiguration setAppendOnlyStreamWriterGroupCommitMaxCallers(int maxCallers) {
+        setProperty(BKDL_APPEND_ONLY_STREAM_WRITER_GROUP_COMMIT_MAX_CALLERS, maxCallers);
+        return this;
+    }
+
     //
     // DL Reader General Settings
     //
@@ -2459,6 +2907,88 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the flag whether to enable zero-copy reads.
+     * <p>If enabled, the payloads of the records returned to readers are read-only slices
+     * of the entries read from bookkeeper (see {@link LogRecord#getPayloadBuffer()}),
+     * rather than one byte array copied per record. The payload byte array is only
+     * materialized when {@link LogRecord#getPayload()} is called.
+     * <p>The default value is false.
+     *
+     * @return true if zero-copy reads are enabled, otherwise false.
+     */
+    public boolean getReaderZeroCopyEnabled() {
+        return getBoolean(BKDL_READER_ZERO_COPY_ENABLED, BKDL_READER_ZERO_COPY_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Enable or disable zero-copy reads.
+     *
+     * @param enabled
+     *          flag whether to enable zero-copy reads
+     * @return distributedlog configuration
+     * @see #getReaderZeroCopyEnabled()
+     */
+    public DistributedLogConfiguration setReaderZeroCopyEnabled(boolean enabled) {
+        setProperty(BKDL_READER_ZERO_COPY_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the number of records prefetched by the block reads of {@link AppendOnlyStreamReader}.
+     * <p>If it is positive, the append only stream reader prefetches records asynchronously in
+     * batches of this size, serves reads from the payload buffers of the prefetched records and
+     * seeks to byte positions through the transaction id index of the log segments. Otherwise,
+     * it reads records one by one through a synchronous log reader.
+     * <p>The default value is 0.
+     *
+     * @return number of records prefetched by the append only stream reader.
+     */
+    public int getAppendOnlyStreamReaderPrefetchRecords() {
+        return getInt(BKDL_APPEND_ONLY_STREAM_READER_PREFETCH_RECORDS,
+                BKDL_APPEND_ONLY_STREAM_READER_PREFETCH_RECORDS_DEFAULT);
+    }
+
+    /**
+     * Set the number of records prefetched by the block reads of {@link AppendOnlyStreamReader}.
+     *
+     * @param numRecords
+     *          number of records prefetched, 0 to disable block reads.
+     * @return distributedlog configuration
+     * @see #getAppendOnlyStreamReaderPrefetchRecords()
+     */
+    public DistributedLogConfiguration setAppendOnlyStreamReaderPrefetchRecords(int numRecords) {
+        setProperty(BKDL_APPEND_ONLY_STREAM_READER_PREFETCH_RECORDS, numRecords);
+        return this;
+    }
+
+    /**
+     * Get the time in milliseconds that the block reads of {@link AppendOnlyStreamReader} wait
+     * for prefetched records before returning the bytes read so far.
+     * <p>The default value is 100 milliseconds.
+     *
+     * @return wait time in milliseconds.
+     * @see #getAppendOnlyStreamReaderPrefetchRecords()
+     */
+    public int getAppendOnlyStreamReaderWaitTimeMs() {
+        return getInt(BKDL_APPEND_ONLY_STREAM_READER_WAIT_TIME_MS,
+                BKDL_APPEND_ONLY_STREAM_READER_WAIT_TIME_MS_DEFAULT);
+    }
+
+    /**
+     * Set the time in milliseconds that the block reads of {@link AppendOnlyStreamReader} wait
+     * for prefetched records.
+     *
+     * @param waitTimeMs
+     *          wait time in milliseconds.
+     * @return distributedlog configuration
+     * @see #getAppendOnlyStreamReaderWaitTimeMs()
+     */
+    public DistributedLogConfiguration setAppendOnlyStreamReaderWaitTimeMs(int waitTimeMs) {
+        setProperty(BKDL_APPEND_ONLY_STREAM_READER_WAIT_TIME_MS, waitTimeMs);
+        return this;
+    }
+
     //
     // Idle reader settings
     //
@@ -2647,6 +3177,141 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the flag whether to cache the readahead entries off heap.
+     * <p>If enabled, the raw bytes of the entries read ahead are kept in direct memory,
+     * and only decoded when the reader consumes them. The direct memory used by all the
+     * readers of a namespace is bounded by {@link #getReadAheadCacheMaxBytes()}. Readers
+     * pause reading ahead when the budget is exhausted, in addition to
+     * {@link #getReadAheadMaxRecords()}.
+     * <p>The default value is false.
+     *
+     * @return true if the readahead entries are cached off heap, otherwise false.
+     */
+    public boolean getReadAheadCacheOffHeapEnabled() {
+        return getBoolean(BKDL_READAHEAD_CACHE_OFFHEAP_ENABLED, BKDL_READAHEAD_CACHE_OFFHEAP_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Enable or disable caching readahead entries off heap.
+     *
+     * @param enabled
+     *          flag whether to cache the readahead entries off heap.
+     * @return distributedlog configuration
+     * @see #getReadAheadCacheOffHeapEnabled()
+     */
+    public DistributedLogConfiguration setReadAheadCacheOffHeapEnabled(boolean enabled) {
+        setProperty(BKDL_READAHEAD_CACHE_OFFHEAP_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max bytes of direct memory used for caching readahead entries.
+     * <p>The budget is owned by the namespace and shared across all its readers.
+     * It only takes effect when {@link #getReadAheadCacheOffHeapEnabled()} is true.
+     * <p>The default value is 256MB.
+     *
+     * @return max bytes of direct memory used for caching readahead entries.
+     */
+    public long getReadAheadCacheMaxBytes() {
+        return getLong(BKDL_READAHEAD_CACHE_MAX_BYTES, BKDL_READAHEAD_CACHE_MAX_BYTES_DEFAULT);
+    }
+
+    /**
+     * Set the max bytes of direct memory used for caching readahead entries.
+     *
+     * @param maxBytes
+     *          max bytes of direct memory used for caching readahead entries.
+     * @return distributedlog configuration
+     * @see #getReadAheadCacheMaxBytes()
+     */
+    public DistributedLogConfiguration setReadAheadCacheMaxBytes(long maxBytes) {
+        setProperty(BKDL_READAHEAD_CACHE_MAX_BYTES, maxBytes);
+        return this;
+    }
+
+    /**
+     * Get the max bytes of the entry cache shared by the readers of a namespace.
+     * <p>If it is positive, the readers of a namespace share a cache of the entries read
+     * from bookkeeper, keyed by ledger id and entry id. Readers consult the cache before
+     * reading an entry, and concurrent reads of the same entry are coalesced into one read.
+     * It helps when multiple readers read the same stream in the same process, e.g. catch-up
+     * readers trailing a tailing reader are served from memory.
+     * <p>The default value is 0, which disables the entry cache.
+     *
+     * @return max bytes of the entry cache.
+     */
+    public long getReadEntryCacheMaxBytes() {
+        return getLong(BKDL_READ_ENTRY_CACHE_MAX_BYTES, BKDL_READ_ENTRY_CACHE_MAX_BYTES_DEFAULT);
+    }
+
+    /**
+     * Set the max bytes of the entry cache shared by the readers of a namespace.
+     *
+     * @param maxBytes
+     *          max bytes of the entry cache. 0 disables the entry cache.
+     * @return distributedlog configuration
+     * @see #getReadEntryCacheMaxBytes()
+     */
+    public DistributedLogConfiguration setReadEntryCacheMaxBytes(long maxBytes) {
+        setProperty(BKDL_READ_ENTRY_CACHE_MAX_BYTES, maxBytes);
+        return this;
+    }
+
+    /**
+     * Get the eviction policy of the entry cache shared by the readers of a namespace.
+     * <p>It could be <i>lru</i> (least recently used) or <i>slru</i> (segmented lru, which
+     * protects the entries read more than once from being evicted by one-off reads).
+     * <p>The default value is <i>lru</i>.
+     *
+     * @return eviction policy of the entry cache.
+     * @see #getReadEntryCacheMaxBytes()
+     */
+    public String getReadEntryCacheEvictionPolicy() {
+        return getString(BKDL_READ_ENTRY_CACHE_EVICTION_POLICY, BKDL_READ_ENTRY_CACHE_EVICTION_POLICY_DEFAULT);
+    }
+
+    /**
+     * Set the eviction policy of the entry cache shared by the readers of a namespace.
+     *
+     * @param policy
+     *          eviction policy of the entry cache, <i>lru</i> or <i>slru</i>.
+     * @return distributedlog configuration
+     * @see #getReadEntryCacheEvictionPolicy()
+     */
+    public DistributedLogConfiguration setReadEntryCacheEvictionPolicy(String policy) {
+        setProperty(BKDL_READ_ENTRY_CACHE_EVICTION_POLICY, policy);
+        return this;
+    }
+
+    /**
+     * Get the max records cached by the readahead of all the streams read by a multi stream reader.
+     * <p>A {@link MultiStreamReader} shares this budget across the streams it reads, in addition
+     * to {@link #getReadAheadMaxRecords()} per stream. A stream reserves the budget of a readahead
+     * batch ({@link #getReadAheadBatchSize()}) before each read, and pauses reading ahead when the
+     * budget left isn't enough for a batch, until the cached records of any stream are consumed.
+     * <p>The default value is 10000.
+     *
+     * @return max records cached by the readahead of a multi stream reader.
+     */
+    public int getMultiStreamReaderReadAheadMaxRecords() {
+        return getInt(BKDL_MULTI_STREAM_READER_READAHEAD_MAX_RECORDS,
+                BKDL_MULTI_STREAM_READER_READAHEAD_MAX_RECORDS_DEFAULT);
+    }
+
+    /**
+     * Set the max records cached by the readahead of all the streams read by a multi stream reader.
+     *
+     * @param maxRecords
+     *          max records cached by the readahead of a multi stream reader.
+     * @return distributedlog configuration
+     * @see #getMultiStreamReaderReadAheadMaxRecords()
+     */
+    public DistributedLogConfiguration setMultiStreamReaderReadAheadMaxRecords(int maxRecords) {
+        setProperty(BKDL_MULTI_STREAM_READER_READAHEAD_MAX_RECORDS, maxRecords);
+        return this;
+    }
+
     /**
      * Get number of entries read as a batch by readahead worker.
      * <p>The default value is 2. Increase the value to increase the concurrency
@@ -3045,6 +3710,31 @@ public class DistributedLogConfiguration extends CompositeConfiguration {
         return this;
     }
 
+    /**
+     * Get the sample rate of tracing task execution. One out of every <i>sampleRate</i>
+     * tasks is traced. It only applies to the striped scheduler.
+     *
+     * @return sample rate of tracing task execution.
+     * @see #isStripedSchedulerEnabled()
+     */
+    public int getTaskExecutionTraceSampleRate() {
+        return getInt(BKDL_TASK_EXECUTION_TRACE_SAMPLE_RATE, BKDL_TASK_EXECUTION_TRACE_SAMPLE_RATE_DEFAULT);
+    }
+
+    /**
+     * Set the sample rate of tracing task execution.
+     *
+     * @see #getTaskExecutionTraceSampleRate()
+     *
+     * @param sampleRate
+     *          sample rate of tracing task execution.
+     * @return dl configuration.
+     */
+    public DistributedLogConfiguration setTaskExecutionTraceSampleRate(int sampleRate) {
+        setProperty(BKDL_TASK_EXECUTION_TRACE_SAMPLE_RATE, sampleRate);
+        return this;
+    }
+
     /**
      * Whether to enable per stream stat or not.
      *
@@ -140,6 +140,22 @@ public interface DistributedLogManager extends AsyncCloseable, Closeable {
      */
     public Future<AsyncLogReader> openAsyncLogReader(DLSN fromDLSN);
 
+    /**
+     * Open an async log reader to read records from a log starting from the first record
+     * written at or after <code>timestampMs</code>.
+     *
+     * <p>The time of a record is the time that the writer appended it. The reader may start
+     * slightly before the first record written at <code>timestampMs</code>, but it never skips it:
+     * the position is as precise as the sparse index of the log segment (see
+     * {@link DistributedLogConfiguration#getLogSegmentIndexInterval()}), and falls back to the
+     * start of the log segment if the log segment isn't indexed.
+     *
+     * @param timestampMs
+     *          timestamp in milliseconds to start reading from
+     * @return async log reader
+     */
+    public Future<AsyncLogReader> openAsyncLogReaderAtTime(long timestampMs);
+
     // @Deprecated
     public AsyncLogReader getAsyncLogReader(long fromTxnId) throws IOException;
 
@@ -19,8 +19,10 @@ package com.twitter.distributedlog;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
 import com.twitter.distributedlog.exceptions.LogRecordTooLongException;
 import com.twitter.distributedlog.exceptions.WriteException;
+import com.twitter.distributedlog.io.BufferPool;
 import com.twitter.distributedlog.io.CompressionCodec;
 import com.twitter.util.Promise;
 import org.apache.bookkeeper.stats.NullStatsLogger;
@@ -57,11 +59,45 @@ public class Entry {
             boolean envelopeBeforeTransmit,
             CompressionCodec.Type codec,
             StatsLogger statsLogger) {
+        return newEntry(
+                logName,
+                initialBufferSize,
+                envelopeBeforeTransmit,
+                codec,
+                null,
+                statsLogger);
+    }
+
+    /**
+     * Create a new log record set whose buffers are allocated from <code>bufferPool</code>.
+     *
+     * @param logName
+     *          name of the log
+     * @param initialBufferSize
+     *          initial buffer size
+     * @param envelopeBeforeTransmit
+     *          if envelope the buffer before transmit
+     * @param codec
+     *          compression codec
+     * @param bufferPool
+     *          pool to allocate buffers from. if it is null, buffers are not pooled.
+     * @param statsLogger
+     *          stats logger to receive stats
+     * @return writer to build a log record set.
+     */
+    public static Writer newEntry(
+            String logName,
+            int initialBufferSize,
+            boolean envelopeBeforeTransmit,
+            CompressionCodec.Type codec,
+            @Nullable BufferPool bufferPool,
+            StatsLogger statsLogger) {
         return new EnvelopedEntryWriter(
                 logName,
                 initialBufferSize,
                 envelopeBeforeTransmit,
                 codec,
+                bufferPool,
                 statsLogger);
     }
 
@@ -87,6 +123,7 @@ public class Entry {
         private Optional<Long> txidToSkipTo = Optional.absent();
         private Optional<DLSN> dlsnToSkipTo = Optional.absent();
         private boolean deserializeRecordSet = true;
+        private boolean zeroCopy = false;
 
         private Builder() {}
 
@@ -108,6 +145,7 @@ public class Entry {
             length = -1;
             txidToSkipTo = Optional.absent();
             dlsnToSkipTo = Optional.absent();
+            zeroCopy = false;
             return this;
         }
 
@@ -217,6 +255,24 @@ public class Entry {
             return this;
         }
 
+        /**
+         * Enable/disable zero-copy reads.
+         *
+         * <p>If enabled, the payloads of the records read from this record set are
+         * read-only slices of the decompressed entry (see {@link LogRecord#getPayloadBuffer()})
+         * rather than copies. The serialized bytes data shouldn't be modified after the
+         * record set is built. If the record set is provided as an input stream, it is
+         * drained into a single array first.
+         *
+         * @param enabled
+         *          flag to enable/disable zero-copy reads.
+         * @return builder
+         */
+        public Builder zeroCopy(boolean enabled) {
+            this.zeroCopy = enabled;
+            return this;
+        }
+
         public Entry build() {
             Preconditions.checkNotNull(data, "Serialized data isn't provided");
             Preconditions.checkArgument(offset >= 0 && length >= 0
@@ -228,6 +284,7 @@ public class Entry {
                     startSequenceId,
                     envelopeEntry,
                     deserializeRecordSet,
+                    zeroCopy,
                     data,
                     offset,
                     length,
@@ -238,6 +295,29 @@ public class Entry {
         public Entry.Reader buildReader() throws IOException {
             Preconditions.checkArgument(data != null || in != null,
                     "Serialized data or input stream isn't provided");
+            if (zeroCopy) {
+                byte[] data = this.data;
+                int offset = this.offset;
+                int length = this.length;
+                if (null == data) {
+                    data = ByteStreams.toByteArray(this.in);
+                    offset = 0;
+                    length = data.length;
+                }
+                Preconditions.checkArgument(offset >= 0 && length >= 0
+                                && (offset + length) <= data.length,
+                        "Invalid offset or length of serialized data");
+                return new EnvelopedEntryReader(
+                        logSegmentSequenceNumber,
+                        entryId,
+                        startSequenceId,
+                        data,
+                        offset,
+                        length,
+                        envelopeEntry,
+                        deserializeRecordSet,
+                        NullStatsLogger.INSTANCE);
+            }
             InputStream in;
             if (null != this.in) {
                 in = this.in;
@@ -264,6 +344,7 @@ public class Entry {
     private final long startSequenceId;
     private final boolean envelopedEntry;
     private final boolean deserializeRecordSet;
+    private final boolean zeroCopy;
     private final byte[] data;
     private final int offset;
     private final int length;
@@ -275,6 +356,7 @@ public class Entry {
                   long startSequenceId,
                   boolean envelopedEntry,
                   boolean deserializeRecordSet,
+                  boolean zeroCopy,
                   byte[] data,
                   int offset,
                   int length,
@@ -285,6 +367,7 @@ public class Entry {
         this.startSequenceId = startSequenceId;
         this.envelopedEntry = envelopedEntry;
         this.deserializeRecordSet = deserializeRecordSet;
+        this.zeroCopy = zeroCopy;
         this.data = data;
         this.offset = offset;
         this.length = length;
@@ -308,15 +391,29 @@ public class Entry {
      * @throws IOException if the record set is invalid record set.
      */
     public Reader reader() throws IOException {
-        InputStream in = new ByteArrayInputStream(data, offset, length);
-        Reader reader = new EnvelopedEntryReader(
-                logSegmentSequenceNumber,
-                entryId,
-                startSequenceId,
-                in,
-                envelopedEntry,
-                deserializeRecordSet,
-                NullStatsLogger.INSTANCE);
+        Reader reader;
+        if (zeroCopy) {
+            reader = new EnvelopedEntryReader(
+                    logSegmentSequenceNumber,
+                    entryId,
+                    startSequenceId,
+                    data,
+                    offset,
+                    length,
+                    envelopedEntry,
+                    deserializeRecordSet,
+                    NullStatsLogger.INSTANCE);
+        } else {
+            InputStream in = new ByteArrayInputStream(data, offset, length);
+            reader = new EnvelopedEntryReader(
+                    logSegmentSequenceNumber,
+                    entryId,
+                    startSequenceId,
+                    in,
+                    envelopedEntry,
+                    deserializeRecordSet,
+                    NullStatsLogger.INSTANCE);
+        }
         if (txidToSkipTo.isPresent()) {
             reader.skipTo(txidToSkipTo.get());
         }
@@ -67,4 +67,11 @@ public interface EntryBuffer extends TransmitListener {
      */
     Buffer getBuffer() throws InvalidEnvelopedEntryException, IOException;
 
+    /**
+     * Release the buffers held by this record set.
+     * <p>The buffer returned by {@link #getBuffer()} must not be accessed after
+     * the record set is released. Releasing a record set multiple times is a no-op.
+     */
+    void release();
+
 }
@@ -20,8 +20,10 @@ package com.twitter.distributedlog;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import com.google.common.base.Preconditions;
 
@@ -76,6 +78,9 @@ public class EnvelopedEntry {
     public static final byte HIGHEST_SUPPORTED_VERSION = VERSION_ONE;
     public static final byte CURRENT_VERSION = VERSION_ONE;
 
+    // Version + Header (Flags + Original Payload Size) + Payload Length
+    public static final int HEADER_LENGTH = VERSION_LENGTH + 4 + 4 + 4;
+
     private final OpStatsLogger compressionStat;
     private final OpStatsLogger decompressionStat;
     private final Counter compressedEntryBytes;
@@ -152,6 +157,35 @@ public class EnvelopedEntry {
         payloadCompressed.write(out);
     }
 
+    /**
+     * Envelope an uncompressed payload in place.
+     *
+     * <p>The first {@link #HEADER_LENGTH} bytes of the array passed as the decompressed
+     * payload are expected to be reserved for the envelope, and followed by the payload.
+     * The envelope is written into the reserved bytes, so the array could be transmitted
+     * as it is, without copying the payload.
+     *
+     * @throws IOException if the entry isn't ready or the entry is compressed.
+     */
+    public void writeHeaderInPlace() throws IOException {
+        if (!isReady()) {
+            throw new IOException("Entry not writable");
+        }
+        if (CompressionCodec.Type.NONE != header.compressionType) {
+            throw new IOException("Compressed entry " + header.compressionType + " can't be enveloped in place");
+        }
+        ByteBuffer out = ByteBuffer.wrap(payloadDecompressed.payload, 0, HEADER_LENGTH);
+        // Version
+        out.put(version);
+        // Header
+        out.putInt(header.flags);
+        out.putInt(header.decompressedSize);
+        // Payload Length
+        out.putInt(payloadDecompressed.length);
+        this.compressedEntryBytes.add(payloadDecompressed.length);
+        this.decompressedEntryBytes.add(payloadDecompressed.length);
+    }
+
     @Compression
     public void readFully(DataInputStream in) throws IOException {
         Preconditions.checkNotNull(in);
@@ -176,6 +210,56 @@ public class EnvelopedEntry {
         this.decompressedEntryBytes.add(payloadDecompressed.length);
     }
 
+    /**
+     * Read the entry from <code>in</code> and return the decompressed payload.
+     *
+     * <p>If the payload isn't compressed, the returned buffer is a slice of <code>in</code>
+     * rather than a copy. Otherwise the payload is decompressed once into a new array.
+     *
+     * @param in buffer to read the entry from. it should be backed by an accessible array.
+     * @return the decompressed payload.
+     * @throws IOException if the entry is invalid.
+     */
+    @Compression
+    public ByteBuffer readPayloadBuffer(ByteBuffer in) throws IOException {
+        Preconditions.checkNotNull(in);
+        Preconditions.checkArgument(in.hasArray(), "Buffer should be backed by an accessible array");
+        if (in.remaining() < HEADER_LENGTH) {
+            throw new EOFException("Enveloped entry is corrupt: Expected at least " + HEADER_LENGTH
+                    + " bytes but only " + in.remaining() + " bytes left");
+        }
+        // Make sure we're reading the right versioned entry.
+        byte version = in.get();
+        if (version != this.version) {
+            throw new IOException(String.format("Version mismatch while reading. Received: %d," +
+                    " Required: %d", version, this.version));
+        }
+        header.read(in.getInt(), in.getInt());
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new EOFException("Enveloped entry is corrupt: Invalid payload length " + length);
+        }
+        ByteBuffer decompressed;
+        if (CompressionCodec.Type.NONE == header.compressionType) {
+            decompressed = in.slice();
+            decompressed.limit(length);
+        } else {
+            CompressionCodec codec = CompressionUtils.getCompressionCodec(header.compressionType);
+            byte[] data = codec.decompress(
+                    in.array(),
+                    in.arrayOffset() + in.position(),
+                    length,
+                    header.decompressedSize,
+                    decompressionStat);
+            this.payloadDecompressed = new Payload(data.length, data);
+            decompressed = ByteBuffer.wrap(data);
+        }
+        in.position(in.position() + length);
+        this.compressedEntryBytes.add(length);
+        this.decompressedEntryBytes.add(decompressed.remaining());
+        return decompressed;
+    }
+
     public byte[] getDecompressedPayload() throws IOException {
         if (!isReady()) {
             throw new IOException("Decompressed payload is not initialized");
@@ -227,7 +311,13 @@ public class EnvelopedEntry {
         }
 
         private void read(DataInputStream in) throws IOException {
-            this.flags = in.readInt();
+            int flags = in.readInt();
+            int decompressedSize = in.readInt();
+            read(flags, decompressedSize);
+        }
+
+        private void read(int flags, int decompressedSize) throws IOException {
+            this.flags = flags;
             int compressionType = (int) BitMaskUtils.get(flags, COMPRESSION_CODEC_MASK);
             if (compressionType == COMPRESSION_CODEC_NONE) {
                 this.compressionType = CompressionCodec.Type.NONE;
@@ -237,7 +327,7 @@ public class EnvelopedEntry {
                 throw new IOException(String.format("Unsupported Compression Type: %s",
                                                     compressionType));
             }
-            this.decompressedSize = in.readInt();
+            this.decompressedSize = decompressedSize;
             // Values can now be read.
             this.ready = true;
         }
@@ -293,4 +383,23 @@ public class EnvelopedEntry {
         return new ByteArrayInputStream(entry.getDecompressedPayload());
     }
 
+    /**
+     * Return the decompressed payload of the entry read from the provided buffer.
+     *
+     * <p>Unlike {@link #fromInputStream(InputStream, StatsLogger)}, the payload of an
+     * uncompressed entry isn't copied.
+     *
+     * @return the decompressed payload.
+     * @throws IOException if the entry is invalid.
+     */
+    public static ByteBuffer fromByteBuffer(ByteBuffer src,
+                                            StatsLogger statsLogger) throws IOException {
+        if (!src.hasRemaining()) {
+            throw new EOFException("Enveloped entry is empty");
+        }
+        byte version = src.get(src.position());
+        EnvelopedEntry entry = new EnvelopedEntry(version, statsLogger);
+        return entry.readPayloadBuffer(src);
+    }
+
 }
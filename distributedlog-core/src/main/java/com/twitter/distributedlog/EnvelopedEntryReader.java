@@ -22,6 +22,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Record reader to read records from an enveloped entry buffer.
@@ -56,6 +57,37 @@ class EnvelopedEntryReader implements Entry.Reader, RecordStream {
                 deserializeRecordSet);
     }
 
+    /**
+     * Construct a zero-copy reader to read records from <code>data</code>.
+     *
+     * <p>The payloads of the records returned by this reader are slices of the
+     * decompressed entry, so the provided array shouldn't be modified after this call.
+     */
+    EnvelopedEntryReader(long logSegmentSeqNo,
+                         long entryId,
+                         long startSequenceId,
+                         byte[] data,
+                         int offset,
+                         int length,
+                         boolean envelopedEntry,
+                         boolean deserializeRecordSet,
+                         StatsLogger statsLogger)
+            throws IOException {
+        this.logSegmentSeqNo = logSegmentSeqNo;
+        this.entryId = entryId;
+        ByteBuffer src = ByteBuffer.wrap(data, offset, length);
+        if (envelopedEntry) {
+            src = EnvelopedEntry.fromByteBuffer(src, statsLogger);
+        }
+        this.reader = new LogRecord.Reader(
+                this,
+                src.array(),
+                src.arrayOffset() + src.position(),
+                src.remaining(),
+                startSequenceId,
+                deserializeRecordSet);
+    }
+
     @Override
     public long getLSSN() {
         return logSegmentSeqNo;
@@ -23,19 +23,19 @@ import com.twitter.distributedlog.exceptions.LogRecordTooLongException;
 import com.twitter.distributedlog.exceptions.WriteCancelledException;
 import com.twitter.distributedlog.exceptions.WriteException;
 import com.twitter.distributedlog.io.Buffer;
+import com.twitter.distributedlog.io.BufferPool;
 import com.twitter.distributedlog.io.CompressionCodec;
 import com.twitter.util.Promise;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
-import static com.twitter.distributedlog.LogRecord.MAX_LOGRECORD_SIZE;
-
 /**
  * {@link com.twitter.distributedlog.io.Buffer} based log record set writer.
  */
@@ -56,23 +56,36 @@ class EnvelopedEntryWriter implements Writer {
     }
 
     private final String logName;
+    private final BufferPool bufferPool;
     private final Buffer buffer;
     private final LogRecord.Writer writer;
     private final List<WriteRequest> writeRequests;
     private final boolean envelopeBeforeTransmit;
+    private final boolean envelopeInPlace;
+    private final int reservedBytes;
     private final CompressionCodec.Type codec;
     private final StatsLogger statsLogger;
     private int count = 0;
     private boolean hasUserData = false;
     private long maxTxId = Long.MIN_VALUE;
+    // the buffer to transmit
+    private Buffer toSend = null;
+    private boolean released = false;
 
     EnvelopedEntryWriter(String logName,
                          int initialBufferSize,
                          boolean envelopeBeforeTransmit,
                          CompressionCodec.Type codec,
+                         @Nullable BufferPool bufferPool,
                          StatsLogger statsLogger) {
         this.logName = logName;
-        this.buffer = new Buffer(initialBufferSize * 6 / 5);
+        this.bufferPool = bufferPool;
+        // uncompressed entries are enveloped in place, so the header is reserved
+        // ahead of the records and the buffer is transmitted without copying.
+        this.envelopeInPlace = envelopeBeforeTransmit && CompressionCodec.Type.NONE == codec;
+        this.reservedBytes = envelopeInPlace ? EnvelopedEntry.HEADER_LENGTH : 0;
+        this.buffer = allocateBuffer(initialBufferSize * 6 / 5 + reservedBytes);
+        this.buffer.reserve(reservedBytes);
         this.writer = new LogRecord.Writer(new DataOutputStream(buffer));
         this.writeRequests = new LinkedList<WriteRequest>();
         this.envelopeBeforeTransmit = envelopeBeforeTransmit;
@@ -80,23 +93,28 @@ class EnvelopedEntryWriter implements Writer {
         this.statsLogger = statsLogger;
     }
 
+    private Buffer allocateBuffer(int initialCapacity) {
+        if (null == bufferPool) {
+            return new Buffer(initialCapacity);
+        } else {
+            return bufferPool.allocate(initialCapacity);
+        }
+    }
+
     @Override
     public synchronized void reset() {
         cancelPromises(new WriteCancelledException(logName, "Record Set is reset"));
         count = 0;
+        releaseBufferToSend();
         this.buffer.reset();
+        this.buffer.reserve(reservedBytes);
     }
 
     @Override
     public synchronized void writeRecord(LogRecord record,
                                          Promise<DLSN> transmitPromise)
             throws LogRecordTooLongException, WriteException {
-        int logRecordSize = record.getPersistentSize();
-        if (logRecordSize > MAX_LOGRECORD_SIZE) {
-            throw new LogRecordTooLongException(
-                    "Log Record of size " + logRecordSize + " written when only "
-                            + MAX_LOGRECORD_SIZE + " is allowed");
-        }
+        record.validateSize();
 
         try {
             this.writer.writeOp(record);
@@ -146,7 +164,7 @@ class EnvelopedEntryWriter implements Writer {
 
     @Override
     public int getNumBytes() {
-        return buffer.size();
+        return buffer.size() - reservedBytes;
     }
 
     @Override
@@ -159,9 +177,22 @@ class EnvelopedEntryWriter implements Writer {
         if (!envelopeBeforeTransmit) {
             return buffer;
         }
+        if (null != toSend) {
+            return toSend;
+        }
+        if (envelopeInPlace) {
+            EnvelopedEntry entry = new EnvelopedEntry(EnvelopedEntry.CURRENT_VERSION,
+                                                      codec,
+                                                      buffer.getData(),
+                                                      buffer.size() - reservedBytes,
+                                                      statsLogger);
+            entry.writeHeaderInPlace();
+            toSend = buffer;
+            return toSend;
+        }
         // We can't escape this allocation because things need to be read from one byte array
         // and then written to another. This is the destination.
-        Buffer toSend = new Buffer(buffer.size());
+        Buffer compressed = allocateBuffer(buffer.size() + EnvelopedEntry.HEADER_LENGTH);
         byte[] decompressed = buffer.getData();
         int length = buffer.size();
         EnvelopedEntry entry = new EnvelopedEntry(EnvelopedEntry.CURRENT_VERSION,
@@ -171,10 +202,33 @@ class EnvelopedEntryWriter implements Writer {
                                                   statsLogger);
         // This will cause an allocation of a byte[] for compression. This can be avoided
         // but we can do that later only if needed.
-        entry.writeFully(new DataOutputStream(toSend));
+        try {
+            entry.writeFully(new DataOutputStream(compressed));
+        } catch (IOException ioe) {
+            compressed.release();
+            throw ioe;
+        }
+        toSend = compressed;
         return toSend;
     }
 
+    private void releaseBufferToSend() {
+        if (null != toSend && toSend != buffer) {
+            toSend.release();
+        }
+        toSend = null;
+    }
+
+    @Override
+    public synchronized void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        releaseBufferToSend();
+        buffer.release();
+    }
+
     @Override
     public DLSN finalizeTransmit(long lssn, long entryId) {
         return new DLSN(lssn, entryId, count - 1);
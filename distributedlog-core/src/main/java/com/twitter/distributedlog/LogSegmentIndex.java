@@ -0,0 +1,261 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * A sparse index of a completed log segment.
+ *
+ * <p>The index samples an entry every N entries. For each sampled entry, it keeps the transaction id
+ * and the position within the log segment of the first record in the entry, as well as the time that
+ * the first record was written. The transaction ids and the timestamps are non-decreasing within a log
+ * segment, so the index narrows a search for a transaction id or a timestamp down to the entries between
+ * two adjacent sampled entries, which could be read in one round of parallel reads.
+ *
+ * <p>The index is built by the log segment writer and stored along with the metadata of the completed
+ * log segment. It is only kept in the binary layout of log segment metadata
+ * (since {@link LogSegmentMetadata.LogSegmentMetadataVersion#VERSION_V6_BINARY}).
+ */
+public class LogSegmentIndex {
+
+    // max number of sampled entries kept for a log segment
+    static final int DEFAULT_MAX_SIZE = 512;
+
+    private final long[] entryIds;
+    private final long[] firstTxIds;
+    private final long[] firstPositions;
+    private final long[] timestamps;
+
+    LogSegmentIndex(long[] entryIds,
+                    long[] firstTxIds,
+                    long[] firstPositions,
+                    long[] timestamps) {
+        Preconditions.checkArgument(entryIds.length == firstTxIds.length
+                && entryIds.length == firstPositions.length
+                && entryIds.length == timestamps.length, "Mismatched log segment index columns");
+        this.entryIds = entryIds;
+        this.firstTxIds = firstTxIds;
+        this.firstPositions = firstPositions;
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * Return the number of sampled entries in this index.
+     *
+     * @return number of sampled entries.
+     */
+    public int size() {
+        return entryIds.length;
+    }
+
+    public long getEntryId(int idx) {
+        return entryIds[idx];
+    }
+
+    public long getFirstTxId(int idx) {
+        return firstTxIds[idx];
+    }
+
+    public long getFirstPosition(int idx) {
+        return firstPositions[idx];
+    }
+
+    public long getTimestamp(int idx) {
+        return timestamps[idx];
+    }
+
+    /**
+     * Find the last sampled entry whose first record's transaction id is less than <i>txId</i>.
+     *
+     * @param txId transaction id
+     * @return index of the sampled entry, or -1 if there is no such entry.
+     */
+    public int floorIndexOfTxId(long txId) {
+        return ceilingIndexOf(firstTxIds, txId) - 1;
+    }
+
+    /**
+     * Find the first sampled entry whose first record's transaction id is not less than <i>txId</i>.
+     *
+     * @param txId transaction id
+     * @return index of the sampled entry, or {@link #size()} if there is no such entry.
+     */
+    public int ceilingIndexOfTxId(long txId) {
+        return ceilingIndexOf(firstTxIds, txId);
+    }
+
+    /**
+     * Find the last sampled entry whose first record was written before <i>timestamp</i>.
+     *
+     * @param timestamp timestamp in milliseconds
+     * @return index of the sampled entry, or -1 if there is no such entry.
+     */
+    public int floorIndexOfTime(long timestamp) {
+        return ceilingIndexOf(timestamps, timestamp) - 1;
+    }
+
+    /**
+     * Find the first sampled entry whose first record was written at or after <i>timestamp</i>.
+     *
+     * @param timestamp timestamp in milliseconds
+     * @return index of the sampled entry, or {@link #size()} if there is no such entry.
+     */
+    public int ceilingIndexOfTime(long timestamp) {
+        return ceilingIndexOf(timestamps, timestamp);
+    }
+
+    private static int ceilingIndexOf(long[] values, long value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof LogSegmentIndex)) {
+            return false;
+        }
+        LogSegmentIndex other = (LogSegmentIndex) o;
+        return Arrays.equals(entryIds, other.entryIds)
+                && Arrays.equals(firstTxIds, other.firstTxIds)
+                && Arrays.equals(firstPositions, other.firstPositions)
+                && Arrays.equals(timestamps, other.timestamps);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(entryIds);
+    }
+
+    @Override
+    public String toString() {
+        return "LogSegmentIndex(size=" + size() + ")";
+    }
+
+    /**
+     * Builder to sample the entries of a log segment as they are written.
+     *
+     * <p>The number of sampled entries is bounded. When the bound is reached, every other
+     * sampled entry is dropped and the sampling interval is doubled, so the index of a large
+     * log segment stays small enough to be kept in its metadata.
+     */
+    static class Builder {
+
+        private final int maxSize;
+        private long interval;
+        private long nextEntryId = 0L;
+        private int size = 0;
+        private long[] entryIds;
+        private long[] firstTxIds;
+        private long[] firstPositions;
+        private long[] timestamps;
+
+        Builder(long interval, int maxSize) {
+            Preconditions.checkArgument(interval > 0, "Invalid log segment index interval : " + interval);
+            Preconditions.checkArgument(maxSize > 1, "Invalid log segment index size : " + maxSize);
+            this.interval = interval;
+            this.maxSize = maxSize;
+            int initialCapacity = Math.min(16, maxSize);
+            this.entryIds = new long[initialCapacity];
+            this.firstTxIds = new long[initialCapacity];
+            this.firstPositions = new long[initialCapacity];
+            this.timestamps = new long[initialCapacity];
+        }
+
+        /**
+         * Add an entry to the index. The entries must be added in entry id order.
+         * It is sampled only if it is at least <i>interval</i> entries after the last sampled entry.
+         *
+         * @param entryId entry id
+         * @param firstTxId transaction id of the first record in the entry
+         * @param firstPosition position within the log segment of the first record in the entry
+         * @param timestamp time that the first record in the entry was written
+         * @return builder
+         */
+        Builder addEntry(long entryId, long firstTxId, long firstPosition, long timestamp) {
+            if (entryId < nextEntryId) {
+                return this;
+            }
+            if (size == maxSize) {
+                compact();
+                if (entryId < nextEntryId) {
+                    return this;
+                }
+            }
+            if (size == entryIds.length) {
+                int newCapacity = Math.min(maxSize, size * 2);
+                entryIds = Arrays.copyOf(entryIds, newCapacity);
+                firstTxIds = Arrays.copyOf(firstTxIds, newCapacity);
+                firstPositions = Arrays.copyOf(firstPositions, newCapacity);
+                timestamps = Arrays.copyOf(timestamps, newCapacity);
+            }
+            entryIds[size] = entryId;
+            firstTxIds[size] = firstTxId;
+            firstPositions[size] = firstPosition;
+            timestamps[size] = timestamp;
+            ++size;
+            nextEntryId = entryId + interval;
+            return this;
+        }
+
+        private void compact() {
+            int newSize = 0;
+            for (int i = 0; i < size; i += 2) {
+                entryIds[newSize] = entryIds[i];
+                firstTxIds[newSize] = firstTxIds[i];
+                firstPositions[newSize] = firstPositions[i];
+                timestamps[newSize] = timestamps[i];
+                ++newSize;
+            }
+            size = newSize;
+            interval *= 2;
+            nextEntryId = entryIds[size - 1] + interval;
+        }
+
+        long getInterval() {
+            return interval;
+        }
+
+        /**
+         * Build the index of the sampled entries.
+         *
+         * @return the index, or null if no entry is sampled.
+         */
+        LogSegmentIndex build() {
+            if (size == 0) {
+                return null;
+            }
+            return new LogSegmentIndex(
+                    Arrays.copyOf(entryIds, size),
+                    Arrays.copyOf(firstTxIds, size),
+                    Arrays.copyOf(firstPositions, size),
+                    Arrays.copyOf(timestamps, size));
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.twitter.distributedlog;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Comparator;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -53,7 +54,8 @@ public class LogSegmentMetadata {
         VERSION_V2_LEDGER_SEQNO(2),
         VERSION_V3_MIN_ACTIVE_DLSN(3),
         VERSION_V4_ENVELOPED_ENTRIES(4),
-        VERSION_V5_SEQUENCE_ID(5);
+        VERSION_V5_SEQUENCE_ID(5),
+        VERSION_V6_BINARY(6);
 
         public final int value;
 
@@ -63,6 +65,8 @@ public class LogSegmentMetadata {
 
         public static LogSegmentMetadataVersion of(int version) {
             switch (version) {
+                case 6:
+                    return VERSION_V6_BINARY;
                 case 5:
                     return VERSION_V5_SEQUENCE_ID;
                 case 4:
@@ -107,6 +111,7 @@ public class LogSegmentMetadata {
         protected long minActiveSlotId;
         protected long startSequenceId;
         protected boolean inprogress;
+        protected LogSegmentIndex index;
 
         // This is a derived attribute.
         // Since we overwrite the original version with the target version, information that is
@@ -145,6 +150,7 @@ public class LogSegmentMetadata {
             minActiveSlotId = 0;
             startSequenceId = DistributedLogConstants.UNASSIGNED_SEQUENCE_ID;
             inprogress = true;
+            index = null;
         }
 
         LogSegmentMetadataBuilder setRegionId(int regionId) {
@@ -217,6 +223,11 @@ public class LogSegmentMetadata {
             return this;
         }
 
+        LogSegmentMetadataBuilder setIndex(LogSegmentIndex index) {
+            this.index = index;
+            return this;
+        }
+
         public LogSegmentMetadata build() {
             return new LogSegmentMetadata(
                 zkPath,
@@ -235,7 +246,8 @@ public class LogSegmentMetadata {
                 minActiveEntryId,
                 minActiveSlotId,
                 startSequenceId,
-                envelopeEntries
+                envelopeEntries,
+                index
             );
         }
 
@@ -262,6 +274,7 @@ public class LogSegmentMetadata {
             this.minActiveSlotId = original.getMinActiveDLSN().getSlotId();
             this.startSequenceId = original.getStartSequenceId();
             this.envelopeEntries = original.getEnvelopeEntries();
+            this.index = original.getIndex();
         }
 
         @VisibleForTesting
@@ -320,6 +333,7 @@ public class LogSegmentMetadata {
     private final DLSN lastDLSN;
     private final DLSN minActiveDLSN;
     private final long startSequenceId;
+    private final LogSegmentIndex index;
     private final boolean inprogress;
     // This is a derived attribute.
     // Since we overwrite the original version with the target version, information that is
@@ -396,7 +410,7 @@ public class LogSegmentMetadata {
     };
 
     public static final int LEDGER_METADATA_CURRENT_LAYOUT_VERSION =
-                LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value;
+                LogSegmentMetadataVersion.VERSION_V6_BINARY.value;
 
     public static final int LEDGER_METADATA_OLDEST_SUPPORTED_VERSION =
         LogSegmentMetadataVersion.VERSION_V2_LEDGER_SEQNO.value;
@@ -415,6 +429,23 @@ public class LogSegmentMetadata {
     static final long METADATA_TRUNCATION_STATUS_MASK = 0x3L;
     static final long METADATA_STATUS_BIT_MAX = 0xffL;
 
+    // Binary layout (since VERSION_V6_BINARY):
+    // magic (1 byte) | version (1 byte) | flags (1 byte) | status (1 byte) | region id (1 byte)
+    // | zigzag varints : log segment id, first txid, log segment sequence number, min active entry id,
+    //   min active slot id, start sequence id
+    // | zigzag varints only for completed log segments : last txid, completion time, record count,
+    //   last entry id, last slot id
+    // | only for completed log segments that have an index (flag 0x2) : zigzag varint number of
+    //   sampled entries, followed by zigzag varint deltas to the previous sampled entry of each sampled
+    //   entry : entry id, first txid, first position, timestamp
+    //
+    // The magic byte is never an ascii digit, so it is distinguishable from the text layouts
+    static final byte BINARY_LAYOUT_MAGIC = (byte) 0xdf;
+    static final int BINARY_LAYOUT_HEADER_SIZE = 5;
+    static final int BINARY_LAYOUT_MAX_SIZE = BINARY_LAYOUT_HEADER_SIZE + 11 * 10;
+    static final int BINARY_FLAG_INPROGRESS = 0x1;
+    static final int BINARY_FLAG_INDEXED = 0x2;
+
     private LogSegmentMetadata(String zkPath,
                                LogSegmentMetadataVersion version,
                                long logSegmentId,
@@ -431,7 +462,8 @@ public class LogSegmentMetadata {
                                long minActiveEntryId,
                                long minActiveSlotId,
                                long startSequenceId,
-                               boolean envelopeEntries) {
+                               boolean envelopeEntries,
+                               LogSegmentIndex index) {
         this.zkPath = zkPath;
         this.logSegmentId = logSegmentId;
         this.version = version;
@@ -446,6 +478,7 @@ public class LogSegmentMetadata {
         this.regionId = regionId;
         this.status = status;
         this.envelopeEntries = envelopeEntries;
+        this.index = index;
     }
 
     public String getZkPath() {
@@ -541,6 +574,15 @@ public class LogSegmentMetadata {
         return this.inprogress;
     }
 
+    /**
+     * Get the sparse index of the log segment.
+     *
+     * @return the index of the log segment, or null if the log segment isn't indexed.
+     */
+    public LogSegmentIndex getIndex() {
+        return index;
+    }
+
     @VisibleForTesting
     public boolean isDLSNinThisSegment(DLSN dlsn) {
         return dlsn.getLogSegmentSequenceNo() == getLogSegmentSequenceNumber();
@@ -569,6 +611,10 @@ public class LogSegmentMetadata {
      *          last entry id
      * @param lastSlotId
      *          last slot id
+     * @param startSequenceId
+     *          start sequence id
+     * @param index
+     *          sparse index of the log segment, null if it isn't indexed
      * @return completed log segment.
      */
     LogSegmentMetadata completeLogSegment(String zkPath,
@@ -576,7 +622,8 @@ public class LogSegmentMetadata {
                                                 int recordCount,
                                                 long lastEntryId,
                                                 long lastSlotId,
-                                                long startSequenceId) {
+                                                long startSequenceId,
+                                                LogSegmentIndex index) {
         assert this.lastTxId == DistributedLogConstants.INVALID_TXID;
 
         return new Mutator(this)
@@ -587,6 +634,7 @@ public class LogSegmentMetadata {
                 .setCompletionTime(Utils.nowInMillis())
                 .setRecordCount(recordCount)
                 .setStartSequenceId(startSequenceId)
+                .setIndex(index)
                 .build();
     }
 
@@ -802,8 +850,7 @@ public class LogSegmentMetadata {
 
         long version = versionStatusCount & METADATA_VERSION_MASK;
         assert (version >= Integer.MIN_VALUE && version <= Integer.MAX_VALUE);
-        assert (LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value <= version &&
-                LogSegmentMetadata.LEDGER_METADATA_CURRENT_LAYOUT_VERSION >= version);
+        assert (LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value == version);
 
         LogSegmentMetadataVersion llmv = LogSegmentMetadataVersion.of((int) version);
 
@@ -870,7 +917,114 @@ public class LogSegmentMetadata {
         return parseData(path, data, false);
     }
 
+    /**
+     * Cursor to decode the binary layout.
+     */
+    private static class BinaryLayoutReader {
+
+        private final String path;
+        private final byte[] data;
+        private int pos;
+
+        BinaryLayoutReader(String path, byte[] data, int pos) {
+            this.path = path;
+            this.data = data;
+            this.pos = pos;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= data.length) {
+                    throw new IOException("Truncated log segment metadata at " + path);
+                }
+                byte b = data[pos++];
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    // zigzag decoding
+                    return (value >>> 1) ^ -(value & 1);
+                }
+            }
+            throw new IOException("Malformed varint in log segment metadata at " + path);
+        }
+
+        boolean hasRemaining() {
+            return pos < data.length;
+        }
+    }
+
+    static LogSegmentMetadata parseBinaryData(String path, byte[] data) throws IOException {
+        if (data.length < BINARY_LAYOUT_HEADER_SIZE) {
+            throw new IOException("Invalid log segment metadata at " + path + " : only " + data.length + " bytes");
+        }
+        int version = data[1] & 0xff;
+        if (version > LogSegmentMetadata.LEDGER_METADATA_CURRENT_LAYOUT_VERSION) {
+            throw new UnsupportedMetadataVersionException("Metadata version '" + version
+                + "' is higher than the highest supported version at " + path);
+        }
+        if (version < LogSegmentMetadataVersion.VERSION_V6_BINARY.value) {
+            throw new IOException("Invalid binary log segment metadata version '" + version + "' at " + path);
+        }
+        boolean inprogress = (data[2] & BINARY_FLAG_INPROGRESS) != 0;
+        long status = data[3] & METADATA_STATUS_BIT_MAX;
+        int regionId = data[4] & (int) MAX_REGION_ID;
+
+        BinaryLayoutReader reader = new BinaryLayoutReader(path, data, BINARY_LAYOUT_HEADER_SIZE);
+        long logSegmentId = reader.readVarLong();
+        long firstTxId = reader.readVarLong();
+        LogSegmentMetadataBuilder builder =
+            new LogSegmentMetadataBuilder(path, LogSegmentMetadataVersion.of(version), logSegmentId, firstTxId)
+                .setLogSegmentSequenceNo(reader.readVarLong())
+                .setMinActiveEntryId(reader.readVarLong())
+                .setMinActiveSlotId(reader.readVarLong())
+                .setStartSequenceId(reader.readVarLong())
+                .setRegionId(regionId)
+                .setStatus(status)
+                .setEnvelopeEntries(true);
+        if (!inprogress) {
+            builder = builder.setInprogress(false)
+                .setLastTxId(reader.readVarLong())
+                .setCompletionTime(reader.readVarLong())
+                .setRecordCount((int) reader.readVarLong())
+                .setLastEntryId(reader.readVarLong())
+                .setLastSlotId(reader.readVarLong());
+            if ((data[2] & BINARY_FLAG_INDEXED) != 0) {
+                builder = builder.setIndex(readIndex(reader));
+            }
+        }
+        if (reader.hasRemaining()) {
+            throw new IOException("Unexpected trailing bytes in log segment metadata at " + path);
+        }
+        return builder.build();
+    }
+
+    private static LogSegmentIndex readIndex(BinaryLayoutReader reader) throws IOException {
+        long size = reader.readVarLong();
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid log segment index size " + size + " at " + reader.path);
+        }
+        long[] entryIds = new long[(int) size];
+        long[] firstTxIds = new long[(int) size];
+        long[] firstPositions = new long[(int) size];
+        long[] timestamps = new long[(int) size];
+        long entryId = 0L, firstTxId = 0L, firstPosition = 0L, timestamp = 0L;
+        for (int i = 0; i < size; i++) {
+            entryId += reader.readVarLong();
+            firstTxId += reader.readVarLong();
+            firstPosition += reader.readVarLong();
+            timestamp += reader.readVarLong();
+            entryIds[i] = entryId;
+            firstTxIds[i] = firstTxId;
+            firstPositions[i] = firstPosition;
+            timestamps[i] = timestamp;
+        }
+        return new LogSegmentIndex(entryIds, firstTxIds, firstPositions, timestamps);
+    }
+
     static LogSegmentMetadata parseData(String path, byte[] data, boolean skipMinVersionCheck) throws IOException {
+        if (data.length > 0 && BINARY_LAYOUT_MAGIC == data[0]) {
+            return parseBinaryData(path, data);
+        }
         String[] parts = new String(data, UTF_8).split(";");
         long version;
         try {
@@ -897,9 +1051,11 @@ public class LogSegmentMetadata {
         } else if (LogSegmentMetadataVersion.VERSION_V4_ENVELOPED_ENTRIES.value >= version &&
                    LogSegmentMetadataVersion.VERSION_V3_MIN_ACTIVE_DLSN.value <= version) {
             return parseDataVersionsWithMinActiveDLSN(path, data, parts);
-        } else {
-            assert(version >= LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value);
+        } else if (LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value == version) {
             return parseDataVersionsWithSequenceId(path, data, parts);
+        } else {
+            throw new UnsupportedMetadataVersionException("Metadata version '" + version
+                + "' is only supported in the binary layout : " + new String(data, UTF_8));
         }
     }
 
@@ -950,8 +1106,7 @@ public class LogSegmentMetadata {
                         versionStatusCount, logSegmentId, firstTxId, lastTxId, completionTime,
                         logSegmentSeqNo, lastEntryId, lastSlotId, minActiveEntryId, minActiveSlotId);
                 }
-            } else if (LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value <= version.value &&
-                        LogSegmentMetadata.LEDGER_METADATA_CURRENT_LAYOUT_VERSION >= version.value) {
+            } else if (LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID == version) {
                 if (inprogress) {
                     finalisedData = String.format("%d;%d;%d;%d;%d;%d;%d",
                         versionStatusCount, logSegmentId, firstTxId, logSegmentSeqNo, minActiveEntryId, minActiveSlotId, startSequenceId);
@@ -967,6 +1122,82 @@ public class LogSegmentMetadata {
         return finalisedData;
     }
 
+    /**
+     * Serialize the metadata in its layout version.
+     *
+     * @return serialized metadata
+     */
+    public byte[] getFinalisedDataBytes() {
+        return getFinalisedDataBytes(this.version);
+    }
+
+    /**
+     * Serialize the metadata in layout <i>version</i>. Versions before
+     * {@link LogSegmentMetadataVersion#VERSION_V6_BINARY} are serialized in text layouts,
+     * the others in the binary layout.
+     *
+     * @param version layout version
+     * @return serialized metadata
+     */
+    public byte[] getFinalisedDataBytes(LogSegmentMetadataVersion version) {
+        if (version.value < LogSegmentMetadataVersion.VERSION_V6_BINARY.value) {
+            return getFinalisedData(version).getBytes(UTF_8);
+        }
+        boolean indexed = !inprogress && null != index;
+        int maxSize = BINARY_LAYOUT_MAX_SIZE;
+        if (indexed) {
+            maxSize += 10 + index.size() * 4 * 10;
+        }
+        byte[] buf = new byte[maxSize];
+        buf[0] = BINARY_LAYOUT_MAGIC;
+        buf[1] = (byte) version.value;
+        buf[2] = (byte) ((inprogress ? BINARY_FLAG_INPROGRESS : 0) | (indexed ? BINARY_FLAG_INDEXED : 0));
+        buf[3] = (byte) (status & METADATA_STATUS_BIT_MAX);
+        buf[4] = (byte) (regionId & MAX_REGION_ID);
+        int pos = BINARY_LAYOUT_HEADER_SIZE;
+        pos = writeVarLong(buf, pos, logSegmentId);
+        pos = writeVarLong(buf, pos, firstTxId);
+        pos = writeVarLong(buf, pos, getLogSegmentSequenceNumber());
+        pos = writeVarLong(buf, pos, minActiveDLSN.getEntryId());
+        pos = writeVarLong(buf, pos, minActiveDLSN.getSlotId());
+        pos = writeVarLong(buf, pos, startSequenceId);
+        if (!inprogress) {
+            pos = writeVarLong(buf, pos, lastTxId);
+            pos = writeVarLong(buf, pos, completionTime);
+            pos = writeVarLong(buf, pos, recordCount);
+            pos = writeVarLong(buf, pos, getLastEntryId());
+            pos = writeVarLong(buf, pos, getLastSlotId());
+        }
+        if (indexed) {
+            pos = writeVarLong(buf, pos, index.size());
+            for (int i = 0; i < index.size(); i++) {
+                if (i == 0) {
+                    pos = writeVarLong(buf, pos, index.getEntryId(i));
+                    pos = writeVarLong(buf, pos, index.getFirstTxId(i));
+                    pos = writeVarLong(buf, pos, index.getFirstPosition(i));
+                    pos = writeVarLong(buf, pos, index.getTimestamp(i));
+                } else {
+                    pos = writeVarLong(buf, pos, index.getEntryId(i) - index.getEntryId(i - 1));
+                    pos = writeVarLong(buf, pos, index.getFirstTxId(i) - index.getFirstTxId(i - 1));
+                    pos = writeVarLong(buf, pos, index.getFirstPosition(i) - index.getFirstPosition(i - 1));
+                    pos = writeVarLong(buf, pos, index.getTimestamp(i) - index.getTimestamp(i - 1));
+                }
+            }
+        }
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private static int writeVarLong(byte[] buf, int pos, long value) {
+        // zigzag encoding, so small negative values (e.g. -1) are kept small
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7fL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+
     String getSegmentName() {
         String[] parts = this.zkPath.split("/");
         if (parts.length <= 0) {
@@ -977,9 +1208,9 @@ public class LogSegmentMetadata {
 
     public void write(ZooKeeperClient zkc)
         throws IOException, KeeperException.NodeExistsException {
-        String finalisedData = getFinalisedData(version);
+        byte[] finalisedData = getFinalisedDataBytes(version);
         try {
-            zkc.get().create(zkPath, finalisedData.getBytes(UTF_8),
+            zkc.get().create(zkPath, finalisedData,
                 zkc.getDefaultACL(), CreateMode.PERSISTENT);
         } catch (KeeperException.NodeExistsException nee) {
             throw nee;
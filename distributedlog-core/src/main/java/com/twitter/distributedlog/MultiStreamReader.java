@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog;
+
+import com.google.common.annotations.Beta;
+import com.twitter.distributedlog.exceptions.InvalidStreamNameException;
+import com.twitter.distributedlog.io.AsyncCloseable;
+import com.twitter.util.Future;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A reader reading a set of log streams of a namespace.
+ *
+ * <p>Unlike opening an {@link AsyncLogReader} per stream, the streams read by a multi stream
+ * reader share its resources: one delivery loop on the namespace scheduler, one idle reader
+ * check, and one readahead budget
+ * (see {@link DistributedLogConfiguration#getMultiStreamReaderReadAheadMaxRecords()}).
+ * Records of the streams that have data available are delivered in round-robin order, so
+ * a busy stream doesn't starve the others. The records of a single stream are delivered in
+ * order.
+ *
+ * <p>The reader keeps the position of each stream (see {@link #getPositions()}), which could
+ * be checkpointed and used to resume reading the streams later.
+ *
+ * @see com.twitter.distributedlog.namespace.DistributedLogNamespace#openMultiStreamReader(Map)
+ */
+@Beta
+public interface MultiStreamReader extends AsyncCloseable {
+
+    /**
+     * Get the names of the streams that the reader reads from.
+     *
+     * @return names of the streams.
+     */
+    Set<String> getStreamNames();
+
+    /**
+     * Start reading stream <i>streamName</i> from <i>fromDLSN</i>. It is a no-op if the
+     * stream is already read by this reader.
+     *
+     * @param streamName name of the stream
+     * @param fromDLSN position to start reading from
+     * @throws InvalidStreamNameException if the stream name is invalid
+     * @throws IOException if the reader is closed or it fails to open the stream
+     */
+    void addStream(String streamName, DLSN fromDLSN) throws InvalidStreamNameException, IOException;
+
+    /**
+     * Stop reading stream <i>streamName</i>.
+     *
+     * @param streamName name of the stream
+     * @return future satisfied when the resources of the stream are released.
+     */
+    Future<Void> removeStream(String streamName);
+
+    /**
+     * Get the position of each stream, which is the DLSN of the next record to deliver.
+     *
+     * @return the position of each stream read by this reader.
+     */
+    Map<String, DLSN> getPositions();
+
+    /**
+     * Read up to <i>maxRecords</i> records from the streams. The future is only satisfied with
+     * a non-empty list of records, each paired with the name of the stream it belongs to.
+     * <p>
+     * A stream stops being read when it reaches the end of stream or is deleted. Any other error
+     * fails the reader.
+     *
+     * @param maxRecords max records to return
+     * @return A promise that when satisfied will contain a non-empty list of records with their streams.
+     */
+    Future<List<Pair<String, LogRecordWithDLSN>>> readBulk(int maxRecords);
+
+}
@@ -32,6 +32,9 @@ import com.twitter.distributedlog.io.AsyncCloseable;
 import com.twitter.distributedlog.logsegment.LogSegmentEntryReader;
 import com.twitter.distributedlog.logsegment.LogSegmentEntryStore;
 import com.twitter.distributedlog.logsegment.LogSegmentFilter;
+import com.twitter.distributedlog.readahead.OffHeapEntry;
+import com.twitter.distributedlog.readahead.OffHeapEntryCache;
+import com.twitter.distributedlog.readahead.ReadAheadBudget;
 import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.util.Function0;
 import com.twitter.util.Future;
@@ -46,6 +49,7 @@ import scala.Function1;
 import scala.runtime.AbstractFunction1;
 import scala.runtime.BoxedUnit;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
@@ -122,7 +126,7 @@ public class ReadAheadEntryReader implements
             if (null != openFuture) {
                 return;
             }
-            openFuture = entryStore.openReader(metadata, startEntryId).addEventListener(this);
+            openFuture = entryStore.openReader(metadata, startEntryId, offHeapCache).addEventListener(this);
         }
 
         synchronized boolean isReaderStarted() {
@@ -274,6 +278,16 @@ public class ReadAheadEntryReader implements
     // Cache
     //
     private final LinkedBlockingQueue<Entry.Reader> entryQueue;
+    // the off heap cache of the namespace bounding the bytes of readahead entries, null if disabled
+    private final OffHeapEntryCache offHeapCache;
+    // the budget shared by a group of readers bounding the number of readahead entries, null if not shared
+    private final ReadAheadBudget sharedBudget;
+    private final OffHeapEntryCache.Listener cacheSpaceListener = new OffHeapEntryCache.Listener() {
+        @Override
+        public void onCacheSpaceAvailable() {
+            resumeReadAheadOnCacheSpaceAvailable();
+        }
+    };
 
     //
     // State of the reader
@@ -282,6 +296,8 @@ public class ReadAheadEntryReader implements
     private final AtomicBoolean started = new AtomicBoolean(false);
     private boolean isInitialized = false;
     private boolean readAheadPaused = false;
+    // the shared budget reserved by the outstanding readahead read
+    private volatile int reservedBudget = 0;
     private Promise<Void> closePromise = null;
     // segment readers
     private long currentSegmentSequenceNumber;
@@ -315,6 +331,31 @@ public class ReadAheadEntryReader implements
                                 OrderedScheduler scheduler,
                                 Ticker ticker,
                                 AlertStatsLogger alertStatsLogger) {
+        this(streamName, fromDLSN, conf, readHandler, entryStore, scheduler, ticker, alertStatsLogger,
+                null, null, true);
+    }
+
+    /**
+     * Create a readahead entry reader that shares the readahead budget with other readers.
+     *
+     * @param offHeapCache off heap cache of the namespace to keep the raw bytes of readahead entries,
+     *                     or null if disabled
+     * @param sharedBudget budget shared by a group of readers, or null to only bound this reader
+     * @param idleReaderCheckEnabled whether to schedule the idle reader check task for this reader.
+     *                               If it is disabled, the owner of the reader is responsible for
+     *                               calling {@link #checkIfReadAheadIsIdle()} periodically.
+     */
+    ReadAheadEntryReader(String streamName,
+                         DLSN fromDLSN,
+                         DistributedLogConfiguration conf,
+                         BKLogReadHandler readHandler,
+                         LogSegmentEntryStore entryStore,
+                         OrderedScheduler scheduler,
+                         Ticker ticker,
+                         AlertStatsLogger alertStatsLogger,
+                         @Nullable OffHeapEntryCache offHeapCache,
+                         @Nullable ReadAheadBudget sharedBudget,
+                         boolean idleReaderCheckEnabled) {
         this.streamName = streamName;
         this.fromDLSN = lastDLSN = fromDLSN;
         this.nextEntryPosition = new EntryPosition(
@@ -335,15 +376,25 @@ public class ReadAheadEntryReader implements
         this.segmentReadersToClose = new LinkedList<SegmentReader>();
         // create the readahead entry queue
         this.entryQueue = new LinkedBlockingQueue<Entry.Reader>();
+        this.offHeapCache = offHeapCache;
+        this.sharedBudget = sharedBudget;
 
         // start the idle reader detection
         lastEntryAddedTime = Stopwatch.createStarted(ticker);
         // start the idle reader check task
-        idleReaderCheckTask = scheduleIdleReaderTaskIfNecessary();
+        if (idleReaderCheckEnabled) {
+            idleReaderCheckTask = scheduleIdleReaderTaskIfNecessary();
+        } else {
+            idleReaderCheckTask = null;
+        }
+    }
+
+    private boolean isIdleReaderCheckEnabled() {
+        return idleWarnThresholdMillis < Integer.MAX_VALUE && idleWarnThresholdMillis > 0;
     }
 
     private ScheduledFuture<?> scheduleIdleReaderTaskIfNecessary() {
-        if (idleWarnThresholdMillis < Integer.MAX_VALUE && idleWarnThresholdMillis > 0) {
+        if (isIdleReaderCheckEnabled()) {
             return scheduler.scheduleAtFixedRate(streamName, new Runnable() {
                 @Override
                 public void run() {
@@ -358,6 +409,22 @@ public class ReadAheadEntryReader implements
         return null;
     }
 
+    /**
+     * Check if the readahead has been idle for the idle warn threshold, and if so, re-read the log
+     * segments in case the log segment notifications were missed.
+     */
+    void checkIfReadAheadIsIdle() {
+        if (!isIdleReaderCheckEnabled() || !isReaderIdle(idleWarnThresholdMillis, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        orderedSubmit(new CloseableRunnable() {
+            @Override
+            void safeRun() {
+                unsafeCheckIfReadAheadIsIdle();
+            }
+        });
+    }
+
     private void unsafeCheckIfReadAheadIsIdle() {
         boolean forceReadLogSegments =
                 (null == currentSegmentReader) || currentSegmentReader.isBeyondLastAddConfirmed();
@@ -505,9 +572,30 @@ public class ReadAheadEntryReader implements
         for (SegmentReader reader : segmentReadersToClose) {
             closeFutures.add(reader.close());
         }
+        if (null != offHeapCache) {
+            offHeapCache.unregisterListener(cacheSpaceListener);
+        }
+        if (null != sharedBudget) {
+            sharedBudget.unregisterListener(cacheSpaceListener);
+        }
+        if (null != offHeapCache || null != sharedBudget) {
+            releaseCachedEntries();
+        }
         Futures.collect(closeFutures).proxyTo(closePromise);
     }
 
+    private void releaseCachedEntries() {
+        Entry.Reader entry;
+        while (null != (entry = entryQueue.poll())) {
+            if (entry instanceof OffHeapEntry) {
+                ((OffHeapEntry) entry).release();
+            }
+            if (null != sharedBudget) {
+                sharedBudget.release(1);
+            }
+        }
+    }
+
     //
     // Reader State Changes
     //
@@ -582,16 +670,26 @@ public class ReadAheadEntryReader implements
     @Override
     public void onSuccess(List<Entry.Reader> entries) {
         lastEntryAddedTime.reset().start();
+        releaseUnusedBudget(entries.size());
         for (Entry.Reader entry : entries) {
             entryQueue.add(entry);
         }
+        if (null != offHeapCache || null != sharedBudget) {
+            synchronized (this) {
+                if (null != closePromise) {
+                    // the entries arrive after the reader is closed
+                    releaseCachedEntries();
+                    return;
+                }
+            }
+        }
         if (!entries.isEmpty()) {
             Entry.Reader lastEntry = entries.get(entries.size() - 1);
             nextEntryPosition.advance(lastEntry.getLSSN(), lastEntry.getEntryId() + 1);
         }
         // notify on data available
         notifyStateChangeOnSuccess();
-        if (entryQueue.size() >= maxCachedEntries) {
+        if (isCacheFull()) {
             pauseReadAheadOnCacheFull();
         } else {
             scheduleReadNext();
@@ -600,6 +698,7 @@ public class ReadAheadEntryReader implements
 
     @Override
     public void onFailure(Throwable cause) {
+        releaseUnusedBudget(0);
         if (cause instanceof EndOfLogSegmentException) {
             // we reach end of the log segment
             moveToNextLogSegment();
@@ -621,8 +720,28 @@ public class ReadAheadEntryReader implements
 
     private synchronized void pauseReadAheadOnCacheFull() {
         this.readAheadPaused = true;
+        if (null != offHeapCache && offHeapCache.isFull()) {
+            // resume when other readers release their cached bytes
+            offHeapCache.registerListener(cacheSpaceListener);
+        } else if (null != sharedBudget && sharedBudget.isExhausted()) {
+            // resume when other readers of the group consume their cached entries
+            sharedBudget.registerListener(cacheSpaceListener);
+        }
+        if (!isCacheFull()) {
+            invokeReadAhead();
+        }
+    }
+
+    private synchronized void resumeReadAheadOnCacheSpaceAvailable() {
+        if (!readAheadPaused) {
+            return;
+        }
         if (!isCacheFull()) {
             invokeReadAhead();
+        } else if (null != offHeapCache && offHeapCache.isFull()) {
+            offHeapCache.registerListener(cacheSpaceListener);
+        } else if (null != sharedBudget && sharedBudget.isExhausted()) {
+            sharedBudget.registerListener(cacheSpaceListener);
         }
     }
 
@@ -638,9 +757,24 @@ public class ReadAheadEntryReader implements
         if (null != lastException.get()) {
             throw lastException.get();
         }
-        Entry.Reader entry;
+        Entry.Reader entry = entryQueue.poll();
+        if (null != entry && null != sharedBudget) {
+            sharedBudget.release(1);
+        }
+        if (null != offHeapCache) {
+            if (null == entry) {
+                offHeapCache.recordMiss();
+            } else {
+                offHeapCache.recordHit();
+            }
+        }
         try {
-            entry = entryQueue.poll(waitTime, waitTimeUnit);
+            if (null == entry) {
+                entry = entryQueue.poll(waitTime, waitTimeUnit);
+                if (null != entry && null != sharedBudget) {
+                    sharedBudget.release(1);
+                }
+            }
         } catch (InterruptedException e) {
             throw new DLInterruptedException("Interrupted on waiting next readahead entry : ", e);
         }
@@ -664,12 +798,16 @@ public class ReadAheadEntryReader implements
     }
 
     /**
-     * Return if the cache is full.
+     * Return if the cache is full. The cache is full if it reaches the max number of cached
+     * entries, if the off heap cache is enabled and reaches its byte budget, or if the budget
+     * shared with other readers is exhausted.
      *
      * @return true if the cache is full, otherwise false.
      */
     public boolean isCacheFull() {
-        return getNumCachedEntries() >= maxCachedEntries;
+        return getNumCachedEntries() >= maxCachedEntries
+                || (null != offHeapCache && offHeapCache.isFull())
+                || (null != sharedBudget && sharedBudget.isExhausted());
     }
 
     @VisibleForTesting
@@ -971,9 +1109,30 @@ public class ReadAheadEntryReader implements
     }
 
     private void unsafeReadNext(SegmentReader reader) {
+        if (null != sharedBudget) {
+            // reserve the budget before reading, so the readers of the group don't overshoot it
+            if (!sharedBudget.tryAcquire()) {
+                pauseReadAheadOnCacheFull();
+                return;
+            }
+            reservedBudget = sharedBudget.getRecordsPerRead();
+        }
         reader.readNext().addEventListener(this);
     }
 
+    private void releaseUnusedBudget(int numEntriesRead) {
+        if (null == sharedBudget) {
+            return;
+        }
+        int unusedBudget = reservedBudget - numEntriesRead;
+        reservedBudget = 0;
+        if (unusedBudget > 0) {
+            sharedBudget.release(unusedBudget);
+        } else if (unusedBudget < 0) {
+            sharedBudget.acquire(-unusedBudget);
+        }
+    }
+
     @Override
     public void onSegmentsUpdated(List<LogSegmentMetadata> segments) {
         if (!started.get()) {
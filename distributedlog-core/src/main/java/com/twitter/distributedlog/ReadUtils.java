@@ -23,6 +23,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nullable;
+
 import com.twitter.distributedlog.logsegment.LogSegmentEntryStore;
 import com.twitter.distributedlog.logsegment.LogSegmentRandomAccessEntryReader;
 import com.google.common.base.Optional;
@@ -483,6 +485,10 @@ public class ReadUtils {
      *   <code>transactionId</code>.
      *
      * N could be chosen based on trading off concurrency and latency.
+     *
+     * If the log segment has a {@link LogSegmentIndex}, the search starts from the entries between
+     * the two adjacent sampled entries around <code>transactionId</code> rather than the whole
+     * log segment.
      * </p>
      *
      * @param logName
@@ -568,7 +574,7 @@ public class ReadUtils {
                             transactionId,
                             executorService,
                             reader,
-                            Lists.newArrayList(0L, lastEntryId),
+                            getEntriesToSearch(segment.getIndex(), transactionId, lastEntryId, nWays),
                             nWays,
                             Optional.<LogRecordWithDLSN>absent(),
                             promise);
@@ -761,6 +767,41 @@ public class ReadUtils {
         }
     }
 
+    /**
+     * Get the entries to start searching provided <code>transactionId</code> in a log segment.
+     * The entries are narrowed down by the sparse <code>index</code> of the log segment if it exists.
+     *
+     * @param index
+     *          sparse index of the log segment, null if the log segment isn't indexed.
+     * @param transactionId
+     *          transaction id to search
+     * @param lastEntryId
+     *          last entry id of the log segment
+     * @param nWays
+     *          N-ways to search
+     * @return the list of entries to search
+     */
+    static List<Long> getEntriesToSearch(
+            @Nullable LogSegmentIndex index,
+            long transactionId,
+            long lastEntryId,
+            int nWays) {
+        if (null == index || index.size() == 0) {
+            return Lists.newArrayList(0L, lastEntryId);
+        }
+        // the records whose transaction id is not less than provided transaction id start
+        // in the entries between the last sampled entry whose first transaction id is less than
+        // the provided transaction id and the next sampled entry.
+        int floorIdx = index.floorIndexOfTxId(transactionId);
+        int ceilingIdx = floorIdx + 1;
+        long startEntryId = floorIdx < 0 ? 0L : Math.min(index.getEntryId(floorIdx), lastEntryId);
+        long endEntryId = ceilingIdx >= index.size() ? lastEntryId : Math.min(index.getEntryId(ceilingIdx), lastEntryId);
+        if (startEntryId >= endEntryId) {
+            return Lists.newArrayList(startEntryId);
+        }
+        return getEntriesToSearch(startEntryId, endEntryId, nWays);
+    }
+
     static List<Long> getEntriesToSearch(
             long startEntryId,
             long endEntryId,
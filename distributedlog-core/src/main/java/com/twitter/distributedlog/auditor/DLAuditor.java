@@ -42,6 +42,7 @@ import org.apache.bookkeeper.client.BookKeeperAccessor;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.zookeeper.BoundExponentialBackoffRetryPolicy;
 import org.apache.bookkeeper.zookeeper.RetryPolicy;
 import org.apache.commons.lang3.tuple.Pair;
@@ -51,9 +52,11 @@ import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -405,6 +408,24 @@ public class DLAuditor {
         }
     }
 
+    /**
+     * Calculating stream space usage from given <i>uri</i> incrementally, only reconciling the streams
+     * changed since the inventory checkpointed in <i>inventoryFile</i>.
+     *
+     * @param uri dl uri
+     * @param inventoryFile file to load and checkpoint the ledger inventory
+     * @param parallelism number of threads to reconcile streams
+     * @throws IOException
+     * @see IncrementalDLAuditor
+     */
+    public Map<String, Long> calculateStreamSpaceUsage(final URI uri,
+                                                       final File inventoryFile,
+                                                       final int parallelism) throws IOException {
+        logger.info("Collecting stream space usage for {} incrementally from {}.", uri, inventoryFile);
+        IncrementalDLAuditor auditor = new IncrementalDLAuditor(conf, parallelism, NullStatsLogger.INSTANCE);
+        return auditor.audit(uri, inventoryFile).getStreamSpaceUsage();
+    }
+
     private Map<String, Long> calculateStreamSpaceUsage(
             final URI uri, final DistributedLogNamespace namespace)
         throws IOException {
@@ -460,6 +481,27 @@ public class DLAuditor {
     }
 
     public long calculateLedgerSpaceUsage(URI uri) throws IOException {
+        return calculateLedgerSpaceUsage(uri, Collections.<Long, Long>emptyMap());
+    }
+
+    /**
+     * Calculating ledger space usage from given <i>uri</i>, reusing the sizes of the completed
+     * ledgers known by the inventory checkpointed in <i>inventoryFile</i>. Only the ledgers unknown
+     * to the inventory are opened.
+     *
+     * @param uri dl uri
+     * @param inventoryFile file to load the ledger inventory
+     * @throws IOException
+     * @see IncrementalDLAuditor
+     */
+    public long calculateLedgerSpaceUsage(URI uri, File inventoryFile) throws IOException {
+        LedgerInventory inventory = LedgerInventory.load(inventoryFile);
+        logger.info("Loaded inventory of {} streams checkpointed at {} from {}.",
+                new Object[] { inventory.getNumStreams(), inventory.getCheckpointTime(), inventoryFile });
+        return calculateLedgerSpaceUsage(uri, inventory.getCompletedLedgerSizes());
+    }
+
+    private long calculateLedgerSpaceUsage(URI uri, Map<Long, Long> knownLedgerSizes) throws IOException {
         List<URI> uris = Lists.newArrayList(uri);
         String zkServers = validateAndGetZKServers(uris);
         RetryPolicy retryPolicy = new BoundExponentialBackoffRetryPolicy(
@@ -485,7 +527,7 @@ public class DLAuditor {
                     .ledgersPath(bkdlConfig.getBkLedgersPath())
                     .build();
             try {
-                return calculateLedgerSpaceUsage(bkc, executorService);
+                return calculateLedgerSpaceUsage(bkc, knownLedgerSizes, executorService);
             } finally {
                 bkc.close();
             }
@@ -496,11 +538,13 @@ public class DLAuditor {
     }
 
     private long calculateLedgerSpaceUsage(BookKeeperClient bkc,
+                                           final Map<Long, Long> knownLedgerSizes,
                                            final ExecutorService executorService)
         throws IOException {
         final AtomicLong totalBytes = new AtomicLong(0);
         final AtomicLong totalEntries = new AtomicLong(0);
         final AtomicLong numLedgers = new AtomicLong(0);
+        final AtomicLong numKnownLedgers = new AtomicLong(0);
 
         LedgerManager lm = BookKeeperAccessor.getLedgerManager(bkc.get());
 
@@ -513,6 +557,13 @@ public class DLAuditor {
             public void process(final Long lid,
                                 final AsyncCallback.VoidCallback cb) {
                 numLedgers.incrementAndGet();
+                Long knownSize = knownLedgerSizes.get(lid);
+                if (null != knownSize) {
+                    numKnownLedgers.incrementAndGet();
+                    totalBytes.addAndGet(knownSize);
+                    cb.processResult(BKException.Code.OK, null, null);
+                    return;
+                }
                 executorService.submit(new Runnable() {
                     @Override
                     public void run() {
@@ -553,8 +604,9 @@ public class DLAuditor {
         lm.asyncProcessLedgers(collector, finalCb, null, BKException.Code.OK, BKException.Code.ZKException);
         try {
             doneFuture.get();
-            logger.info("calculated {} ledgers\n\ttotal bytes = {}\n\ttotal entries = {}",
-                    new Object[] { numLedgers.get(), totalBytes.get(), totalEntries.get() });
+            logger.info("calculated {} ledgers ({} known by inventory)\n\ttotal bytes = {}"
+                    + "\n\ttotal entries of opened ledgers = {}",
+                    new Object[] { numLedgers.get(), numKnownLedgers.get(), totalBytes.get(), totalEntries.get() });
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new DLInterruptedException("Interrupted on calculating ledger space : ", e);
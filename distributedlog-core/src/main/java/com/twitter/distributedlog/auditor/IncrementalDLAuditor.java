@@ -0,0 +1,384 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.auditor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.twitter.distributedlog.BookKeeperClient;
+import com.twitter.distributedlog.DistributedLogConfiguration;
+import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.LogSegmentMetadata;
+import com.twitter.distributedlog.ZooKeeperClient;
+import com.twitter.distributedlog.exceptions.DLInterruptedException;
+import com.twitter.distributedlog.exceptions.ZKException;
+import com.twitter.distributedlog.impl.BKNamespaceDriver;
+import com.twitter.distributedlog.metadata.LogMetadata;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
+import com.twitter.distributedlog.namespace.DistributedLogNamespaceBuilder;
+import com.twitter.distributedlog.namespace.NamespaceDriver;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * Incremental auditor that maintains a {@link LedgerInventory} of a namespace between runs.
+ *
+ * <p>Each run loads the inventory checkpointed by the previous run and only reconciles the streams
+ * whose log segments listing changed since then, using the <i>pzxid</i> of the log segments znode as
+ * the version of the listing. The ledgers of completed log segments are immutable, so their sizes are
+ * reused from the inventory and only new or in progress ledgers are opened. The reconciliation is
+ * fanned out over a bounded {@link ForkJoinPool}.
+ *
+ * <h3>Metrics</h3>
+ * All the metrics are exposed under the stats logger passed to the auditor.
+ * <ul>
+ * <li> `pending_streams`: gauge. the number of streams not yet audited in the current run.
+ * <li> `streams_reconciled`: counter. the number of streams whose inventory is reconciled.
+ * <li> `streams_skipped`: counter. the number of streams that are unchanged since the last checkpoint.
+ * <li> `streams_removed`: counter. the number of streams removed from the inventory.
+ * <li> `streams_failed`: counter. the number of streams that failed to be reconciled.
+ * <li> `ledgers_opened`: counter. the number of ledgers opened to get their sizes.
+ * <li> `ledgers_reused`: counter. the number of ledgers whose sizes are reused from the inventory.
+ * </ul>
+ */
+public class IncrementalDLAuditor {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalDLAuditor.class);
+
+    // the max number of streams audited by a single fork join task
+    static final int STREAMS_PER_TASK = 16;
+
+    private final DistributedLogConfiguration conf;
+    private final int parallelism;
+
+    // progress of the current run
+    private final AtomicInteger pendingStreams = new AtomicInteger(0);
+    private final AtomicLong numStreamsReconciled = new AtomicLong(0L);
+    private final AtomicLong numStreamsSkipped = new AtomicLong(0L);
+    private final AtomicLong numLedgersOpened = new AtomicLong(0L);
+
+    // Stats
+    private final Counter streamsReconciled;
+    private final Counter streamsSkipped;
+    private final Counter streamsRemoved;
+    private final Counter streamsFailed;
+    private final Counter ledgersOpened;
+    private final Counter ledgersReused;
+
+    public IncrementalDLAuditor(DistributedLogConfiguration conf,
+                                int parallelism,
+                                StatsLogger statsLogger) {
+        Preconditions.checkArgument(parallelism > 0, "Invalid parallelism : " + parallelism);
+        this.conf = conf;
+        this.parallelism = parallelism;
+        this.streamsReconciled = statsLogger.getCounter("streams_reconciled");
+        this.streamsSkipped = statsLogger.getCounter("streams_skipped");
+        this.streamsRemoved = statsLogger.getCounter("streams_removed");
+        this.streamsFailed = statsLogger.getCounter("streams_failed");
+        this.ledgersOpened = statsLogger.getCounter("ledgers_opened");
+        this.ledgersReused = statsLogger.getCounter("ledgers_reused");
+        statsLogger.registerGauge("pending_streams", new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return pendingStreams.get();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    long getNumStreamsReconciled() {
+        return numStreamsReconciled.get();
+    }
+
+    @VisibleForTesting
+    long getNumStreamsSkipped() {
+        return numStreamsSkipped.get();
+    }
+
+    @VisibleForTesting
+    long getNumLedgersOpened() {
+        return numLedgersOpened.get();
+    }
+
+    /**
+     * Audit the namespace of <i>uri</i> against the inventory checkpointed in <i>inventoryFile</i>,
+     * and checkpoint the reconciled inventory back to <i>inventoryFile</i>.
+     *
+     * <p>The inventory is checkpointed even if some streams fail to be reconciled. Those streams keep
+     * their previous entries, marked as stale so they are reconciled again by the next run.
+     *
+     * @param uri dl uri
+     * @param inventoryFile file to load and checkpoint the inventory
+     * @return the reconciled inventory.
+     * @throws IOException if the inventory fails to be loaded or stored, or any stream fails to be reconciled.
+     */
+    public LedgerInventory audit(URI uri, File inventoryFile) throws IOException {
+        LedgerInventory inventory = LedgerInventory.load(inventoryFile);
+        logger.info("Loaded inventory of {} streams checkpointed at {} from {}.",
+                new Object[] { inventory.getNumStreams(), inventory.getCheckpointTime(), inventoryFile });
+        long checkpointTime = System.currentTimeMillis();
+        int numFailures;
+        DistributedLogNamespace namespace = DistributedLogNamespaceBuilder.newBuilder()
+                .conf(conf)
+                .uri(uri)
+                .build();
+        try {
+            numFailures = audit(uri, namespace, inventory);
+        } finally {
+            namespace.close();
+        }
+        inventory.store(inventoryFile, checkpointTime);
+        logger.info("Checkpointed inventory of {} streams to {}.", inventory.getNumStreams(), inventoryFile);
+        if (numFailures > 0) {
+            throw new IOException("Encountered " + numFailures + " failures on auditing " + uri);
+        }
+        return inventory;
+    }
+
+    private int audit(URI uri,
+                      DistributedLogNamespace namespace,
+                      LedgerInventory inventory) throws IOException {
+        numStreamsReconciled.set(0L);
+        numStreamsSkipped.set(0L);
+        numLedgersOpened.set(0L);
+
+        List<String> streams = Lists.newArrayList();
+        Iterator<String> iter = namespace.getLogs();
+        while (iter.hasNext()) {
+            streams.add(iter.next());
+        }
+        Collections.sort(streams);
+        logger.info("Collected {} streams from uri {}.", streams.size(), uri);
+
+        Set<String> removedStreams = new HashSet<String>(inventory.getStreams());
+        removedStreams.removeAll(streams);
+        for (String stream : removedStreams) {
+            inventory.removeStream(stream);
+            streamsRemoved.inc();
+        }
+
+        pendingStreams.set(streams.size());
+        AtomicInteger numFailures = new AtomicInteger(0);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ReconcileTask(uri, namespace, inventory, streams, 0, streams.size(), numFailures));
+        } finally {
+            pool.shutdown();
+        }
+        logger.info("Audited {} streams from uri {} : reconciled = {}, skipped = {}, removed = {}, failed = {}.",
+                new Object[] { streams.size(), uri, numStreamsReconciled.get(), numStreamsSkipped.get(),
+                        removedStreams.size(), numFailures.get() });
+        return numFailures.get();
+    }
+
+    class ReconcileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final URI uri;
+        private final DistributedLogNamespace namespace;
+        private final LedgerInventory inventory;
+        private final List<String> streams;
+        private final int from;
+        private final int to;
+        private final AtomicInteger numFailures;
+
+        ReconcileTask(URI uri,
+                      DistributedLogNamespace namespace,
+                      LedgerInventory inventory,
+                      List<String> streams,
+                      int from,
+                      int to,
+                      AtomicInteger numFailures) {
+            this.uri = uri;
+            this.namespace = namespace;
+            this.inventory = inventory;
+            this.streams = streams;
+            this.from = from;
+            this.to = to;
+            this.numFailures = numFailures;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= STREAMS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    reconcileStream(uri, namespace, inventory, streams.get(i), numFailures);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ReconcileTask(uri, namespace, inventory, streams, from, mid, numFailures),
+                    new ReconcileTask(uri, namespace, inventory, streams, mid, to, numFailures));
+        }
+    }
+
+    private void reconcileStream(URI uri,
+                                 DistributedLogNamespace namespace,
+                                 LedgerInventory inventory,
+                                 String stream,
+                                 AtomicInteger numFailures) {
+        LedgerInventory.StreamEntry prevEntry = inventory.getStream(stream);
+        try {
+            long listingVersion = getListingVersion(uri, namespace, stream);
+            if (null != prevEntry
+                    && LedgerInventory.UNKNOWN_LISTING_VERSION != listingVersion
+                    && listingVersion == prevEntry.getListingVersion()
+                    && !prevEntry.hasInProgressSegments()) {
+                numStreamsSkipped.incrementAndGet();
+                streamsSkipped.inc();
+                return;
+            }
+            List<LedgerInventory.SegmentEntry> segments = collectSegments(namespace, stream, prevEntry);
+            inventory.putStream(stream, new LedgerInventory.StreamEntry(listingVersion, segments));
+            numStreamsReconciled.incrementAndGet();
+            streamsReconciled.inc();
+        } catch (IOException ioe) {
+            logger.error("Failed to reconcile stream {} : ", stream, ioe);
+            numFailures.incrementAndGet();
+            streamsFailed.inc();
+            if (null != prevEntry) {
+                inventory.putStream(stream, prevEntry.markStale());
+            }
+        } finally {
+            int remaining = pendingStreams.decrementAndGet();
+            if (remaining % 1000 == 0) {
+                logger.info("{} streams remaining to audit from uri {}.", remaining, uri);
+            }
+        }
+    }
+
+    private long getListingVersion(URI uri,
+                                   DistributedLogNamespace namespace,
+                                   String stream) throws IOException {
+        String logSegmentsPath = LogMetadata.getLogSegmentsPath(uri, stream, conf.getUnpartitionedStreamName());
+        try {
+            Stat stat = getZooKeeperClient(namespace).get().exists(logSegmentsPath, false);
+            if (null == stat) {
+                return LedgerInventory.UNKNOWN_LISTING_VERSION;
+            }
+            return stat.getPzxid();
+        } catch (KeeperException e) {
+            throw new ZKException("Failed to get log segments listing version of " + logSegmentsPath, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DLInterruptedException("Interrupted on getting log segments listing version of "
+                    + logSegmentsPath, e);
+        }
+    }
+
+    private List<LedgerInventory.SegmentEntry> collectSegments(DistributedLogNamespace namespace,
+                                                               String stream,
+                                                               LedgerInventory.StreamEntry prevEntry)
+            throws IOException {
+        Map<Long, LedgerInventory.SegmentEntry> prevSegments = new HashMap<Long, LedgerInventory.SegmentEntry>();
+        if (null != prevEntry) {
+            for (LedgerInventory.SegmentEntry segment : prevEntry.getSegments()) {
+                prevSegments.put(segment.getLedgerId(), segment);
+            }
+        }
+        DistributedLogManager dlm = namespace.openLog(stream);
+        try {
+            List<LogSegmentMetadata> segments = dlm.getLogSegments();
+            List<LedgerInventory.SegmentEntry> entries =
+                    Lists.newArrayListWithExpectedSize(segments.size());
+            for (LogSegmentMetadata segment : segments) {
+                LedgerInventory.SegmentEntry prevSegment = prevSegments.get(segment.getLogSegmentId());
+                long size;
+                if (null != prevSegment && !prevSegment.isInProgress() && !segment.isInProgress()) {
+                    size = prevSegment.getSize();
+                    ledgersReused.inc();
+                } else {
+                    size = getLedgerLength(namespace, segment.getLogSegmentId());
+                }
+                entries.add(new LedgerInventory.SegmentEntry(
+                        segment.getLogSegmentId(),
+                        segment.getLogSegmentSequenceNumber(),
+                        size,
+                        segment.isInProgress()));
+            }
+            return entries;
+        } finally {
+            dlm.close();
+        }
+    }
+
+    private long getLedgerLength(DistributedLogNamespace namespace, long ledgerId) throws IOException {
+        BookKeeperClient bkc = getBookKeeperClient(namespace);
+        try {
+            LedgerHandle lh = bkc.get().openLedgerNoRecovery(ledgerId,
+                    BookKeeper.DigestType.CRC32, conf.getBKDigestPW().getBytes(UTF_8));
+            try {
+                return lh.getLength();
+            } finally {
+                lh.close();
+                numLedgersOpened.incrementAndGet();
+                ledgersOpened.inc();
+            }
+        } catch (BKException e) {
+            logger.error("Failed to open ledger {} : ", ledgerId, e);
+            throw new IOException("Failed to open ledger " + ledgerId, e);
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted on opening ledger {} : ", ledgerId, e);
+            Thread.currentThread().interrupt();
+            throw new DLInterruptedException("Interrupted on opening ledger " + ledgerId, e);
+        }
+    }
+
+    private ZooKeeperClient getZooKeeperClient(DistributedLogNamespace namespace) {
+        NamespaceDriver driver = namespace.getNamespaceDriver();
+        assert(driver instanceof BKNamespaceDriver);
+        return ((BKNamespaceDriver) driver).getWriterZKC();
+    }
+
+    private BookKeeperClient getBookKeeperClient(DistributedLogNamespace namespace) {
+        NamespaceDriver driver = namespace.getNamespaceDriver();
+        assert(driver instanceof BKNamespaceDriver);
+        return ((BKNamespaceDriver) driver).getReaderBKC();
+    }
+}
@@ -0,0 +1,305 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.auditor;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inventory of the ledgers of a namespace, persisted between audits.
+ *
+ * <p>The inventory records, for each stream, the version of its log segments listing and
+ * the (ledger id, log segment sequence number, size) of each of its log segments. It is stored
+ * in a compact binary format:
+ * <pre>
+ *     magic (int) | version (int) | checkpoint time (long) | num streams (int)
+ *     stream name (utf) | listing version (long) | num segments (int)
+ *     ledger id (long) | log segment sequence number (long) | size (long) | in progress (boolean)
+ * </pre>
+ */
+public class LedgerInventory {
+
+    static final int MAGIC = 0x444c4956;
+    static final int VERSION = 1;
+
+    /**
+     * Listing version of a stream whose inventory is stale and has to be reconciled.
+     */
+    public static final long UNKNOWN_LISTING_VERSION = -1L;
+
+    /**
+     * A log segment in the inventory.
+     */
+    public static class SegmentEntry {
+
+        private final long ledgerId;
+        private final long logSegmentSequenceNumber;
+        private final long size;
+        private final boolean inprogress;
+
+        public SegmentEntry(long ledgerId, long logSegmentSequenceNumber, long size, boolean inprogress) {
+            this.ledgerId = ledgerId;
+            this.logSegmentSequenceNumber = logSegmentSequenceNumber;
+            this.size = size;
+            this.inprogress = inprogress;
+        }
+
+        public long getLedgerId() {
+            return ledgerId;
+        }
+
+        public long getLogSegmentSequenceNumber() {
+            return logSegmentSequenceNumber;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isInProgress() {
+            return inprogress;
+        }
+
+        @Override
+        public String toString() {
+            return "(lid=" + ledgerId + ", lssn=" + logSegmentSequenceNumber
+                    + ", size=" + size + ", inprogress=" + inprogress + ")";
+        }
+    }
+
+    /**
+     * The log segments of a stream in the inventory.
+     */
+    public static class StreamEntry {
+
+        private final long listingVersion;
+        private final List<SegmentEntry> segments;
+
+        public StreamEntry(long listingVersion, List<SegmentEntry> segments) {
+            this.listingVersion = listingVersion;
+            this.segments = ImmutableList.copyOf(segments);
+        }
+
+        public long getListingVersion() {
+            return listingVersion;
+        }
+
+        public List<SegmentEntry> getSegments() {
+            return segments;
+        }
+
+        /**
+         * Whether the stream has any in progress segment, whose size changes over time.
+         *
+         * @return true if the stream has in progress segments.
+         */
+        public boolean hasInProgressSegments() {
+            for (SegmentEntry segment : segments) {
+                if (segment.isInProgress()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long getSize() {
+            long size = 0L;
+            for (SegmentEntry segment : segments) {
+                size += segment.getSize();
+            }
+            return size;
+        }
+
+        StreamEntry markStale() {
+            return new StreamEntry(UNKNOWN_LISTING_VERSION, segments);
+        }
+    }
+
+    private final ConcurrentSkipListMap<String, StreamEntry> streams =
+            new ConcurrentSkipListMap<String, StreamEntry>();
+    private volatile long checkpointTime = 0L;
+
+    public StreamEntry getStream(String stream) {
+        return streams.get(stream);
+    }
+
+    public void putStream(String stream, StreamEntry entry) {
+        streams.put(stream, entry);
+    }
+
+    public StreamEntry removeStream(String stream) {
+        return streams.remove(stream);
+    }
+
+    public Set<String> getStreams() {
+        return Collections.unmodifiableSet(streams.keySet());
+    }
+
+    public int getNumStreams() {
+        return streams.size();
+    }
+
+    public long getCheckpointTime() {
+        return checkpointTime;
+    }
+
+    /**
+     * Get the ids of all the ledgers in the inventory.
+     *
+     * @return the set of ledger ids.
+     */
+    public Set<Long> getLedgers() {
+        Set<Long> ledgers = new HashSet<Long>();
+        for (StreamEntry entry : streams.values()) {
+            for (SegmentEntry segment : entry.getSegments()) {
+                ledgers.add(segment.getLedgerId());
+            }
+        }
+        return ledgers;
+    }
+
+    /**
+     * Get the sizes of the ledgers of completed log segments in the inventory. The ledgers
+     * are immutable once their log segments are completed, so their sizes don't change.
+     *
+     * @return map of ledger id to its size in bytes.
+     */
+    public Map<Long, Long> getCompletedLedgerSizes() {
+        Map<Long, Long> sizes = new HashMap<Long, Long>();
+        for (StreamEntry entry : streams.values()) {
+            for (SegmentEntry segment : entry.getSegments()) {
+                if (!segment.isInProgress()) {
+                    sizes.put(segment.getLedgerId(), segment.getSize());
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Get the space usage of each stream in the inventory.
+     *
+     * @return map of stream name to its space usage in bytes.
+     */
+    public SortedMap<String, Long> getStreamSpaceUsage() {
+        SortedMap<String, Long> usage = new TreeMap<String, Long>();
+        for (Map.Entry<String, StreamEntry> entry : streams.entrySet()) {
+            usage.put(entry.getKey(), entry.getValue().getSize());
+        }
+        return usage;
+    }
+
+    /**
+     * Load the inventory from <i>file</i>. An empty inventory is returned if the file doesn't exist.
+     *
+     * @param file inventory file
+     * @return the inventory.
+     * @throws IOException if the file is corrupted or fails to be read.
+     */
+    public static LedgerInventory load(File file) throws IOException {
+        LedgerInventory inventory = new LedgerInventory();
+        if (!file.exists()) {
+            return inventory;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int magic = in.readInt();
+            if (MAGIC != magic) {
+                throw new IOException("Invalid ledger inventory " + file + " : magic = " + magic);
+            }
+            int version = in.readInt();
+            if (VERSION != version) {
+                throw new IOException("Unknown ledger inventory version " + version + " of " + file);
+            }
+            inventory.checkpointTime = in.readLong();
+            int numStreams = in.readInt();
+            for (int i = 0; i < numStreams; i++) {
+                String stream = in.readUTF();
+                long listingVersion = in.readLong();
+                int numSegments = in.readInt();
+                SegmentEntry[] segments = new SegmentEntry[numSegments];
+                for (int j = 0; j < numSegments; j++) {
+                    segments[j] = new SegmentEntry(in.readLong(), in.readLong(), in.readLong(), in.readBoolean());
+                }
+                inventory.streams.put(stream, new StreamEntry(listingVersion, ImmutableList.copyOf(segments)));
+            }
+        } finally {
+            in.close();
+        }
+        return inventory;
+    }
+
+    /**
+     * Store the inventory to <i>file</i>. The inventory is written to a temporary file first
+     * and then renamed to <i>file</i>, so a failed store doesn't corrupt the previous checkpoint.
+     *
+     * @param file inventory file
+     * @param checkpointTime time of the checkpoint
+     * @throws IOException if the inventory fails to be written.
+     */
+    public void store(File file, long checkpointTime) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(checkpointTime);
+            // snapshot the streams to keep the count consistent with the entries
+            Map<String, StreamEntry> snapshot = new TreeMap<String, StreamEntry>(streams);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, StreamEntry> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().getListingVersion());
+                List<SegmentEntry> segments = entry.getValue().getSegments();
+                out.writeInt(segments.size());
+                for (SegmentEntry segment : segments) {
+                    out.writeLong(segment.getLedgerId());
+                    out.writeLong(segment.getLogSegmentSequenceNumber());
+                    out.writeLong(segment.getSize());
+                    out.writeBoolean(segment.isInProgress());
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            // renaming over an existing file fails on some platforms
+            if (!file.delete() || !tmpFile.renameTo(file)) {
+                throw new IOException("Failed to rename ledger inventory " + tmpFile + " to " + file);
+            }
+        }
+        this.checkpointTime = checkpointTime;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.callback;
+
+import com.google.common.annotations.Beta;
+
+import java.util.Collection;
+
+/**
+ * Listener on incremental stream changes under a namespace.
+ *
+ * <p>Unlike {@link NamespaceListener}, which is handed the full list of streams on every change,
+ * the change listener only receives the streams that were added or removed since the last
+ * notification. When it is registered, the streams that already exist are delivered as added.</p>
+ */
+@Beta
+public interface NamespaceChangeListener {
+
+    /**
+     * Streams are added to the namespace.
+     *
+     * @param streams
+     *          streams added to the namespace, in lexicographic order.
+     */
+    void onStreamsAdded(Collection<String> streams);
+
+    /**
+     * Streams are removed from the namespace.
+     *
+     * @param streams
+     *          streams removed from the namespace, in lexicographic order.
+     */
+    void onStreamsRemoved(Collection<String> streams);
+}
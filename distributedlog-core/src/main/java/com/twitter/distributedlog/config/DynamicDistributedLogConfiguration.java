@@ -169,6 +169,40 @@ public class DynamicDistributedLogConfiguration extends ConcurrentBaseConfigurat
                 DistributedLogConfiguration.BKDL_BPS_STREAM_ACQUIRE_SERVICE_LIMIT_DEFAULT));
     }
 
+    /**
+     * A lower threshold requests per second limit on reads from the distributedlog proxy globally.
+     *
+     * @return Requests per second read limit
+     */
+    public int getRpsSoftReadServiceLimit() {
+        return getInt(DistributedLogConfiguration.BKDL_RPS_SOFT_READ_SERVICE_LIMIT,
+            defaultConfig.getInt(DistributedLogConfiguration.BKDL_RPS_SOFT_READ_SERVICE_LIMIT,
+                DistributedLogConfiguration.BKDL_RPS_SOFT_READ_SERVICE_LIMIT_DEFAULT));
+    }
+
+    /**
+     * An upper threshold requests per second limit on reads from the distributedlog proxy globally.
+     *
+     * @return Requests per second read limit
+     */
+    public int getRpsHardReadServiceLimit() {
+        return getInt(DistributedLogConfiguration.BKDL_RPS_HARD_READ_SERVICE_LIMIT,
+            defaultConfig.getInt(DistributedLogConfiguration.BKDL_RPS_HARD_READ_SERVICE_LIMIT,
+                DistributedLogConfiguration.BKDL_RPS_HARD_READ_SERVICE_LIMIT_DEFAULT));
+    }
+
+    /**
+     * Whether the proxy rate limits are enforced by lock-free token buckets
+     * ({@link com.twitter.distributedlog.limiter.TokenBucketRateLimiter}) instead of guava rate limiters.
+     *
+     * @return true if the rate limits are enforced by token buckets, otherwise false.
+     */
+    public boolean isTokenBucketRateLimiterEnabled() {
+        return getBoolean(DistributedLogConfiguration.BKDL_TOKEN_BUCKET_RATE_LIMITER_ENABLED,
+            defaultConfig.getBoolean(DistributedLogConfiguration.BKDL_TOKEN_BUCKET_RATE_LIMITER_ENABLED,
+                DistributedLogConfiguration.BKDL_TOKEN_BUCKET_RATE_LIMITER_ENABLED_DEFAULT));
+    }
+
     /**
      * Get percent of write bytes which should be delayed by BKDL_EI_INJECTED_WRITE_DELAY_MS.
      *
@@ -329,6 +363,32 @@ public class DynamicDistributedLogConfiguration extends ConcurrentBaseConfigurat
         );
     }
 
+    /**
+     * Get the max bytes of outstanding writes across all the writers of a namespace.
+     *
+     * @return the max bytes of outstanding writes of a namespace
+     * @see DistributedLogConfiguration#getGlobalOutstandingWriteBytesLimit()
+     */
+    public long getGlobalOutstandingWriteBytesLimit() {
+        return getLong(BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT,
+                defaultConfig.getLong(
+                        BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT,
+                        BKDL_GLOBAL_OUTSTANDING_WRITE_BYTES_LIMIT_DEFAULT));
+    }
+
+    /**
+     * Get the max bytes of outstanding writes per writer.
+     *
+     * @return the max bytes of outstanding writes per writer
+     * @see DistributedLogConfiguration#getPerWriterOutstandingWriteBytesLimit()
+     */
+    public long getPerWriterOutstandingWriteBytesLimit() {
+        return getLong(BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT,
+                defaultConfig.getLong(
+                        BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT,
+                        BKDL_PER_WRITER_OUTSTANDING_WRITE_BYTES_LIMIT_DEFAULT));
+    }
+
     /**
      * Check whether the durable write is enabled.
      *
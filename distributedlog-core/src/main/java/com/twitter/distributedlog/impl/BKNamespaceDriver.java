@@ -36,6 +36,7 @@ import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
 import com.twitter.distributedlog.exceptions.AlreadyClosedException;
 import com.twitter.distributedlog.exceptions.InvalidStreamNameException;
 import com.twitter.distributedlog.impl.federated.FederatedZKLogMetadataStore;
+import com.twitter.distributedlog.impl.logsegment.BKEntryCache;
 import com.twitter.distributedlog.impl.logsegment.BKLogSegmentEntryStore;
 import com.twitter.distributedlog.impl.metadata.ZKLogStreamMetadataStore;
 import com.twitter.distributedlog.impl.subscription.ZKSubscriptionsStore;
@@ -152,6 +153,8 @@ public class BKNamespaceDriver implements NamespaceDriver {
     // log segment entry stores
     private LogSegmentEntryStore writerEntryStore;
     private LogSegmentEntryStore readerEntryStore;
+    // entry cache shared by the readers, null if disabled
+    private BKEntryCache readerEntryCache;
 
     // access control manager
     private AccessControlManager accessControlManager;
@@ -388,6 +391,12 @@ public class BKNamespaceDriver implements NamespaceDriver {
         Utils.close(writerStreamMetadataStore);
         Utils.close(readerStreamMetadataStore);
 
+        // Release the shared entry cache
+        if (null != readerEntryCache) {
+            readerEntryCache.close();
+            LOG.info("Reader entry cache released.");
+        }
+
         writerBKC.close();
         readerBKC.close();
         writerZKC.close();
@@ -449,6 +458,9 @@ public class BKNamespaceDriver implements NamespaceDriver {
 
     private LogSegmentEntryStore getReaderEntryStore() {
         if (null == readerEntryStore) {
+            if (conf.getReadEntryCacheMaxBytes() > 0) {
+                readerEntryCache = new BKEntryCache(conf, statsLogger.scope("entry_cache"));
+            }
             readerEntryStore = new BKLogSegmentEntryStore(
                     conf,
                     dynConf,
@@ -457,7 +469,8 @@ public class BKNamespaceDriver implements NamespaceDriver {
                     scheduler,
                     allocator,
                     statsLogger,
-                    failureInjector);
+                    failureInjector,
+                    readerEntryCache);
         }
         return readerEntryStore;
     }
@@ -21,6 +21,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.twitter.distributedlog.DistributedLogConfiguration;
 import com.twitter.distributedlog.ZooKeeperClient;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.callback.NamespaceListener;
 import com.twitter.distributedlog.exceptions.ZKException;
 import com.twitter.distributedlog.metadata.LogMetadataStore;
@@ -32,6 +33,7 @@ import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
 
+import javax.annotation.Nullable;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.List;
@@ -117,8 +119,18 @@ public class ZKLogMetadataStore implements LogMetadataStore {
         return promise;
     }
 
+    @Override
+    public Future<List<String>> getLogs(@Nullable String startAfter, int maxLogs) {
+        return nsWatcher.getLogs(startAfter, maxLogs);
+    }
+
     @Override
     public void registerNamespaceListener(NamespaceListener listener) {
         this.nsWatcher.registerListener(listener);
     }
+
+    @Override
+    public void registerNamespaceChangeListener(NamespaceChangeListener listener) {
+        this.nsWatcher.registerChangeListener(listener);
+    }
 }
@@ -35,6 +35,7 @@ import com.twitter.distributedlog.util.Transaction;
 import com.twitter.distributedlog.util.Transaction.OpListener;
 import com.twitter.distributedlog.zk.DefaultZKOp;
 import com.twitter.distributedlog.zk.ZKOp;
+import com.twitter.distributedlog.zk.ZKOpBatcher;
 import com.twitter.distributedlog.zk.ZKTransaction;
 import com.twitter.distributedlog.zk.ZKVersionedSetOp;
 import com.twitter.util.Future;
@@ -53,6 +54,7 @@ import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -64,8 +66,6 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import static com.google.common.base.Charsets.UTF_8;
-
 /**
  * ZooKeeper based log segment metadata store.
  */
@@ -172,6 +172,10 @@ public class ZKLogSegmentMetadataStore implements LogSegmentMetadataStore, Watch
     final boolean skipMinVersionCheck;
 
     final ZooKeeperClient zkc;
+    // batcher to coalesce metadata operations, null if batching is disabled
+    final ZKOpBatcher batcher;
+    // outstanding reads of log segment metadata, used for coalescing reads of the same log segment
+    final ConcurrentMap<String, Future<LogSegmentMetadata>> pendingLogSegmentReads;
     // log segment listeners
     final ConcurrentMap<String, Map<LogSegmentNamesListener, VersionedLogSegmentNamesListener>> listeners;
     // scheduler
@@ -182,8 +186,17 @@ public class ZKLogSegmentMetadataStore implements LogSegmentMetadataStore, Watch
     public ZKLogSegmentMetadataStore(DistributedLogConfiguration conf,
                                      ZooKeeperClient zkc,
                                      OrderedScheduler scheduler) {
+        this(conf, zkc, scheduler, null);
+    }
+
+    public ZKLogSegmentMetadataStore(DistributedLogConfiguration conf,
+                                     ZooKeeperClient zkc,
+                                     OrderedScheduler scheduler,
+                                     @Nullable ZKOpBatcher batcher) {
         this.conf = conf;
         this.zkc = zkc;
+        this.batcher = batcher;
+        this.pendingLogSegmentReads = new ConcurrentHashMap<String, Future<LogSegmentMetadata>>();
         this.listeners =
                 new ConcurrentHashMap<String, Map<LogSegmentNamesListener, VersionedLogSegmentNamesListener>>();
         this.scheduler = scheduler;
@@ -252,14 +265,14 @@ public class ZKLogSegmentMetadataStore implements LogSegmentMetadataStore, Watch
 
     @Override
     public Transaction<Object> transaction() {
-        return new ZKTransaction(zkc);
+        return new ZKTransaction(zkc, batcher);
     }
 
     @Override
     public void createLogSegment(Transaction<Object> txn,
                                  LogSegmentMetadata segment,
                                  OpListener<Void> listener) {
-        byte[] finalisedData = segment.getFinalisedData().getBytes(UTF_8);
+        byte[] finalisedData = segment.getFinalisedDataBytes();
         Op createOp = Op.create(
                 segment.getZkPath(),
                 finalisedData,
@@ -313,7 +326,7 @@ public class ZKLogSegmentMetadataStore implements LogSegmentMetadataStore, Watch
 
     @Override
     public void updateLogSegment(Transaction<Object> txn, LogSegmentMetadata segment) {
-        byte[] finalisedData = segment.getFinalisedData().getBytes(UTF_8);
+        byte[] finalisedData = segment.getFinalisedDataBytes();
         Op updateOp = Op.setData(segment.getZkPath(), finalisedData, -1);
         txn.addOp(DefaultZKOp.of(updateOp, null));
     }
@@ -350,8 +363,35 @@ public class ZKLogSegmentMetadataStore implements LogSegmentMetadataStore, Watch
     }
 
     @Override
-    public Future<LogSegmentMetadata> getLogSegment(String logSegmentPath) {
-        return LogSegmentMetadata.read(zkc, logSegmentPath, skipMinVersionCheck);
+    public Future<LogSegmentMetadata> getLogSegment(final String logSegmentPath) {
+        if (null == batcher) {
+            return LogSegmentMetadata.read(zkc, logSegmentPath, skipMinVersionCheck);
+        }
+        // coalesce the concurrent reads of same log segment into one zookeeper read
+        Future<LogSegmentMetadata> pendingRead = pendingLogSegmentReads.get(logSegmentPath);
+        if (null != pendingRead) {
+            return pendingRead;
+        }
+        final Promise<LogSegmentMetadata> readPromise = new Promise<LogSegmentMetadata>();
+        pendingRead = pendingLogSegmentReads.putIfAbsent(logSegmentPath, readPromise);
+        if (null != pendingRead) {
+            return pendingRead;
+        }
+        LogSegmentMetadata.read(zkc, logSegmentPath, skipMinVersionCheck)
+                .addEventListener(new FutureEventListener<LogSegmentMetadata>() {
+                    @Override
+                    public void onSuccess(LogSegmentMetadata segment) {
+                        pendingLogSegmentReads.remove(logSegmentPath, readPromise);
+                        readPromise.setValue(segment);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable cause) {
+                        pendingLogSegmentReads.remove(logSegmentPath, readPromise);
+                        readPromise.setException(cause);
+                    }
+                });
+        return readPromise;
     }
 
     Future<Versioned<List<String>>> zkGetLogSegmentNames(String logSegmentsPath, Watcher watcher) {
@@ -20,6 +20,7 @@ package com.twitter.distributedlog.impl;
 import com.twitter.distributedlog.DistributedLogConfiguration;
 import com.twitter.distributedlog.ZooKeeperClient;
 import com.twitter.distributedlog.callback.NamespaceListener;
+import com.twitter.distributedlog.namespace.NamespaceMetadataCache;
 import com.twitter.distributedlog.namespace.NamespaceWatcher;
 import com.twitter.distributedlog.util.OrderedScheduler;
 import org.apache.zookeeper.AsyncCallback;
@@ -32,6 +33,8 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -101,17 +104,23 @@ public class ZKNamespaceWatcher extends NamespaceWatcher
     @Override
     public void processResult(int rc, String path, Object ctx, List<String> children, Stat stat) {
         if (KeeperException.Code.OK.intValue() == rc) {
-            logger.info("Received updated logs under {} : {}", uri, children);
-            List<String> result = new ArrayList<String>(children.size());
-            for (String s : children) {
-                if (isReservedStreamName(s)) {
-                    continue;
+            logger.info("Received {} updated logs under {}", children.size(), uri);
+            // filter the reserved names in place rather than copying the children
+            Iterator<String> iter = children.iterator();
+            while (iter.hasNext()) {
+                if (isReservedStreamName(iter.next())) {
+                    iter.remove();
                 }
-                result.add(s);
             }
+            updateLogs(stat.getCversion(), children);
+            List<String> result = Collections.unmodifiableList(children);
             for (NamespaceListener listener : listeners) {
                 listener.onStreamsChanged(result.iterator());
             }
+        } else if (KeeperException.Code.NONODE.intValue() == rc) {
+            // the namespace doesn't exist yet, so it has no logs
+            updateLogs(NamespaceMetadataCache.UNKNOWN_VERSION, new ArrayList<String>());
+            scheduleTask(this, conf.getZKSessionTimeoutMilliseconds());
         } else {
             scheduleTask(this, conf.getZKSessionTimeoutMilliseconds());
         }
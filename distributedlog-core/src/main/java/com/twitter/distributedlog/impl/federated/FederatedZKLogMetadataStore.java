@@ -22,15 +22,18 @@ import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.twitter.distributedlog.DistributedLogConfiguration;
 import com.twitter.distributedlog.ZooKeeperClient;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.callback.NamespaceListener;
 import com.twitter.distributedlog.exceptions.LogExistsException;
 import com.twitter.distributedlog.exceptions.UnexpectedException;
 import com.twitter.distributedlog.exceptions.ZKException;
 import com.twitter.distributedlog.impl.ZKNamespaceWatcher;
 import com.twitter.distributedlog.metadata.LogMetadataStore;
+import com.twitter.distributedlog.namespace.NamespaceMetadataCache;
 import com.twitter.distributedlog.namespace.NamespaceWatcher;
 import com.twitter.distributedlog.util.FutureUtils;
 import com.twitter.distributedlog.util.OrderedScheduler;
@@ -52,12 +55,14 @@ import org.slf4j.LoggerFactory;
 import scala.runtime.AbstractFunction1;
 import scala.runtime.BoxedUnit;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -112,7 +117,8 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
     class SubNamespace implements NamespaceListener {
         final URI uri;
         final ZKNamespaceWatcher watcher;
-        Promise<Set<String>> logsFuture = new Promise<Set<String>>();
+        // logs are kept sorted, so pages are merged from the sub namespaces without re-sorting
+        Promise<NavigableSet<String>> logsFuture = new Promise<NavigableSet<String>>();
 
         SubNamespace(URI uri) {
             this.uri = uri;
@@ -124,17 +130,17 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
             this.watcher.watchNamespaceChanges();
         }
 
-        synchronized Future<Set<String>> getLogs() {
+        synchronized Future<NavigableSet<String>> getLogs() {
             return logsFuture;
         }
 
         @Override
         public void onStreamsChanged(Iterator<String> newLogsIter) {
-            Set<String> newLogs = Sets.newHashSet(newLogsIter);
+            NavigableSet<String> newLogs = Sets.newTreeSet(newLogsIter);
             Set<String> oldLogs = Sets.newHashSet();
 
             // update the sub namespace cache
-            Promise<Set<String>> newLogsPromise;
+            Promise<NavigableSet<String>> newLogsPromise;
             synchronized (this) {
                 if (logsFuture.isDefined()) { // the promise is already satisfied
                     try {
@@ -143,7 +149,7 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
                         logger.error("Unexpected exception when getting logs from a satisified future of {} : ",
                                 uri, e);
                     }
-                    logsFuture = new Promise<Set<String>>();
+                    logsFuture = new Promise<NavigableSet<String>>();
                 }
 
                 // update the reverse cache
@@ -445,7 +451,7 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
                                              final Set<URI> uris,
                                              final Promise<URI> createPromise) {
         final List<URI> uriList = Lists.newArrayListWithExpectedSize(uris.size());
-        List<Future<Set<String>>> futureList = Lists.newArrayListWithExpectedSize(uris.size());
+        List<Future<NavigableSet<String>>> futureList = Lists.newArrayListWithExpectedSize(uris.size());
         for (URI uri : uris) {
             SubNamespace subNs = subNamespaces.get(uri);
             if (null == subNs) {
@@ -455,9 +461,9 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
             futureList.add(subNs.getLogs());
             uriList.add(uri);
         }
-        Future.collect(futureList).addEventListener(new FutureEventListener<List<Set<String>>>() {
+        Future.collect(futureList).addEventListener(new FutureEventListener<List<NavigableSet<String>>>() {
             @Override
-            public void onSuccess(List<Set<String>> resultList) {
+            public void onSuccess(List<NavigableSet<String>> resultList) {
                 for (int i = resultList.size() - 1; i >= 0; i--) {
                     Set<String> logs = resultList.get(i);
                     if (logs.size() < maxLogsPerSubnamespace) {
@@ -710,24 +716,41 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
             return duplicatedLogException(duplicatedLogName.get());
         }
         return postStateCheck(retrieveLogs().map(
-                new AbstractFunction1<List<Set<String>>, Iterator<String>>() {
+                new AbstractFunction1<List<NavigableSet<String>>, Iterator<String>>() {
                     @Override
-                    public Iterator<String> apply(List<Set<String>> resultList) {
+                    public Iterator<String> apply(List<NavigableSet<String>> resultList) {
                         return getIterator(resultList);
                     }
                 }));
     }
 
-    private Future<List<Set<String>>> retrieveLogs() {
+    @Override
+    public Future<List<String>> getLogs(@Nullable final String startAfter, final int maxLogs) {
+        if (duplicatedLogFound.get()) {
+            return duplicatedLogException(duplicatedLogName.get());
+        }
+        // the sub namespaces are always watched, so pages are served from the sub namespaces
+        // rather than the namespace cache, which isn't populated when there is no sub namespace.
+        // the logs of each sub namespace are sorted, so a page only merges their tails after startAfter.
+        return postStateCheck(retrieveLogs().map(
+                new AbstractFunction1<List<NavigableSet<String>>, List<String>>() {
+                    @Override
+                    public List<String> apply(List<NavigableSet<String>> resultList) {
+                        return Lists.newArrayList(Iterators.limit(getSortedIterator(resultList, startAfter), maxLogs));
+                    }
+                }));
+    }
+
+    private Future<List<NavigableSet<String>>> retrieveLogs() {
         Collection<SubNamespace> subNss = subNamespaces.values();
-        List<Future<Set<String>>> logsList = Lists.newArrayListWithExpectedSize(subNss.size());
+        List<Future<NavigableSet<String>>> logsList = Lists.newArrayListWithExpectedSize(subNss.size());
         for (SubNamespace subNs : subNss) {
             logsList.add(subNs.getLogs());
         }
         return Future.collect(logsList);
     }
 
-    private Iterator<String> getIterator(List<Set<String>> resultList) {
+    private Iterator<String> getIterator(List<NavigableSet<String>> resultList) {
         List<Iterator<String>> iterList = Lists.newArrayListWithExpectedSize(resultList.size());
         for (Set<String> result : resultList) {
             iterList.add(result.iterator());
@@ -735,11 +758,29 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
         return Iterators.concat(iterList.iterator());
     }
 
+    private Iterator<String> getSortedIterator(List<NavigableSet<String>> resultList, @Nullable String startAfter) {
+        List<Iterator<String>> iterList = Lists.newArrayListWithExpectedSize(resultList.size());
+        for (NavigableSet<String> result : resultList) {
+            if (null == startAfter) {
+                iterList.add(result.iterator());
+            } else {
+                iterList.add(result.tailSet(startAfter, false).iterator());
+            }
+        }
+        return Iterators.mergeSorted(iterList, Ordering.<String>natural());
+    }
+
     @Override
     public void registerNamespaceListener(NamespaceListener listener) {
         registerListener(listener);
     }
 
+    @Override
+    public void registerNamespaceChangeListener(NamespaceChangeListener listener) {
+        registerChangeListener(listener);
+        updateNamespaceCache();
+    }
+
     @Override
     protected void watchNamespaceChanges() {
         // as the federated namespace already started watching namespace changes,
@@ -747,9 +788,10 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
     }
 
     private void notifyOnNamespaceChanges() {
-        retrieveLogs().onSuccess(new AbstractFunction1<List<Set<String>>, BoxedUnit>() {
+        retrieveLogs().onSuccess(new AbstractFunction1<List<NavigableSet<String>>, BoxedUnit>() {
             @Override
-            public BoxedUnit apply(List<Set<String>> resultList) {
+            public BoxedUnit apply(List<NavigableSet<String>> resultList) {
+                updateNamespaceCache(resultList);
                 for (NamespaceListener listener : listeners) {
                     listener.onStreamsChanged(getIterator(resultList));
                 }
@@ -757,4 +799,22 @@ public class FederatedZKLogMetadataStore extends NamespaceWatcher implements Log
             }
         });
     }
+
+    private void updateNamespaceCache() {
+        retrieveLogs().onSuccess(new AbstractFunction1<List<NavigableSet<String>>, BoxedUnit>() {
+            @Override
+            public BoxedUnit apply(List<NavigableSet<String>> resultList) {
+                updateNamespaceCache(resultList);
+                return BoxedUnit.UNIT;
+            }
+        });
+    }
+
+    private void updateNamespaceCache(List<NavigableSet<String>> resultList) {
+        // the namespace cache is only used for delivering incremental changes
+        if (changeListeners.isEmpty()) {
+            return;
+        }
+        updateLogs(NamespaceMetadataCache.UNKNOWN_VERSION, Lists.newArrayList(getSortedIterator(resultList, null)));
+    }
 }
@@ -0,0 +1,317 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.impl.logsegment;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.twitter.distributedlog.DistributedLogConfiguration;
+import org.apache.bookkeeper.client.AsyncCallback;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A size-bounded cache of the entries read from bookkeeper, shared by the readers of a namespace.
+ *
+ * <p>Entries are keyed by (ledger id, entry id). Only entries that are already confirmed are
+ * cached, so cached entries never change. Readers consult the cache via
+ * {@link #asyncRead(LedgerHandle, long, ReadCallback)}: a cached entry is returned directly,
+ * and concurrent reads of the same entry are coalesced into a single bookkeeper read.
+ * Entries read by other means (e.g. long polls at the tail) are added by {@link #put(long, long, byte[])}.
+ *
+ * <p>The entries to evict are chosen by a pluggable {@link EntryCacheEvictionPolicy}.
+ *
+ * <h3>Metrics</h3>
+ *
+ * <ul>
+ * <li> `scope`/hits: counter. number of reads served by cached entries.
+ * <li> `scope`/misses: counter. number of reads issued to bookkeeper.
+ * <li> `scope`/coalesced: counter. number of reads coalesced with an outstanding read of the same entry.
+ * <li> `scope`/evictions: counter. number of entries evicted.
+ * <li> `scope`/cached_bytes: gauge. number of bytes cached.
+ * <li> `scope`/cached_entries: gauge. number of entries cached.
+ * </ul>
+ */
+public class BKEntryCache {
+
+    /**
+     * Callback on reading an entry through the cache.
+     */
+    public interface ReadCallback {
+
+        /**
+         * Callback when the entry is read.
+         *
+         * @param rc bookkeeper return code
+         * @param entryId entry id
+         * @param data data of the entry if the read succeeds, otherwise null.
+         */
+        void onEntryRead(int rc, long entryId, byte[] data);
+
+    }
+
+    static class EntryKey {
+
+        final long ledgerId;
+        final long entryId;
+
+        EntryKey(long ledgerId, long entryId) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey other = (EntryKey) o;
+            return ledgerId == other.ledgerId && entryId == other.entryId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(ledgerId, entryId);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + ledgerId + ", " + entryId + ")";
+        }
+    }
+
+    private class PendingRead implements AsyncCallback.ReadCallback {
+
+        private final EntryKey key;
+        private final List<ReadCallback> callbacks = new ArrayList<ReadCallback>(1);
+
+        PendingRead(EntryKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void readComplete(int rc, LedgerHandle lh, Enumeration<LedgerEntry> entries, Object ctx) {
+            byte[] data = null;
+            if (BKException.Code.OK == rc) {
+                LedgerEntry entry = null;
+                while (entries.hasMoreElements()) {
+                    entry = entries.nextElement();
+                    if (entry.getEntryId() == key.entryId) {
+                        break;
+                    }
+                }
+                if (null == entry || entry.getEntryId() != key.entryId) {
+                    rc = BKException.Code.UnexpectedConditionException;
+                } else {
+                    data = entry.getEntry();
+                }
+            }
+            List<ReadCallback> callbacksToNotify;
+            synchronized (BKEntryCache.this) {
+                pendingReads.remove(key);
+                callbacksToNotify = callbacks;
+                if (null != data) {
+                    unsafePut(key, data);
+                }
+            }
+            for (ReadCallback callback : callbacksToNotify) {
+                callback.onEntryRead(rc, key.entryId, data);
+            }
+        }
+    }
+
+    /**
+     * Create the eviction policy named <i>policy</i>.
+     *
+     * @param policy name of the policy, <i>lru</i> or <i>slru</i>
+     * @param maxBytes max bytes of the cache
+     * @return eviction policy
+     */
+    static EntryCacheEvictionPolicy<EntryKey> newEvictionPolicy(String policy, long maxBytes) {
+        if ("lru".equalsIgnoreCase(policy)) {
+            return new LRUEvictionPolicy<EntryKey>();
+        } else if ("slru".equalsIgnoreCase(policy)) {
+            // protect the entries accessed more than once with 80% of the cache
+            return new SegmentedLRUEvictionPolicy<EntryKey>(maxBytes / 5 * 4);
+        } else {
+            throw new IllegalArgumentException("Unknown entry cache eviction policy : " + policy);
+        }
+    }
+
+    private final long maxBytes;
+    private final EntryCacheEvictionPolicy<EntryKey> evictionPolicy;
+    private final Map<EntryKey, byte[]> entries = new HashMap<EntryKey, byte[]>();
+    private final Map<EntryKey, PendingRead> pendingReads = new HashMap<EntryKey, PendingRead>();
+    private long cachedBytes = 0L;
+
+    // Stats
+    private final StatsLogger statsLogger;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+    private final Gauge<Number> cachedBytesGauge;
+    private final Gauge<Number> cachedEntriesGauge;
+
+    public BKEntryCache(DistributedLogConfiguration conf, StatsLogger statsLogger) {
+        this(conf.getReadEntryCacheMaxBytes(),
+             newEvictionPolicy(conf.getReadEntryCacheEvictionPolicy(), conf.getReadEntryCacheMaxBytes()),
+             statsLogger);
+    }
+
+    @VisibleForTesting
+    BKEntryCache(long maxBytes,
+                 EntryCacheEvictionPolicy<EntryKey> evictionPolicy,
+                 StatsLogger statsLogger) {
+        Preconditions.checkArgument(maxBytes > 0, "Invalid max bytes : " + maxBytes);
+        this.maxBytes = maxBytes;
+        this.evictionPolicy = evictionPolicy;
+        // Stats
+        this.statsLogger = statsLogger;
+        this.hits = statsLogger.getCounter("hits");
+        this.misses = statsLogger.getCounter("misses");
+        this.coalesced = statsLogger.getCounter("coalesced");
+        this.evictions = statsLogger.getCounter("evictions");
+        this.cachedBytesGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return getCachedBytes();
+            }
+        };
+        this.statsLogger.registerGauge("cached_bytes", cachedBytesGauge);
+        this.cachedEntriesGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return getNumCachedEntries();
+            }
+        };
+        this.statsLogger.registerGauge("cached_entries", cachedEntriesGauge);
+    }
+
+    /**
+     * Read entry <i>entryId</i> of ledger <i>lh</i> through the cache. The entry must be confirmed,
+     * i.e. not beyond the last add confirmed of the ledger.
+     *
+     * @param lh ledger handle to read the entry from on a cache miss
+     * @param entryId entry id
+     * @param callback callback on the entry read
+     */
+    public void asyncRead(LedgerHandle lh, long entryId, ReadCallback callback) {
+        EntryKey key = new EntryKey(lh.getId(), entryId);
+        byte[] data;
+        PendingRead readToIssue = null;
+        synchronized (this) {
+            data = entries.get(key);
+            if (null != data) {
+                evictionPolicy.onAccess(key);
+                hits.inc();
+            } else {
+                PendingRead pendingRead = pendingReads.get(key);
+                if (null == pendingRead) {
+                    pendingRead = readToIssue = new PendingRead(key);
+                    pendingReads.put(key, pendingRead);
+                    misses.inc();
+                } else {
+                    coalesced.inc();
+                }
+                pendingRead.callbacks.add(callback);
+            }
+        }
+        if (null != data) {
+            callback.onEntryRead(BKException.Code.OK, entryId, data);
+        } else if (null != readToIssue) {
+            lh.asyncReadEntries(entryId, entryId, readToIssue, null);
+        }
+    }
+
+    /**
+     * Add a confirmed entry to the cache.
+     *
+     * @param ledgerId ledger id
+     * @param entryId entry id
+     * @param data data of the entry
+     */
+    public synchronized void put(long ledgerId, long entryId, byte[] data) {
+        unsafePut(new EntryKey(ledgerId, entryId), data);
+    }
+
+    private void unsafePut(EntryKey key, byte[] data) {
+        if (data.length > maxBytes || entries.containsKey(key)) {
+            return;
+        }
+        entries.put(key, data);
+        evictionPolicy.onInsert(key, data.length);
+        cachedBytes += data.length;
+        while (cachedBytes > maxBytes) {
+            EntryKey keyToEvict = evictionPolicy.evict();
+            if (null == keyToEvict) {
+                break;
+            }
+            byte[] evictedData = entries.remove(keyToEvict);
+            if (null != evictedData) {
+                cachedBytes -= evictedData.length;
+                evictions.inc();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    synchronized byte[] get(long ledgerId, long entryId) {
+        return entries.get(new EntryKey(ledgerId, entryId));
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized int getNumCachedEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Drop all the cached entries and unregister the stats.
+     */
+    public void close() {
+        synchronized (this) {
+            entries.clear();
+            cachedBytes = 0L;
+        }
+        statsLogger.unregisterGauge("cached_bytes", cachedBytesGauge);
+        statsLogger.unregisterGauge("cached_entries", cachedEntriesGauge);
+    }
+}
@@ -29,6 +29,8 @@ import com.twitter.distributedlog.exceptions.EndOfLogSegmentException;
 import com.twitter.distributedlog.exceptions.ReadCancelledException;
 import com.twitter.distributedlog.injector.AsyncFailureInjector;
 import com.twitter.distributedlog.logsegment.LogSegmentEntryReader;
+import com.twitter.distributedlog.readahead.OffHeapEntry;
+import com.twitter.distributedlog.readahead.OffHeapEntryCache;
 import com.twitter.distributedlog.util.FutureUtils;
 import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.util.Future;
@@ -43,6 +45,8 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -65,11 +69,13 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
     private static final Logger logger = LoggerFactory.getLogger(BKLogSegmentEntryReader.class);
 
     private class CacheEntry implements Runnable, AsyncCallback.ReadCallback,
-            AsyncCallback.ReadLastConfirmedAndEntryCallback {
+            AsyncCallback.ReadLastConfirmedAndEntryCallback, BKEntryCache.ReadCallback {
 
         protected final long entryId;
         private boolean done;
         private LedgerEntry entry;
+        // data of the entry when it is read through the shared entry cache
+        private byte[] data;
         private int rc;
 
         private CacheEntry(long entryId) {
@@ -88,6 +94,13 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
         }
 
         void setValue(LedgerEntry entry) {
+            if (null != entryCache) {
+                // share the entry with other readers of the same log segment
+                byte[] entryData = entry.getEntry();
+                entryCache.put(getSegment().getLogSegmentId(), entry.getEntryId(), entryData);
+                setValue(entryData);
+                return;
+            }
             synchronized (this) {
                 if (done) {
                     return;
@@ -98,6 +111,17 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
             setDone(true);
         }
 
+        void setValue(byte[] data) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                this.rc = BKException.Code.OK;
+                this.data = data;
+            }
+            setDone(true);
+        }
+
         void setException(int rc) {
             synchronized (this) {
                 if (done) {
@@ -123,6 +147,10 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
             return this.entry;
         }
 
+        synchronized byte[] getData() {
+            return this.data;
+        }
+
         synchronized int getRc() {
             return rc;
         }
@@ -138,6 +166,20 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
             processReadEntries(rc, lh, entries, ctx);
         }
 
+        @Override
+        public void onEntryRead(int rc, long entryId, byte[] data) {
+            if (failureInjector.shouldInjectCorruption(entryId, entryId)) {
+                rc = BKException.Code.DigestMatchException;
+            }
+            if (isDone()) {
+                return;
+            }
+            if (!checkReturnCodeAndHandleFailure(rc, false)) {
+                return;
+            }
+            setValue(data);
+        }
+
         void processReadEntries(int rc,
                                 LedgerHandle lh,
                                 Enumeration<LedgerEntry> entries,
@@ -274,6 +316,9 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
     private final long startSequenceId;
     private final boolean envelopeEntries;
     private final boolean deserializeRecordSet;
+    private final boolean zeroCopy;
+    private final OffHeapEntryCache offHeapCache;
+    private final BKEntryCache entryCache;
     private final int numPrefetchEntries;
     private final int maxPrefetchEntries;
     // state
@@ -312,12 +357,17 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
                             OrderedScheduler scheduler,
                             DistributedLogConfiguration conf,
                             StatsLogger statsLogger,
-                            AsyncFailureInjector failureInjector) {
+                            AsyncFailureInjector failureInjector,
+                            @Nullable OffHeapEntryCache offHeapCache,
+                            @Nullable BKEntryCache entryCache) {
         this.metadata = metadata;
         this.lssn = metadata.getLogSegmentSequenceNumber();
         this.startSequenceId = metadata.getStartSequenceId();
         this.envelopeEntries = metadata.getEnvelopeEntries();
         this.deserializeRecordSet = conf.getDeserializeRecordSetOnReads();
+        this.zeroCopy = conf.getReaderZeroCopyEnabled();
+        this.offHeapCache = offHeapCache;
+        this.entryCache = entryCache;
         this.lh = lh;
         this.nextEntryId = Math.max(startEntryId, 0);
         this.bk = bk;
@@ -594,6 +644,11 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
     }
 
     private void issueSimpleRead(CacheEntry cacheEntry) {
+        if (null != entryCache) {
+            // the entry is confirmed, so it is safe to be served from the shared cache
+            entryCache.asyncRead(getLh(), cacheEntry.entryId, cacheEntry);
+            return;
+        }
         getLh().asyncReadEntries(cacheEntry.entryId, cacheEntry.entryId, cacheEntry, null);
     }
 
@@ -619,16 +674,64 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
     // Foreground Read Operations
     //
 
-    Entry.Reader processReadEntry(LedgerEntry entry) throws IOException {
+    Entry.Reader processReadEntry(CacheEntry cacheEntry) throws IOException {
+        byte[] data = cacheEntry.getData();
+        if (null == data) {
+            return processReadEntry(cacheEntry.getEntry());
+        }
+        if (null != offHeapCache) {
+            return OffHeapEntry.of(
+                    offHeapCache,
+                    lssn,
+                    startSequenceId,
+                    cacheEntry.getEntryId(),
+                    envelopeEntries,
+                    deserializeRecordSet,
+                    zeroCopy,
+                    new ByteArrayInputStream(data),
+                    data.length);
+        }
+        // the data is shared with other readers, so it is only read but never modified
         return Entry.newBuilder()
                 .setLogSegmentInfo(lssn, startSequenceId)
-                .setEntryId(entry.getEntryId())
+                .setEntryId(cacheEntry.getEntryId())
                 .setEnvelopeEntry(envelopeEntries)
                 .deserializeRecordSet(deserializeRecordSet)
-                .setInputStream(entry.getEntryInputStream())
+                .zeroCopy(zeroCopy)
+                .setData(data, 0, data.length)
                 .buildReader();
     }
 
+    Entry.Reader processReadEntry(LedgerEntry entry) throws IOException {
+        if (null != offHeapCache) {
+            // keep the raw bytes off heap, the entry is decoded when the reader consumes it
+            return OffHeapEntry.of(
+                    offHeapCache,
+                    lssn,
+                    startSequenceId,
+                    entry.getEntryId(),
+                    envelopeEntries,
+                    deserializeRecordSet,
+                    zeroCopy,
+                    entry.getEntryInputStream(),
+                    (int) entry.getLength());
+        }
+        Entry.Builder builder = Entry.newBuilder()
+                .setLogSegmentInfo(lssn, startSequenceId)
+                .setEntryId(entry.getEntryId())
+                .setEnvelopeEntry(envelopeEntries)
+                .deserializeRecordSet(deserializeRecordSet)
+                .zeroCopy(zeroCopy);
+        if (zeroCopy) {
+            // copy the entry out of the network buffer once, records are sliced from it
+            byte[] data = entry.getEntry();
+            builder.setData(data, 0, data.length);
+        } else {
+            builder.setInputStream(entry.getEntryInputStream());
+        }
+        return builder.buildReader();
+    }
+
     @Override
     public Future<List<Entry.Reader>> readNext(int numEntries) {
         final PendingReadRequest readRequest = new PendingReadRequest(numEntries);
@@ -755,7 +858,7 @@ public class BKLogSegmentEntryReader implements Runnable, LogSegmentEntryReader,
                     return;
                 }
                 try {
-                    nextRequest.addEntry(processReadEntry(entry.getEntry()));
+                    nextRequest.addEntry(processReadEntry(entry));
                 } catch (IOException e) {
                     setException(e, false);
                     return;
@@ -34,6 +34,7 @@ import com.twitter.distributedlog.logsegment.LogSegmentEntryStore;
 import com.twitter.distributedlog.logsegment.LogSegmentEntryWriter;
 import com.twitter.distributedlog.logsegment.LogSegmentRandomAccessEntryReader;
 import com.twitter.distributedlog.metadata.LogMetadataForWriter;
+import com.twitter.distributedlog.readahead.OffHeapEntryCache;
 import com.twitter.distributedlog.util.Allocator;
 import com.twitter.distributedlog.util.FutureUtils;
 import com.twitter.distributedlog.util.OrderedScheduler;
@@ -47,6 +48,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 
 import static com.google.common.base.Charsets.UTF_8;
@@ -65,12 +67,15 @@ public class BKLogSegmentEntryStore implements
 
         private final LogSegmentMetadata segment;
         private final long startEntryId;
+        private final OffHeapEntryCache offHeapCache;
         private final Promise<LogSegmentEntryReader> openPromise;
 
         OpenReaderRequest(LogSegmentMetadata segment,
-                          long startEntryId) {
+                          long startEntryId,
+                          OffHeapEntryCache offHeapCache) {
             this.segment = segment;
             this.startEntryId = startEntryId;
+            this.offHeapCache = offHeapCache;
             this.openPromise = new Promise<LogSegmentEntryReader>();
         }
 
@@ -98,6 +103,8 @@ public class BKLogSegmentEntryStore implements
     private final AsyncFailureInjector failureInjector;
     // ledger allocator
     private final LedgerAllocator allocator;
+    // entry cache shared across the readers of the namespace, null if disabled
+    private final BKEntryCache entryCache;
 
     public BKLogSegmentEntryStore(DistributedLogConfiguration conf,
                                   DynamicDistributedLogConfiguration dynConf,
@@ -107,6 +114,18 @@ public class BKLogSegmentEntryStore implements
                                   LedgerAllocator allocator,
                                   StatsLogger statsLogger,
                                   AsyncFailureInjector failureInjector) {
+        this(conf, dynConf, zkc, bkc, scheduler, allocator, statsLogger, failureInjector, null);
+    }
+
+    public BKLogSegmentEntryStore(DistributedLogConfiguration conf,
+                                  DynamicDistributedLogConfiguration dynConf,
+                                  ZooKeeperClient zkc,
+                                  BookKeeperClient bkc,
+                                  OrderedScheduler scheduler,
+                                  LedgerAllocator allocator,
+                                  StatsLogger statsLogger,
+                                  AsyncFailureInjector failureInjector,
+                                  @Nullable BKEntryCache entryCache) {
         this.conf = conf;
         this.dynConf = dynConf;
         this.zkc = zkc;
@@ -116,6 +135,7 @@ public class BKLogSegmentEntryStore implements
         this.allocator = allocator;
         this.statsLogger = statsLogger;
         this.failureInjector = failureInjector;
+        this.entryCache = entryCache;
     }
 
     @Override
@@ -188,13 +208,20 @@ public class BKLogSegmentEntryStore implements
     @Override
     public Future<LogSegmentEntryReader> openReader(LogSegmentMetadata segment,
                                                     long startEntryId) {
+        return openReader(segment, startEntryId, null);
+    }
+
+    @Override
+    public Future<LogSegmentEntryReader> openReader(LogSegmentMetadata segment,
+                                                    long startEntryId,
+                                                    @Nullable OffHeapEntryCache offHeapCache) {
         BookKeeper bk;
         try {
             bk = this.bkc.get();
         } catch (IOException e) {
             return Future.exception(e);
         }
-        OpenReaderRequest request = new OpenReaderRequest(segment, startEntryId);
+        OpenReaderRequest request = new OpenReaderRequest(segment, startEntryId, offHeapCache);
         if (segment.isInProgress()) {
             bk.asyncOpenLedgerNoRecovery(
                     segment.getLogSegmentId(),
@@ -232,7 +259,9 @@ public class BKLogSegmentEntryStore implements
                     scheduler,
                     conf,
                     statsLogger,
-                    failureInjector);
+                    failureInjector,
+                    request.offHeapCache,
+                    entryCache);
             FutureUtils.setValue(request.openPromise, reader);
         } catch (IOException e) {
             FutureUtils.setException(request.openPromise, e);
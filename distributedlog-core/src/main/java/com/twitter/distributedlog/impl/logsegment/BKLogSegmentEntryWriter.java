@@ -20,7 +20,9 @@ package com.twitter.distributedlog.impl.logsegment;
 import com.google.common.annotations.VisibleForTesting;
 import com.twitter.distributedlog.logsegment.LogSegmentEntryWriter;
 import org.apache.bookkeeper.client.AsyncCallback;
+import org.apache.bookkeeper.client.BookKeeperAccessor;
 import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.client.LedgerMetadata;
 
 /**
  * Ledger based log segment entry writer.
@@ -54,6 +56,14 @@ public class BKLogSegmentEntryWriter implements LogSegmentEntryWriter {
         lh.asyncAddEntry(data, offset, length, callback, ctx);
     }
 
+    @Override
+    public boolean isAddCompletedByAllReplicas() {
+        // an add is acknowledged once the ack quorum responds, while the entry
+        // might still be in flight to the other bookies of the write quorum.
+        LedgerMetadata metadata = BookKeeperAccessor.getLedgerMetadata(lh);
+        return metadata.getWriteQuorumSize() == metadata.getAckQuorumSize();
+    }
+
     @Override
     public long size() {
         return lh.getLength();
@@ -46,6 +46,7 @@ class BKLogSegmentRandomAccessEntryReader implements
     private final long startSequenceId;
     private final boolean envelopeEntries;
     private final boolean deserializeRecordSet;
+    private final boolean zeroCopy;
     // state
     private final LogSegmentMetadata metadata;
     private final LedgerHandle lh;
@@ -59,6 +60,7 @@ class BKLogSegmentRandomAccessEntryReader implements
         this.startSequenceId = metadata.getStartSequenceId();
         this.envelopeEntries = metadata.getEnvelopeEntries();
         this.deserializeRecordSet = conf.getDeserializeRecordSetOnReads();
+        this.zeroCopy = conf.getReaderZeroCopyEnabled();
         this.lh = lh;
     }
 
@@ -75,13 +77,20 @@ class BKLogSegmentRandomAccessEntryReader implements
     }
 
     Entry.Reader processReadEntry(LedgerEntry entry) throws IOException {
-        return Entry.newBuilder()
+        Entry.Builder builder = Entry.newBuilder()
                 .setLogSegmentInfo(lssn, startSequenceId)
                 .setEntryId(entry.getEntryId())
                 .setEnvelopeEntry(envelopeEntries)
                 .deserializeRecordSet(deserializeRecordSet)
-                .setInputStream(entry.getEntryInputStream())
-                .buildReader();
+                .zeroCopy(zeroCopy);
+        if (zeroCopy) {
+            // copy the entry out of the network buffer once, records are sliced from it
+            byte[] data = entry.getEntry();
+            builder.setData(data, 0, data.length);
+        } else {
+            builder.setInputStream(entry.getEntryInputStream());
+        }
+        return builder.buildReader();
     }
 
     @Override
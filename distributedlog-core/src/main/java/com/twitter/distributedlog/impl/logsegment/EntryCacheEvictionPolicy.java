@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.impl.logsegment;
+
+/**
+ * Policy deciding which entry to evict from a {@link BKEntryCache}.
+ *
+ * <p>The cache calls the policy under its lock, so implementations don't need to be thread safe.
+ *
+ * @param <K> type of the cache keys
+ */
+public interface EntryCacheEvictionPolicy<K> {
+
+    /**
+     * Notified when a new key is inserted into the cache.
+     *
+     * @param key inserted key
+     * @param size size in bytes of the value
+     */
+    void onInsert(K key, int size);
+
+    /**
+     * Notified when a cached key is accessed.
+     *
+     * @param key accessed key
+     */
+    void onAccess(K key);
+
+    /**
+     * Choose a key to evict and stop tracking it.
+     *
+     * @return the key to evict, or null if there is no key tracked.
+     */
+    K evict();
+
+}
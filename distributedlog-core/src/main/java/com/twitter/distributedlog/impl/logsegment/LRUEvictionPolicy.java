@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.impl.logsegment;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Evict the least recently used entry.
+ */
+public class LRUEvictionPolicy<K> implements EntryCacheEvictionPolicy<K> {
+
+    // keys in access order, from the least recently used to the most recently used
+    private final LinkedHashSet<K> keys = new LinkedHashSet<K>();
+
+    @Override
+    public void onInsert(K key, int size) {
+        keys.add(key);
+    }
+
+    @Override
+    public void onAccess(K key) {
+        if (keys.remove(key)) {
+            keys.add(key);
+        }
+    }
+
+    @Override
+    public K evict() {
+        Iterator<K> iter = keys.iterator();
+        if (!iter.hasNext()) {
+            return null;
+        }
+        K key = iter.next();
+        iter.remove();
+        return key;
+    }
+}
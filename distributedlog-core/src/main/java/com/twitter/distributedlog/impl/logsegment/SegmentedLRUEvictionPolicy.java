@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.impl.logsegment;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Segmented LRU eviction policy.
+ *
+ * <p>Newly inserted entries go to a probationary segment. Entries accessed again are promoted
+ * to a protected segment, which is bounded by <i>protectedMaxBytes</i>; the least recently used
+ * entries of the protected segment are demoted back to the probationary segment when it
+ * overflows. Entries are evicted from the probationary segment first, so a burst of entries
+ * read only once (e.g. a catch-up reader scanning old segments) doesn't flush the entries
+ * shared by multiple readers.
+ */
+public class SegmentedLRUEvictionPolicy<K> implements EntryCacheEvictionPolicy<K> {
+
+    private final long protectedMaxBytes;
+    // keys to sizes, from the least recently used to the most recently used
+    private final LinkedHashMap<K, Integer> probationSegment = new LinkedHashMap<K, Integer>();
+    private final LinkedHashMap<K, Integer> protectedSegment = new LinkedHashMap<K, Integer>();
+    private long protectedBytes = 0L;
+
+    public SegmentedLRUEvictionPolicy(long protectedMaxBytes) {
+        this.protectedMaxBytes = protectedMaxBytes;
+    }
+
+    @Override
+    public void onInsert(K key, int size) {
+        probationSegment.put(key, size);
+    }
+
+    @Override
+    public void onAccess(K key) {
+        Integer size = probationSegment.remove(key);
+        if (null != size) {
+            // promote to protected segment
+            protectedSegment.put(key, size);
+            protectedBytes += size;
+            demoteProtectedEntries();
+            return;
+        }
+        size = protectedSegment.remove(key);
+        if (null != size) {
+            protectedSegment.put(key, size);
+        }
+    }
+
+    private void demoteProtectedEntries() {
+        Iterator<Map.Entry<K, Integer>> iter = protectedSegment.entrySet().iterator();
+        while (protectedBytes > protectedMaxBytes && protectedSegment.size() > 1 && iter.hasNext()) {
+            Map.Entry<K, Integer> entry = iter.next();
+            iter.remove();
+            protectedBytes -= entry.getValue();
+            probationSegment.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public K evict() {
+        K key = pollEldest(probationSegment);
+        if (null != key) {
+            return key;
+        }
+        Iterator<Map.Entry<K, Integer>> iter = protectedSegment.entrySet().iterator();
+        if (!iter.hasNext()) {
+            return null;
+        }
+        Map.Entry<K, Integer> entry = iter.next();
+        iter.remove();
+        protectedBytes -= entry.getValue();
+        return entry.getKey();
+    }
+
+    private static <K> K pollEldest(LinkedHashMap<K, Integer> segment) {
+        Iterator<K> iter = segment.keySet().iterator();
+        if (!iter.hasNext()) {
+            return null;
+        }
+        K key = iter.next();
+        iter.remove();
+        return key;
+    }
+}
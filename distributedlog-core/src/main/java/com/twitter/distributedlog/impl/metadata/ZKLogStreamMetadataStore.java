@@ -49,6 +49,7 @@ import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.distributedlog.util.PermitManager;
 import com.twitter.distributedlog.util.Transaction;
 import com.twitter.distributedlog.util.Utils;
+import com.twitter.distributedlog.zk.ZKOpBatcher;
 import com.twitter.distributedlog.zk.ZKTransaction;
 import com.twitter.util.ExceptionalFunction;
 import com.twitter.util.ExceptionalFunction0;
@@ -94,6 +95,8 @@ public class ZKLogStreamMetadataStore implements LogStreamMetadataStore {
     private final StatsLogger statsLogger;
     private final LogSegmentMetadataStore logSegmentStore;
     private final LimitedPermitManager permitManager;
+    // batcher to coalesce metadata operations, null if batching is disabled
+    private final ZKOpBatcher batcher;
     // lock
     private SessionLockFactory lockFactory;
     private OrderedScheduler lockStateExecutor;
@@ -109,7 +112,17 @@ public class ZKLogStreamMetadataStore implements LogStreamMetadataStore {
         this.scheduler = scheduler;
         this.statsLogger = statsLogger;
         // create the log segment metadata store and the permit manager (used for log segment rolling)
-        this.logSegmentStore = new ZKLogSegmentMetadataStore(conf, zooKeeperClient, scheduler);
+        if (conf.getZKMetadataBatchWindowMs() > 0) {
+            this.batcher = new ZKOpBatcher(
+                    zooKeeperClient,
+                    scheduler,
+                    conf.getZKMetadataBatchWindowMs(),
+                    conf.getZKMetadataBatchMaxOps(),
+                    statsLogger.scope("zk_metadata_batcher"));
+        } else {
+            this.batcher = null;
+        }
+        this.logSegmentStore = new ZKLogSegmentMetadataStore(conf, zooKeeperClient, scheduler, batcher);
         this.permitManager = new LimitedPermitManager(
                 conf.getLogSegmentRollingConcurrency(),
                 1,
@@ -151,6 +164,9 @@ public class ZKLogStreamMetadataStore implements LogStreamMetadataStore {
     public void close() throws IOException {
         this.zooKeeperClient.unregister(permitManager);
         this.permitManager.close();
+        if (null != batcher) {
+            this.batcher.close();
+        }
         this.logSegmentStore.close();
         SchedulerUtils.shutdownScheduler(
                 getLockStateExecutor(false),
@@ -170,7 +186,7 @@ public class ZKLogStreamMetadataStore implements LogStreamMetadataStore {
 
     @Override
     public Transaction<Object> newTransaction() {
-        return new ZKTransaction(zooKeeperClient);
+        return new ZKTransaction(zooKeeperClient, batcher);
     }
 
     @Override
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.limiter;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket rate limiter.
+ *
+ * <p>The bucket is tracked as the theoretical time at which the next permit becomes
+ * free (GCRA), so acquiring permits is a single CAS on an {@link AtomicLong}. The
+ * rate could be changed in place by {@link #setRate(int, int)} without rebuilding
+ * the limiter.
+ * Notes:
+ * 1. Negative limit translates into (virtually) unlimited.
+ * 2. Zero limit translates into rejecting all requests.
+ * 3. Calling acquire with permits == 0 translates into no acquire.
+ * 4. A request larger than the burst is only admitted when the bucket is full.
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    static class Rate {
+        final int permitsPerSecond;
+        final long burstNanos;
+
+        Rate(int permitsPerSecond, int burstPermits) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burstNanos = permitsPerSecond > 0 ? burstPermits * NANOS_PER_SECOND / permitsPerSecond : 0L;
+        }
+
+        long costNanos(int permits) {
+            return permits * NANOS_PER_SECOND / permitsPerSecond;
+        }
+    }
+
+    public static RateLimiter of(int limit) {
+        if (limit == 0) {
+            return RateLimiter.REJECT;
+        } else if (limit < 0) {
+            return RateLimiter.ACCEPT;
+        } else {
+            return new TokenBucketRateLimiter(limit);
+        }
+    }
+
+    private final Ticker ticker;
+    // the theoretical time that the next permit is free
+    private final AtomicLong nextFreeNanos;
+    private volatile Rate rate;
+
+    public TokenBucketRateLimiter(int permitsPerSecond) {
+        this(permitsPerSecond, Math.max(permitsPerSecond, 1), Ticker.systemTicker());
+    }
+
+    public TokenBucketRateLimiter(int permitsPerSecond, int burstPermits, Ticker ticker) {
+        Preconditions.checkArgument(burstPermits > 0, "Invalid burst permits : " + burstPermits);
+        this.ticker = ticker;
+        this.rate = new Rate(permitsPerSecond, burstPermits);
+        this.nextFreeNanos = new AtomicLong(ticker.read());
+    }
+
+    /**
+     * Change the rate of the limiter. The permits already acquired are kept.
+     *
+     * @param permitsPerSecond permits per second
+     * @param burstPermits max number of permits that could be acquired in a burst
+     */
+    public void setRate(int permitsPerSecond, int burstPermits) {
+        Preconditions.checkArgument(burstPermits > 0, "Invalid burst permits : " + burstPermits);
+        this.rate = new Rate(permitsPerSecond, burstPermits);
+    }
+
+    public int getRate() {
+        return rate.permitsPerSecond;
+    }
+
+    @Override
+    public boolean acquire(int permits) {
+        Preconditions.checkState(permits >= 0);
+        if (permits == 0) {
+            return true;
+        }
+        Rate r = rate;
+        if (r.permitsPerSecond < 0) {
+            return true;
+        } else if (r.permitsPerSecond == 0) {
+            return false;
+        }
+        long cost = r.costNanos(permits);
+        while (true) {
+            long now = ticker.read();
+            long next = nextFreeNanos.get();
+            long start = Math.max(next, now);
+            long newNext = start + cost;
+            if (newNext - now > r.burstNanos && start > now) {
+                return false;
+            }
+            if (nextFreeNanos.compareAndSet(next, newNext)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give back permits acquired by {@link #acquire(int)}, e.g. when the request
+     * is rejected by another limiter after acquiring from this one.
+     *
+     * @param permits number of permits to give back
+     */
+    public void release(int permits) {
+        Preconditions.checkState(permits >= 0);
+        Rate r = rate;
+        if (permits == 0 || r.permitsPerSecond <= 0) {
+            return;
+        }
+        nextFreeNanos.addAndGet(-r.costNanos(permits));
+    }
+}
@@ -21,10 +21,12 @@ import com.google.common.annotations.Beta;
 import com.twitter.distributedlog.LogSegmentMetadata;
 import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
 import com.twitter.distributedlog.metadata.LogMetadataForWriter;
+import com.twitter.distributedlog.readahead.OffHeapEntryCache;
 import com.twitter.distributedlog.util.Allocator;
 import com.twitter.distributedlog.util.Transaction;
 import com.twitter.util.Future;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 
 /**
@@ -61,6 +63,19 @@ public interface LogSegmentEntryStore {
     Future<LogSegmentEntryReader> openReader(LogSegmentMetadata segment,
                                              long startEntryId);
 
+    /**
+     * Open the reader for reading data to the log <i>segment</i>, keeping the raw bytes of
+     * the entries it reads in <i>offHeapCache</i>.
+     *
+     * @param segment the log <i>segment</i> to read data from
+     * @param startEntryId the start entry id
+     * @param offHeapCache cache to keep the raw bytes of the entries, or null to decode them on read
+     * @return future represent the opened reader
+     */
+    Future<LogSegmentEntryReader> openReader(LogSegmentMetadata segment,
+                                             long startEntryId,
+                                             @Nullable OffHeapEntryCache offHeapCache);
+
     /**
      * Open the reader for reading entries from a random access log <i>segment</i>.
      *
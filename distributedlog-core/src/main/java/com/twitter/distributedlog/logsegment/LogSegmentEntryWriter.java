@@ -69,4 +69,14 @@ public interface LogSegmentEntryWriter extends Sizable {
      */
     void asyncAddEntry(byte[] data, int offset, int length,
                        AsyncCallback.AddCallback callback, Object ctx);
+
+    /**
+     * Whether all the replicas of an entry are written when its add callback is triggered.
+     * <p>If not, the implementation might still be sending the data passed to
+     * {@link #asyncAddEntry(byte[], int, int, AsyncCallback.AddCallback, Object)} to the
+     * remaining replicas after the add callback, so the data can't be reused at that point.
+     *
+     * @return true if all the replicas of an entry are written when its add callback is triggered.
+     */
+    boolean isAddCompletedByAllReplicas();
 }
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.logsegment;
+
+import com.google.common.base.Preconditions;
+import com.twitter.distributedlog.Entry;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.LogSegmentMetadata;
+import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.util.Future;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Scanner that reads the records of an entry range of a log segment in order.
+ *
+ * <p>The scanner is meant for bulk exports of log segments outside of the log readers, e.g. by batch
+ * processing jobs. It keeps a window of outstanding batched reads to the underlying
+ * {@link LogSegmentRandomAccessEntryReader}, so the next batches are fetched while the records of the
+ * current batch are consumed. Records are decoded zero-copy if the entry store is configured with
+ * {@link com.twitter.distributedlog.DistributedLogConfiguration#getReaderZeroCopyEnabled()}.
+ *
+ * <p>The scanner isn't thread safe. It owns the entry reader and closes it when it is closed.
+ */
+public class LogSegmentScanner implements Closeable {
+
+    /**
+     * End entry id to scan up to the last add confirmed entry of the log segment.
+     */
+    public static final long LAST_ADD_CONFIRMED = -1L;
+
+    /**
+     * Open a scanner to read entries [<i>startEntryId</i>, <i>endEntryId</i>] of log <i>segment</i>.
+     *
+     * @param entryStore entry store to read the log segment from
+     * @param segment log segment to scan
+     * @param startEntryId start entry id
+     * @param endEntryId end entry id, or {@link #LAST_ADD_CONFIRMED} to scan to the end of the log segment
+     * @param batchSize number of entries read by a single read request
+     * @param window max number of outstanding read requests
+     * @return the scanner.
+     * @throws IOException if failed to open the log segment
+     */
+    public static LogSegmentScanner open(LogSegmentEntryStore entryStore,
+                                         LogSegmentMetadata segment,
+                                         long startEntryId,
+                                         long endEntryId,
+                                         int batchSize,
+                                         int window) throws IOException {
+        LogSegmentRandomAccessEntryReader reader =
+                FutureUtils.result(entryStore.openRandomAccessReader(segment, false));
+        return new LogSegmentScanner(reader, startEntryId, endEntryId, batchSize, window);
+    }
+
+    private final LogSegmentRandomAccessEntryReader reader;
+    private final long startEntryId;
+    private final long endEntryId;
+    private final int batchSize;
+    private final int window;
+    private final LinkedList<Future<List<Entry.Reader>>> pendingReads =
+            new LinkedList<Future<List<Entry.Reader>>>();
+
+    // state
+    private long nextEntryIdToRead;
+    private Iterator<Entry.Reader> currentEntries = null;
+    private Entry.Reader currentEntry = null;
+    private long numEntriesRead = 0L;
+    private long numRecordsRead = 0L;
+    private boolean closed = false;
+
+    public LogSegmentScanner(LogSegmentRandomAccessEntryReader reader,
+                             long startEntryId,
+                             long endEntryId,
+                             int batchSize,
+                             int window) {
+        Preconditions.checkArgument(startEntryId >= 0, "Invalid start entry id : " + startEntryId);
+        Preconditions.checkArgument(batchSize > 0, "Invalid batch size : " + batchSize);
+        Preconditions.checkArgument(window > 0, "Invalid read window : " + window);
+        this.reader = reader;
+        this.startEntryId = startEntryId;
+        if (LAST_ADD_CONFIRMED == endEntryId) {
+            this.endEntryId = reader.getLastAddConfirmed();
+        } else {
+            this.endEntryId = Math.min(endEntryId, reader.getLastAddConfirmed());
+        }
+        this.batchSize = batchSize;
+        this.window = window;
+        this.nextEntryIdToRead = startEntryId;
+    }
+
+    public long getStartEntryId() {
+        return startEntryId;
+    }
+
+    public long getEndEntryId() {
+        return endEntryId;
+    }
+
+    public long getNumEntriesRead() {
+        return numEntriesRead;
+    }
+
+    public long getNumRecordsRead() {
+        return numRecordsRead;
+    }
+
+    /**
+     * Return the fraction of the entry range that has been read.
+     *
+     * @return progress between 0.0 and 1.0.
+     */
+    public float getProgress() {
+        long numEntries = endEntryId - startEntryId + 1;
+        if (numEntries <= 0) {
+            return 1.0f;
+        }
+        return Math.min(1.0f, ((float) numEntriesRead) / numEntries);
+    }
+
+    private void fillReadWindow() {
+        while (pendingReads.size() < window && nextEntryIdToRead <= endEntryId) {
+            long batchEndEntryId = Math.min(nextEntryIdToRead + batchSize - 1, endEntryId);
+            pendingReads.add(reader.readEntries(nextEntryIdToRead, batchEndEntryId));
+            nextEntryIdToRead = batchEndEntryId + 1;
+        }
+    }
+
+    /**
+     * Read the next record of the entry range. It blocks until the batch containing the record is read.
+     *
+     * @return the next record, or null if the entry range is exhausted.
+     * @throws IOException if failed to read entries from the log segment
+     */
+    public LogRecordWithDLSN nextRecord() throws IOException {
+        Preconditions.checkState(!closed, "Scanner is already closed");
+        while (true) {
+            if (null != currentEntry) {
+                LogRecordWithDLSN record = currentEntry.nextRecord();
+                if (null != record) {
+                    ++numRecordsRead;
+                    return record;
+                }
+                currentEntry = null;
+            }
+            if (null != currentEntries && currentEntries.hasNext()) {
+                currentEntry = currentEntries.next();
+                ++numEntriesRead;
+                continue;
+            }
+            fillReadWindow();
+            Future<List<Entry.Reader>> readFuture = pendingReads.poll();
+            if (null == readFuture) {
+                return null;
+            }
+            currentEntries = FutureUtils.result(readFuture).iterator();
+            // issue the next batch before consuming the current one
+            fillReadWindow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pendingReads.clear();
+        currentEntries = null;
+        currentEntry = null;
+        FutureUtils.result(reader.asyncClose());
+    }
+}
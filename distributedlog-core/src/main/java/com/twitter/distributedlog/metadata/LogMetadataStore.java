@@ -19,11 +19,14 @@ package com.twitter.distributedlog.metadata;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Optional;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.callback.NamespaceListener;
 import com.twitter.util.Future;
 
+import javax.annotation.Nullable;
 import java.net.URI;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Interface for log metadata store.
@@ -56,6 +59,20 @@ public interface LogMetadataStore {
      */
     Future<Iterator<String>> getLogs();
 
+    /**
+     * Retrieves a page of logs from the namespace, in lexicographic order.
+     *
+     * <p>The pages are served from a namespace cache that is kept up to date by watching
+     * the namespace, so they might lag behind the latest changes of the namespace.</p>
+     *
+     * @param startAfter
+     *          log name to start after. null means starting from the first log.
+     * @param maxLogs
+     *          max number of logs to return.
+     * @return the page of logs. an empty page means there are no more logs.
+     */
+    Future<List<String>> getLogs(@Nullable String startAfter, int maxLogs);
+
     /**
      * Register a namespace listener on streams changes.
      *
@@ -63,4 +80,12 @@ public interface LogMetadataStore {
      *          namespace listener
      */
     void registerNamespaceListener(NamespaceListener listener);
+
+    /**
+     * Register a namespace change listener on incremental streams changes.
+     *
+     * @param listener
+     *          namespace change listener
+     */
+    void registerNamespaceChangeListener(NamespaceChangeListener listener);
 }
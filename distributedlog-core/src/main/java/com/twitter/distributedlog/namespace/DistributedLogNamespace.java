@@ -19,16 +19,23 @@ package com.twitter.distributedlog.namespace;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Optional;
+import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.DistributedLogConfiguration;
 import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.MultiStreamReader;
 import com.twitter.distributedlog.exceptions.LogNotFoundException;
 import com.twitter.distributedlog.acl.AccessControlManager;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.callback.NamespaceListener;
 import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
 import com.twitter.distributedlog.exceptions.InvalidStreamNameException;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.apache.bookkeeper.stats.StatsLogger;
 
@@ -161,6 +168,55 @@ public interface DistributedLogNamespace {
     Iterator<String> getLogs()
             throws IOException;
 
+    /**
+     * Retrieve a page of the logs under the namespace, in lexicographic order.
+     *
+     * <p>Unlike {@link #getLogs()}, it doesn't list the whole namespace on each call. The pages
+     * are served from a namespace cache kept up to date by watching the namespace, so they
+     * might lag behind the latest changes of the namespace.</p>
+     *
+     * @param startAfter
+     *          log name to start after. null means starting from the first log.
+     * @param maxLogs
+     *          max number of logs to return.
+     * @return the page of logs. an empty page means there are no more logs.
+     * @throws IOException when encountered issues with backend.
+     */
+    List<String> getLogs(@Nullable String startAfter, int maxLogs)
+            throws IOException;
+
+    /**
+     * Open a reader reading the logs <i>streams</i>, each from its given position.
+     *
+     * <p>The logs read by a multi stream reader share a single scheduler, idle check and
+     * readahead budget, so it is cheaper than opening an async log reader per log when
+     * reading a large number of logs.</p>
+     *
+     * @param streams
+     *          position to start reading from for each log
+     * @return multi stream reader reading the logs.
+     * @throws InvalidStreamNameException if any log name is invalid.
+     * @throws IOException when encountered issues with backend.
+     * @see MultiStreamReader
+     */
+    MultiStreamReader openMultiStreamReader(Map<String, DLSN> streams)
+            throws InvalidStreamNameException, IOException;
+
+    /**
+     * Open a reader reading the logs whose names match <i>pattern</i> from <i>fromDLSN</i>.
+     * The logs matching the pattern that are created later are read as well.
+     *
+     * @param pattern
+     *          pattern of the log names
+     * @param fromDLSN
+     *          position to start reading the logs from
+     * @return multi stream reader reading the logs.
+     * @throws IOException when encountered issues with backend.
+     * @see MultiStreamReader
+     */
+    MultiStreamReader openMultiStreamReader(Pattern pattern, DLSN fromDLSN)
+            throws IOException;
+
     //
     // Methods for namespace
     //
@@ -173,6 +229,15 @@ public interface DistributedLogNamespace {
      */
     void registerNamespaceListener(NamespaceListener listener);
 
+    /**
+     * Register namespace change listener on incremental stream changes under the namespace.
+     * The logs that already exist are delivered to the listener as added logs.
+     *
+     * @param listener
+     *          listener to receive incremental stream changes under the namespace
+     */
+    void registerNamespaceChangeListener(NamespaceChangeListener listener);
+
     /**
      * Create an access control manager to manage/check acl for logs.
      *
@@ -25,11 +25,14 @@ import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
 import com.twitter.distributedlog.feature.CoreFeatureKeys;
 import com.twitter.distributedlog.injector.AsyncFailureInjector;
 import com.twitter.distributedlog.injector.AsyncRandomFailureInjector;
+import com.twitter.distributedlog.io.BufferPool;
+import com.twitter.distributedlog.readahead.OffHeapEntryCache;
 import com.twitter.distributedlog.util.ConfUtils;
 import com.twitter.distributedlog.util.DLUtils;
 import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.distributedlog.util.PermitLimiter;
 import com.twitter.distributedlog.util.SimplePermitLimiter;
+import com.twitter.distributedlog.util.WriteBytesLimiter;
 import org.apache.bookkeeper.feature.Feature;
 import org.apache.bookkeeper.feature.FeatureProvider;
 import org.apache.bookkeeper.feature.SettableFeatureProvider;
@@ -232,6 +235,8 @@ public class DistributedLogNamespaceBuilder {
                 .perExecutorStatsLogger(schedulerStatsLogger)
                 .traceTaskExecution(_conf.getEnableTaskExecutionStats())
                 .traceTaskExecutionWarnTimeUs(_conf.getTaskExecutionWarnTimeMicros())
+                .striped(_conf.isStripedSchedulerEnabled())
+                .traceTaskSampleRate(_conf.getTaskExecutionTraceSampleRate())
                 .build();
 
         // initialize the namespace driver
@@ -262,6 +267,31 @@ public class DistributedLogNamespaceBuilder {
                 disableWriteLimitFeature);
         }
 
+        // initialize the buffer pool
+        BufferPool bufferPool = null;
+        if (_conf.getWriterBufferPoolSizeBytes() > 0) {
+            bufferPool = new BufferPool(
+                _conf.getWriterBufferPoolSizeBytes(),
+                _statsLogger.scope("bufferPool"));
+        }
+
+        // initialize the byte based write limiter
+        WriteBytesLimiter writeBytesLimiter = null;
+        if (_conf.getGlobalOutstandingWriteBytesLimit() > 0) {
+            writeBytesLimiter = new WriteBytesLimiter(
+                _dynConf,
+                _conf.getOutstandingWriteBytesLimitWaitEnabled(),
+                _statsLogger.scope("writeBytesLimiter"));
+        }
+
+        // initialize the off heap readahead cache
+        OffHeapEntryCache offHeapEntryCache = null;
+        if (_conf.getReadAheadCacheOffHeapEnabled()) {
+            offHeapEntryCache = new OffHeapEntryCache(
+                _conf,
+                _statsLogger.scope("readahead_cache"));
+        }
+
         return new BKDistributedLogNamespace(
                 _conf,
                 normalizedUri,
@@ -269,6 +299,9 @@ public class DistributedLogNamespaceBuilder {
                 scheduler,
                 featureProvider,
                 writeLimiter,
+                bufferPool,
+                writeBytesLimiter,
+                offHeapEntryCache,
                 failureInjector,
                 _statsLogger,
                 perLogStatsLogger,
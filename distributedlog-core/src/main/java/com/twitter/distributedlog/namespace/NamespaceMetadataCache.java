@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.namespace;
+
+import com.google.common.collect.Lists;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A sorted cache of the log names under a namespace.
+ *
+ * <p>The cache is updated by applying the difference between the latest listing and the cached
+ * logs in place, so an update on a namespace with a large number of logs doesn't rebuild the whole
+ * set. Readers can page through the cached logs in lexicographic order without copying the cache.</p>
+ */
+public class NamespaceMetadataCache {
+
+    /**
+     * Version used when the version of a listing is unknown.
+     */
+    public static final int UNKNOWN_VERSION = -1;
+
+    private final ConcurrentSkipListSet<String> logs = new ConcurrentSkipListSet<String>();
+    private volatile int numLogs = 0;
+    private volatile int version = UNKNOWN_VERSION;
+    private volatile boolean initialized = false;
+
+    /**
+     * Whether the cache is populated by a listing.
+     *
+     * @return true if the cache is populated by a listing.
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Return the number of logs in the cache.
+     *
+     * @return number of logs in the cache.
+     */
+    public int getNumLogs() {
+        return numLogs;
+    }
+
+    /**
+     * Return the iterator of logs in the cache. The iterator is weakly consistent with
+     * the updates applied while iterating.
+     *
+     * @return iterator of logs in lexicographic order.
+     */
+    public Iterator<String> getLogs() {
+        return Collections.unmodifiableSet(logs).iterator();
+    }
+
+    /**
+     * Return up to <i>maxLogs</i> logs that come after <i>startAfter</i> in lexicographic order.
+     *
+     * @param startAfter
+     *          log name to start after. null means starting from the first log.
+     * @param maxLogs
+     *          max number of logs to return.
+     * @return the page of logs.
+     */
+    public List<String> getLogs(@Nullable String startAfter, int maxLogs) {
+        NavigableSet<String> tail = null == startAfter ? logs : logs.tailSet(startAfter, false);
+        List<String> page = Lists.newArrayListWithExpectedSize(Math.min(maxLogs, 1024));
+        Iterator<String> iter = tail.iterator();
+        while (page.size() < maxLogs && iter.hasNext()) {
+            page.add(iter.next());
+        }
+        return page;
+    }
+
+    /**
+     * Update the cache with the latest listing of logs.
+     *
+     * <p>If the listing has the same known version as the cached logs, it is skipped. Otherwise
+     * <i>listing</i> is sorted in place and merged with the cached logs, and the differences are
+     * applied to the cache and collected in <i>addedLogs</i> and <i>removedLogs</i>.</p>
+     *
+     * @param listingVersion
+     *          version of the listing, {@link #UNKNOWN_VERSION} if it is unknown.
+     * @param listing
+     *          latest listing of logs, it will be sorted in place.
+     * @param addedLogs
+     *          empty collection to collect the logs added to the cache.
+     * @param removedLogs
+     *          empty collection to collect the logs removed from the cache.
+     * @return true if the listing is applied, false if the listing is skipped.
+     */
+    public synchronized boolean update(int listingVersion,
+                                       List<String> listing,
+                                       Collection<String> addedLogs,
+                                       Collection<String> removedLogs) {
+        if (initialized && UNKNOWN_VERSION != listingVersion && listingVersion == version) {
+            return false;
+        }
+        Collections.sort(listing);
+        Iterator<String> newIter = listing.iterator();
+        Iterator<String> oldIter = logs.iterator();
+        String newLog = nextDistinct(newIter, null);
+        String oldLog = oldIter.hasNext() ? oldIter.next() : null;
+        while (null != newLog || null != oldLog) {
+            int cmp;
+            if (null == newLog) {
+                cmp = 1;
+            } else if (null == oldLog) {
+                cmp = -1;
+            } else {
+                cmp = newLog.compareTo(oldLog);
+            }
+            if (cmp == 0) {
+                newLog = nextDistinct(newIter, newLog);
+                oldLog = oldIter.hasNext() ? oldIter.next() : null;
+            } else if (cmp < 0) {
+                addedLogs.add(newLog);
+                newLog = nextDistinct(newIter, newLog);
+            } else {
+                removedLogs.add(oldLog);
+                oldLog = oldIter.hasNext() ? oldIter.next() : null;
+            }
+        }
+        // don't use removeAll, as it calls size(), which traverses the whole set
+        for (String log : removedLogs) {
+            logs.remove(log);
+        }
+        for (String log : addedLogs) {
+            logs.add(log);
+        }
+        numLogs = numLogs + addedLogs.size() - removedLogs.size();
+        version = listingVersion;
+        initialized = true;
+        return true;
+    }
+
+    // skip the duplicated names in a sorted listing
+    private static String nextDistinct(Iterator<String> iter, @Nullable String prev) {
+        while (iter.hasNext()) {
+            String next = iter.next();
+            if (!next.equals(prev)) {
+                return next;
+            }
+        }
+        return null;
+    }
+}
@@ -17,8 +17,16 @@
  */
 package com.twitter.distributedlog.namespace;
 
+import com.google.common.collect.Lists;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.callback.NamespaceListener;
+import com.twitter.util.Future;
+import com.twitter.util.Promise;
+import scala.runtime.AbstractFunction1;
 
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
@@ -28,6 +36,10 @@ public abstract class NamespaceWatcher {
 
     protected final CopyOnWriteArraySet<NamespaceListener> listeners =
             new CopyOnWriteArraySet<NamespaceListener>();
+    protected final CopyOnWriteArraySet<NamespaceChangeListener> changeListeners =
+            new CopyOnWriteArraySet<NamespaceChangeListener>();
+    protected final NamespaceMetadataCache cache = new NamespaceMetadataCache();
+    private final Promise<NamespaceMetadataCache> cacheFuture = new Promise<NamespaceMetadataCache>();
 
     /**
      * Register listener for namespace changes.
@@ -51,6 +63,88 @@ public abstract class NamespaceWatcher {
         listeners.remove(listener);
     }
 
+    /**
+     * Register change listener for incremental namespace changes. The logs that are already
+     * in the namespace cache are delivered to the listener as added logs.
+     *
+     * @param listener
+     *          change listener to add
+     */
+    public void registerChangeListener(NamespaceChangeListener listener) {
+        synchronized (cache) {
+            if (!changeListeners.add(listener)) {
+                return;
+            }
+            if (cache.isInitialized() && cache.getNumLogs() > 0) {
+                listener.onStreamsAdded(cache.getLogs(null, Integer.MAX_VALUE));
+            }
+        }
+        watchNamespaceChanges();
+    }
+
+    /**
+     * Unregister change listener from the namespace watcher.
+     *
+     * @param listener
+     *          change listener to remove from namespace watcher
+     */
+    public void unregisterChangeListener(NamespaceChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Retrieve a page of logs from the namespace cache, in lexicographic order. It starts watching
+     * the namespace if it isn't watched yet, and the returned future is satisfied once the cache is
+     * populated by the first listing.
+     *
+     * @param startAfter
+     *          log name to start after. null means starting from the first log.
+     * @param maxLogs
+     *          max number of logs to return.
+     * @return future of the page of logs.
+     */
+    public Future<List<String>> getLogs(@Nullable final String startAfter, final int maxLogs) {
+        watchNamespaceChanges();
+        return cacheFuture.map(new AbstractFunction1<NamespaceMetadataCache, List<String>>() {
+            @Override
+            public List<String> apply(NamespaceMetadataCache cache) {
+                return cache.getLogs(startAfter, maxLogs);
+            }
+        });
+    }
+
+    /**
+     * Apply the latest listing of logs to the namespace cache, and notify the change listeners
+     * with the differences.
+     *
+     * @param listingVersion
+     *          version of the listing, {@link NamespaceMetadataCache#UNKNOWN_VERSION} if it is unknown.
+     * @param listing
+     *          latest listing of logs, it will be sorted in place.
+     */
+    protected void updateLogs(int listingVersion, List<String> listing) {
+        List<String> addedLogs = Lists.newArrayList();
+        List<String> removedLogs = Lists.newArrayList();
+        synchronized (cache) {
+            if (!cache.update(listingVersion, listing, addedLogs, removedLogs)) {
+                return;
+            }
+            addedLogs = Collections.unmodifiableList(addedLogs);
+            removedLogs = Collections.unmodifiableList(removedLogs);
+            for (NamespaceChangeListener listener : changeListeners) {
+                if (!removedLogs.isEmpty()) {
+                    listener.onStreamsRemoved(removedLogs);
+                }
+                if (!addedLogs.isEmpty()) {
+                    listener.onStreamsAdded(addedLogs);
+                }
+            }
+            if (!cacheFuture.isDefined()) {
+                cacheFuture.setValue(cache);
+            }
+        }
+    }
+
     /**
      * Watch the namespace changes. It would be triggered each time
      * a namspace listener is added. The implementation should handle
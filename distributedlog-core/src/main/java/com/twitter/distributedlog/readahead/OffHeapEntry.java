@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.readahead;
+
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.Entry;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link Entry.Reader} whose raw bytes are cached in an {@link OffHeapEntryCache}.
+ *
+ * <p>The entry is only decoded when it is consumed, i.e. on the first call to
+ * {@link #nextRecord()} or <i>skipTo</i>. Enveloped entries are decoded straight from the
+ * direct memory, unless zero-copy is enabled: zero-copy records are sliced from a heap array,
+ * so the raw bytes are copied back to heap first. The direct memory is released to the cache
+ * once the entry is decoded. An entry that is never consumed must be released by {@link #release()}.
+ */
+public class OffHeapEntry implements Entry.Reader {
+
+    /**
+     * Copy <i>length</i> bytes of an entry from <i>in</i> into direct memory allocated from <i>cache</i>.
+     *
+     * @param cache cache to allocate direct memory from
+     * @param lssn log segment sequence number of the entry
+     * @param startSequenceId start sequence id of the log segment
+     * @param entryId entry id
+     * @param envelopeEntry whether the entry is enveloped
+     * @param deserializeRecordSet whether to deserialize record sets when reading the entry
+     * @param zeroCopy whether the records are sliced from the decoded entry
+     * @param in input stream of the raw bytes of the entry
+     * @param length number of bytes of the entry
+     * @return the off heap entry
+     * @throws IOException if failed to read the raw bytes
+     */
+    public static OffHeapEntry of(OffHeapEntryCache cache,
+                                  long lssn,
+                                  long startSequenceId,
+                                  long entryId,
+                                  boolean envelopeEntry,
+                                  boolean deserializeRecordSet,
+                                  boolean zeroCopy,
+                                  InputStream in,
+                                  int length) throws IOException {
+        ByteBuffer buffer = cache.allocate(length);
+        try {
+            ReadableByteChannel channel = Channels.newChannel(in);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Entry " + entryId + " of log segment " + lssn
+                            + " ends at " + buffer.position() + " while its length is " + length);
+                }
+            }
+        } catch (IOException ioe) {
+            cache.release(buffer);
+            throw ioe;
+        }
+        buffer.flip();
+        return new OffHeapEntry(cache, lssn, startSequenceId, entryId,
+                envelopeEntry, deserializeRecordSet, zeroCopy, buffer);
+    }
+
+    private final OffHeapEntryCache cache;
+    private final long lssn;
+    private final long startSequenceId;
+    private final long entryId;
+    private final boolean envelopeEntry;
+    private final boolean deserializeRecordSet;
+    private final boolean zeroCopy;
+    private final ByteBuffer buffer;
+    private final int length;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+    private Entry.Reader reader = null;
+
+    private OffHeapEntry(OffHeapEntryCache cache,
+                         long lssn,
+                         long startSequenceId,
+                         long entryId,
+                         boolean envelopeEntry,
+                         boolean deserializeRecordSet,
+                         boolean zeroCopy,
+                         ByteBuffer buffer) {
+        this.cache = cache;
+        this.lssn = lssn;
+        this.startSequenceId = startSequenceId;
+        this.entryId = entryId;
+        this.envelopeEntry = envelopeEntry;
+        this.deserializeRecordSet = deserializeRecordSet;
+        this.zeroCopy = zeroCopy;
+        this.buffer = buffer;
+        this.length = buffer.remaining();
+    }
+
+    /**
+     * Return the number of raw bytes of this entry.
+     *
+     * @return the number of raw bytes of this entry.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Release the direct memory of this entry if it isn't decoded yet.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            cache.release(buffer);
+        }
+    }
+
+    private Entry.Reader getReader() throws IOException {
+        if (null != reader) {
+            return reader;
+        }
+        if (!released.compareAndSet(false, true)) {
+            throw new IOException("Entry " + entryId + " of log segment " + lssn + " is already released");
+        }
+        Entry.Builder builder = Entry.newBuilder()
+                .setLogSegmentInfo(lssn, startSequenceId)
+                .setEntryId(entryId)
+                .setEnvelopeEntry(envelopeEntry)
+                .deserializeRecordSet(deserializeRecordSet)
+                .zeroCopy(zeroCopy);
+        try {
+            if (envelopeEntry && !zeroCopy) {
+                // the enveloped entry is read fully when the reader is built, so it can be
+                // decoded from the direct memory without copying the raw bytes to heap first
+                reader = builder.setInputStream(new ByteBufferInputStream(buffer.duplicate())).buildReader();
+            } else {
+                // zero-copy records are sliced from a heap array, and entries that aren't
+                // enveloped are read lazily, so the raw bytes have to be copied to heap
+                byte[] data = new byte[length];
+                buffer.duplicate().get(data);
+                reader = builder.setData(data, 0, length).buildReader();
+            }
+        } finally {
+            cache.release(buffer);
+        }
+        return reader;
+    }
+
+    /**
+     * Input stream over the raw bytes of an entry in direct memory.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (0 == len) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int numBytes = Math.min(len, buffer.remaining());
+            buffer.get(b, off, numBytes);
+            return numBytes;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.reset();
+        }
+    }
+
+    @Override
+    public long getLSSN() {
+        return lssn;
+    }
+
+    @Override
+    public long getEntryId() {
+        return entryId;
+    }
+
+    @Override
+    public LogRecordWithDLSN nextRecord() throws IOException {
+        return getReader().nextRecord();
+    }
+
+    @Override
+    public boolean skipTo(long txId) throws IOException {
+        return getReader().skipTo(txId);
+    }
+
+    @Override
+    public boolean skipTo(DLSN dlsn) throws IOException {
+        return getReader().skipTo(dlsn);
+    }
+}
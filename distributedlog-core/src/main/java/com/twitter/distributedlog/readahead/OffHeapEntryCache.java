@@ -0,0 +1,318 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.readahead;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.twitter.distributedlog.DistributedLogConfiguration;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A byte-bounded cache of direct memory holding the raw bytes of the entries read ahead.
+ *
+ * <p>The cache is owned by a namespace and shared by all the readers of the namespace,
+ * so the memory used by readahead is bounded by bytes no matter how many readers are opened
+ * or how large the entries are. Readers keep reading ahead as long as the cache is not full
+ * (see {@link #isFull()}); once it is full they pause and register a {@link Listener}, which
+ * is notified when cached entries are consumed and their memory is released.
+ *
+ * <p>Released buffers are kept for reuse in power-of-two size classes, since direct memory
+ * is only reclaimed by the garbage collector. The bytes of pooled buffers count towards the
+ * budget, and the pooled buffers are evicted first when cached entries need the memory.
+ *
+ * <h3>Metrics</h3>
+ *
+ * <ul>
+ * <li> `scope`/hits: counter. number of readahead entries consumed without waiting.
+ * <li> `scope`/misses: counter. number of times readers found no readahead entry cached.
+ * <li> `scope`/evicted: counter. number of pooled buffers evicted to make room for entries.
+ * <li> `scope`/cached_bytes: gauge. number of bytes used by cached entries.
+ * <li> `scope`/pooled_bytes: gauge. number of bytes kept in pooled buffers.
+ * <li> `scope`/max_bytes: gauge. the byte budget of the cache.
+ * </ul>
+ */
+public class OffHeapEntryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapEntryCache.class);
+
+    static final int MIN_POOLED_CAPACITY_SHIFT = 10;
+    static final int MAX_POOLED_CAPACITY_SHIFT = 21;
+    static final int MIN_POOLED_CAPACITY = 1 << MIN_POOLED_CAPACITY_SHIFT; // 1KB
+    static final int MAX_POOLED_CAPACITY = 1 << MAX_POOLED_CAPACITY_SHIFT; // 2MB
+
+    /**
+     * Listener to be notified when the cache has room for more entries.
+     */
+    public interface Listener {
+
+        /**
+         * Notified when cached bytes are released.
+         */
+        void onCacheSpaceAvailable();
+
+    }
+
+    private final long maxBytes;
+    private final AtomicLong cachedBytes = new AtomicLong(0L);
+    private final AtomicLong pooledBytes = new AtomicLong(0L);
+    private final List<Queue<ByteBuffer>> sizeClasses;
+    private final CopyOnWriteArraySet<Listener> listeners = new CopyOnWriteArraySet<Listener>();
+
+    // Stats
+    private final StatsLogger statsLogger;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evicted;
+    private final Gauge<Number> cachedBytesGauge;
+    private final Gauge<Number> pooledBytesGauge;
+    private final Gauge<Number> maxBytesGauge;
+
+    /**
+     * Create an off heap entry cache.
+     *
+     * <p>The cache is sized by {@link DistributedLogConfiguration#getReadAheadCacheMaxBytes()}.
+     *
+     * @param conf distributedlog configuration
+     * @param statsLogger stats logger to export the cache stats
+     */
+    public OffHeapEntryCache(DistributedLogConfiguration conf, StatsLogger statsLogger) {
+        this(conf.getReadAheadCacheMaxBytes(), statsLogger);
+        logger.info("Created off heap readahead cache with {} bytes.", maxBytes);
+    }
+
+    @VisibleForTesting
+    OffHeapEntryCache(long maxBytes, StatsLogger statsLogger) {
+        Preconditions.checkArgument(maxBytes > 0, "Invalid max bytes : " + maxBytes);
+        this.maxBytes = maxBytes;
+        int numSizeClasses = MAX_POOLED_CAPACITY_SHIFT - MIN_POOLED_CAPACITY_SHIFT + 1;
+        this.sizeClasses = new ArrayList<Queue<ByteBuffer>>(numSizeClasses);
+        for (int i = 0; i < numSizeClasses; i++) {
+            this.sizeClasses.add(new ConcurrentLinkedQueue<ByteBuffer>());
+        }
+        // Stats
+        this.statsLogger = statsLogger;
+        this.hits = statsLogger.getCounter("hits");
+        this.misses = statsLogger.getCounter("misses");
+        this.evicted = statsLogger.getCounter("evicted");
+        this.cachedBytesGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return cachedBytes.get();
+            }
+        };
+        this.pooledBytesGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return pooledBytes.get();
+            }
+        };
+        this.maxBytesGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return OffHeapEntryCache.this.maxBytes;
+            }
+        };
+        statsLogger.registerGauge("cached_bytes", cachedBytesGauge);
+        statsLogger.registerGauge("pooled_bytes", pooledBytesGauge);
+        statsLogger.registerGauge("max_bytes", maxBytesGauge);
+    }
+
+    static int sizeClassIndex(int capacity) {
+        if (capacity > MAX_POOLED_CAPACITY) {
+            return -1;
+        }
+        int shift = capacity <= MIN_POOLED_CAPACITY
+                ? MIN_POOLED_CAPACITY_SHIFT : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift - MIN_POOLED_CAPACITY_SHIFT;
+    }
+
+    /**
+     * Allocate a direct buffer to hold <i>length</i> bytes of an entry.
+     *
+     * <p>The allocation always succeeds, even if it exceeds the budget: the entry has already
+     * been read and the readers pause reading ahead until the cache isn't full. The limit of
+     * the returned buffer is set to <i>length</i>.
+     *
+     * @param length number of bytes to allocate
+     * @return the direct buffer.
+     */
+    ByteBuffer allocate(int length) {
+        int idx = sizeClassIndex(length);
+        int capacity = idx < 0 ? length : 1 << (idx + MIN_POOLED_CAPACITY_SHIFT);
+        cachedBytes.addAndGet(capacity);
+        ByteBuffer buffer = null;
+        if (idx >= 0) {
+            buffer = sizeClasses.get(idx).poll();
+        }
+        if (null != buffer) {
+            pooledBytes.addAndGet(-capacity);
+        } else {
+            evictPooledBuffers();
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        return buffer;
+    }
+
+    private void evictPooledBuffers() {
+        for (int i = sizeClasses.size() - 1; i >= 0; i--) {
+            Queue<ByteBuffer> sizeClass = sizeClasses.get(i);
+            while (cachedBytes.get() + pooledBytes.get() > maxBytes) {
+                ByteBuffer buffer = sizeClass.poll();
+                if (null == buffer) {
+                    break;
+                }
+                pooledBytes.addAndGet(-buffer.capacity());
+                evicted.inc();
+            }
+        }
+    }
+
+    /**
+     * Release the buffer allocated by {@link #allocate(int)} back to the cache.
+     *
+     * @param buffer buffer to release
+     */
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        cachedBytes.addAndGet(-capacity);
+        int idx = sizeClassIndex(capacity);
+        if (idx >= 0 && capacity == (1 << (idx + MIN_POOLED_CAPACITY_SHIFT))) {
+            if (cachedBytes.get() + pooledBytes.addAndGet(capacity) <= maxBytes) {
+                sizeClasses.get(idx).offer(buffer);
+            } else {
+                pooledBytes.addAndGet(-capacity);
+            }
+        }
+        notifyListeners();
+    }
+
+    private void notifyListeners() {
+        if (listeners.isEmpty() || isFull()) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            if (listeners.remove(listener)) {
+                listener.onCacheSpaceAvailable();
+            }
+        }
+    }
+
+    /**
+     * Register a listener to be notified once when the cache has room for more entries.
+     *
+     * @param listener listener to register
+     */
+    public void registerListener(Listener listener) {
+        listeners.add(listener);
+        // the space might be released before the listener is registered
+        if (!isFull() && listeners.remove(listener)) {
+            listener.onCacheSpaceAvailable();
+        }
+    }
+
+    /**
+     * Unregister the listener.
+     *
+     * @param listener listener to unregister
+     */
+    public void unregisterListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Return whether the bytes used by cached entries reach the budget.
+     *
+     * @return true if the cache is full, otherwise false.
+     */
+    public boolean isFull() {
+        return cachedBytes.get() >= maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * Record a read served by a cached entry.
+     */
+    public void recordHit() {
+        hits.inc();
+    }
+
+    /**
+     * Record a read finding no cached entry.
+     */
+    public void recordMiss() {
+        misses.inc();
+    }
+
+    /**
+     * Drop the pooled buffers and unregister the stats.
+     *
+     * <p>The buffers of the cached entries are released by the readers when they are closed.
+     */
+    public void close() {
+        for (Queue<ByteBuffer> sizeClass : sizeClasses) {
+            ByteBuffer buffer;
+            while (null != (buffer = sizeClass.poll())) {
+                pooledBytes.addAndGet(-buffer.capacity());
+            }
+        }
+        listeners.clear();
+        statsLogger.unregisterGauge("cached_bytes", cachedBytesGauge);
+        statsLogger.unregisterGauge("pooled_bytes", pooledBytesGauge);
+        statsLogger.unregisterGauge("max_bytes", maxBytesGauge);
+    }
+}
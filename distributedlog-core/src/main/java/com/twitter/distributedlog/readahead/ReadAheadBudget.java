@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.readahead;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A budget of readahead records shared by a group of readahead readers.
+ *
+ * <p>Each reader of the group reserves the budget of a readahead batch before it issues a read
+ * (see {@link #tryAcquire()}), returns the unused part of the reservation once the read completes,
+ * and releases the budget of the entries it cached once they are consumed. The records cached or
+ * being read by the group are bounded by the budget, or by a single batch if the budget is smaller
+ * than a batch. Readers pause reading ahead when they fail to reserve a batch and register a
+ * {@link OffHeapEntryCache.Listener}. Only as many listeners as the released budget could serve
+ * a batch to are notified, so the paused readers don't all race for the released budget.
+ */
+public class ReadAheadBudget {
+
+    private final long maxRecords;
+    private final int recordsPerRead;
+    private final AtomicLong cachedRecords = new AtomicLong(0L);
+    private final CopyOnWriteArraySet<OffHeapEntryCache.Listener> listeners =
+            new CopyOnWriteArraySet<OffHeapEntryCache.Listener>();
+
+    public ReadAheadBudget(long maxRecords, int recordsPerRead) {
+        Preconditions.checkArgument(maxRecords > 0, "Invalid max records : " + maxRecords);
+        Preconditions.checkArgument(recordsPerRead > 0, "Invalid records per read : " + recordsPerRead);
+        this.maxRecords = maxRecords;
+        this.recordsPerRead = recordsPerRead;
+    }
+
+    /**
+     * Try to reserve the budget of a readahead batch before issuing a read.
+     *
+     * @return true if the budget is reserved, false if the budget is exhausted.
+     * @see #getRecordsPerRead()
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            long records = cachedRecords.get();
+            if (isExhausted(records)) {
+                return false;
+            }
+            if (cachedRecords.compareAndSet(records, records + recordsPerRead)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Acquire the budget for <i>numRecords</i> records added to a readahead cache beyond
+     * the reserved budget.
+     *
+     * @param numRecords number of records added
+     */
+    public void acquire(int numRecords) {
+        cachedRecords.addAndGet(numRecords);
+    }
+
+    /**
+     * Release the budget of <i>numRecords</i> records removed from a readahead cache,
+     * or reserved but not read.
+     *
+     * @param numRecords number of records removed
+     */
+    public void release(int numRecords) {
+        if (numRecords <= 0) {
+            return;
+        }
+        notifyListeners(maxRecords - cachedRecords.addAndGet(-numRecords));
+    }
+
+    private void notifyListeners(long availableRecords) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        // wake up a reader for each batch that the available budget could serve
+        long numToNotify = Math.max(availableRecords / recordsPerRead, availableRecords == maxRecords ? 1 : 0);
+        for (OffHeapEntryCache.Listener listener : listeners) {
+            if (numToNotify <= 0) {
+                break;
+            }
+            if (listeners.remove(listener)) {
+                --numToNotify;
+                listener.onCacheSpaceAvailable();
+            }
+        }
+    }
+
+    /**
+     * Register a listener to be notified once when the budget is available again.
+     *
+     * @param listener listener to register
+     */
+    public void registerListener(OffHeapEntryCache.Listener listener) {
+        listeners.add(listener);
+        // the budget might be released before the listener is registered
+        if (!isExhausted() && listeners.remove(listener)) {
+            listener.onCacheSpaceAvailable();
+        }
+    }
+
+    /**
+     * Unregister the listener.
+     *
+     * @param listener listener to unregister
+     */
+    public void unregisterListener(OffHeapEntryCache.Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Return whether the budget left isn't enough for another readahead batch.
+     *
+     * @return true if the budget is exhausted, otherwise false.
+     */
+    public boolean isExhausted() {
+        return isExhausted(cachedRecords.get());
+    }
+
+    private boolean isExhausted(long records) {
+        // a batch is always allowed when nothing is cached, so a budget smaller than a batch still makes progress
+        return records > 0 && records + recordsPerRead > maxRecords;
+    }
+
+    public long getMaxRecords() {
+        return maxRecords;
+    }
+
+    public int getRecordsPerRead() {
+        return recordsPerRead;
+    }
+
+    public long getCachedRecords() {
+        return cachedRecords.get();
+    }
+}
@@ -30,6 +30,7 @@ import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
@@ -56,7 +57,7 @@ import com.google.common.base.Preconditions;
 import com.twitter.distributedlog.BKDistributedLogNamespace;
 import com.twitter.distributedlog.Entry;
 import com.twitter.distributedlog.MetadataAccessor;
-import com.twitter.distributedlog.callback.NamespaceListener;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.impl.BKNamespaceDriver;
 import com.twitter.distributedlog.logsegment.LogSegmentMetadataStore;
 import com.twitter.distributedlog.namespace.DistributedLogNamespace;
@@ -439,11 +440,13 @@ public class DistributedLogTool extends Tool {
 
         boolean printMetadata = false;
         boolean printHex = false;
+        int pageSize = 1000;
 
         ListCommand() {
             super("list", "list streams of a given distributedlog instance");
             options.addOption("m", "meta", false, "Print metadata associated with each stream");
             options.addOption("x", "hex", false, "Print metadata in hex format");
+            options.addOption("ps", "page-size", true, "Number of streams to list per page");
         }
 
         @Override
@@ -451,6 +454,16 @@ public class DistributedLogTool extends Tool {
             super.parseCommandLine(cmdline);
             printMetadata = cmdline.hasOption("m");
             printHex = cmdline.hasOption("x");
+            if (cmdline.hasOption("ps")) {
+                try {
+                    pageSize = Integer.parseInt(cmdline.getOptionValue("ps"));
+                } catch (NumberFormatException nfe) {
+                    throw new ParseException("Invalid page size : " + cmdline.getOptionValue("ps"));
+                }
+                if (pageSize <= 0) {
+                    throw new ParseException("Page size should be positive : " + pageSize);
+                }
+            }
         }
 
         @Override
@@ -465,34 +478,39 @@ public class DistributedLogTool extends Tool {
         }
 
         protected void printStreams(DistributedLogNamespace namespace) throws Exception {
-            Iterator<String> streams = namespace.getLogs();
             System.out.println("Streams under " + getUri() + " : ");
             System.out.println("--------------------------------");
-            while (streams.hasNext()) {
-                String streamName = streams.next();
-                System.out.println(streamName);
-                if (!printMetadata) {
-                    continue;
-                }
-                MetadataAccessor accessor =
-                        namespace.getNamespaceDriver().getMetadataAccessor(streamName);
-                byte[] metadata = accessor.getMetadata();
-                if (null == metadata || metadata.length == 0) {
-                    continue;
-                }
-                if (printHex) {
-                    System.out.println(Hex.encodeHexString(metadata));
-                } else {
-                    System.out.println(new String(metadata, UTF_8));
+            List<String> streams = namespace.getLogs(null, pageSize);
+            while (!streams.isEmpty()) {
+                for (String streamName : streams) {
+                    printStream(namespace, streamName);
                 }
-                System.out.println("");
+                streams = namespace.getLogs(streams.get(streams.size() - 1), pageSize);
             }
             System.out.println("--------------------------------");
         }
+
+        private void printStream(DistributedLogNamespace namespace, String streamName) throws Exception {
+            System.out.println(streamName);
+            if (!printMetadata) {
+                return;
+            }
+            MetadataAccessor accessor =
+                    namespace.getNamespaceDriver().getMetadataAccessor(streamName);
+            byte[] metadata = accessor.getMetadata();
+            if (null == metadata || metadata.length == 0) {
+                return;
+            }
+            if (printHex) {
+                System.out.println(Hex.encodeHexString(metadata));
+            } else {
+                System.out.println(new String(metadata, UTF_8));
+            }
+            System.out.println("");
+        }
     }
 
-    public static class WatchNamespaceCommand extends PerDLCommand implements NamespaceListener {
-        private Set<String> currentSet = Sets.<String>newHashSet();
+    public static class WatchNamespaceCommand extends PerDLCommand implements NamespaceChangeListener {
         private CountDownLatch doneLatch = new CountDownLatch(1);
 
         WatchNamespaceCommand() {
@@ -517,27 +535,25 @@ public class DistributedLogTool extends Tool {
         }
 
         @Override
-        public synchronized void onStreamsChanged(Iterator<String> streams) {
-            Set<String> updatedSet = Sets.newHashSet(streams);
-            Set<String> oldStreams = Sets.difference(currentSet, updatedSet);
-            Set<String> newStreams = Sets.difference(updatedSet, currentSet);
-            currentSet = updatedSet;
-
-            System.out.println("Old streams : ");
-            for (String stream : oldStreams) {
+        public synchronized void onStreamsAdded(Collection<String> streams) {
+            System.out.println("New streams : ");
+            for (String stream : streams) {
                 System.out.println(stream);
             }
+            System.out.println("");
+        }
 
-            System.out.println("New streams : ");
-            for (String stream : newStreams) {
+        @Override
+        public synchronized void onStreamsRemoved(Collection<String> streams) {
+            System.out.println("Old streams : ");
+            for (String stream : streams) {
                 System.out.println(stream);
             }
-
             System.out.println("");
         }
 
         protected void watchAndReportChanges(DistributedLogNamespace namespace) throws Exception {
-            namespace.registerNamespaceListener(this);
+            namespace.registerNamespaceChangeListener(this);
         }
     }
 
@@ -2175,7 +2191,8 @@ public class DistributedLogTool extends Tool {
         boolean readLac = false;
         boolean corruptOnly = false;
 
-        int metadataVersion = LogSegmentMetadata.LEDGER_METADATA_CURRENT_LAYOUT_VERSION;
+        // the metadata version only decides whether the entries are enveloped
+        int metadataVersion = LogSegmentMetadata.LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value;
 
         ReadEntriesCommand() {
             super("readentries", "read entries for a given ledger");
@@ -2529,10 +2546,15 @@ public class DistributedLogTool extends Tool {
     public static class AuditDLSpaceCommand extends PerDLCommand {
 
         private String regex = null;
+        private String inventoryFile = null;
+        private int parallelism = 10;
 
         AuditDLSpaceCommand() {
             super("audit_dl_space", "Audit stream space usage for a given dl uri");
             options.addOption("groupByRegex", true, "Group by the result of applying the regex to stream name");
+            options.addOption("inventory", true,
+                    "Ledger inventory file to audit incrementally from, it is checkpointed after the audit");
+            options.addOption("parallelism", true, "Number of threads to audit streams incrementally");
         }
 
         @Override
@@ -2541,13 +2563,29 @@ public class DistributedLogTool extends Tool {
             if (cmdline.hasOption("groupByRegex")) {
                 regex = cmdline.getOptionValue("groupByRegex");
             }
+            if (cmdline.hasOption("inventory")) {
+                inventoryFile = cmdline.getOptionValue("inventory");
+            }
+            if (cmdline.hasOption("parallelism")) {
+                try {
+                    parallelism = Integer.parseInt(cmdline.getOptionValue("parallelism"));
+                } catch (NumberFormatException nfe) {
+                    throw new ParseException("Invalid parallelism : " + cmdline.getOptionValue("parallelism"));
+                }
+            }
         }
 
         @Override
         protected int runCmd() throws Exception {
             DLAuditor dlAuditor = new DLAuditor(getConf());
             try {
-                Map<String, Long> streamSpaceMap = dlAuditor.calculateStreamSpaceUsage(getUri());
+                Map<String, Long> streamSpaceMap;
+                if (null != inventoryFile) {
+                    streamSpaceMap = dlAuditor.calculateStreamSpaceUsage(
+                            getUri(), new File(inventoryFile), parallelism);
+                } else {
+                    streamSpaceMap = dlAuditor.calculateStreamSpaceUsage(getUri());
+                }
                 if (null != regex) {
                     printGroupByRegexSpaceUsage(streamSpaceMap, regex);
                 } else {
@@ -2592,15 +2630,32 @@ public class DistributedLogTool extends Tool {
 
     public static class AuditBKSpaceCommand extends PerDLCommand {
 
+        private String inventoryFile = null;
+
         AuditBKSpaceCommand() {
             super("audit_bk_space", "Audit bk space usage for a given dl uri");
+            options.addOption("inventory", true,
+                    "Ledger inventory file to reuse the sizes of completed ledgers from");
+        }
+
+        @Override
+        protected void parseCommandLine(CommandLine cmdline) throws ParseException {
+            super.parseCommandLine(cmdline);
+            if (cmdline.hasOption("inventory")) {
+                inventoryFile = cmdline.getOptionValue("inventory");
+            }
         }
 
         @Override
         protected int runCmd() throws Exception {
             DLAuditor dlAuditor = new DLAuditor(getConf());
             try {
-                long spaceUsage = dlAuditor.calculateLedgerSpaceUsage(uri);
+                long spaceUsage;
+                if (null != inventoryFile) {
+                    spaceUsage = dlAuditor.calculateLedgerSpaceUsage(uri, new File(inventoryFile));
+                } else {
+                    spaceUsage = dlAuditor.calculateLedgerSpaceUsage(uri);
+                }
                 System.out.println("bookkeeper ledgers space usage \t " + spaceUsage);
             } finally {
                 dlAuditor.close();
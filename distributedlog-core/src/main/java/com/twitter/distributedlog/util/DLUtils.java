@@ -21,6 +21,7 @@ import com.google.common.base.Objects;
 import com.twitter.distributedlog.DistributedLogConstants;
 import com.twitter.distributedlog.LogSegmentMetadata;
 import com.twitter.distributedlog.exceptions.InvalidStreamNameException;
+import com.twitter.distributedlog.exceptions.TransactionIdOutOfOrderException;
 import com.twitter.distributedlog.exceptions.UnexpectedException;
 import org.apache.commons.lang.StringUtils;
 
@@ -88,6 +89,29 @@ public class DLUtils {
         }
     }
 
+    /**
+     * Find the first log segment that may contain records written at or after <code>timestampMs</code>.
+     * <p>The records of a completed log segment are all written before its completion time, so it is
+     * the first log segment that is either inprogress or completed at or after <code>timestampMs</code>.
+     *
+     * @param segments
+     *          segments to search
+     * @param timestampMs
+     *          timestamp in milliseconds
+     * @return the first log segment that may contain records written at or after <code>timestampMs</code>,
+     *         -1 if all the log segments are completed before <code>timestampMs</code>.
+     */
+    public static int findLogSegmentNotBeforeTime(List<LogSegmentMetadata> segments,
+                                                  long timestampMs) {
+        for (int i = 0; i < segments.size(); i++) {
+            LogSegmentMetadata segment = segments.get(i);
+            if (segment.isInProgress() || segment.getCompletionTime() >= timestampMs) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Assign next log segment sequence number based on a decreasing list of log segments.
      *
@@ -280,6 +304,21 @@ public class DLUtils {
         return name.startsWith(".");
     }
 
+    /**
+     * Validate the transaction id of a user record.
+     *
+     * @param txId
+     *          transaction id of the user record
+     * @throws TransactionIdOutOfOrderException if the transaction id is negative or
+     *          {@link DistributedLogConstants#MAX_TXID}, which is reserved for the end of stream.
+     */
+    public static void validateTransactionId(long txId)
+            throws TransactionIdOutOfOrderException {
+        if (txId < 0 || txId == DistributedLogConstants.MAX_TXID) {
+            throw new TransactionIdOutOfOrderException(txId);
+        }
+    }
+
     /**
      * Validate the stream name.
      *
@@ -81,6 +81,11 @@ import java.util.concurrent.TimeoutException;
  * submitting to future pool.
  * <li>futurepool/tasks_pending: gauge. how many tasks are pending in this future pool.
  * </ul>
+ *
+ * <h3>Striped Scheduler</h3>
+ *
+ * {@link Builder#striped(boolean)} builds a {@link StripedOrderedScheduler} instead, which is backed by
+ * lock-free per-thread task queues and a hashed wheel timer rather than scheduled thread pool executors.
  */
 public class OrderedScheduler implements ScheduledExecutorService {
 
@@ -105,6 +110,9 @@ public class OrderedScheduler implements ScheduledExecutorService {
         private long traceTaskExecutionWarnTimeUs = Long.MAX_VALUE;
         private StatsLogger statsLogger = NullStatsLogger.INSTANCE;
         private StatsLogger perExecutorStatsLogger = NullStatsLogger.INSTANCE;
+        private boolean striped = false;
+        private int traceTaskSampleRate = 100;
+        private long timerTickMs = 1L;
 
         /**
          * Set the name of this scheduler. It would be used as part of stats scope and thread name.
@@ -192,6 +200,43 @@ public class OrderedScheduler implements ScheduledExecutorService {
             return this;
         }
 
+        /**
+         * Enable/Disable building a {@link StripedOrderedScheduler}.
+         *
+         * @param striped
+         *          flag to enable/disable building a striped scheduler.
+         * @return scheduler builder
+         */
+        public Builder striped(boolean striped) {
+            this.striped = striped;
+            return this;
+        }
+
+        /**
+         * Set the sample rate of tracing task execution for striped scheduler. One out of
+         * every <code>sampleRate</code> tasks is traced.
+         *
+         * @param sampleRate
+         *          sample rate of tracing task execution.
+         * @return scheduler builder
+         */
+        public Builder traceTaskSampleRate(int sampleRate) {
+            this.traceTaskSampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Set the tick duration of the timer used by striped scheduler for delayed tasks.
+         *
+         * @param tickMs
+         *          tick duration in milliseconds.
+         * @return scheduler builder
+         */
+        public Builder timerTickMs(long tickMs) {
+            this.timerTickMs = tickMs;
+            return this;
+        }
+
         /**
          * Build the ordered scheduler.
          *
@@ -204,6 +249,17 @@ public class OrderedScheduler implements ScheduledExecutorService {
             if (null == threadFactory) {
                 threadFactory = Executors.defaultThreadFactory();
             }
+            if (striped) {
+                return new StripedOrderedScheduler(
+                        name,
+                        corePoolSize,
+                        threadFactory,
+                        traceTaskExecution,
+                        traceTaskSampleRate,
+                        traceTaskExecutionWarnTimeUs,
+                        timerTickMs,
+                        statsLogger);
+            }
 
             return new OrderedScheduler(
                     name,
@@ -223,6 +279,17 @@ public class OrderedScheduler implements ScheduledExecutorService {
     protected final MonitoredFuturePool[] futurePools;
     protected final Random random;
 
+    /**
+     * Constructor used by the scheduler implementations that manage their own threads.
+     */
+    protected OrderedScheduler(String name, int corePoolSize) {
+        this.name = name;
+        this.corePoolSize = corePoolSize;
+        this.executors = new MonitoredScheduledThreadPoolExecutor[0];
+        this.futurePools = new MonitoredFuturePool[0];
+        this.random = new Random(System.currentTimeMillis());
+    }
+
     private OrderedScheduler(String name,
                              int corePoolSize,
                              ThreadFactory threadFactory,
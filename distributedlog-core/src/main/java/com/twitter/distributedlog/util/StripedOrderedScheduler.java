@@ -0,0 +1,692 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.util;
+
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.twitter.util.ExecutorServiceFuturePool;
+import com.twitter.util.FuturePool;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.Function0;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Striped Ordered Scheduler. An alternative {@link OrderedScheduler} implementation that keeps the
+ * same ordering guarantees (tasks submitted by same <i>key</i> are executed in order) but avoids
+ * the per-executor {@link java.util.concurrent.DelayQueue}s and the per-task wrapping.
+ * <p>
+ * Each thread owns two lock-free task queues: one for keyed tasks, which are only executed by
+ * the owner thread to guarantee ordering, and one for unkeyed tasks, which could be stolen by any
+ * idle thread. Unkeyed tasks are preferably submitted to an idle thread. Delayed and periodic tasks
+ * are kept in a {@link HashedWheelTimer} and submitted to the task queues when they expire, so the
+ * delay resolution is the tick duration of the timer.
+ * <p>
+ * Tasks still queued when the scheduler is shutdown are executed, while the delayed tasks that are
+ * not expired yet are cancelled.
+ *
+ * <h3>Metrics</h3>
+ *
+ * Task execution is traced for one task out of every <i>traceTaskSampleRate</i> tasks when
+ * {@link OrderedScheduler.Builder#traceTaskExecution(boolean)} is enabled.
+ * <ul>
+ * <li>task_pending_time: opstats. the time that the sampled tasks spent on waiting being executed.
+ * <li>task_execution_time: opstats. the time that the sampled tasks spent on executing.
+ * <li>tasks_stolen: counter. the number of unkeyed tasks executed by a thread other than the one
+ * they were submitted to.
+ * </ul>
+ */
+public class StripedOrderedScheduler extends OrderedScheduler {
+
+    static final Logger logger = LoggerFactory.getLogger(StripedOrderedScheduler.class);
+
+    // max time that an idle thread parks before checking for tasks to steal
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * A task whose execution is traced.
+     */
+    private class TracedTask implements Runnable {
+
+        final Runnable runnable;
+        final long enqueueNanos;
+
+        TracedTask(Runnable runnable) {
+            this.runnable = runnable;
+            this.enqueueNanos = MathUtils.nowInNano();
+        }
+
+        @Override
+        public void run() {
+            long startNanos = MathUtils.nowInNano();
+            taskPendingStats.registerSuccessfulEvent(TimeUnit.NANOSECONDS.toMicros(startNanos - enqueueNanos));
+            try {
+                runnable.run();
+            } finally {
+                long executionMicros = TimeUnit.NANOSECONDS.toMicros(MathUtils.nowInNano() - startNanos);
+                taskExecutionStats.registerSuccessfulEvent(executionMicros);
+                if (executionMicros > traceTaskExecutionWarnTimeUs) {
+                    logger.info("{}: Slow task execution {} of {} us", new Object[] {
+                            name, runnable, executionMicros });
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return runnable.toString();
+        }
+    }
+
+    /**
+     * A delayed or periodic task kept in the timer until it expires.
+     */
+    private class ScheduledTask<V> extends FutureTask<V> implements ScheduledFuture<V>, TimerTask {
+
+        // null if the task isn't keyed
+        private final Worker worker;
+        // 0 for one-shot tasks, positive for fixed-rate tasks, negative for fixed-delay tasks
+        private final long periodNanos;
+        private volatile long deadlineNanos;
+        private volatile Timeout timeout;
+
+        ScheduledTask(Worker worker, Runnable runnable, V result, long delayNanos, long periodNanos) {
+            super(runnable, result);
+            this.worker = worker;
+            this.periodNanos = periodNanos;
+            this.deadlineNanos = MathUtils.nowInNano() + delayNanos;
+        }
+
+        ScheduledTask(Worker worker, Callable<V> callable, long delayNanos) {
+            super(callable);
+            this.worker = worker;
+            this.periodNanos = 0L;
+            this.deadlineNanos = MathUtils.nowInNano() + delayNanos;
+        }
+
+        void arm() {
+            long delayNanos = deadlineNanos - MathUtils.nowInNano();
+            if (delayNanos <= 0) {
+                submitTask(worker, this);
+            } else {
+                timeout = timer.newTimeout(this, delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                submitTask(worker, this);
+            } catch (RejectedExecutionException ree) {
+                cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (0L == periodNanos) {
+                super.run();
+            } else if (runAndReset()) {
+                if (periodNanos > 0) {
+                    deadlineNanos += periodNanos;
+                } else {
+                    deadlineNanos = MathUtils.nowInNano() - periodNanos;
+                }
+                if (shutdown) {
+                    cancel(false);
+                } else {
+                    arm();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Timeout t = timeout;
+            if (cancelled && null != t) {
+                t.cancel();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - MathUtils.nowInNano(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o == this) {
+                return 0;
+            }
+            long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+    }
+
+    /**
+     * A thread of the scheduler. It is also the {@link ExecutorService} of the keys assigned to it.
+     */
+    private class Worker extends AbstractExecutorService implements Runnable {
+
+        private final int id;
+        private final Queue<Runnable> keyedTasks = new ConcurrentLinkedQueue<Runnable>();
+        private final Queue<Runnable> unkeyedTasks = new ConcurrentLinkedQueue<Runnable>();
+        private final Thread thread;
+        private volatile boolean parked = false;
+
+        Worker(int id, ThreadFactory threadFactory) {
+            this.id = id;
+            this.thread = threadFactory.newThread(this);
+        }
+
+        void enqueue(Runnable task, boolean keyed) {
+            Queue<Runnable> queue = keyed ? keyedTasks : unkeyedTasks;
+            queue.add(task);
+            if (shutdown && queue.remove(task)) {
+                // lost the race with shutdown
+                throw new RejectedExecutionException("Scheduler " + name + " is shutdown");
+            }
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        boolean hasTasks() {
+            return !keyedTasks.isEmpty() || !unkeyedTasks.isEmpty();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                // alternate between keyed and unkeyed tasks so neither of them starves
+                Runnable keyedTask = keyedTasks.poll();
+                if (null != keyedTask) {
+                    runTask(keyedTask);
+                }
+                Runnable unkeyedTask = unkeyedTasks.poll();
+                if (null != unkeyedTask) {
+                    runTask(unkeyedTask);
+                }
+                if (null != keyedTask || null != unkeyedTask) {
+                    continue;
+                }
+                Runnable stolenTask = steal(id);
+                if (null != stolenTask) {
+                    tasksStolen.inc();
+                    runTask(stolenTask);
+                    continue;
+                }
+                if (shutdown) {
+                    if (hasTasks()) {
+                        continue;
+                    }
+                    break;
+                }
+                parked = true;
+                // re-check after publishing the parked flag to not miss the wakeup from a producer
+                if (!hasTasks() && !shutdown) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+
+        // ExecutorService view of this worker
+
+        @Override
+        public void execute(Runnable command) {
+            submitTask(this, command);
+        }
+
+        @Override
+        public void shutdown() {
+            StripedOrderedScheduler.this.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return StripedOrderedScheduler.this.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return StripedOrderedScheduler.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return StripedOrderedScheduler.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return StripedOrderedScheduler.this.awaitTermination(timeout, unit);
+        }
+    }
+
+    private final Worker[] workers;
+    private final FuturePool[] keyedFuturePools;
+    private final HashedWheelTimer timer;
+    private final int traceTaskSampleRate;
+    private final long traceTaskExecutionWarnTimeUs;
+    private volatile boolean shutdown = false;
+
+    // ExecutorService view of the scheduler for unkeyed tasks
+    private final ExecutorService unkeyedExecutor = new AbstractExecutorService() {
+
+        @Override
+        public void execute(Runnable command) {
+            submitTask(null, command);
+        }
+
+        @Override
+        public void shutdown() {
+            StripedOrderedScheduler.this.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return StripedOrderedScheduler.this.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return StripedOrderedScheduler.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return StripedOrderedScheduler.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return StripedOrderedScheduler.this.awaitTermination(timeout, unit);
+        }
+    };
+    private final FuturePool unkeyedFuturePool;
+
+    // Stats
+    private final OpStatsLogger taskPendingStats;
+    private final OpStatsLogger taskExecutionStats;
+    private final Counter tasksStolen;
+
+    StripedOrderedScheduler(String name,
+                            int corePoolSize,
+                            ThreadFactory threadFactory,
+                            boolean traceTaskExecution,
+                            int traceTaskSampleRate,
+                            long traceTaskExecutionWarnTimeUs,
+                            long timerTickMs,
+                            StatsLogger statsLogger) {
+        super(name, corePoolSize);
+        this.traceTaskSampleRate = traceTaskExecution ? Math.max(traceTaskSampleRate, 1) : 0;
+        this.traceTaskExecutionWarnTimeUs = traceTaskExecutionWarnTimeUs;
+        this.taskPendingStats = statsLogger.getOpStatsLogger("task_pending_time");
+        this.taskExecutionStats = statsLogger.getOpStatsLogger("task_execution_time");
+        this.tasksStolen = statsLogger.getCounter("tasks_stolen");
+        this.timer = new HashedWheelTimer(
+                new ThreadFactoryBuilder().setNameFormat(name + "-timer-%d").setThreadFactory(threadFactory).build(),
+                timerTickMs, TimeUnit.MILLISECONDS);
+        this.workers = new Worker[corePoolSize];
+        this.keyedFuturePools = new FuturePool[corePoolSize];
+        for (int i = 0; i < corePoolSize; i++) {
+            ThreadFactory tf = new ThreadFactoryBuilder()
+                    .setNameFormat(name + "-executor-" + i + "-%d")
+                    .setThreadFactory(threadFactory)
+                    .build();
+            workers[i] = new Worker(i, tf);
+            keyedFuturePools[i] = new ExecutorServiceFuturePool(workers[i]);
+        }
+        this.unkeyedFuturePool = new ExecutorServiceFuturePool(unkeyedExecutor);
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    private Worker chooseWorker(Object key) {
+        return corePoolSize == 1 ? workers[0] : workers[MathUtils.signSafeMod(Objects.hashCode(key), corePoolSize)];
+    }
+
+    /**
+     * Choose a worker for unkeyed task. Prefer an idle worker, otherwise a random one.
+     */
+    private Worker chooseUnkeyedWorker() {
+        if (corePoolSize == 1) {
+            return workers[0];
+        }
+        int start = ThreadLocalRandom.current().nextInt(corePoolSize);
+        for (int i = 0; i < corePoolSize; i++) {
+            Worker worker = workers[(start + i) % corePoolSize];
+            if (worker.parked) {
+                return worker;
+            }
+        }
+        return workers[start];
+    }
+
+    private Runnable steal(int thiefId) {
+        for (int i = 1; i < corePoolSize; i++) {
+            Runnable task = workers[(thiefId + i) % corePoolSize].unkeyedTasks.poll();
+            if (null != task) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Submit the <i>task</i> to the given <i>worker</i> as a keyed task, or to any worker
+     * as an unkeyed task if <i>worker</i> is null.
+     */
+    private void submitTask(Worker worker, Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Scheduler " + name + " is shutdown");
+        }
+        if (traceTaskSampleRate > 0 && ThreadLocalRandom.current().nextInt(traceTaskSampleRate) == 0) {
+            task = new TracedTask(task);
+        }
+        if (null == worker) {
+            chooseUnkeyedWorker().enqueue(task, false);
+        } else {
+            worker.enqueue(task, true);
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            logger.error("{}: Unexpected exception thrown by task {} : ", new Object[] { name, task, t });
+        }
+    }
+
+    private <V> ScheduledTask<V> schedule(ScheduledTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Scheduler " + name + " is shutdown");
+        }
+        task.arm();
+        return task;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(new ScheduledTask<Void>(null, command, null, unit.toNanos(delay), 0L));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return schedule(new ScheduledTask<V>(null, callable, unit.toNanos(delay)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command,
+                                                  long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Invalid period : " + period);
+        }
+        return schedule(new ScheduledTask<Void>(null, command, null,
+                unit.toNanos(initialDelay), unit.toNanos(period)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command,
+                                                     long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Invalid delay : " + delay);
+        }
+        return schedule(new ScheduledTask<Void>(null, command, null,
+                unit.toNanos(initialDelay), -unit.toNanos(delay)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        // cancel the delayed tasks not expired yet
+        for (Timeout timeout : timer.stop()) {
+            if (timeout.getTask() instanceof Future) {
+                ((Future<?>) timeout.getTask()).cancel(false);
+            }
+        }
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> runnables = new ArrayList<Runnable>();
+        for (Worker worker : workers) {
+            Runnable task;
+            while (null != (task = worker.keyedTasks.poll())) {
+                runnables.add(task);
+            }
+            while (null != (task = worker.unkeyedTasks.poll())) {
+                runnables.add(task);
+            }
+            worker.thread.interrupt();
+        }
+        return runnables;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTerminated() {
+        if (!shutdown) {
+            return false;
+        }
+        for (Worker worker : workers) {
+            if (worker.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadlineNanos = MathUtils.nowInNano() + unit.toNanos(timeout);
+        for (Worker worker : workers) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - MathUtils.nowInNano());
+            if (remainingMs > 0) {
+                worker.thread.join(remainingMs);
+            }
+            if (worker.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return unkeyedExecutor.submit(task);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return unkeyedExecutor.submit(task, result);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Future<?> submit(Runnable task) {
+        return unkeyedExecutor.submit(task);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+            throws InterruptedException {
+        return unkeyedExecutor.invokeAll(tasks);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return unkeyedExecutor.invokeAll(tasks, timeout, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        return unkeyedExecutor.invokeAny(tasks);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return unkeyedExecutor.invokeAny(tasks, timeout, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Runnable command) {
+        submitTask(null, command);
+    }
+
+    // Ordered Functions
+
+    @Override
+    public FuturePool getFuturePool(Object key) {
+        return corePoolSize == 1 ? keyedFuturePools[0] :
+                keyedFuturePools[MathUtils.signSafeMod(Objects.hashCode(key), corePoolSize)];
+    }
+
+    @Override
+    public <T> com.twitter.util.Future<T> apply(Object key, Function0<T> function) {
+        return getFuturePool(key).apply(function);
+    }
+
+    @Override
+    public <T> com.twitter.util.Future<T> apply(Function0<T> function) {
+        return unkeyedFuturePool.apply(function);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Object key, Runnable command, long delay, TimeUnit unit) {
+        return schedule(new ScheduledTask<Void>(chooseWorker(key), command, null, unit.toNanos(delay), 0L));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Object key,
+                                                  Runnable command,
+                                                  long initialDelay,
+                                                  long period,
+                                                  TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Invalid period : " + period);
+        }
+        return schedule(new ScheduledTask<Void>(chooseWorker(key), command, null,
+                unit.toNanos(initialDelay), unit.toNanos(period)));
+    }
+
+    @Override
+    public Future<?> submit(Object key, Runnable command) {
+        return chooseWorker(key).submit(command);
+    }
+
+}
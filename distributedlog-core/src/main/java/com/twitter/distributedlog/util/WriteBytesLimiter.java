@@ -0,0 +1,329 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.util;
+
+import com.google.common.base.Stopwatch;
+import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
+import com.twitter.distributedlog.exceptions.OverCapacityException;
+import com.twitter.util.Future;
+import com.twitter.util.Promise;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A byte based write limiter shared by all the writers of a namespace.
+ *
+ * <p>It bounds the bytes of the records that are written but not yet acknowledged by bookkeeper,
+ * across all the writers (see {@link DynamicDistributedLogConfiguration#getGlobalOutstandingWriteBytesLimit()}).
+ * Each writer acquires the bytes of a record before writing it and releases them when the write
+ * completes. A write is admitted if:
+ * <ul>
+ * <li> the outstanding bytes stay within the global limit;
+ * <li> the outstanding bytes of the writer stay within the per writer limit
+ * (see {@link DynamicDistributedLogConfiguration#getPerWriterOutstandingWriteBytesLimit()}), if it is set;
+ * <li> once more than half of the global limit is used, the outstanding bytes of the writer stay
+ * within its fair share, which is the global limit divided by the number of active writers.
+ * </ul>
+ * A writer without outstanding writes is always admitted as long as the global limit isn't reached,
+ * so a record larger than the limits doesn't starve.
+ *
+ * <p>A write that is not admitted is either rejected with {@link OverCapacityException}, or waits
+ * until the bytes are released if the limiter is created with <i>waitOnLimit</i>. Waiting writes
+ * are admitted in the order they are issued per writer and in round-robin order across writers.
+ *
+ * <h3>Metrics</h3>
+ * <ul>
+ * <li> `outstanding_bytes`: gauge. the bytes of the outstanding writes.
+ * <li> `rejected`: counter. the number of writes rejected.
+ * <li> `wait_time`: opstats. the time that writes waited to be admitted.
+ * </ul>
+ */
+public class WriteBytesLimiter {
+
+    private final DynamicDistributedLogConfiguration dynConf;
+    private final boolean waitOnLimit;
+
+    // all the fields below are guarded by this
+    private long outstandingBytes = 0L;
+    private int numActiveWriters = 0;
+    private final ArrayDeque<WriterLimiter> waitingWriters = new ArrayDeque<WriterLimiter>();
+
+    // Stats
+    private final Counter rejected;
+    private final OpStatsLogger waitTime;
+
+    public WriteBytesLimiter(DynamicDistributedLogConfiguration dynConf,
+                             boolean waitOnLimit,
+                             StatsLogger statsLogger) {
+        this.dynConf = dynConf;
+        this.waitOnLimit = waitOnLimit;
+        this.rejected = statsLogger.getCounter("rejected");
+        this.waitTime = statsLogger.getOpStatsLogger("wait_time");
+        statsLogger.registerGauge("outstanding_bytes", new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Number getSample() {
+                return getOutstandingBytes();
+            }
+        });
+    }
+
+    /**
+     * Create the limiter for the writer of stream <i>streamName</i>.
+     *
+     * @param streamName name of the stream
+     * @param streamDynConf dynamic configuration of the stream
+     * @return the limiter of the writer.
+     */
+    public WriterLimiter newWriterLimiter(String streamName,
+                                          DynamicDistributedLogConfiguration streamDynConf) {
+        return new WriterLimiter(streamName, streamDynConf);
+    }
+
+    public synchronized long getOutstandingBytes() {
+        return outstandingBytes;
+    }
+
+    private boolean canAdmit(WriterLimiter writer, int bytes) {
+        long maxBytes = dynConf.getGlobalOutstandingWriteBytesLimit();
+        if (maxBytes <= 0) {
+            return true;
+        }
+        if (outstandingBytes > 0 && outstandingBytes + bytes > maxBytes) {
+            return false;
+        }
+        if (0 == writer.outstandingBytes) {
+            return true;
+        }
+        long writerMaxBytes = writer.dynConf.getPerWriterOutstandingWriteBytesLimit();
+        if (writerMaxBytes > 0 && writer.outstandingBytes + bytes > writerMaxBytes) {
+            return false;
+        }
+        // the budget is contended, limit the writer to its fair share
+        return outstandingBytes + bytes <= maxBytes / 2
+                || writer.outstandingBytes + bytes <= maxBytes / Math.max(1, numActiveWriters);
+    }
+
+    private void admit(WriterLimiter writer, int bytes) {
+        outstandingBytes += bytes;
+        writer.outstandingBytes += bytes;
+        updateActive(writer);
+    }
+
+    private void updateActive(WriterLimiter writer) {
+        boolean active = writer.outstandingBytes > 0 || !writer.waiting.isEmpty() || !writer.granted.isEmpty();
+        if (active != writer.active) {
+            writer.active = active;
+            numActiveWriters += active ? 1 : -1;
+        }
+    }
+
+    /**
+     * Admit the waiting writes that fit in the budget, one write of each writer at a time.
+     *
+     * @return the writers that have writes admitted, or null if there isn't any.
+     */
+    private List<WriterLimiter> grantWaitingWrites() {
+        List<WriterLimiter> writersToDispatch = null;
+        boolean granted = true;
+        while (granted && !waitingWriters.isEmpty()) {
+            granted = false;
+            int numWriters = waitingWriters.size();
+            for (int i = 0; i < numWriters; i++) {
+                WriterLimiter writer = waitingWriters.poll();
+                PendingWrite write = writer.waiting.peek();
+                if (canAdmit(writer, write.bytes)) {
+                    writer.waiting.poll();
+                    writer.granted.add(write);
+                    admit(writer, write.bytes);
+                    if (null == writersToDispatch) {
+                        writersToDispatch = new ArrayList<WriterLimiter>();
+                    }
+                    writersToDispatch.add(writer);
+                    granted = true;
+                }
+                if (!writer.waiting.isEmpty()) {
+                    waitingWriters.add(writer);
+                }
+            }
+        }
+        return writersToDispatch;
+    }
+
+    private static void dispatch(List<WriterLimiter> writers) {
+        if (null == writers) {
+            return;
+        }
+        for (WriterLimiter writer : writers) {
+            writer.dispatch();
+        }
+    }
+
+    private static class PendingWrite {
+        final int bytes;
+        final Promise<Void> promise = new Promise<Void>();
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        PendingWrite(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The limiter of a single writer.
+     */
+    public class WriterLimiter {
+
+        private final String streamName;
+        private final DynamicDistributedLogConfiguration dynConf;
+        // all the fields below are guarded by the namespace limiter
+        private long outstandingBytes = 0L;
+        private boolean active = false;
+        // writes waiting to be admitted
+        private final LinkedList<PendingWrite> waiting = new LinkedList<PendingWrite>();
+        // writes admitted but not yet dispatched to the writer
+        private final LinkedList<PendingWrite> granted = new LinkedList<PendingWrite>();
+        private boolean dispatching = false;
+        private Throwable closeCause = null;
+
+        private WriterLimiter(String streamName, DynamicDistributedLogConfiguration dynConf) {
+            this.streamName = streamName;
+            this.dynConf = dynConf;
+        }
+
+        /**
+         * Acquire <i>bytes</i> for a write. The returned future is satisfied when the write is admitted,
+         * and the caller should issue the write in the callback to preserve the order of writes.
+         *
+         * @param bytes bytes of the write
+         * @return future satisfied when the write is admitted, or failed with {@link OverCapacityException}
+         *         if the write is rejected.
+         */
+        public Future<Void> acquire(int bytes) {
+            PendingWrite write;
+            List<WriterLimiter> writersToDispatch;
+            synchronized (WriteBytesLimiter.this) {
+                if (null != closeCause) {
+                    return Future.exception(closeCause);
+                }
+                if (waiting.isEmpty() && granted.isEmpty() && !dispatching && canAdmit(this, bytes)) {
+                    admit(this, bytes);
+                    return Future.Void();
+                }
+                if (!waitOnLimit) {
+                    rejected.inc();
+                    return Future.exception(new OverCapacityException(
+                            String.format("Outstanding write bytes exceeded for stream %s", streamName)));
+                }
+                write = new PendingWrite(bytes);
+                if (waiting.isEmpty()) {
+                    waitingWriters.add(this);
+                }
+                waiting.add(write);
+                updateActive(this);
+                writersToDispatch = grantWaitingWrites();
+            }
+            dispatch(writersToDispatch);
+            return write.promise;
+        }
+
+        /**
+         * Release the <i>bytes</i> of a completed write.
+         *
+         * @param bytes bytes of the write
+         */
+        public void release(int bytes) {
+            List<WriterLimiter> writersToDispatch = null;
+            synchronized (WriteBytesLimiter.this) {
+                WriteBytesLimiter.this.outstandingBytes -= bytes;
+                outstandingBytes -= bytes;
+                updateActive(this);
+                if (!waitingWriters.isEmpty()) {
+                    writersToDispatch = grantWaitingWrites();
+                }
+            }
+            dispatch(writersToDispatch);
+        }
+
+        /**
+         * Satisfy the admitted writes in order. The writes are satisfied outside of the lock,
+         * while new writes of this writer are queued behind them until they are all satisfied.
+         */
+        private void dispatch() {
+            synchronized (WriteBytesLimiter.this) {
+                if (dispatching) {
+                    return;
+                }
+                dispatching = true;
+            }
+            while (true) {
+                PendingWrite write;
+                synchronized (WriteBytesLimiter.this) {
+                    write = granted.poll();
+                    if (null == write) {
+                        dispatching = false;
+                        return;
+                    }
+                }
+                waitTime.registerSuccessfulEvent(write.stopwatch.elapsed(TimeUnit.MICROSECONDS));
+                write.promise.setValue(null);
+            }
+        }
+
+        /**
+         * Close the limiter. The writes still waiting to be admitted are failed with <i>cause</i>.
+         *
+         * @param cause the exception to fail the waiting writes
+         */
+        public void close(Throwable cause) {
+            List<PendingWrite> writesToCancel;
+            synchronized (WriteBytesLimiter.this) {
+                if (null != closeCause) {
+                    return;
+                }
+                closeCause = cause;
+                writesToCancel = new ArrayList<PendingWrite>(waiting);
+                waiting.clear();
+                waitingWriters.remove(this);
+                updateActive(this);
+            }
+            for (PendingWrite write : writesToCancel) {
+                waitTime.registerFailedEvent(write.stopwatch.elapsed(TimeUnit.MICROSECONDS));
+                write.promise.setException(cause);
+            }
+        }
+
+        public long getOutstandingBytes() {
+            synchronized (WriteBytesLimiter.this) {
+                return outstandingBytes;
+            }
+        }
+    }
+}
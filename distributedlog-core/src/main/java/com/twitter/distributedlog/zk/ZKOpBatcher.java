@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.zk;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.twitter.distributedlog.ZooKeeperClient;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.zookeeper.AsyncCallback;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesce the {@link ZKTransaction}s executed within a small time window into a single
+ * zookeeper <i>multi</i> request.
+ *
+ * <p>A zookeeper multi is atomic: if any operation of the batch fails, the whole batch is
+ * rolled back. The batcher identifies the transaction owning the failed operation, fails
+ * only that transaction, and re-executes the rest of the batch. So each transaction keeps
+ * the same semantic as it is executed individually.
+ *
+ * <h3>Metrics</h3>
+ *
+ * <ul>
+ * <li> `scope`/batch_latency: opstats. latency of the batched multi requests, in microseconds.
+ * <li> `scope`/batch_num_txns: opstats. number of transactions in a batched multi request.
+ * <li> `scope`/batch_num_ops: opstats. number of zookeeper operations in a batched multi request.
+ * <li> `scope`/retried_txns: counter. number of transactions re-executed because other
+ * transactions in the same batch failed.
+ * </ul>
+ */
+public class ZKOpBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZKOpBatcher.class);
+
+    private class BatchCallback implements AsyncCallback.MultiCallback {
+
+        private final List<ZKTransaction> txns;
+        private final Stopwatch stopwatch;
+
+        BatchCallback(List<ZKTransaction> txns) {
+            this.txns = txns;
+            this.stopwatch = Stopwatch.createStarted();
+        }
+
+        @Override
+        public void processResult(int rc, String path, Object ctx, List<OpResult> results) {
+            if (KeeperException.Code.OK.intValue() == rc) {
+                batchLatencyStat.registerSuccessfulEvent(stopwatch.elapsed(TimeUnit.MICROSECONDS));
+            } else {
+                batchLatencyStat.registerFailedEvent(stopwatch.elapsed(TimeUnit.MICROSECONDS));
+            }
+            if (KeeperException.Code.OK.intValue() == rc || null == results) {
+                // the whole batch either succeeded or failed before executing any operation
+                int opIdx = 0;
+                for (ZKTransaction txn : txns) {
+                    int numOps = txn.getZkOps().size();
+                    txn.processResult(rc, path, null,
+                            null == results ? null : results.subList(opIdx, opIdx + numOps));
+                    opIdx += numOps;
+                }
+                return;
+            }
+            // fail the transaction owning the failed operation and retry the others
+            List<ZKTransaction> txnsToRetry = Lists.newArrayListWithExpectedSize(txns.size());
+            ZKTransaction failedTxn = null;
+            List<OpResult> failedTxnResults = null;
+            int opIdx = 0;
+            for (ZKTransaction txn : txns) {
+                int numOps = txn.getZkOps().size();
+                List<OpResult> txnResults = results.subList(opIdx, opIdx + numOps);
+                opIdx += numOps;
+                if (null == failedTxn && isFailed(txnResults)) {
+                    failedTxn = txn;
+                    failedTxnResults = txnResults;
+                } else {
+                    txnsToRetry.add(txn);
+                }
+            }
+            if (null == failedTxn) {
+                logger.warn("Couldn't find the failed operation in a batch of {} transactions failed with {}",
+                        txns.size(), KeeperException.Code.get(rc));
+                opIdx = 0;
+                for (ZKTransaction txn : txns) {
+                    int numOps = txn.getZkOps().size();
+                    txn.processResult(rc, path, null, results.subList(opIdx, opIdx + numOps));
+                    opIdx += numOps;
+                }
+                return;
+            }
+            failedTxn.processResult(rc, path, null, failedTxnResults);
+            if (!txnsToRetry.isEmpty()) {
+                retriedTxns.add(txnsToRetry.size());
+                executeBatch(txnsToRetry);
+            }
+        }
+
+        private boolean isFailed(List<OpResult> txnResults) {
+            for (OpResult result : txnResults) {
+                if (!(result instanceof OpResult.ErrorResult)) {
+                    continue;
+                }
+                int err = ((OpResult.ErrorResult) result).getErr();
+                if (KeeperException.Code.OK.intValue() != err
+                        && KeeperException.Code.RUNTIMEINCONSISTENCY.intValue() != err) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final ZooKeeperClient zkc;
+    private final ScheduledExecutorService scheduler;
+    private final long batchWindowMs;
+    private final int maxBatchOps;
+    // pending transactions
+    private List<ZKTransaction> pendingTxns;
+    private int numPendingOps = 0;
+    private boolean flushScheduled = false;
+    private boolean closed = false;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // Stats
+    private final OpStatsLogger batchLatencyStat;
+    private final OpStatsLogger batchNumTxnsStat;
+    private final OpStatsLogger batchNumOpsStat;
+    private final Counter retriedTxns;
+
+    public ZKOpBatcher(ZooKeeperClient zkc,
+                       ScheduledExecutorService scheduler,
+                       long batchWindowMs,
+                       int maxBatchOps,
+                       StatsLogger statsLogger) {
+        this.zkc = zkc;
+        this.scheduler = scheduler;
+        this.batchWindowMs = batchWindowMs;
+        this.maxBatchOps = maxBatchOps;
+        this.pendingTxns = Lists.newArrayList();
+        // Stats
+        this.batchLatencyStat = statsLogger.getOpStatsLogger("batch_latency");
+        this.batchNumTxnsStat = statsLogger.getOpStatsLogger("batch_num_txns");
+        this.batchNumOpsStat = statsLogger.getOpStatsLogger("batch_num_ops");
+        this.retriedTxns = statsLogger.getCounter("retried_txns");
+    }
+
+    /**
+     * Add the transaction to current batch.
+     *
+     * @param txn transaction to execute
+     */
+    void submit(ZKTransaction txn) {
+        List<ZKTransaction> txnsToFlush = null;
+        boolean scheduleFlush = false;
+        synchronized (this) {
+            if (closed) {
+                txnsToFlush = Lists.newArrayList(txn);
+            } else {
+                pendingTxns.add(txn);
+                numPendingOps += txn.getZkOps().size();
+                if (numPendingOps >= maxBatchOps) {
+                    txnsToFlush = takePendingTxns();
+                } else if (!flushScheduled) {
+                    flushScheduled = scheduleFlush = true;
+                }
+            }
+        }
+        if (null != txnsToFlush) {
+            executeBatch(txnsToFlush);
+        } else if (scheduleFlush) {
+            scheduler.schedule(flushTask, batchWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private List<ZKTransaction> takePendingTxns() {
+        List<ZKTransaction> txns = pendingTxns;
+        pendingTxns = Lists.newArrayList();
+        numPendingOps = 0;
+        return txns;
+    }
+
+    void flush() {
+        List<ZKTransaction> txnsToFlush;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingTxns.isEmpty()) {
+                return;
+            }
+            txnsToFlush = takePendingTxns();
+        }
+        executeBatch(txnsToFlush);
+    }
+
+    private void executeBatch(List<ZKTransaction> txns) {
+        if (txns.size() == 1) {
+            txns.get(0).executeImmediately();
+            return;
+        }
+        List<Op> ops = Lists.newArrayList();
+        for (ZKTransaction txn : txns) {
+            ops.addAll(txn.getZkOps());
+        }
+        batchNumTxnsStat.registerSuccessfulEvent(txns.size());
+        batchNumOpsStat.registerSuccessfulEvent(ops.size());
+        try {
+            zkc.get().multi(ops, new BatchCallback(txns), null);
+        } catch (ZooKeeperClient.ZooKeeperConnectionException e) {
+            executeIndividually(txns);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executeIndividually(txns);
+        }
+    }
+
+    private void executeIndividually(List<ZKTransaction> txns) {
+        // let each transaction handle the zookeeper client failure by itself
+        for (ZKTransaction txn : txns) {
+            txn.executeImmediately();
+        }
+    }
+
+    /**
+     * Close the batcher. The pending transactions are flushed, and the transactions submitted
+     * after the batcher is closed are executed individually.
+     */
+    public void close() {
+        List<ZKTransaction> txnsToFlush;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            txnsToFlush = takePendingTxns();
+        }
+        if (!txnsToFlush.isEmpty()) {
+            executeBatch(txnsToFlush);
+        }
+    }
+
+}
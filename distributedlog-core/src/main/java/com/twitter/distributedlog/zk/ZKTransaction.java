@@ -27,6 +27,7 @@ import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.OpResult;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -36,13 +37,26 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ZKTransaction implements Transaction<Object>, AsyncCallback.MultiCallback {
 
     private final ZooKeeperClient zkc;
+    private final ZKOpBatcher batcher;
     private final List<ZKOp> ops;
     private final List<org.apache.zookeeper.Op> zkOps;
     private final Promise<Void> result;
     private final AtomicBoolean done = new AtomicBoolean(false);
 
     public ZKTransaction(ZooKeeperClient zkc) {
+        this(zkc, null);
+    }
+
+    /**
+     * Create a transaction that is executed in batches by <i>batcher</i>.
+     *
+     * @param zkc zookeeper client
+     * @param batcher batcher to coalesce the transaction with others. execute the transaction
+     *                individually if it is null.
+     */
+    public ZKTransaction(ZooKeeperClient zkc, @Nullable ZKOpBatcher batcher) {
         this.zkc = zkc;
+        this.batcher = batcher;
         this.ops = Lists.newArrayList();
         this.zkOps = Lists.newArrayList();
         this.result = new Promise<Void>();
@@ -59,11 +73,23 @@ public class ZKTransaction implements Transaction<Object>, AsyncCallback.MultiCa
         this.zkOps.add(zkOp.getOp());
     }
 
+    List<org.apache.zookeeper.Op> getZkOps() {
+        return zkOps;
+    }
+
     @Override
     public Future<Void> execute() {
         if (!done.compareAndSet(false, true)) {
             return result;
         }
+        if (null != batcher && !zkOps.isEmpty()) {
+            batcher.submit(this);
+            return result;
+        }
+        return executeImmediately();
+    }
+
+    Future<Void> executeImmediately() {
         try {
             zkc.get().multi(zkOps, this, result);
         } catch (ZooKeeperClient.ZooKeeperConnectionException e) {
@@ -52,7 +52,6 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
-import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -286,7 +285,7 @@ public class DLMTestUtil {
                     .setLogSegmentSequenceNo(logSegmentSeqNo)
                     .build();
         return metadata.completeLogSegment(ledgerPath + "/" + completedLedgerZNodeNameWithLogSegmentSequenceNumber(logSegmentSeqNo),
-                lastTxId, recordCount, lastEntryId, lastSlotId, firstTxId);
+                lastTxId, recordCount, lastEntryId, lastSlotId, firstTxId, null);
     }
 
     public static void generateCompletedLogSegments(DistributedLogManager manager, DistributedLogConfiguration conf,
@@ -370,6 +369,7 @@ public class DLMTestUtil {
                 writeHandler.statsLogger,
                 writeHandler.alertStatsLogger,
                 PermitLimiter.NULL_PERMIT_LIMITER,
+                null,
                 new SettableFeatureProvider("", 0),
                 ConfUtils.getConstDynConf(conf));
         if (writeEntries) {
@@ -420,6 +420,7 @@ public class DLMTestUtil {
                 writeHandler.statsLogger,
                 writeHandler.alertStatsLogger,
                 PermitLimiter.NULL_PERMIT_LIMITER,
+                null,
                 new SettableFeatureProvider("", 0),
                 ConfUtils.getConstDynConf(conf));
         long txid = startTxID;
@@ -449,7 +450,7 @@ public class DLMTestUtil {
     }
 
     public static void updateSegmentMetadata(ZooKeeperClient zkc, LogSegmentMetadata segment) throws Exception {
-        byte[] finalisedData = segment.getFinalisedData().getBytes(UTF_8);
+        byte[] finalisedData = segment.getFinalisedDataBytes();
         zkc.get().setData(segment.getZkPath(), finalisedData, -1);
     }
 
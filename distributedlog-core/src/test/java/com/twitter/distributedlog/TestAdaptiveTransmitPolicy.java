@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog;
+
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Case for {@link AdaptiveTransmitPolicy}.
+ */
+public class TestAdaptiveTransmitPolicy {
+
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static long writeSteadily(AdaptiveTransmitPolicy policy,
+                                      long startNanos,
+                                      int numWrites,
+                                      int recordSize,
+                                      int outstandingTransmits) {
+        long nowNanos = startNanos;
+        for (int i = 0; i < numWrites; i++) {
+            nowNanos += WRITE_INTERVAL_NANOS;
+            policy.onWrite(recordSize, outstandingTransmits, nowNanos);
+        }
+        return nowNanos;
+    }
+
+    private static void completeTransmits(AdaptiveTransmitPolicy policy, int numTransmits, long latencyMicros) {
+        for (int i = 0; i < numTransmits; i++) {
+            policy.onTransmitComplete(latencyMicros);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTransmitImmediatelyWhenIdle() throws Exception {
+        AdaptiveTransmitPolicy policy =
+                new AdaptiveTransmitPolicy(10, LogRecord.MAX_LOGRECORDSET_SIZE, NullStatsLogger.INSTANCE);
+        completeTransmits(policy, 100, 2000L);
+        long nowNanos = writeSteadily(policy, System.nanoTime(), 20000, 1000, 1);
+        assertTrue("Should batch under load", policy.getTransmissionThreshold() > 0);
+
+        // the stream becomes idle for a while
+        nowNanos += TimeUnit.SECONDS.toNanos(10);
+        policy.onWrite(100, 0, nowNanos);
+        assertEquals(0, policy.getTransmissionThreshold());
+        assertEquals(0L, policy.getFlushDelayMicros());
+    }
+
+    @Test(timeout = 60000)
+    public void testBatchUnderLoad() throws Exception {
+        AdaptiveTransmitPolicy policy =
+                new AdaptiveTransmitPolicy(10, LogRecord.MAX_LOGRECORDSET_SIZE, NullStatsLogger.INSTANCE);
+        completeTransmits(policy, 100, 2000L);
+        // 1000 bytes every 100 micros
+        writeSteadily(policy, System.nanoTime(), 20000, 1000, 1);
+
+        long flushDelayMicros = policy.getFlushDelayMicros();
+        assertTrue("Flush delay should be positive : " + flushDelayMicros, flushDelayMicros > 0L);
+        assertTrue("Flush delay should leave room for the add latency : " + flushDelayMicros,
+                flushDelayMicros <= TimeUnit.MILLISECONDS.toMicros(10) - 2000L);
+        int threshold = policy.getTransmissionThreshold();
+        // the threshold should be close to the bytes arriving within the flush delay
+        long expectedBytes = 10L * flushDelayMicros;
+        assertTrue("Threshold " + threshold + " should be close to " + expectedBytes,
+                threshold > expectedBytes / 2 && threshold < expectedBytes * 2);
+    }
+
+    @Test(timeout = 60000)
+    public void testThresholdBoundedByMaxTransmitSize() throws Exception {
+        AdaptiveTransmitPolicy policy =
+                new AdaptiveTransmitPolicy(10, 4096, NullStatsLogger.INSTANCE);
+        completeTransmits(policy, 100, 2000L);
+        writeSteadily(policy, System.nanoTime(), 20000, 1000, 1);
+        assertEquals(4096, policy.getTransmissionThreshold());
+    }
+
+    @Test(timeout = 60000)
+    public void testTransmitImmediatelyWhenAddLatencyExceedsTarget() throws Exception {
+        AdaptiveTransmitPolicy policy =
+                new AdaptiveTransmitPolicy(10, LogRecord.MAX_LOGRECORDSET_SIZE, NullStatsLogger.INSTANCE);
+        completeTransmits(policy, 100, 20000L);
+        writeSteadily(policy, System.nanoTime(), 20000, 1000, 1);
+        assertEquals(0, policy.getTransmissionThreshold());
+        assertEquals(0L, policy.getFlushDelayMicros());
+    }
+
+}
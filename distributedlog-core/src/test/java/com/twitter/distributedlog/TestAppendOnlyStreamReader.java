@@ -20,11 +20,13 @@ package com.twitter.distributedlog;
 import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 
+import com.google.common.base.Stopwatch;
 import com.twitter.distributedlog.exceptions.EndOfStreamException;
 import com.twitter.util.Await;
 import com.twitter.util.Duration;
@@ -33,6 +35,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
 
 public class TestAppendOnlyStreamReader extends TestDistributedLogBase {
     static final Logger LOG = LoggerFactory.getLogger(TestAppendOnlyStreamReader.class);
@@ -103,6 +107,34 @@ public class TestAppendOnlyStreamReader extends TestDistributedLogBase {
         skipForwardThenSkipBack(name, confLocal);
     }
 
+    @Test(timeout = 60000)
+    public void testBlockReadsSkipToSkipsBytesWithImmediateFlush() throws Exception {
+        String name = testNames.getMethodName();
+
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.loadConf(conf);
+        confLocal.setImmediateFlushEnabled(true);
+        confLocal.setOutputBufferSize(0);
+        confLocal.setAppendOnlyStreamReaderPrefetchRecords(2);
+
+        skipForwardThenSkipBack(name, confLocal);
+    }
+
+    @Test(timeout = 60000)
+    public void testBlockReadsSkipToSkipsBytesWithLargerLogRecordsZeroCopy() throws Exception {
+        String name = testNames.getMethodName();
+
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.loadConf(conf);
+        confLocal.setImmediateFlushEnabled(false);
+        confLocal.setOutputBufferSize(1024*100);
+        confLocal.setPeriodicFlushFrequencyMilliSeconds(1000*60);
+        confLocal.setAppendOnlyStreamReaderPrefetchRecords(16);
+        confLocal.setReaderZeroCopyEnabled(true);
+
+        skipForwardThenSkipBack(name, confLocal);
+    }
+
     @Test(timeout = 60000)
     public void testSkipToSkipsBytesUntilEndOfStream() throws Exception {
         String name = testNames.getMethodName();
@@ -141,6 +173,54 @@ public class TestAppendOnlyStreamReader extends TestDistributedLogBase {
         }
     }
 
+    @Test(timeout = 60000)
+    public void testBlockReadsSkipToSeeksUntilEndOfStream() throws Exception {
+        String name = testNames.getMethodName();
+
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.loadConf(conf);
+        confLocal.setAppendOnlyStreamReaderPrefetchRecords(16);
+
+        DistributedLogManager dlmwrite = createNewDLM(confLocal, name);
+        DistributedLogManager dlmreader = spy(createNewDLM(confLocal, name));
+
+        AppendOnlyStreamWriter writer = dlmwrite.getAppendOnlyStreamWriter();
+        writer.write(DLMTestUtil.repeatString("abc", 5).getBytes());
+        writer.markEndOfStream();
+        writer.force(false);
+        writer.close();
+
+        AppendOnlyStreamReader reader = dlmreader.getAppendOnlyStreamReader();
+        byte[] bytesIn = new byte[9];
+
+        int read = reader.read(bytesIn, 0, 9);
+        assertEquals(9, read);
+        assertTrue(Arrays.equals(DLMTestUtil.repeatString("abc", 3).getBytes(), bytesIn));
+
+        // skipTo seeks to the record containing the position rather than scanning from the start
+        assertTrue(reader.skipTo(15));
+        verify(dlmreader, times(1)).getDLSNNotLessThanTxId(15L);
+        verify(dlmreader, never()).getInputStream(anyLong());
+
+        try {
+            read = reader.read(bytesIn, 0, 1);
+            fail("Should have thrown");
+        } catch (EndOfStreamException ex) {
+        }
+
+        assertTrue(reader.skipTo(0));
+        verify(dlmreader, times(1)).getDLSNNotLessThanTxId(0L);
+
+        try {
+            reader.skipTo(16);
+            fail("Should have thrown");
+        } catch (EndOfStreamException ex) {
+        }
+        reader.close();
+        dlmreader.close();
+        dlmwrite.close();
+    }
+
     @Test(timeout = 60000)
     public void testSkipToreturnsFalseIfPositionDoesNotExistYetForUnSealedStream() throws Exception {
         String name = testNames.getMethodName();
@@ -175,6 +255,56 @@ public class TestAppendOnlyStreamReader extends TestDistributedLogBase {
         assertTrue(Arrays.equals("bcabc".getBytes(), bytesIn2));
     }
 
+    @Test(timeout = 60000)
+    public void testBlockReadsSkipToReturnsFalseAfterWaitTimeForUnSealedStream() throws Exception {
+        String name = testNames.getMethodName();
+        int waitTimeMs = 200;
+
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.loadConf(conf);
+        confLocal.setAppendOnlyStreamReaderPrefetchRecords(16);
+        confLocal.setAppendOnlyStreamReaderWaitTimeMs(waitTimeMs);
+
+        DistributedLogManager dlmwrite = createNewDLM(confLocal, name);
+        DistributedLogManager dlmreader = spy(createNewDLM(confLocal, name));
+
+        AppendOnlyStreamWriter writer = dlmwrite.getAppendOnlyStreamWriter();
+        writer.write(DLMTestUtil.repeatString("abc", 5).getBytes());
+        writer.close();
+
+        final AppendOnlyStreamReader reader = dlmreader.getAppendOnlyStreamReader();
+        byte[] bytesIn = new byte[9];
+
+        int read = reader.read(bytesIn, 0, 9);
+        assertEquals(9, read);
+        assertTrue(Arrays.equals(DLMTestUtil.repeatString("abc", 3).getBytes(), bytesIn));
+
+        // the prefetch waits up to the wait time for the position to be written, then gives up
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        assertFalse(reader.skipTo(16));
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= waitTimeMs);
+
+        // the rest of the records are read through the async reader
+        read = reader.read(bytesIn, 0, 9);
+        assertEquals(6, read);
+        assertEquals(0, reader.read(bytesIn, 0, 1));
+        verify(dlmreader, never()).getInputStream(anyLong());
+
+        AppendOnlyStreamWriter writer2 = dlmwrite.getAppendOnlyStreamWriter();
+        writer2.write(DLMTestUtil.repeatString("abc", 5).getBytes());
+        writer2.close();
+
+        assertTrue(reader.skipTo(16));
+
+        byte[] bytesIn2 = new byte[5];
+        read = reader.read(bytesIn2, 0, 5);
+        assertEquals(5, read);
+        assertTrue(Arrays.equals("bcabc".getBytes(), bytesIn2));
+        reader.close();
+        dlmreader.close();
+        dlmwrite.close();
+    }
+
     @Test(timeout = 60000)
     public void testSkipToForNoPositionChange() throws Exception {
         String name = testNames.getMethodName();
@@ -204,4 +334,44 @@ public class TestAppendOnlyStreamReader extends TestDistributedLogBase {
         assertEquals(4, read);
         assertEquals(new String("bcab"), new String(bytesIn));
     }
+
+    @Test(timeout = 60000)
+    public void testSkipToReturnsFalseForEmptyStream() throws Exception {
+        String name = testNames.getMethodName();
+
+        DistributedLogConfiguration blockReadsConf = new DistributedLogConfiguration();
+        blockReadsConf.loadConf(conf);
+        blockReadsConf.setAppendOnlyStreamReaderPrefetchRecords(16);
+
+        DistributedLogManager dlmwrite = createNewDLM(conf, name);
+        DistributedLogManager dlmreader = createNewDLM(conf, name);
+        DistributedLogManager blockReadsDlm = createNewDLM(blockReadsConf, name);
+
+        AppendOnlyStreamWriter writer = dlmwrite.getAppendOnlyStreamWriter();
+        writer.close();
+
+        // both readers wait for the first record instead of failing on a stream without log segments
+        AppendOnlyStreamReader reader = dlmreader.getAppendOnlyStreamReader();
+        AppendOnlyStreamReader blockReader = blockReadsDlm.getAppendOnlyStreamReader();
+        assertFalse(reader.skipTo(1));
+        assertFalse(blockReader.skipTo(1));
+
+        AppendOnlyStreamWriter writer2 = dlmwrite.getAppendOnlyStreamWriter();
+        writer2.write(DLMTestUtil.repeatString("abc", 5).getBytes());
+        writer2.close();
+
+        assertTrue(reader.skipTo(1));
+        assertTrue(blockReader.skipTo(1));
+        byte[] bytesIn = new byte[4];
+        assertEquals(4, reader.read(bytesIn, 0, 4));
+        assertEquals("bcab", new String(bytesIn));
+        assertEquals(4, blockReader.read(bytesIn, 0, 4));
+        assertEquals("bcab", new String(bytesIn));
+
+        reader.close();
+        blockReader.close();
+        dlmreader.close();
+        blockReadsDlm.close();
+        dlmwrite.close();
+    }
 }
@@ -19,7 +19,13 @@ package com.twitter.distributedlog;
 
 import java.io.ByteArrayInputStream;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
 import com.twitter.distributedlog.exceptions.BKTransmitException;
 import com.twitter.distributedlog.util.FutureUtils;
 import org.junit.Rule;
@@ -33,10 +39,14 @@ import com.twitter.util.Await;
 import com.twitter.util.Duration;
 import com.twitter.util.Future;
 
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.mockito.ArgumentCaptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 public class TestAppendOnlyStreamWriter extends TestDistributedLogBase {
     static final Logger LOG = LoggerFactory.getLogger(TestAppendOnlyStreamWriter.class);
@@ -75,6 +85,132 @@ public class TestAppendOnlyStreamWriter extends TestDistributedLogBase {
         dlmwrite.close();
     }
 
+    private AppendOnlyStreamWriter createGroupCommitWriter(BKDistributedLogManager dlm,
+                                                           long groupCommitWindowMs,
+                                                           int groupCommitMaxCallers,
+                                                           OpStatsLogger groupCommitCallersStat)
+            throws Exception {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        when(statsLogger.scope("append_only_stream_writer")).thenReturn(statsLogger);
+        when(statsLogger.getOpStatsLogger("group_commit_callers")).thenReturn(groupCommitCallersStat);
+        return new AppendOnlyStreamWriter(dlm.startAsyncLogSegmentNonPartitioned(), 0L,
+                true, groupCommitWindowMs, groupCommitMaxCallers, dlm.getScheduler(), statsLogger);
+    }
+
+    /**
+     * Run <i>numThreads</i> threads that each write and force <i>numWritesPerThread</i> times.
+     */
+    private void concurrentWriteAndForce(final AppendOnlyStreamWriter writer,
+                                         final byte[] data,
+                                         int numThreads,
+                                         final int numWritesPerThread) throws Exception {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>(null);
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < numWritesPerThread; j++) {
+                            long writePos;
+                            synchronized (writer) {
+                                writer.write(data);
+                                writePos = writer.requestPos;
+                            }
+                            writer.force(false);
+                            // the force covers the writes made before it
+                            assertTrue(writer.position() >= writePos);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            }, testNames.getMethodName() + "-" + i);
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull("Unexpected failure : " + failure.get(), failure.get());
+        assertEquals((long) data.length * numThreads * numWritesPerThread, writer.position());
+    }
+
+    private List<Long> getGroupCommitCallers(OpStatsLogger groupCommitCallersStat) {
+        ArgumentCaptor<Long> callers = ArgumentCaptor.forClass(Long.class);
+        verify(groupCommitCallersStat, atLeastOnce()).registerSuccessfulEvent(callers.capture());
+        return callers.getAllValues();
+    }
+
+    @Test(timeout = 60000)
+    public void testGroupCommitConcurrentForce() throws Exception {
+        String name = testNames.getMethodName();
+        BKDistributedLogManager dlmwrite = createNewDLM(conf, name);
+        DistributedLogManager dlmreader = createNewDLM(conf, name);
+        OpStatsLogger groupCommitCallersStat = mock(OpStatsLogger.class);
+        AppendOnlyStreamWriter writer = createGroupCommitWriter(dlmwrite, 0L, 64, groupCommitCallersStat);
+        byte[] data = DLMTestUtil.repeatString("abc", 10).getBytes();
+        int numForces = 8 * 10;
+        concurrentWriteAndForce(writer, data, 8, 10);
+        writer.close();
+
+        // every force is served by a commit, and forces arriving while a commit is outstanding share the next one
+        List<Long> callers = getGroupCommitCallers(groupCommitCallersStat);
+        long numCallers = 0;
+        for (Long numCommitCallers : callers) {
+            numCallers += numCommitCallers;
+        }
+        assertEquals(numForces, numCallers);
+        assertTrue("Forces should be grouped : " + callers, callers.size() < numForces);
+
+        AppendOnlyStreamReader reader = dlmreader.getAppendOnlyStreamReader();
+        byte[] bytesIn = new byte[data.length];
+        for (int i = 0; i < numForces; i++) {
+            assertEquals(data.length, reader.read(bytesIn, 0, data.length));
+            assertArrayEquals(data, bytesIn);
+        }
+        reader.close();
+        dlmreader.close();
+        dlmwrite.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testGroupCommitWindowGroupsForces() throws Exception {
+        String name = testNames.getMethodName();
+        BKDistributedLogManager dlm = createNewDLM(conf, name);
+        OpStatsLogger groupCommitCallersStat = mock(OpStatsLogger.class);
+        AppendOnlyStreamWriter writer = createGroupCommitWriter(dlm, 2000L, 64, groupCommitCallersStat);
+        byte[] data = DLMTestUtil.repeatString("abc", 10).getBytes();
+
+        // without any outstanding commit, the first force waits for the window instead of committing immediately
+        concurrentWriteAndForce(writer, data, 8, 1);
+        assertEquals(Lists.newArrayList(8L), getGroupCommitCallers(groupCommitCallersStat));
+
+        writer.close();
+        dlm.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testGroupCommitIssuedEarlyOnMaxCallers() throws Exception {
+        String name = testNames.getMethodName();
+        BKDistributedLogManager dlm = createNewDLM(conf, name);
+        OpStatsLogger groupCommitCallersStat = mock(OpStatsLogger.class);
+        long windowMs = 30000L;
+        AppendOnlyStreamWriter writer = createGroupCommitWriter(dlm, windowMs, 4, groupCommitCallersStat);
+        byte[] data = DLMTestUtil.repeatString("abc", 10).getBytes();
+
+        // the commit is issued as soon as it has max callers, without waiting for the window
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        concurrentWriteAndForce(writer, data, 4, 1);
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) < windowMs);
+        assertEquals(Lists.newArrayList(4L), getGroupCommitCallers(groupCommitCallersStat));
+
+        writer.close();
+        dlm.close();
+    }
+
     @Test(timeout = 60000)
     public void testWriteFutureDoesNotCompleteUntilWritePersisted() throws Exception {
         String name = testNames.getMethodName();
@@ -26,6 +26,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Optional;
@@ -251,6 +252,75 @@ public class TestAsyncReaderWriter extends TestDistributedLogBase {
         dlm.close();
     }
 
+    /**
+     * Test writing records from multiple threads concurrently when the lock-free write queue is enabled:
+     * all the writes should succeed and the records written by a same thread should keep their order.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentAsyncWritesWithMpscQueue() throws Exception {
+        String name = runtime.getMethodName();
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.loadConf(testConf);
+        confLocal.setOutputBufferSize(1024);
+        confLocal.setWriterMpscQueueEnabled(true);
+
+        final int numThreads = 4;
+        final int numRecordsPerThread = 50;
+
+        DistributedLogManager dlm = createNewDLM(confLocal, name);
+        final BKAsyncLogWriter writer = (BKAsyncLogWriter) (dlm.startAsyncLogSegmentNonPartitioned());
+        final AtomicLong txid = new AtomicLong(1L);
+        final List<List<Future<DLSN>>> writeResults = new ArrayList<List<Future<DLSN>>>(numThreads);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final List<Future<DLSN>> results = new ArrayList<Future<DLSN>>(numRecordsPerThread);
+            writeResults.add(results);
+            threads[i] = new Thread("mpsc-writer-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < numRecordsPerThread; j++) {
+                        synchronized (txid) {
+                            results.add(writer.write(DLMTestUtil.getLogRecordInstance(txid.getAndIncrement())));
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<LogRecord> bulk = new ArrayList<LogRecord>();
+        for (int i = 0; i < 10; i++) {
+            bulk.add(DLMTestUtil.getLogRecordInstance(txid.getAndIncrement()));
+        }
+        List<Future<DLSN>> bulkResults = Await.result(writer.writeBulk(bulk));
+        writeResults.add(bulkResults);
+
+        for (List<Future<DLSN>> results : writeResults) {
+            DLSN lastDLSN = DLSN.InvalidDLSN;
+            for (Future<DLSN> result : results) {
+                DLSN dlsn = Await.result(result);
+                assertTrue("Records written by a same thread should be ordered : " + dlsn + " after " + lastDLSN,
+                        dlsn.compareTo(lastDLSN) > 0);
+                lastDLSN = dlsn;
+            }
+        }
+        writer.closeAndComplete();
+
+        assertEquals(numThreads * numRecordsPerThread + 10, dlm.getLogRecordCount());
+        assertEquals(txid.get() - 1, dlm.getLastTxId());
+        dlm.close();
+    }
+
     /**
      * Write records into <i>numLogSegments</i> log segments. Each log segment has <i>numRecordsPerLogSegment</i> records.
      *
@@ -2203,4 +2273,56 @@ public class TestAsyncReaderWriter extends TestDistributedLogBase {
         writer.close();
         dlm.close();
     }
+
+    @Test(timeout = 60000)
+    public void testOpenAsyncLogReaderAtTime() throws Exception {
+        String name = runtime.getMethodName();
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.addConfiguration(testConf);
+        confLocal.setOutputBufferSize(0);
+        confLocal.setImmediateFlushEnabled(true);
+        confLocal.setLogSegmentIndexInterval(1);
+
+        DistributedLogManager dlm = createNewDLM(confLocal, name);
+        // first log segment
+        BKAsyncLogWriter writer = (BKAsyncLogWriter) FutureUtils.result(dlm.openAsyncLogWriter());
+        for (long txid = 1L; txid <= 10L; txid++) {
+            FutureUtils.result(writer.write(DLMTestUtil.getLogRecordInstance(txid)));
+        }
+        Utils.close(writer);
+        TimeUnit.MILLISECONDS.sleep(10);
+        long secondSegmentTime = Utils.nowInMillis();
+        TimeUnit.MILLISECONDS.sleep(10);
+        // second log segment
+        writer = (BKAsyncLogWriter) FutureUtils.result(dlm.openAsyncLogWriter());
+        for (long txid = 11L; txid <= 15L; txid++) {
+            FutureUtils.result(writer.write(DLMTestUtil.getLogRecordInstance(txid)));
+        }
+        TimeUnit.MILLISECONDS.sleep(10);
+        long midSegmentTime = Utils.nowInMillis();
+        TimeUnit.MILLISECONDS.sleep(10);
+        for (long txid = 16L; txid <= 20L; txid++) {
+            FutureUtils.result(writer.write(DLMTestUtil.getLogRecordInstance(txid)));
+        }
+        Utils.close(writer);
+
+        List<LogSegmentMetadata> segments = dlm.getLogSegments();
+        assertEquals(2, segments.size());
+        assertNotNull(segments.get(1).getIndex());
+
+        // before all the records
+        AsyncLogReader reader = FutureUtils.result(dlm.openAsyncLogReaderAtTime(0L));
+        assertEquals(1L, FutureUtils.result(reader.readNext()).getTransactionId());
+        Utils.close(reader);
+        // narrowed down to the second log segment by completion time
+        reader = FutureUtils.result(dlm.openAsyncLogReaderAtTime(secondSegmentTime));
+        assertEquals(11L, FutureUtils.result(reader.readNext()).getTransactionId());
+        Utils.close(reader);
+        // narrowed down to the last entry written before the time by the index
+        reader = FutureUtils.result(dlm.openAsyncLogReaderAtTime(midSegmentTime));
+        assertEquals(15L, FutureUtils.result(reader.readNext()).getTransactionId());
+        assertEquals(16L, FutureUtils.result(reader.readNext()).getTransactionId());
+        Utils.close(reader);
+        dlm.close();
+    }
 }
@@ -24,6 +24,7 @@ import com.twitter.distributedlog.exceptions.WriteException;
 import com.twitter.distributedlog.impl.BKNamespaceDriver;
 import com.twitter.distributedlog.impl.logsegment.BKLogSegmentEntryWriter;
 import com.twitter.distributedlog.io.Abortables;
+import com.twitter.distributedlog.io.BufferPool;
 import com.twitter.distributedlog.lock.SessionLockFactory;
 import com.twitter.distributedlog.lock.ZKDistributedLock;
 import com.twitter.distributedlog.lock.ZKSessionLockFactory;
@@ -37,6 +38,7 @@ import com.twitter.util.Await;
 import com.twitter.util.Future;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.LedgerEntry;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.feature.SettableFeatureProvider;
 import org.apache.bookkeeper.stats.AlertStatsLogger;
@@ -54,8 +56,13 @@ import scala.runtime.AbstractFunction0;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.*;
@@ -182,6 +189,15 @@ public class TestBKLogSegmentWriter extends TestDistributedLogBase {
                                                       ZKDistributedLock lock) throws Exception {
         LedgerHandle lh = bkc.get().createLedger(3, 2, 2,
                 BookKeeper.DigestType.CRC32, conf.getBKDigestPW().getBytes(UTF_8));
+        return createLogSegmentWriter(conf, logSegmentSequenceNumber, startTxId, lock, lh, null);
+    }
+
+    private BKLogSegmentWriter createLogSegmentWriter(DistributedLogConfiguration conf,
+                                                      long logSegmentSequenceNumber,
+                                                      long startTxId,
+                                                      ZKDistributedLock lock,
+                                                      LedgerHandle lh,
+                                                      BufferPool bufferPool) throws Exception {
         return new BKLogSegmentWriter(
                 runtime.getMethodName(),
                 runtime.getMethodName(),
@@ -196,6 +212,7 @@ public class TestBKLogSegmentWriter extends TestDistributedLogBase {
                 NullStatsLogger.INSTANCE,
                 new AlertStatsLogger(NullStatsLogger.INSTANCE, "test"),
                 PermitLimiter.NULL_PERMIT_LIMITER,
+                bufferPool,
                 new SettableFeatureProvider("", 0),
                 ConfUtils.getConstDynConf(conf));
     }
@@ -787,4 +804,126 @@ public class TestBKLogSegmentWriter extends TestDistributedLogBase {
 
         closeWriterAndLock(writer, lock);
     }
+
+    @Test(timeout = 60000)
+    public void testAddCompletedByAllReplicas() throws Exception {
+        LedgerHandle lh = bkc.get().createLedger(3, 2, 2,
+                BookKeeper.DigestType.CRC32, conf.getBKDigestPW().getBytes(UTF_8));
+        assertTrue("Adds should be completed by all replicas when ack quorum equals write quorum",
+                new BKLogSegmentEntryWriter(lh).isAddCompletedByAllReplicas());
+        lh.close();
+        lh = bkc.get().createLedger(3, 3, 2,
+                BookKeeper.DigestType.CRC32, conf.getBKDigestPW().getBytes(UTF_8));
+        assertFalse("Adds might not be completed by all replicas when ack quorum is smaller than write quorum",
+                new BKLogSegmentEntryWriter(lh).isAddCompletedByAllReplicas());
+        lh.close();
+    }
+
+    /**
+     * A pending flush is rescheduled when a shorter flush delay is picked, but not when a longer one is.
+     */
+    @Test(timeout = 60000)
+    public void testScheduleFlushWithinDelay() throws Exception {
+        DistributedLogConfiguration confLocal = newLocalConf();
+        confLocal.setImmediateFlushEnabled(false);
+        confLocal.setOutputBufferSize(Integer.MAX_VALUE);
+        confLocal.setPeriodicFlushFrequencyMilliSeconds(0);
+        ZKDistributedLock lock = createLock("/test/lock-" + runtime.getMethodName(), zkc, true);
+        BKLogSegmentWriter writer =
+                createLogSegmentWriter(confLocal, 0L, -1L, lock);
+
+        final CountDownLatch flushLatch = new CountDownLatch(1);
+        Callable<Void> flush = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                flushLatch.countDown();
+                return null;
+            }
+        };
+        AtomicReference<ScheduledFuture<?>> flushFutureRef = new AtomicReference<ScheduledFuture<?>>(null);
+        writer.scheduleFlushWithinDelay(flush, flushFutureRef, TimeUnit.SECONDS.toMicros(30));
+        ScheduledFuture<?> firstFlush = flushFutureRef.get();
+        assertNotNull(firstFlush);
+
+        // a longer delay keeps the pending flush
+        writer.scheduleFlushWithinDelay(flush, flushFutureRef, TimeUnit.SECONDS.toMicros(60));
+        assertSame(firstFlush, flushFutureRef.get());
+        assertFalse(firstFlush.isCancelled());
+
+        // a shorter delay cancels the pending flush and schedules a new one
+        writer.scheduleFlushWithinDelay(flush, flushFutureRef, TimeUnit.MILLISECONDS.toMicros(10));
+        assertTrue("The pending flush should be cancelled", firstFlush.isCancelled());
+        assertTrue("The rescheduled flush should run within the shorter delay",
+                flushLatch.await(10, TimeUnit.SECONDS));
+
+        closeWriterAndLock(writer, lock);
+    }
+
+    /**
+     * The writers pool their transmit buffers only if the adds are completed by all the replicas.
+     */
+    @Test(timeout = 60000)
+    public void testWriteWithBufferPool() throws Exception {
+        // the adds are completed by all the replicas, buffers are recycled to the pool
+        assertTrue("Transmit buffers should be recycled to the pool",
+                writeRecordsWithBufferPool(3, 2, 2) > 0L);
+        // the adds might be completed before all the replicas are written, buffers aren't pooled
+        assertEquals("Transmit buffers shouldn't be pooled",
+                0L, writeRecordsWithBufferPool(3, 3, 2));
+    }
+
+    /**
+     * Write records through a writer using a buffer pool and verify the records in the ledger.
+     *
+     * @return number of bytes kept in the pool after the writer is closed.
+     */
+    private long writeRecordsWithBufferPool(int ensembleSize,
+                                            int writeQuorumSize,
+                                            int ackQuorumSize) throws Exception {
+        DistributedLogConfiguration confLocal = newLocalConf();
+        confLocal.setImmediateFlushEnabled(true);
+        confLocal.setOutputBufferSize(0);
+        confLocal.setPeriodicFlushFrequencyMilliSeconds(0);
+        confLocal.setWriterBufferPoolSizeBytes(1024 * 1024);
+        BufferPool bufferPool = new BufferPool(confLocal.getWriterBufferPoolSizeBytes(), NullStatsLogger.INSTANCE);
+        LedgerHandle lh = bkc.get().createLedger(ensembleSize, writeQuorumSize, ackQuorumSize,
+                BookKeeper.DigestType.CRC32, confLocal.getBKDigestPW().getBytes(UTF_8));
+        ZKDistributedLock lock = createLock("/test/lock-" + runtime.getMethodName(), zkc, true);
+        BKLogSegmentWriter writer =
+                createLogSegmentWriter(confLocal, 0L, -1L, lock, lh, bufferPool);
+        int numRecords = 10;
+        for (int i = 0; i < numRecords; i++) {
+            DLSN dlsn = Await.result(writer.asyncWrite(DLMTestUtil.getLogRecordInstance(i)));
+            assertEquals("Each record should be transmitted in its own entry", i, dlsn.getEntryId());
+        }
+        closeWriterAndLock(writer, lock);
+
+        // the recycled buffers must not corrupt the entries written to the ledger
+        LedgerHandle readLh = openLedgerNoRecovery(lh);
+        Enumeration<LedgerEntry> entries = readLh.readEntries(0L, readLh.getLastAddConfirmed());
+        long expectedTxId = 0L;
+        while (entries.hasMoreElements()) {
+            LedgerEntry entry = entries.nextElement();
+            byte[] data = entry.getEntry();
+            Entry.Reader reader = Entry.newBuilder()
+                    .setLogSegmentInfo(0L, 0L)
+                    .setEntryId(entry.getEntryId())
+                    .setData(data, 0, data.length)
+                    .buildReader();
+            LogRecordWithDLSN record = reader.nextRecord();
+            while (null != record) {
+                if (!record.isControl()) {
+                    assertEquals(expectedTxId, record.getTransactionId());
+                    DLMTestUtil.verifyLogRecord(record);
+                    ++expectedTxId;
+                }
+                record = reader.nextRecord();
+            }
+        }
+        assertEquals("All records should be read back", numRecords, expectedTxId);
+        readLh.close();
+        long pooledBytes = bufferPool.getPooledBytes();
+        bufferPool.close();
+        return pooledBytes;
+    }
 }
@@ -20,6 +20,7 @@ package com.twitter.distributedlog;
 import com.twitter.distributedlog.bk.LedgerAllocator;
 import com.twitter.distributedlog.bk.LedgerAllocatorPool;
 import com.twitter.distributedlog.impl.BKNamespaceDriver;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
 import com.twitter.distributedlog.namespace.DistributedLogNamespaceBuilder;
 import com.twitter.distributedlog.util.FailpointUtils;
 import com.twitter.distributedlog.util.FutureUtils;
@@ -30,6 +31,7 @@ import org.junit.rules.TestName;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -87,4 +89,53 @@ public class TestBKLogWriteHandler extends TestDistributedLogBase {
         Utils.close(writer);
     }
 
+    /**
+     * Testcase: write handler should recover all the inprogress log segments
+     * when recovering them concurrently.
+     */
+    @Test(timeout = 60000)
+    public void testParallelRecoverIncompleteLogSegments() throws Exception {
+        URI uri = createDLMURI("/" + runtime.getMethodName());
+        ensureURICreated(zkc, uri);
+
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.addConfiguration(conf);
+        confLocal.setOutputBufferSize(0);
+        confLocal.setLogRecoveryConcurrency(2);
+
+        DistributedLogNamespace namespace = DistributedLogNamespaceBuilder.newBuilder()
+                .conf(confLocal)
+                .uri(uri)
+                .build();
+        DistributedLogManager dlm = namespace.openLog("test-stream");
+        int numSegments = 5;
+        for (int i = 0; i < numSegments; i++) {
+            DLMTestUtil.injectLogSegmentWithGivenLogSegmentSeqNo(
+                    dlm, confLocal, i + 1, i * 10 + 1, true, 10, false);
+        }
+        List<LogSegmentMetadata> segments = dlm.getLogSegments();
+        assertEquals(numSegments, segments.size());
+        for (LogSegmentMetadata segment : segments) {
+            assertTrue(segment.isInProgress());
+        }
+
+        BKLogWriteHandler writeHandler = ((BKDistributedLogManager) dlm).createWriteHandler(false);
+        FutureUtils.result(writeHandler.lockHandler());
+        assertEquals(numSegments * 10L, FutureUtils.result(writeHandler.recoverIncompleteLogSegments()).longValue());
+        FutureUtils.result(writeHandler.unlockHandler());
+        Utils.close(writeHandler);
+
+        segments = dlm.getLogSegments();
+        assertEquals(numSegments, segments.size());
+        for (int i = 0; i < numSegments; i++) {
+            LogSegmentMetadata segment = segments.get(i);
+            assertFalse(segment.isInProgress());
+            assertEquals(i + 1, segment.getLogSegmentSequenceNumber());
+            assertEquals(i * 10 + 10, segment.getLastTxId());
+            assertEquals(10, segment.getRecordCount());
+        }
+        dlm.close();
+        namespace.close();
+    }
+
 }
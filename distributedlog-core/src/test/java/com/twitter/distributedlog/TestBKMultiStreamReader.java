@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.twitter.distributedlog.exceptions.ReadCancelledException;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
+import com.twitter.distributedlog.namespace.DistributedLogNamespaceBuilder;
+import com.twitter.distributedlog.readahead.ReadAheadBudget;
+import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.distributedlog.util.Utils;
+import com.twitter.util.Future;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test Cases for {@link MultiStreamReader}.
+ */
+public class TestBKMultiStreamReader extends TestDistributedLogBase {
+
+    @Rule
+    public TestName runtime = new TestName();
+
+    private DistributedLogConfiguration readerConf;
+    private DistributedLogNamespace namespace;
+
+    @Before
+    public void setup() throws Exception {
+        URI uri = createDLMURI("/" + runtime.getMethodName());
+        ensureURICreated(uri);
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.addConfiguration(conf);
+        confLocal.setOutputBufferSize(0);
+        confLocal.setImmediateFlushEnabled(true);
+        // a budget lower than the records to read, so the streams have to take turns
+        confLocal.setMultiStreamReaderReadAheadMaxRecords(2);
+        readerConf = confLocal;
+        namespace = DistributedLogNamespaceBuilder.newBuilder()
+                .conf(confLocal)
+                .uri(uri)
+                .build();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (null != namespace) {
+            namespace.close();
+        }
+    }
+
+    private void writeRecords(String streamName, long fromTxId, long toTxId) throws Exception {
+        namespace.createLog(streamName);
+        DistributedLogManager dlm = namespace.openLog(streamName);
+        AsyncLogWriter writer = FutureUtils.result(dlm.openAsyncLogWriter());
+        for (long txid = fromTxId; txid <= toTxId; txid++) {
+            FutureUtils.result(writer.write(DLMTestUtil.getLogRecordInstance(txid)));
+        }
+        Utils.close(writer);
+        dlm.close();
+    }
+
+    private Map<String, List<Long>> readRecords(MultiStreamReader reader, int numRecords) throws Exception {
+        Map<String, List<Long>> txIds = Maps.newHashMap();
+        int numRead = 0;
+        while (numRead < numRecords) {
+            List<Pair<String, LogRecordWithDLSN>> records = FutureUtils.result(reader.readBulk(numRecords - numRead));
+            assertFalse(records.isEmpty());
+            for (Pair<String, LogRecordWithDLSN> record : records) {
+                List<Long> streamTxIds = txIds.get(record.getLeft());
+                if (null == streamTxIds) {
+                    streamTxIds = Lists.newArrayList();
+                    txIds.put(record.getLeft(), streamTxIds);
+                }
+                streamTxIds.add(record.getRight().getTransactionId());
+            }
+            numRead += records.size();
+        }
+        return txIds;
+    }
+
+    private static void assertTxIds(List<Long> txIds, long fromTxId, long toTxId) {
+        assertEquals(toTxId - fromTxId + 1, txIds.size());
+        long expectedTxId = fromTxId;
+        for (Long txId : txIds) {
+            assertEquals(expectedTxId++, txId.longValue());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testReadMultipleStreams() throws Exception {
+        int numStreams = 3;
+        Map<String, DLSN> streams = Maps.newHashMap();
+        for (int i = 0; i < numStreams; i++) {
+            String streamName = runtime.getMethodName() + "-" + i;
+            writeRecords(streamName, 1L, 10L);
+            streams.put(streamName, DLSN.InitialDLSN);
+        }
+        MultiStreamReader reader = namespace.openMultiStreamReader(streams);
+        assertEquals(streams.keySet(), reader.getStreamNames());
+
+        Map<String, List<Long>> txIds = readRecords(reader, numStreams * 10);
+        assertEquals(streams.keySet(), txIds.keySet());
+        for (List<Long> streamTxIds : txIds.values()) {
+            assertTxIds(streamTxIds, 1L, 10L);
+        }
+
+        // the positions could be used to resume reading
+        Map<String, DLSN> positions = reader.getPositions();
+        Utils.close(reader);
+        String streamName = runtime.getMethodName() + "-0";
+        writeRecords(streamName, 11L, 15L);
+        reader = namespace.openMultiStreamReader(positions);
+        txIds = readRecords(reader, 5);
+        assertEquals(Sets.newHashSet(streamName), txIds.keySet());
+        assertTxIds(txIds.get(streamName), 11L, 15L);
+        Utils.close(reader);
+    }
+
+    @Test(timeout = 60000)
+    public void testReadStreamsMatchingPattern() throws Exception {
+        String prefix = runtime.getMethodName();
+        writeRecords(prefix + "-match-0", 1L, 5L);
+        writeRecords(prefix + "-other", 1L, 5L);
+
+        MultiStreamReader reader = namespace.openMultiStreamReader(
+                Pattern.compile(prefix + "-match-.*"), DLSN.InitialDLSN);
+        assertEquals(Sets.newHashSet(prefix + "-match-0"), reader.getStreamNames());
+        Map<String, List<Long>> txIds = readRecords(reader, 5);
+        assertTxIds(txIds.get(prefix + "-match-0"), 1L, 5L);
+
+        // the streams created after the reader is opened are read as well
+        writeRecords(prefix + "-match-1", 1L, 5L);
+        txIds = readRecords(reader, 5);
+        assertEquals(Sets.newHashSet(prefix + "-match-1"), txIds.keySet());
+        assertTxIds(txIds.get(prefix + "-match-1"), 1L, 5L);
+        assertEquals(Sets.newHashSet(prefix + "-match-0", prefix + "-match-1"), reader.getStreamNames());
+        Utils.close(reader);
+    }
+
+    @Test(timeout = 60000)
+    public void testRemoveStreamAndClose() throws Exception {
+        String streamName = runtime.getMethodName();
+        writeRecords(streamName, 1L, 5L);
+        Map<String, DLSN> streams = Maps.newHashMap();
+        streams.put(streamName, DLSN.InitialDLSN);
+        MultiStreamReader reader = namespace.openMultiStreamReader(streams);
+        readRecords(reader, 5);
+
+        FutureUtils.result(reader.removeStream(streamName));
+        assertTrue(reader.getStreamNames().isEmpty());
+
+        Future<List<Pair<String, LogRecordWithDLSN>>> readFuture = reader.readBulk(1);
+        assertFalse(readFuture.isDefined());
+        Utils.close(reader);
+        try {
+            FutureUtils.result(readFuture);
+            fail("Pending reads should be cancelled when the reader is closed");
+        } catch (ReadCancelledException rce) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testMissingStream() throws Exception {
+        String streamName = runtime.getMethodName();
+        String missingStreamName = runtime.getMethodName() + "-missing";
+        writeRecords(streamName, 1L, 5L);
+        Map<String, DLSN> streams = Maps.newHashMap();
+        streams.put(streamName, DLSN.InitialDLSN);
+        streams.put(missingStreamName, DLSN.InitialDLSN);
+        MultiStreamReader reader = namespace.openMultiStreamReader(streams);
+
+        Map<String, List<Long>> txIds = readRecords(reader, 5);
+        assertEquals(Sets.newHashSet(streamName), txIds.keySet());
+        assertTxIds(txIds.get(streamName), 1L, 5L);
+
+        // the missing stream is dropped on next read, rather than failing the reader
+        Future<List<Pair<String, LogRecordWithDLSN>>> readFuture = reader.readBulk(1);
+        while (reader.getStreamNames().contains(missingStreamName)) {
+            Thread.sleep(10);
+        }
+        assertEquals(Sets.newHashSet(streamName), reader.getStreamNames());
+        assertFalse("The reader shouldn't fail on a missing stream", readFuture.isDefined());
+        Utils.close(reader);
+    }
+
+    @Test(timeout = 60000)
+    public void testReadAheadBudgetSharedAcrossStreams() throws Exception {
+        int numStreams = 3;
+        int numRecordsPerStream = 20;
+        Map<String, DLSN> streams = Maps.newHashMap();
+        for (int i = 0; i < numStreams; i++) {
+            String streamName = runtime.getMethodName() + "-" + i;
+            writeRecords(streamName, 1L, numRecordsPerStream);
+            streams.put(streamName, DLSN.InitialDLSN);
+        }
+        BKMultiStreamReader reader = (BKMultiStreamReader) namespace.openMultiStreamReader(streams);
+        ReadAheadBudget budget = reader.getReadAheadBudget();
+        // the streams reserve a readahead batch before each read, so they never overshoot the budget
+        // (a single batch is allowed if the budget is smaller than a batch)
+        long maxCachedRecords = Math.max(budget.getMaxRecords(), budget.getRecordsPerRead());
+        assertTrue(maxCachedRecords < numStreams * Math.min(numRecordsPerStream, readerConf.getReadAheadMaxRecords()));
+        while (!budget.isExhausted()) {
+            assertTrue("Cached " + budget.getCachedRecords() + " records while the budget is " + maxCachedRecords,
+                    budget.getCachedRecords() <= maxCachedRecords);
+            Thread.sleep(10);
+        }
+        // give the streams time to read ahead further if the budget didn't stop them
+        for (int i = 0; i < 100; i++) {
+            assertTrue("Cached " + budget.getCachedRecords() + " records while the budget is " + maxCachedRecords,
+                    budget.getCachedRecords() <= maxCachedRecords);
+            Thread.sleep(10);
+        }
+
+        // consuming the records resumes the readahead of the streams
+        Map<String, List<Long>> txIds = readRecords(reader, numStreams * numRecordsPerStream);
+        assertEquals(streams.keySet(), txIds.keySet());
+        for (List<Long> streamTxIds : txIds.values()) {
+            assertTxIds(streamTxIds, 1L, numRecordsPerStream);
+        }
+        Utils.close(reader);
+    }
+}
@@ -210,6 +210,9 @@ public class TestDistributedLogBase {
                 DistributedLogConstants.UNKNOWN_CLIENT_ID,
                 DistributedLogConstants.LOCAL_REGION_ID,
                 writeLimiter,
+                null,
+                null,
+                null,
                 new SettableFeatureProvider("", 0),
                 failureInjector,
                 NullStatsLogger.INSTANCE,
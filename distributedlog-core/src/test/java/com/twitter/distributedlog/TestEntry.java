@@ -268,6 +268,71 @@ public class TestEntry {
                 new DLSN(1L, 1L, 12L), 12L);
     }
 
+    @Test(timeout = 20000)
+    public void testZeroCopyReadsNoneCompressed() throws Exception {
+        testZeroCopyReads(CompressionCodec.Type.NONE);
+    }
+
+    @Test(timeout = 20000)
+    public void testZeroCopyReadsLZ4Compressed() throws Exception {
+        testZeroCopyReads(CompressionCodec.Type.LZ4);
+    }
+
+    void testZeroCopyReads(CompressionCodec.Type codec) throws Exception {
+        Writer writer = Entry.newEntry(
+                "test-zero-copy-reads",
+                1024,
+                true,
+                codec,
+                NullStatsLogger.INSTANCE);
+        // write 5 records
+        for (int i = 0; i < 5; i++) {
+            LogRecord record = new LogRecord(i, ("record-" + i).getBytes(UTF_8));
+            record.setPositionWithinLogSegment(i);
+            writer.writeRecord(record, new Promise<DLSN>());
+        }
+        // write another 5 records as a batch
+        LogRecordSet.Writer recordSetWriter = LogRecordSet.newWriter(1024, codec);
+        for (int i = 5; i < 10; i++) {
+            ByteBuffer record = ByteBuffer.wrap(("record-" + i).getBytes(UTF_8));
+            recordSetWriter.writeRecord(record, new Promise<DLSN>());
+        }
+        ByteBuffer recordSetBuffer = recordSetWriter.getBuffer();
+        byte[] recordSetData = new byte[recordSetBuffer.remaining()];
+        recordSetBuffer.get(recordSetData);
+        LogRecord setRecord = new LogRecord(5L, recordSetData);
+        setRecord.setPositionWithinLogSegment(5);
+        setRecord.setRecordSet();
+        writer.writeRecord(setRecord, new Promise<DLSN>());
+
+        Buffer buffer = writer.getBuffer();
+        Reader reader = Entry.newBuilder()
+                .setData(buffer.getData(), 0, buffer.size())
+                .setLogSegmentInfo(1L, 0L)
+                .setEntryId(0L)
+                .deserializeRecordSet(true)
+                .zeroCopy(true)
+                .buildReader();
+
+        DLSN expectedDLSN = new DLSN(1L, 0L, 0L);
+        for (int i = 0; i < 10; i++) {
+            LogRecordWithDLSN record = reader.nextRecord();
+            assertNotNull(record);
+            assertEquals(expectedDLSN, record.getDlsn());
+            assertEquals(Math.min(i, 5), record.getTransactionId());
+            ByteBuffer payload = record.getPayloadBuffer();
+            assertTrue("Payload buffer should be read-only", payload.isReadOnly());
+            byte[] payloadData = new byte[payload.remaining()];
+            payload.get(payloadData);
+            assertEquals("record-" + i, new String(payloadData, UTF_8));
+            assertEquals("Accessing payload buffer shouldn't change the record",
+                    record.getPayloadBuffer(), ByteBuffer.wrap(payloadData));
+            assertEquals("record-" + i, new String(record.getPayload(), UTF_8));
+            expectedDLSN = expectedDLSN.getNextDLSN();
+        }
+        assertNull(reader.nextRecord());
+    }
+
     void verifyReadResult(Buffer data,
                           long lssn, long entryId, long startSequenceId,
                           boolean deserializeRecordSet,
@@ -30,9 +30,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -104,7 +106,7 @@ public class TestLogSegmentMetadata extends ZooKeeperClusterTestCase {
                 new LogSegmentMetadataBuilder(
                         "/metadata", LogSegmentMetadataVersion.VERSION_V4_ENVELOPED_ENTRIES, 1L, 0L)
                         .setRegionId(0).setLogSegmentSequenceNo(1L).build();
-        metadata = metadata.completeLogSegment("/completed-metadata", 1000L, 1000, 1000L, 0L, 0L);
+        metadata = metadata.completeLogSegment("/completed-metadata", 1000L, 1000, 1000L, 0L, 0L, null);
 
         LogSegmentMetadata partiallyTruncatedSegment =
                 metadata.mutator()
@@ -156,4 +158,123 @@ public class TestLogSegmentMetadata extends ZooKeeperClusterTestCase {
                 LogSegmentMetadata.parseData("/metadatav4", datav4.getBytes(UTF_8), false);
         assertTrue(parsedMetadatav4.getStartSequenceId() < 0);
     }
+
+    @Test(timeout = 60000)
+    public void testBinaryLayout() throws Exception {
+        LogSegmentMetadata inprogressMetadata =
+                new LogSegmentMetadataBuilder(
+                        "/metadata", LogSegmentMetadataVersion.VERSION_V6_BINARY, 123456789L, 9999L)
+                        .setRegionId(TEST_REGION_ID)
+                        .setLogSegmentSequenceNo(77L)
+                        .setStartSequenceId(-1L)
+                        .build();
+        byte[] data = inprogressMetadata.getFinalisedDataBytes();
+        assertTrue("Binary layout should be smaller than text layout",
+                data.length < inprogressMetadata.getFinalisedData(
+                        LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID).getBytes(UTF_8).length);
+        LogSegmentMetadata parsedMetadata = LogSegmentMetadata.parseData("/metadata", data, false);
+        assertEquals(inprogressMetadata, parsedMetadata);
+        assertTrue(parsedMetadata.isInProgress());
+        assertEquals(TEST_REGION_ID, parsedMetadata.getRegionId());
+        assertEquals(77L, parsedMetadata.getLogSegmentSequenceNumber());
+        assertEquals(-1L, parsedMetadata.getStartSequenceId());
+        assertTrue(parsedMetadata.getEnvelopeEntries());
+
+        LogSegmentMetadata completedMetadata = inprogressMetadata.completeLogSegment(
+                "/metadata-completed", 19999L, 100, 50L, 3L, 1000L, null);
+        data = completedMetadata.getFinalisedDataBytes();
+        parsedMetadata = LogSegmentMetadata.parseData("/metadata-completed", data, false);
+        assertEquals(completedMetadata, parsedMetadata);
+        assertFalse(parsedMetadata.isInProgress());
+        assertEquals(19999L, parsedMetadata.getLastTxId());
+        assertEquals(100, parsedMetadata.getRecordCount());
+        assertEquals(50L, parsedMetadata.getLastEntryId());
+        assertEquals(3L, parsedMetadata.getLastSlotId());
+        assertEquals(1000L, parsedMetadata.getStartSequenceId());
+    }
+
+    @Test(timeout = 60000)
+    public void testBinaryLayoutWithIndex() throws Exception {
+        LogSegmentIndex.Builder indexBuilder = new LogSegmentIndex.Builder(10L, LogSegmentIndex.DEFAULT_MAX_SIZE);
+        for (long entryId = 0L; entryId <= 50L; entryId++) {
+            indexBuilder.addEntry(entryId, 9999L + entryId * 2, entryId * 2, 1000000L + entryId * 100);
+        }
+        LogSegmentIndex index = indexBuilder.build();
+        assertEquals(6, index.size());
+
+        LogSegmentMetadata inprogressMetadata =
+                new LogSegmentMetadataBuilder(
+                        "/metadata", LogSegmentMetadataVersion.VERSION_V6_BINARY, 123456789L, 9999L)
+                        .setLogSegmentSequenceNo(77L)
+                        .build();
+        LogSegmentMetadata completedMetadata = inprogressMetadata.completeLogSegment(
+                "/metadata-completed", 10099L, 102, 50L, 1L, 1000L, index);
+        byte[] data = completedMetadata.getFinalisedDataBytes();
+        LogSegmentMetadata parsedMetadata = LogSegmentMetadata.parseData("/metadata-completed", data, false);
+        assertEquals(completedMetadata, parsedMetadata);
+        assertEquals(index, parsedMetadata.getIndex());
+        // mutating the metadata keeps the index
+        assertEquals(index, parsedMetadata.mutator()
+                .setTruncationStatus(TruncationStatus.PARTIALLY_TRUNCATED).build().getIndex());
+
+        // text layouts don't keep the index
+        data = completedMetadata.getFinalisedDataBytes(LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID);
+        parsedMetadata = LogSegmentMetadata.parseData("/metadata-completed", data, false);
+        assertEquals(null, parsedMetadata.getIndex());
+    }
+
+    @Test(timeout = 60000)
+    public void testReadMetadataAcrossLayouts() throws Exception {
+        // readers understand both text and binary layouts, for rolling upgrades
+        LogSegmentMetadata textMetadata = new LogSegmentMetadataBuilder("/metadata-text",
+            LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID, 1000, 1).setRegionId(TEST_REGION_ID).build();
+        textMetadata.write(zkc);
+        LogSegmentMetadata binaryMetadata = new LogSegmentMetadataBuilder("/metadata-binary",
+            LogSegmentMetadataVersion.VERSION_V6_BINARY, 1000, 1).setRegionId(TEST_REGION_ID).build();
+        binaryMetadata.write(zkc);
+        assertEquals(textMetadata, FutureUtils.result(LogSegmentMetadata.read(zkc, "/metadata-text")));
+        assertEquals(binaryMetadata, FutureUtils.result(LogSegmentMetadata.read(zkc, "/metadata-binary")));
+    }
+
+    @Test(timeout = 60000)
+    public void testParseInvalidBinaryLayout() throws Exception {
+        LogSegmentMetadata metadata =
+                new LogSegmentMetadataBuilder(
+                        "/metadata", LogSegmentMetadataVersion.VERSION_V6_BINARY, 1L, 0L)
+                        .setLogSegmentSequenceNo(1L)
+                        .build();
+        byte[] data = metadata.getFinalisedDataBytes();
+        try {
+            LogSegmentMetadata.parseData("/metadata", Arrays.copyOf(data, data.length - 1), false);
+            fail("Should fail parsing truncated metadata");
+        } catch (IOException ioe) {
+            // expected
+        }
+        byte[] futureData = Arrays.copyOf(data, data.length);
+        futureData[1] = (byte) (LogSegmentMetadata.LEDGER_METADATA_CURRENT_LAYOUT_VERSION + 1);
+        try {
+            LogSegmentMetadata.parseData("/metadata", futureData, false);
+            fail("Should fail parsing metadata with a future version");
+        } catch (UnsupportedMetadataVersionException umve) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testParseBinaryVersionInTextLayout() throws Exception {
+        LogSegmentMetadata metadata =
+                new LogSegmentMetadataBuilder(
+                        "/metadata", LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID, 1L, 0L)
+                        .setLogSegmentSequenceNo(1L)
+                        .build();
+        String data = metadata.getFinalisedData();
+        String textDataV6 = LogSegmentMetadata.LEDGER_METADATA_CURRENT_LAYOUT_VERSION
+                + data.substring(data.indexOf(';'));
+        try {
+            LogSegmentMetadata.parseData("/metadata", textDataV6.getBytes(UTF_8), false);
+            fail("Should fail parsing the binary layout version in the text layout");
+        } catch (UnsupportedMetadataVersionException umve) {
+            // expected
+        }
+    }
 }
@@ -224,6 +224,62 @@ public class TestReadUtils extends TestDistributedLogBase {
                 ReadUtils.getEntriesToSearch(1L, 12L, 10));
     }
 
+    @Test(timeout = 60000)
+    public void testGetEntriesToSearchByIndex() throws Exception {
+        LogSegmentIndex.Builder indexBuilder = new LogSegmentIndex.Builder(10L, LogSegmentIndex.DEFAULT_MAX_SIZE);
+        for (long entryId = 0L; entryId < 100L; entryId++) {
+            indexBuilder.addEntry(entryId, 1000L + entryId * 10, entryId, entryId);
+        }
+        LogSegmentIndex index = indexBuilder.build();
+        // no index
+        assertEquals(Lists.newArrayList(0L, 99L),
+                ReadUtils.getEntriesToSearch(null, 1555L, 99L, 10));
+        // before the first sampled entry
+        assertEquals(Lists.newArrayList(0L),
+                ReadUtils.getEntriesToSearch(index, 999L, 99L, 10));
+        // between two sampled entries
+        assertEquals(Lists.newArrayList(50L, 51L, 52L, 53L, 54L, 55L, 56L, 57L, 58L, 60L),
+                ReadUtils.getEntriesToSearch(index, 1555L, 99L, 10));
+        // same as a sampled entry
+        assertEquals(Lists.newArrayList(40L, 41L, 42L, 43L, 44L, 45L, 46L, 47L, 48L, 50L),
+                ReadUtils.getEntriesToSearch(index, 1500L, 99L, 10));
+        // after the last sampled entry
+        assertEquals(Lists.newArrayList(90L, 91L, 92L, 93L, 94L, 95L, 96L, 97L, 98L, 99L),
+                ReadUtils.getEntriesToSearch(index, 1999L, 99L, 10));
+    }
+
+    @Test(timeout = 60000)
+    public void testGetLogRecordNotLessThanTxIdOnIndexedSegment() throws Exception {
+        String streamName = runtime.getMethodName();
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.addConfiguration(conf);
+        confLocal.setOutputBufferSize(0);
+        confLocal.setLogSegmentIndexInterval(10);
+        BKDistributedLogManager bkdlm = createNewDLM(confLocal, streamName);
+        DLMTestUtil.generateLogSegmentNonPartitioned(bkdlm, 0 /* control recs */, 100, 1L /* txid */, 3L);
+
+        LogSegmentIndex index = bkdlm.getLogSegments().get(0).getIndex();
+        assertNotNull(index);
+        assertTrue(index.size() > 1);
+        for (int i = 1; i < index.size(); i++) {
+            assertTrue(index.getEntryId(i) > index.getEntryId(i - 1));
+            assertTrue(index.getFirstTxId(i) > index.getFirstTxId(i - 1));
+            assertTrue(index.getFirstPosition(i) > index.getFirstPosition(i - 1));
+            assertTrue(index.getTimestamp(i) >= index.getTimestamp(i - 1));
+        }
+
+        Optional<LogRecordWithDLSN> result =
+                FutureUtils.result(getLogRecordNotLessThanTxId(bkdlm, 0, 23L));
+        assertTrue(result.isPresent());
+        assertEquals(25L, result.get().getTransactionId());
+        result = FutureUtils.result(getLogRecordNotLessThanTxId(bkdlm, 0, 250L));
+        assertTrue(result.isPresent());
+        assertEquals(250L, result.get().getTransactionId());
+        result = FutureUtils.result(getLogRecordNotLessThanTxId(bkdlm, 0, 999L));
+        assertFalse(result.isPresent());
+        bkdlm.close();
+    }
+
     @Test(timeout = 60000)
     public void testGetEntriesToSearchByTxnId() throws Exception {
         LogRecordWithDLSN firstRecord =
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.auditor;
+
+import com.google.common.collect.Lists;
+import com.twitter.distributedlog.DLMTestUtil;
+import com.twitter.distributedlog.DistributedLogConfiguration;
+import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.TestDistributedLogBase;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
+import com.twitter.distributedlog.namespace.DistributedLogNamespaceBuilder;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test Cases for {@link IncrementalDLAuditor}.
+ */
+public class TestIncrementalDLAuditor extends TestDistributedLogBase {
+
+    @Rule
+    public TestName runtime = new TestName();
+
+    private void generateStream(DistributedLogNamespace namespace,
+                                String stream,
+                                int numSegments) throws Exception {
+        DistributedLogManager dlm = namespace.openLog(stream);
+        try {
+            DLMTestUtil.generateCompletedLogSegments(dlm, conf, numSegments, 10);
+        } finally {
+            dlm.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testIncrementalAudit() throws Exception {
+        String name = runtime.getMethodName();
+        URI uri = createDLMURI("/" + name);
+        ensureURICreated(uri);
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.addConfiguration(conf);
+        DistributedLogNamespace namespace = DistributedLogNamespaceBuilder.newBuilder()
+                .conf(confLocal)
+                .uri(uri)
+                .build();
+        File inventoryDir = IOUtils.createTempDir("inventory", name);
+        File inventoryFile = new File(inventoryDir, "ledgers.inventory");
+        try {
+            generateStream(namespace, "stream-a", 2);
+            generateStream(namespace, "stream-b", 1);
+
+            IncrementalDLAuditor auditor = new IncrementalDLAuditor(confLocal, 4, NullStatsLogger.INSTANCE);
+
+            // first run reconciles all the streams
+            LedgerInventory inventory = auditor.audit(uri, inventoryFile);
+            assertTrue(inventoryFile.exists());
+            assertEquals(2, auditor.getNumStreamsReconciled());
+            assertEquals(0, auditor.getNumStreamsSkipped());
+            assertEquals(3, auditor.getNumLedgersOpened());
+            assertEquals(2, inventory.getNumStreams());
+            assertEquals(3, inventory.getLedgers().size());
+            Map<String, Long> usage = inventory.getStreamSpaceUsage();
+            assertTrue(usage.get("stream-a") > 0);
+            assertTrue(usage.get("stream-b") > 0);
+
+            // second run skips the unchanged streams
+            inventory = auditor.audit(uri, inventoryFile);
+            assertEquals(0, auditor.getNumStreamsReconciled());
+            assertEquals(2, auditor.getNumStreamsSkipped());
+            assertEquals(0, auditor.getNumLedgersOpened());
+            assertEquals(usage, inventory.getStreamSpaceUsage());
+
+            // only the changed streams are reconciled
+            namespace.deleteLog("stream-b");
+            generateStream(namespace, "stream-c", 1);
+            inventory = auditor.audit(uri, inventoryFile);
+            assertEquals(1, auditor.getNumStreamsReconciled());
+            assertEquals(1, auditor.getNumStreamsSkipped());
+            assertEquals(1, auditor.getNumLedgersOpened());
+            assertEquals(2, inventory.getNumStreams());
+            assertNotNull(inventory.getStream("stream-a"));
+            assertNull(inventory.getStream("stream-b"));
+            assertNotNull(inventory.getStream("stream-c"));
+            assertEquals(usage.get("stream-a"), inventory.getStreamSpaceUsage().get("stream-a"));
+
+            // the checkpointed inventory matches the reconciled one
+            LedgerInventory loadedInventory = LedgerInventory.load(inventoryFile);
+            assertEquals(inventory.getStreamSpaceUsage(), loadedInventory.getStreamSpaceUsage());
+            assertEquals(inventory.getLedgers(), loadedInventory.getLedgers());
+            assertTrue(loadedInventory.getCheckpointTime() > 0);
+        } finally {
+            namespace.close();
+            inventoryFile.delete();
+            inventoryDir.delete();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLedgerSpaceUsageFromInventory() throws Exception {
+        String name = runtime.getMethodName();
+        URI uri = createDLMURI("/" + name);
+        ensureURICreated(uri);
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.addConfiguration(conf);
+        DistributedLogNamespace namespace = DistributedLogNamespaceBuilder.newBuilder()
+                .conf(confLocal)
+                .uri(uri)
+                .build();
+        File inventoryDir = IOUtils.createTempDir("inventory", name);
+        File inventoryFile = new File(inventoryDir, "ledgers.inventory");
+        DLAuditor dlAuditor = new DLAuditor(confLocal);
+        try {
+            generateStream(namespace, "stream-a", 1);
+
+            IncrementalDLAuditor auditor = new IncrementalDLAuditor(confLocal, 1, NullStatsLogger.INSTANCE);
+            LedgerInventory inventory = auditor.audit(uri, inventoryFile);
+            LedgerInventory.SegmentEntry segment = inventory.getStream("stream-a").getSegments().get(0);
+            assertEquals(Long.valueOf(segment.getSize()),
+                    inventory.getCompletedLedgerSizes().get(segment.getLedgerId()));
+
+            // the inventory is accurate, so it doesn't change the ledger space usage
+            long spaceUsage = dlAuditor.calculateLedgerSpaceUsage(uri);
+            assertEquals(spaceUsage, dlAuditor.calculateLedgerSpaceUsage(uri, inventoryFile));
+
+            // the size of a known ledger is served by the inventory rather than by opening the ledger
+            long fakeSize = segment.getSize() + 1024L;
+            inventory.putStream("stream-a", new LedgerInventory.StreamEntry(
+                    inventory.getStream("stream-a").getListingVersion(),
+                    Lists.newArrayList(new LedgerInventory.SegmentEntry(
+                            segment.getLedgerId(), segment.getLogSegmentSequenceNumber(), fakeSize, false))));
+            inventory.store(inventoryFile, System.currentTimeMillis());
+            assertEquals(spaceUsage + 1024L, dlAuditor.calculateLedgerSpaceUsage(uri, inventoryFile));
+        } finally {
+            dlAuditor.close();
+            namespace.close();
+            inventoryFile.delete();
+            inventoryDir.delete();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLoadMissingInventory() throws Exception {
+        File inventoryDir = IOUtils.createTempDir("inventory", runtime.getMethodName());
+        try {
+            LedgerInventory inventory = LedgerInventory.load(new File(inventoryDir, "missing.inventory"));
+            assertEquals(0, inventory.getNumStreams());
+            assertEquals(0L, inventory.getCheckpointTime());
+        } finally {
+            inventoryDir.delete();
+        }
+    }
+}
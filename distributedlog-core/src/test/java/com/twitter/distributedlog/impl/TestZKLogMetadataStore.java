@@ -18,6 +18,7 @@
 package com.twitter.distributedlog.impl;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.twitter.distributedlog.DistributedLogConfiguration;
 import com.twitter.distributedlog.TestDistributedLogBase;
@@ -35,6 +36,7 @@ import org.junit.Test;
 import org.junit.rules.TestName;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -111,4 +113,27 @@ public class TestZKLogMetadataStore extends TestDistributedLogBase {
         assertEquals(10, result.size());
         assertTrue(Sets.difference(logs, result).isEmpty());
     }
+
+    @Test(timeout = 60000)
+    public void testGetLogsByPages() throws Exception {
+        List<String> logs = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            String logName = "test-" + i;
+            logs.add(logName);
+            createLogInNamespace(uri, logName);
+        }
+        createLogInNamespace(uri, ".reserved");
+
+        List<String> result = Lists.newArrayList();
+        List<String> page = FutureUtils.result(metadataStore.getLogs(null, 3));
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 3);
+            result.addAll(page);
+            page = FutureUtils.result(metadataStore.getLogs(page.get(page.size() - 1), 3));
+        }
+        assertEquals(logs, result);
+
+        assertEquals(Lists.newArrayList("test-5", "test-6"),
+                FutureUtils.result(metadataStore.getLogs("test-4", 2)));
+    }
 }
@@ -23,6 +23,7 @@ import com.twitter.distributedlog.TestDistributedLogBase;
 import com.twitter.distributedlog.TestZooKeeperClientBuilder;
 import com.twitter.distributedlog.ZooKeeperClient;
 import com.twitter.distributedlog.ZooKeeperClientUtils;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.callback.NamespaceListener;
 import com.twitter.distributedlog.util.DLUtils;
 import com.twitter.distributedlog.util.OrderedScheduler;
@@ -36,6 +37,7 @@ import org.junit.Test;
 import org.junit.rules.TestName;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -142,6 +144,51 @@ public class TestZKNamespaceWatcher extends TestDistributedLogBase {
         validateReceivedLogs(expectedLogs, receivedLogs.get());
     }
 
+    @Test(timeout = 60000)
+    public void testNamespaceChangeListener() throws Exception {
+        URI uri = createDLMURI("/" + runtime.getMethodName());
+        zkc.get().create(uri.getPath(), new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        createLogInNamespace(uri, "test1");
+        DistributedLogConfiguration conf = new DistributedLogConfiguration();
+        conf.addConfiguration(baseConf);
+        ZKNamespaceWatcher watcher = new ZKNamespaceWatcher(conf, uri, zkc, scheduler);
+        final CountDownLatch[] latches = new CountDownLatch[10];
+        for (int i = 0; i < 10; i++) {
+            latches[i] = new CountDownLatch(1);
+        }
+        final AtomicInteger numUpdates = new AtomicInteger(0);
+        final AtomicReference<Set<String>> addedLogs = new AtomicReference<Set<String>>(null);
+        final AtomicReference<Set<String>> removedLogs = new AtomicReference<Set<String>>(null);
+        watcher.registerChangeListener(new NamespaceChangeListener() {
+            @Override
+            public void onStreamsAdded(Collection<String> streams) {
+                addedLogs.set(Sets.newHashSet(streams));
+                latches[numUpdates.getAndIncrement()].countDown();
+            }
+
+            @Override
+            public void onStreamsRemoved(Collection<String> streams) {
+                removedLogs.set(Sets.newHashSet(streams));
+                latches[numUpdates.getAndIncrement()].countDown();
+            }
+        });
+        // the existing logs are delivered as added logs
+        latches[0].await();
+        assertEquals(Sets.newHashSet("test1"), addedLogs.get());
+
+        // create test2
+        createLogInNamespace(uri, "test2");
+        latches[1].await();
+        assertEquals(Sets.newHashSet("test2"), addedLogs.get());
+
+        // reserved logs are not delivered, so the next change is the deletion of test1
+        createLogInNamespace(uri, ".test1");
+        deleteLogInNamespace(uri, "test1");
+        latches[2].await();
+        assertEquals(Sets.newHashSet("test1"), removedLogs.get());
+        assertEquals(3, numUpdates.get());
+    }
+
     private void validateReceivedLogs(Set<String> expectedLogs, Set<String> receivedLogs) {
         assertTrue(Sets.difference(expectedLogs, receivedLogs).isEmpty());
     }
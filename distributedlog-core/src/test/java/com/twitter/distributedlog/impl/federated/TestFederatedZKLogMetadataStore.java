@@ -346,6 +346,32 @@ public class TestFederatedZKLogMetadataStore extends TestDistributedLogBase {
         assertTrue(Sets.difference(expectedLogs, receivedLogs).isEmpty());
     }
 
+    @Test(timeout = 60000)
+    public void testGetLogsInPages() throws Exception {
+        int numLogs = 3 * maxLogsPerSubnamespace;
+        Set<String> expectedLogs = createLogs(numLogs, "test-get-logs-in-pages");
+        Set<String> receivedLogs;
+        do {
+            TimeUnit.MILLISECONDS.sleep(20);
+            receivedLogs = Sets.newTreeSet(Lists.newArrayList(FutureUtils.result(metadataStore.getLogs())));
+        } while (receivedLogs.size() < numLogs);
+
+        // pages are merged from the sub namespaces in lexicographic order
+        int pageSize = maxLogsPerSubnamespace - 3;
+        List<String> pagedLogs = Lists.newArrayList();
+        String startAfter = null;
+        List<String> page;
+        do {
+            page = FutureUtils.result(metadataStore.getLogs(startAfter, pageSize));
+            assertTrue(page.size() <= pageSize);
+            pagedLogs.addAll(page);
+            if (!page.isEmpty()) {
+                startAfter = page.get(page.size() - 1);
+            }
+        } while (page.size() == pageSize);
+        assertEquals(Lists.newArrayList(Sets.newTreeSet(expectedLogs)), pagedLogs);
+    }
+
     @Test(timeout = 60000)
     public void testNamespaceListener() throws Exception {
         int numLogs = 3 * maxLogsPerSubnamespace;
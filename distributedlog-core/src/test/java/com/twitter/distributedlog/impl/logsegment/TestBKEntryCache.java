@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.impl.logsegment;
+
+import com.google.common.collect.Iterators;
+import org.apache.bookkeeper.client.AsyncCallback;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.LedgerEntry;
+import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Case for {@link BKEntryCache} and its eviction policies.
+ */
+public class TestBKEntryCache {
+
+    private static class RecordingCallback implements BKEntryCache.ReadCallback {
+
+        final AtomicInteger numCallbacks = new AtomicInteger(0);
+        final AtomicInteger rc = new AtomicInteger(Integer.MIN_VALUE);
+        final AtomicReference<byte[]> data = new AtomicReference<byte[]>(null);
+
+        @Override
+        public void onEntryRead(int rc, long entryId, byte[] data) {
+            this.rc.set(rc);
+            this.data.set(data);
+            numCallbacks.incrementAndGet();
+        }
+    }
+
+    private static BKEntryCache newCache(long maxBytes, String policy) {
+        return new BKEntryCache(
+                maxBytes,
+                BKEntryCache.newEvictionPolicy(policy, maxBytes),
+                NullStatsLogger.INSTANCE);
+    }
+
+    @Test(timeout = 60000)
+    public void testLRUEviction() throws Exception {
+        BKEntryCache cache = newCache(300L, "lru");
+        cache.put(1L, 0L, new byte[100]);
+        cache.put(1L, 1L, new byte[100]);
+        cache.put(1L, 2L, new byte[100]);
+        assertEquals(300L, cache.getCachedBytes());
+        assertEquals(3, cache.getNumCachedEntries());
+
+        // access entry 0 so entry 1 becomes the least recently used one
+        LedgerHandle lh = mock(LedgerHandle.class);
+        when(lh.getId()).thenReturn(1L);
+        RecordingCallback callback = new RecordingCallback();
+        cache.asyncRead(lh, 0L, callback);
+        assertEquals(1, callback.numCallbacks.get());
+        assertEquals(BKException.Code.OK, callback.rc.get());
+        verify(lh, never()).asyncReadEntries(anyLong(), anyLong(), any(AsyncCallback.ReadCallback.class), any());
+
+        cache.put(1L, 3L, new byte[100]);
+        assertEquals(300L, cache.getCachedBytes());
+        assertNotNull(cache.get(1L, 0L));
+        assertNull("Least recently used entry should be evicted", cache.get(1L, 1L));
+        assertNotNull(cache.get(1L, 2L));
+        assertNotNull(cache.get(1L, 3L));
+
+        // entries larger than the cache are not cached
+        cache.put(1L, 4L, new byte[301]);
+        assertNull(cache.get(1L, 4L));
+        assertEquals(300L, cache.getCachedBytes());
+        cache.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testSegmentedLRUEviction() throws Exception {
+        SegmentedLRUEvictionPolicy<String> policy = new SegmentedLRUEvictionPolicy<String>(200L);
+        policy.onInsert("a", 100);
+        policy.onInsert("b", 100);
+        policy.onInsert("c", 100);
+        // 'a' is accessed twice, so it is protected from a scan
+        policy.onAccess("a");
+        policy.onInsert("d", 100);
+        policy.onInsert("e", 100);
+        assertEquals("b", policy.evict());
+        assertEquals("c", policy.evict());
+        assertEquals("d", policy.evict());
+        assertEquals("e", policy.evict());
+        assertEquals("a", policy.evict());
+        assertNull(policy.evict());
+
+        // protected segment is bounded, the least recently used protected key is demoted to probation
+        policy.onInsert("a", 100);
+        policy.onInsert("b", 100);
+        policy.onInsert("c", 100);
+        policy.onInsert("d", 100);
+        policy.onAccess("a");
+        policy.onAccess("b");
+        policy.onAccess("c");
+        assertEquals("d", policy.evict());
+        assertEquals("a", policy.evict());
+        assertEquals("b", policy.evict());
+        assertEquals("c", policy.evict());
+        assertNull(policy.evict());
+    }
+
+    @Test(timeout = 60000)
+    public void testCoalesceConcurrentReads() throws Exception {
+        BKEntryCache cache = newCache(1024L, "slru");
+        LedgerHandle lh = mock(LedgerHandle.class);
+        when(lh.getId()).thenReturn(1L);
+
+        RecordingCallback callback1 = new RecordingCallback();
+        RecordingCallback callback2 = new RecordingCallback();
+        cache.asyncRead(lh, 5L, callback1);
+        cache.asyncRead(lh, 5L, callback2);
+
+        ArgumentCaptor<AsyncCallback.ReadCallback> captor = ArgumentCaptor.forClass(AsyncCallback.ReadCallback.class);
+        verify(lh, times(1)).asyncReadEntries(eq(5L), eq(5L), captor.capture(), any());
+        assertEquals(0, callback1.numCallbacks.get());
+        assertEquals(0, callback2.numCallbacks.get());
+
+        byte[] data = "entry-5".getBytes("UTF-8");
+        LedgerEntry entry = mock(LedgerEntry.class);
+        when(entry.getEntryId()).thenReturn(5L);
+        when(entry.getEntry()).thenReturn(data);
+        captor.getValue().readComplete(
+                BKException.Code.OK, lh, Iterators.asEnumeration(Iterators.singletonIterator(entry)), null);
+
+        assertEquals(1, callback1.numCallbacks.get());
+        assertEquals(1, callback2.numCallbacks.get());
+        assertSame(data, callback1.data.get());
+        assertSame(data, callback2.data.get());
+        assertSame(data, cache.get(1L, 5L));
+
+        // the next read is served from the cache
+        RecordingCallback callback3 = new RecordingCallback();
+        cache.asyncRead(lh, 5L, callback3);
+        assertEquals(1, callback3.numCallbacks.get());
+        assertSame(data, callback3.data.get());
+        verify(lh, times(1)).asyncReadEntries(anyLong(), anyLong(), any(AsyncCallback.ReadCallback.class), any());
+        cache.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testFailedReadIsNotCached() throws Exception {
+        BKEntryCache cache = newCache(1024L, "lru");
+        LedgerHandle lh = mock(LedgerHandle.class);
+        when(lh.getId()).thenReturn(1L);
+
+        RecordingCallback callback = new RecordingCallback();
+        cache.asyncRead(lh, 0L, callback);
+        ArgumentCaptor<AsyncCallback.ReadCallback> captor = ArgumentCaptor.forClass(AsyncCallback.ReadCallback.class);
+        verify(lh, times(1)).asyncReadEntries(eq(0L), eq(0L), captor.capture(), any());
+        captor.getValue().readComplete(BKException.Code.BookieHandleNotAvailableException, lh, null, null);
+
+        assertEquals(1, callback.numCallbacks.get());
+        assertEquals(BKException.Code.BookieHandleNotAvailableException, callback.rc.get());
+        assertNull(callback.data.get());
+        assertEquals(0, cache.getNumCachedEntries());
+
+        // a retry issues a new read
+        cache.asyncRead(lh, 0L, new RecordingCallback());
+        verify(lh, times(2)).asyncReadEntries(eq(0L), eq(0L), any(AsyncCallback.ReadCallback.class), any());
+        cache.close();
+    }
+
+    @Test(timeout = 60000, expected = IllegalArgumentException.class)
+    public void testUnknownEvictionPolicy() throws Exception {
+        BKEntryCache.newEvictionPolicy("unknown", 1024L);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.limiter;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestTokenBucketRateLimiter {
+
+    static class MockTicker extends Ticker {
+        long nanos = 0L;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos += unit.toNanos(time);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTokenBucketRateLimiter() throws Exception {
+        MockTicker ticker = new MockTicker();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 10, ticker);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire(1));
+        }
+        assertFalse(limiter.acquire(1));
+        assertTrue(limiter.acquire(0));
+        ticker.advance(100, TimeUnit.MILLISECONDS);
+        assertTrue(limiter.acquire(1));
+        assertFalse(limiter.acquire(1));
+        limiter.release(1);
+        assertTrue(limiter.acquire(1));
+
+        // a request larger than the burst is only admitted when the bucket is full
+        assertFalse(limiter.acquire(20));
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertTrue(limiter.acquire(20));
+        assertFalse(limiter.acquire(1));
+
+        limiter.setRate(-1, 1);
+        assertTrue(limiter.acquire(1000));
+        limiter.setRate(0, 1);
+        assertFalse(limiter.acquire(1));
+    }
+
+    @Test(timeout = 60000)
+    public void testOf() throws Exception {
+        assertSame(RateLimiter.REJECT, TokenBucketRateLimiter.of(0));
+        assertSame(RateLimiter.ACCEPT, TokenBucketRateLimiter.of(-1));
+        RateLimiter limiter = TokenBucketRateLimiter.of(5);
+        assertTrue(limiter instanceof TokenBucketRateLimiter);
+    }
+}
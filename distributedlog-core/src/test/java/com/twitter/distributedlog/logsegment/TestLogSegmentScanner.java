@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.logsegment;
+
+import com.twitter.distributedlog.DLMTestUtil;
+import com.twitter.distributedlog.DistributedLogConfiguration;
+import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.LogSegmentMetadata;
+import com.twitter.distributedlog.TestDistributedLogBase;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
+import com.twitter.distributedlog.namespace.DistributedLogNamespaceBuilder;
+import com.twitter.distributedlog.namespace.NamespaceDriver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test Cases for {@link LogSegmentScanner}.
+ */
+public class TestLogSegmentScanner extends TestDistributedLogBase {
+
+    @Rule
+    public TestName runtime = new TestName();
+
+    private DistributedLogNamespace createNamespace(boolean zeroCopy, int outputBufferSize) throws Exception {
+        URI uri = createDLMURI("/" + runtime.getMethodName());
+        ensureURICreated(uri);
+        DistributedLogConfiguration confLocal = new DistributedLogConfiguration();
+        confLocal.addConfiguration(conf);
+        confLocal.setOutputBufferSize(outputBufferSize);
+        confLocal.setReaderZeroCopyEnabled(zeroCopy);
+        return DistributedLogNamespaceBuilder.newBuilder()
+                .conf(confLocal)
+                .uri(uri)
+                .build();
+    }
+
+    /**
+     * Write a log segment of <i>numRecords</i> records and scan it as a whole.
+     *
+     * @return the records scanned from the log segment.
+     */
+    private List<LogRecordWithDLSN> scanSegment(DistributedLogNamespace namespace, int numRecords)
+            throws Exception {
+        DistributedLogManager dlm = namespace.openLog(runtime.getMethodName());
+        try {
+            DLMTestUtil.generateCompletedLogSegments(dlm, conf, 1, numRecords);
+            LogSegmentMetadata segment = dlm.getLogSegments().get(0);
+            LogSegmentEntryStore entryStore =
+                    namespace.getNamespaceDriver().getLogSegmentEntryStore(NamespaceDriver.Role.READER);
+
+            LogSegmentScanner scanner = LogSegmentScanner.open(
+                    entryStore, segment, 0L, LogSegmentScanner.LAST_ADD_CONFIRMED, 7, 3);
+            List<LogRecordWithDLSN> records = new ArrayList<LogRecordWithDLSN>();
+            long expectedTxId = 1L;
+            LogRecordWithDLSN record = scanner.nextRecord();
+            while (null != record) {
+                DLMTestUtil.verifyLogRecord(record);
+                assertEquals(expectedTxId, record.getTransactionId());
+                ++expectedTxId;
+                records.add(record);
+                record = scanner.nextRecord();
+            }
+            assertEquals(numRecords, records.size());
+            assertEquals(numRecords, scanner.getNumRecordsRead());
+            assertEquals(segment.getLastEntryId() + 1, scanner.getNumEntriesRead());
+            assertEquals(1.0f, scanner.getProgress(), 0.0f);
+            scanner.close();
+            return records;
+        } finally {
+            dlm.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testScanLogSegment() throws Exception {
+        DistributedLogNamespace namespace = createNamespace(false, 0);
+        try {
+            List<LogRecordWithDLSN> records = scanSegment(namespace, 50);
+            // each record owns a copy of its payload
+            for (LogRecordWithDLSN record : records) {
+                ByteBuffer payload = record.getPayloadBuffer();
+                assertEquals(payload.remaining(), payload.capacity());
+            }
+        } finally {
+            namespace.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testScanLogSegmentZeroCopy() throws Exception {
+        DistributedLogNamespace namespace = createNamespace(true, 16 * 1024);
+        try {
+            List<LogRecordWithDLSN> records = scanSegment(namespace, 50);
+            // the records are sliced from the entries they are batched in, rather than copied out of them
+            Set<Long> entryIds = new HashSet<Long>();
+            int numSlicedRecords = 0;
+            for (LogRecordWithDLSN record : records) {
+                entryIds.add(record.getDlsn().getEntryId());
+                ByteBuffer payload = record.getPayloadBuffer();
+                if (payload.capacity() > payload.remaining()) {
+                    ++numSlicedRecords;
+                }
+            }
+            assertTrue("Records should be batched in entries : " + entryIds, entryIds.size() < records.size());
+            assertEquals(records.size() - entryIds.size(), numSlicedRecords);
+        } finally {
+            namespace.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testScanEntryRanges() throws Exception {
+        DistributedLogNamespace namespace = createNamespace(true, 0);
+        try {
+            DistributedLogManager dlm = namespace.openLog(runtime.getMethodName());
+            try {
+                DLMTestUtil.generateCompletedLogSegments(dlm, conf, 1, 20);
+                List<LogSegmentMetadata> segments = dlm.getLogSegments();
+                LogSegmentMetadata segment = segments.get(0);
+                LogSegmentEntryStore entryStore =
+                        namespace.getNamespaceDriver().getLogSegmentEntryStore(NamespaceDriver.Role.READER);
+
+                // split the log segment into entry ranges and scan them one by one
+                long lastEntryId = segment.getLastEntryId();
+                long entriesPerRange = 4L;
+                long numRecords = 0L;
+                long lastTxId = 0L;
+                for (long startEntryId = 0L; startEntryId <= lastEntryId; startEntryId += entriesPerRange) {
+                    long endEntryId = Math.min(lastEntryId, startEntryId + entriesPerRange - 1);
+                    LogSegmentScanner scanner = LogSegmentScanner.open(
+                            entryStore, segment, startEntryId, endEntryId, 3, 2);
+                    try {
+                        assertEquals(endEntryId, scanner.getEndEntryId());
+                        LogRecordWithDLSN record = scanner.nextRecord();
+                        while (null != record) {
+                            assertTrue(record.getDlsn().getEntryId() >= startEntryId);
+                            assertTrue(record.getDlsn().getEntryId() <= endEntryId);
+                            assertTrue(record.getTransactionId() > lastTxId);
+                            lastTxId = record.getTransactionId();
+                            ++numRecords;
+                            record = scanner.nextRecord();
+                        }
+                        assertEquals(endEntryId - startEntryId + 1, scanner.getNumEntriesRead());
+                    } finally {
+                        scanner.close();
+                    }
+                }
+                assertEquals(20L, numRecords);
+                assertEquals(20L, lastTxId);
+            } finally {
+                dlm.close();
+            }
+        } finally {
+            namespace.close();
+        }
+    }
+}
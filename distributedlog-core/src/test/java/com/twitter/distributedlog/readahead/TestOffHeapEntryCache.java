@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.readahead;
+
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.Entry;
+import com.twitter.distributedlog.LogRecord;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.io.Buffer;
+import com.twitter.distributedlog.io.CompressionCodec;
+import com.twitter.util.Promise;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * Test Case for {@link OffHeapEntryCache} and {@link OffHeapEntry}.
+ */
+public class TestOffHeapEntryCache {
+
+    @Test(timeout = 60000)
+    public void testAllocateAndRelease() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(8192L, NullStatsLogger.INSTANCE);
+        ByteBuffer buffer = cache.allocate(1000);
+        assertTrue(buffer.isDirect());
+        assertEquals(1000, buffer.remaining());
+        assertEquals(1024L, cache.getCachedBytes());
+        assertEquals(0L, cache.getPooledBytes());
+
+        cache.release(buffer);
+        assertEquals(0L, cache.getCachedBytes());
+        assertEquals("Released buffer should be pooled", 1024L, cache.getPooledBytes());
+
+        ByteBuffer reusedBuffer = cache.allocate(900);
+        assertSame("Pooled buffer should be reused", buffer, reusedBuffer);
+        assertEquals(900, reusedBuffer.remaining());
+        assertEquals(1024L, cache.getCachedBytes());
+        assertEquals(0L, cache.getPooledBytes());
+        cache.release(reusedBuffer);
+    }
+
+    @Test(timeout = 60000)
+    public void testEvictPooledBuffers() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(4096L, NullStatsLogger.INSTANCE);
+        ByteBuffer buffer0 = cache.allocate(1024);
+        ByteBuffer buffer1 = cache.allocate(1024);
+        cache.release(buffer0);
+        cache.release(buffer1);
+        assertEquals(2048L, cache.getPooledBytes());
+
+        // allocating a different size class evicts the pooled buffers to stay within budget
+        ByteBuffer buffer2 = cache.allocate(4000);
+        assertEquals(4096L, cache.getCachedBytes());
+        assertEquals(0L, cache.getPooledBytes());
+        assertTrue(cache.isFull());
+        cache.release(buffer2);
+        assertFalse(cache.isFull());
+    }
+
+    @Test(timeout = 60000)
+    public void testNotifyListenersWhenSpaceAvailable() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(2048L, NullStatsLogger.INSTANCE);
+        ByteBuffer buffer0 = cache.allocate(1024);
+        ByteBuffer buffer1 = cache.allocate(1024);
+        assertTrue(cache.isFull());
+
+        final AtomicInteger numNotifications = new AtomicInteger(0);
+        OffHeapEntryCache.Listener listener = new OffHeapEntryCache.Listener() {
+            @Override
+            public void onCacheSpaceAvailable() {
+                numNotifications.incrementAndGet();
+            }
+        };
+        cache.registerListener(listener);
+        assertEquals("Listener shouldn't be notified when cache is full", 0, numNotifications.get());
+
+        cache.release(buffer0);
+        assertEquals(1, numNotifications.get());
+        cache.release(buffer1);
+        assertEquals("Listener should only be notified once", 1, numNotifications.get());
+
+        // register the listener when there is space available
+        cache.registerListener(listener);
+        assertEquals(2, numNotifications.get());
+    }
+
+    private byte[] newEntry(int numRecords) throws Exception {
+        Entry.Writer writer = Entry.newEntry(
+                "test-off-heap-entry",
+                1024,
+                true,
+                CompressionCodec.Type.LZ4,
+                NullStatsLogger.INSTANCE);
+        for (int i = 0; i < numRecords; i++) {
+            LogRecord record = new LogRecord(i, ("record-" + i).getBytes(UTF_8));
+            record.setPositionWithinLogSegment(i);
+            writer.writeRecord(record, new Promise<DLSN>());
+        }
+        Buffer buffer = writer.getBuffer();
+        byte[] data = new byte[buffer.size()];
+        System.arraycopy(buffer.getData(), 0, data, 0, buffer.size());
+        return data;
+    }
+
+    @Test(timeout = 60000)
+    public void testDecodeOnConsume() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(1024 * 1024L, NullStatsLogger.INSTANCE);
+        byte[] data = newEntry(10);
+        OffHeapEntry entry = OffHeapEntry.of(cache, 1L, 0L, 2L, true, true, false,
+                new ByteArrayInputStream(data), data.length);
+        assertEquals(data.length, entry.getLength());
+        assertEquals(1L, entry.getLSSN());
+        assertEquals(2L, entry.getEntryId());
+        assertTrue(cache.getCachedBytes() >= data.length);
+
+        for (int i = 0; i < 10; i++) {
+            LogRecordWithDLSN record = entry.nextRecord();
+            assertNotNull(record);
+            assertEquals(i, record.getTransactionId());
+            assertEquals(new DLSN(1L, 2L, i), record.getDlsn());
+            assertEquals("record-" + i, new String(record.getPayload(), UTF_8));
+            assertEquals("Bytes should be released once decoded", 0L, cache.getCachedBytes());
+        }
+        assertNull(entry.nextRecord());
+    }
+
+    @Test(timeout = 60000)
+    public void testDecodeOnConsumeZeroCopy() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(1024 * 1024L, NullStatsLogger.INSTANCE);
+        byte[] data = newEntry(10);
+        OffHeapEntry entry = OffHeapEntry.of(cache, 1L, 0L, 2L, true, true, true,
+                new ByteArrayInputStream(data), data.length);
+        assertTrue(cache.getCachedBytes() >= data.length);
+
+        for (int i = 0; i < 10; i++) {
+            LogRecordWithDLSN record = entry.nextRecord();
+            assertNotNull(record);
+            assertEquals(i, record.getTransactionId());
+            assertEquals(new DLSN(1L, 2L, i), record.getDlsn());
+            assertEquals("record-" + i, new String(record.getPayload(), UTF_8));
+            assertEquals("Bytes should be released once decoded", 0L, cache.getCachedBytes());
+        }
+        assertNull(entry.nextRecord());
+    }
+
+    @Test(timeout = 60000)
+    public void testReleaseEntryNotConsumed() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(1024 * 1024L, NullStatsLogger.INSTANCE);
+        byte[] data = newEntry(10);
+        OffHeapEntry entry = OffHeapEntry.of(cache, 1L, 0L, 2L, true, true, false,
+                new ByteArrayInputStream(data), data.length);
+        entry.release();
+        assertEquals(0L, cache.getCachedBytes());
+        // release is idempotent
+        entry.release();
+        assertEquals(0L, cache.getCachedBytes());
+        try {
+            entry.nextRecord();
+            fail("Should fail to read a released entry");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTruncatedEntry() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(1024 * 1024L, NullStatsLogger.INSTANCE);
+        byte[] data = newEntry(10);
+        try {
+            OffHeapEntry.of(cache, 1L, 0L, 2L, true, true, false,
+                    new ByteArrayInputStream(data, 0, data.length - 1), data.length);
+            fail("Should fail on reading a truncated entry");
+        } catch (IOException ioe) {
+            // expected
+        }
+        assertEquals("Bytes should be released on failures", 0L, cache.getCachedBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testCloseDropsPooledBuffers() throws Exception {
+        OffHeapEntryCache cache = new OffHeapEntryCache(1024 * 1024L, NullStatsLogger.INSTANCE);
+        cache.release(cache.allocate(4096));
+        assertEquals(4096L, cache.getPooledBytes());
+        cache.close();
+        assertEquals(0L, cache.getPooledBytes());
+    }
+}
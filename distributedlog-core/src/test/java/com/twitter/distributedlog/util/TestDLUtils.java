@@ -80,6 +80,35 @@ public class TestDLUtils {
                 version);
     }
 
+    private static LogSegmentMetadata completedLogSegmentAt(long logSegmentSequenceNumber,
+                                                            long completionTime) {
+        return completedLogSegment(logSegmentSequenceNumber, logSegmentSequenceNumber * 10L,
+                logSegmentSequenceNumber * 10L + 9L)
+                .mutator().setCompletionTime(completionTime).build();
+    }
+
+    @Test(timeout = 60000)
+    public void testFindLogSegmentNotBeforeTime() throws Exception {
+        // empty list
+        List<LogSegmentMetadata> emptyList = Lists.newArrayList();
+        assertEquals(-1, DLUtils.findLogSegmentNotBeforeTime(emptyList, 1000L));
+
+        List<LogSegmentMetadata> list = Lists.newArrayList(
+                completedLogSegmentAt(1L, 1000L),
+                completedLogSegmentAt(2L, 2000L),
+                completedLogSegmentAt(3L, 3000L));
+        assertEquals(0, DLUtils.findLogSegmentNotBeforeTime(list, 0L));
+        assertEquals(0, DLUtils.findLogSegmentNotBeforeTime(list, 1000L));
+        assertEquals(1, DLUtils.findLogSegmentNotBeforeTime(list, 1001L));
+        assertEquals(2, DLUtils.findLogSegmentNotBeforeTime(list, 2500L));
+        // all the log segments are completed before the time
+        assertEquals(-1, DLUtils.findLogSegmentNotBeforeTime(list, 3001L));
+
+        // inprogress log segment is always a candidate
+        list.add(inprogressLogSegment(4L, 40L));
+        assertEquals(3, DLUtils.findLogSegmentNotBeforeTime(list, 3001L));
+    }
+
     @Test(timeout = 60000)
     public void testFindLogSegmentNotLessThanTxnId() throws Exception {
         long txnId = 999L;
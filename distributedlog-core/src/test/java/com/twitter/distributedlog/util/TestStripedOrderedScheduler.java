@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.util;
+
+import com.twitter.util.Await;
+import com.twitter.util.Function0;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test Case for {@link StripedOrderedScheduler}.
+ */
+public class TestStripedOrderedScheduler {
+
+    private OrderedScheduler scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = OrderedScheduler.newBuilder()
+                .name("test-striped-scheduler")
+                .corePoolSize(4)
+                .striped(true)
+                .traceTaskExecution(true)
+                .traceTaskSampleRate(2)
+                .build();
+        assertTrue(scheduler instanceof StripedOrderedScheduler);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 60000)
+    public void testKeyedTasksExecutedInOrder() throws Exception {
+        final int numKeys = 8;
+        final int numTasksPerKey = 1000;
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        for (int i = 0; i < numKeys; i++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch latch = new CountDownLatch(numKeys * numTasksPerKey);
+        for (int i = 0; i < numTasksPerKey; i++) {
+            for (int k = 0; k < numKeys; k++) {
+                final int key = k;
+                final int seq = i;
+                scheduler.submit("key-" + key, new Runnable() {
+                    @Override
+                    public void run() {
+                        results.get(key).add(seq);
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+        latch.await();
+        for (int k = 0; k < numKeys; k++) {
+            List<Integer> keyResults = results.get(k);
+            assertEquals(numTasksPerKey, keyResults.size());
+            for (int i = 0; i < numTasksPerKey; i++) {
+                assertEquals(i, keyResults.get(i).intValue());
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testUnkeyedTasksStolenFromBusyThread() throws Exception {
+        final CountDownLatch blockLatch = new CountDownLatch(1);
+        final CountDownLatch blockingLatch = new CountDownLatch(1);
+        scheduler.submit("blocking-key", new Runnable() {
+            @Override
+            public void run() {
+                blockingLatch.countDown();
+                try {
+                    blockLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        blockingLatch.await();
+        // the unkeyed tasks are executed even if some of them land on the blocked thread
+        final int numTasks = 100;
+        final CountDownLatch latch = new CountDownLatch(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        blockLatch.countDown();
+
+        Integer result = Await.result(scheduler.apply(new Function0<Integer>() {
+            @Override
+            public Integer apply() {
+                return 10;
+            }
+        }));
+        assertEquals(10, result.intValue());
+        assertEquals(20, scheduler.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 20;
+            }
+        }).get().intValue());
+    }
+
+    @Test(timeout = 60000)
+    public void testScheduledTasks() throws Exception {
+        final CountDownLatch delayedLatch = new CountDownLatch(1);
+        long startNanos = System.nanoTime();
+        scheduler.schedule("key", new Runnable() {
+            @Override
+            public void run() {
+                delayedLatch.countDown();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        delayedLatch.await();
+        assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        final AtomicInteger numRuns = new AtomicInteger(0);
+        final CountDownLatch periodicLatch = new CountDownLatch(5);
+        ScheduledFuture<?> periodicFuture = scheduler.scheduleAtFixedRate("key", new Runnable() {
+            @Override
+            public void run() {
+                numRuns.incrementAndGet();
+                periodicLatch.countDown();
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+        periodicLatch.await();
+        assertTrue(periodicFuture.cancel(false));
+        int runsAfterCancel = numRuns.get();
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertTrue(numRuns.get() <= runsAfterCancel + 1);
+
+        final AtomicInteger cancelledRuns = new AtomicInteger(0);
+        Future<?> cancelledFuture = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancelledRuns.incrementAndGet();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        assertTrue(cancelledFuture.cancel(false));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(0, cancelledRuns.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testRejectTasksAfterShutdown() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        scheduler.submit("key", new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, latch.getCount());
+        assertTrue(scheduler.isTerminated());
+        try {
+            scheduler.submit("key", new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail("Should reject tasks after shutdown");
+        } catch (RejectedExecutionException ree) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.util;
+
+import com.twitter.distributedlog.DistributedLogConfiguration;
+import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
+import com.twitter.distributedlog.exceptions.OverCapacityException;
+import com.twitter.distributedlog.exceptions.WriteCancelledException;
+import com.twitter.util.Await;
+import com.twitter.util.Future;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestWriteBytesLimiter {
+
+    private static DynamicDistributedLogConfiguration newDynConf(long globalLimit, long perWriterLimit) {
+        DistributedLogConfiguration conf = new DistributedLogConfiguration();
+        conf.setGlobalOutstandingWriteBytesLimit(globalLimit);
+        conf.setPerWriterOutstandingWriteBytesLimit(perWriterLimit);
+        return ConfUtils.getConstDynConf(conf);
+    }
+
+    @Test(timeout = 60000)
+    public void testRejectOverLimit() throws Exception {
+        DynamicDistributedLogConfiguration dynConf = newDynConf(100L, -1L);
+        WriteBytesLimiter limiter = new WriteBytesLimiter(dynConf, false, NullStatsLogger.INSTANCE);
+        WriteBytesLimiter.WriterLimiter writer = limiter.newWriterLimiter("test-reject", dynConf);
+
+        Await.result(writer.acquire(60));
+        assertEquals(60L, limiter.getOutstandingBytes());
+        try {
+            Await.result(writer.acquire(60));
+            fail("Should reject write over the global limit");
+        } catch (OverCapacityException oce) {
+            // expected
+        }
+        assertEquals(60L, limiter.getOutstandingBytes());
+        writer.release(60);
+        assertEquals(0L, limiter.getOutstandingBytes());
+        Await.result(writer.acquire(60));
+        assertEquals(60L, writer.getOutstandingBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testAdmitOversizedWriteWhenIdle() throws Exception {
+        DynamicDistributedLogConfiguration dynConf = newDynConf(100L, 10L);
+        WriteBytesLimiter limiter = new WriteBytesLimiter(dynConf, false, NullStatsLogger.INSTANCE);
+        WriteBytesLimiter.WriterLimiter writer = limiter.newWriterLimiter("test-oversized", dynConf);
+
+        Await.result(writer.acquire(200));
+        assertEquals(200L, limiter.getOutstandingBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testPerWriterLimit() throws Exception {
+        DynamicDistributedLogConfiguration dynConf = newDynConf(100L, 30L);
+        WriteBytesLimiter limiter = new WriteBytesLimiter(dynConf, false, NullStatsLogger.INSTANCE);
+        WriteBytesLimiter.WriterLimiter writer1 = limiter.newWriterLimiter("test-per-writer-1", dynConf);
+        WriteBytesLimiter.WriterLimiter writer2 = limiter.newWriterLimiter("test-per-writer-2",
+                newDynConf(100L, -1L));
+
+        Await.result(writer1.acquire(20));
+        try {
+            Await.result(writer1.acquire(20));
+            fail("Should reject write over the per writer limit");
+        } catch (OverCapacityException oce) {
+            // expected
+        }
+        Await.result(writer2.acquire(20));
+        Await.result(writer2.acquire(20));
+        assertEquals(60L, limiter.getOutstandingBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testFairShareUnderContention() throws Exception {
+        DynamicDistributedLogConfiguration dynConf = newDynConf(100L, -1L);
+        WriteBytesLimiter limiter = new WriteBytesLimiter(dynConf, false, NullStatsLogger.INSTANCE);
+        WriteBytesLimiter.WriterLimiter writer1 = limiter.newWriterLimiter("test-fair-share-1", dynConf);
+        WriteBytesLimiter.WriterLimiter writer2 = limiter.newWriterLimiter("test-fair-share-2", dynConf);
+
+        Await.result(writer1.acquire(40));
+        Await.result(writer2.acquire(10));
+        // over half of the budget is used, writer1 is limited to its fair share
+        try {
+            Await.result(writer1.acquire(20));
+            fail("Should reject write over the fair share of the writer");
+        } catch (OverCapacityException oce) {
+            // expected
+        }
+        Await.result(writer2.acquire(30));
+        assertEquals(40L, writer1.getOutstandingBytes());
+        assertEquals(40L, writer2.getOutstandingBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testWaitOnLimit() throws Exception {
+        DynamicDistributedLogConfiguration dynConf = newDynConf(100L, -1L);
+        WriteBytesLimiter limiter = new WriteBytesLimiter(dynConf, true, NullStatsLogger.INSTANCE);
+        WriteBytesLimiter.WriterLimiter writer = limiter.newWriterLimiter("test-wait", dynConf);
+
+        Await.result(writer.acquire(80));
+        Future<Void> write1 = writer.acquire(30);
+        Future<Void> write2 = writer.acquire(10);
+        assertFalse(write1.isDefined());
+        // writes are admitted in order, the second write waits behind the first one
+        assertFalse(write2.isDefined());
+
+        writer.release(80);
+        Await.result(write1);
+        Await.result(write2);
+        assertEquals(40L, limiter.getOutstandingBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testCloseFailsWaitingWrites() throws Exception {
+        DynamicDistributedLogConfiguration dynConf = newDynConf(100L, -1L);
+        WriteBytesLimiter limiter = new WriteBytesLimiter(dynConf, true, NullStatsLogger.INSTANCE);
+        WriteBytesLimiter.WriterLimiter writer = limiter.newWriterLimiter("test-close", dynConf);
+
+        Await.result(writer.acquire(80));
+        Future<Void> write = writer.acquire(30);
+        writer.close(new WriteCancelledException("test-close"));
+        try {
+            Await.result(write);
+            fail("Should fail waiting write when the limiter is closed");
+        } catch (WriteCancelledException wce) {
+            // expected
+        }
+        try {
+            Await.result(writer.acquire(10));
+            fail("Should fail write after the limiter is closed");
+        } catch (WriteCancelledException wce) {
+            // expected
+        }
+        writer.release(80);
+        assertEquals(0L, limiter.getOutstandingBytes());
+    }
+}
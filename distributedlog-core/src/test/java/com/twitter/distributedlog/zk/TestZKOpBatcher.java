@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.zk;
+
+import com.twitter.distributedlog.DLMTestUtil;
+import com.twitter.distributedlog.TestZooKeeperClientBuilder;
+import com.twitter.distributedlog.ZooKeeperClient;
+import com.twitter.distributedlog.ZooKeeperClusterTestCase;
+import com.twitter.distributedlog.util.OrderedScheduler;
+import com.twitter.util.Await;
+import com.twitter.util.Future;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.ZooDefs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test Case for {@link ZKOpBatcher}.
+ */
+public class TestZKOpBatcher extends ZooKeeperClusterTestCase {
+
+    @Rule
+    public TestName runtime = new TestName();
+
+    private ZooKeeperClient zkc;
+    private OrderedScheduler scheduler;
+    private String rootPath;
+
+    @Before
+    public void setup() throws Exception {
+        zkc = TestZooKeeperClientBuilder.newBuilder()
+                .name("zkc")
+                .uri(DLMTestUtil.createDLMURI(zkPort, "/"))
+                .sessionTimeoutMs(10000)
+                .build();
+        scheduler = OrderedScheduler.newBuilder()
+                .name("test-zk-op-batcher")
+                .corePoolSize(1)
+                .build();
+        rootPath = "/" + runtime.getMethodName();
+        zkc.get().create(rootPath, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        if (null != zkc) {
+            zkc.close();
+        }
+        if (null != scheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    private ZKTransaction createNodeTxn(ZKOpBatcher batcher, String... names) {
+        ZKTransaction txn = new ZKTransaction(zkc, batcher);
+        for (String name : names) {
+            Op createOp = Op.create(
+                    rootPath + "/" + name, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            txn.addOp(DefaultZKOp.of(createOp, null));
+        }
+        return txn;
+    }
+
+    @Test(timeout = 60000)
+    public void testFlushOnMaxOps() throws Exception {
+        // the window is long enough, the batch should be flushed when it reaches max ops
+        ZKOpBatcher batcher = new ZKOpBatcher(zkc, scheduler, 600000L, 4, NullStatsLogger.INSTANCE);
+        Future<Void> result1 = createNodeTxn(batcher, "a", "b").execute();
+        Future<Void> result2 = createNodeTxn(batcher, "c").execute();
+        assertFalse(result1.isDefined());
+        assertFalse(result2.isDefined());
+        Future<Void> result3 = createNodeTxn(batcher, "d").execute();
+        Await.result(result1);
+        Await.result(result2);
+        Await.result(result3);
+        assertEquals(4, zkc.get().getChildren(rootPath, false).size());
+    }
+
+    @Test(timeout = 60000)
+    public void testFlushOnBatchWindow() throws Exception {
+        ZKOpBatcher batcher = new ZKOpBatcher(zkc, scheduler, 10L, 100, NullStatsLogger.INSTANCE);
+        Future<Void> result1 = createNodeTxn(batcher, "a").execute();
+        Future<Void> result2 = createNodeTxn(batcher, "b").execute();
+        Await.result(result1);
+        Await.result(result2);
+        assertEquals(2, zkc.get().getChildren(rootPath, false).size());
+    }
+
+    @Test(timeout = 60000)
+    public void testFailedTransactionDoesNotFailOthers() throws Exception {
+        zkc.get().create(rootPath + "/c", new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        ZKOpBatcher batcher = new ZKOpBatcher(zkc, scheduler, 600000L, 5, NullStatsLogger.INSTANCE);
+        Future<Void> result1 = createNodeTxn(batcher, "a").execute();
+        Future<Void> result2 = createNodeTxn(batcher, "b", "c").execute();
+        Future<Void> result3 = createNodeTxn(batcher, "d", "e").execute();
+        Await.result(result1);
+        try {
+            Await.result(result2);
+            fail("Should fail the transaction creating an existing node");
+        } catch (KeeperException.NodeExistsException nee) {
+            // expected
+        }
+        Await.result(result3);
+        assertNotNull(zkc.get().exists(rootPath + "/a", false));
+        assertNull("Failed transaction should be rolled back", zkc.get().exists(rootPath + "/b", false));
+        assertNotNull(zkc.get().exists(rootPath + "/d", false));
+        assertNotNull(zkc.get().exists(rootPath + "/e", false));
+    }
+
+    @Test(timeout = 60000)
+    public void testCloseFlushesPendingTransactions() throws Exception {
+        ZKOpBatcher batcher = new ZKOpBatcher(zkc, scheduler, 600000L, 100, NullStatsLogger.INSTANCE);
+        Future<Void> result1 = createNodeTxn(batcher, "a").execute();
+        Future<Void> result2 = createNodeTxn(batcher, "b").execute();
+        assertFalse(result1.isDefined());
+        assertFalse(result2.isDefined());
+        batcher.close();
+        Await.result(result1);
+        Await.result(result2);
+        // the transactions submitted after close are executed without waiting for the window
+        Await.result(createNodeTxn(batcher, "c").execute());
+        assertEquals(3, zkc.get().getChildren(rootPath, false).size());
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.microbenchmarks;
+
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.RecordStream;
+import java.util.Random;
+
+/**
+ * Utilities shared by the microbenchmarks.
+ */
+final class BenchmarkUtils {
+
+    private BenchmarkUtils() {}
+
+    /**
+     * Generate a payload of <i>size</i> bytes.
+     *
+     * <p>The payload is filled with a small alphabet so that it is compressible,
+     * which is closer to what applications usually write than random bytes.
+     *
+     * @param size size of the payload
+     * @return payload bytes
+     */
+    static byte[] generatePayload(int size) {
+        Random random = new Random(size);
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return payload;
+    }
+
+    /**
+     * A {@link RecordStream} that only tracks the position within a single entry.
+     */
+    static class EntryRecordStream implements RecordStream {
+
+        private final long lssn;
+        private final long entryId;
+        private long slotId = 0L;
+
+        EntryRecordStream(long lssn, long entryId) {
+            this.lssn = lssn;
+            this.entryId = entryId;
+        }
+
+        @Override
+        public void advance(int numRecords) {
+            slotId += numRecords;
+        }
+
+        @Override
+        public DLSN getCurrentPosition() {
+            return new DLSN(lssn, entryId, slotId);
+        }
+
+        @Override
+        public String getName() {
+            return "BenchmarkRecordStream";
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.microbenchmarks;
+
+import com.twitter.distributedlog.io.CompressionCodec;
+import com.twitter.distributedlog.io.LZ4CompressionCodec;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for {@link LZ4CompressionCodec} at different payload sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class CompressionCodecBenchmark {
+
+    private static final OpStatsLogger NULL_OP_STATS_LOGGER =
+            NullStatsLogger.INSTANCE.getOpStatsLogger("");
+
+    @Param({ "1024", "16384", "262144", "1048576" })
+    int payloadSize;
+
+    private CompressionCodec codec;
+    private byte[] payload;
+    private byte[] compressed;
+
+    @Setup
+    public void setup() {
+        codec = new LZ4CompressionCodec();
+        payload = BenchmarkUtils.generatePayload(payloadSize);
+        compressed = codec.compress(payload, 0, payload.length, NULL_OP_STATS_LOGGER);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return codec.compress(payload, 0, payload.length, NULL_OP_STATS_LOGGER);
+    }
+
+    @Benchmark
+    public byte[] decompressWithKnownSize() {
+        return codec.decompress(compressed, 0, compressed.length, payloadSize, NULL_OP_STATS_LOGGER);
+    }
+
+    @Benchmark
+    public byte[] decompressWithUnknownSize() {
+        return codec.decompress(compressed, 0, compressed.length, NULL_OP_STATS_LOGGER);
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.microbenchmarks;
+
+import com.twitter.distributedlog.DLSN;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for {@link DLSN} serialization and deserialization.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class DLSNBenchmark {
+
+    private DLSN dlsn;
+    private byte[] serializedBytes;
+    private String serializedString;
+
+    @Setup
+    public void setup() {
+        dlsn = new DLSN(1234L, 56789L, 12L);
+        serializedBytes = dlsn.serializeBytes();
+        serializedString = dlsn.serialize();
+    }
+
+    @Benchmark
+    public byte[] serializeBytes() {
+        return dlsn.serializeBytes();
+    }
+
+    @Benchmark
+    public DLSN deserializeBytes() {
+        return DLSN.deserializeBytes(serializedBytes);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return dlsn.serialize();
+    }
+
+    @Benchmark
+    public DLSN deserialize() {
+        return DLSN.deserialize(serializedString);
+    }
+
+}
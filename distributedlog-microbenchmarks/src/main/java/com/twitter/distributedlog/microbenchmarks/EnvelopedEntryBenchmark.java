@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.microbenchmarks;
+
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.Entry;
+import com.twitter.distributedlog.EnvelopedEntry;
+import com.twitter.distributedlog.LogRecord;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.io.Buffer;
+import com.twitter.distributedlog.io.CompressionCodec;
+import com.twitter.util.Promise;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for building and decoding enveloped entries.
+ *
+ * <p>An entry is filled with <i>numRecords</i> records of <i>recordSize</i> bytes,
+ * which is what {@link com.twitter.distributedlog.BKLogSegmentWriter} does before
+ * transmitting an entry to bookkeeper.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class EnvelopedEntryBenchmark {
+
+    @Param({ "64", "1024", "16384" })
+    int recordSize;
+
+    @Param({ "1", "16", "128" })
+    int numRecords;
+
+    @Param({ "NONE", "LZ4" })
+    CompressionCodec.Type codec;
+
+    private LogRecord[] records;
+    private byte[] serializedEntry;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] payload = BenchmarkUtils.generatePayload(recordSize);
+        records = new LogRecord[numRecords];
+        for (int i = 0; i < numRecords; i++) {
+            records[i] = new LogRecord(i + 1L, payload);
+        }
+        Buffer buffer = writeEntry();
+        serializedEntry = Arrays.copyOf(buffer.getData(), buffer.size());
+    }
+
+    @Benchmark
+    public Buffer writeEntry() throws IOException {
+        Entry.Writer writer = Entry.newEntry(
+                "microbenchmark",
+                recordSize * numRecords,
+                true,
+                codec,
+                NullStatsLogger.INSTANCE);
+        for (LogRecord record : records) {
+            writer.writeRecord(record, new Promise<DLSN>());
+        }
+        return writer.getBuffer();
+    }
+
+    @Benchmark
+    public byte[] readFully() throws IOException {
+        EnvelopedEntry entry = new EnvelopedEntry(
+                EnvelopedEntry.CURRENT_VERSION,
+                NullStatsLogger.INSTANCE);
+        entry.readFully(new DataInputStream(new ByteArrayInputStream(serializedEntry)));
+        return entry.getDecompressedPayload();
+    }
+
+    @Benchmark
+    public void readRecords(Blackhole blackhole) throws IOException {
+        Entry.Reader reader = Entry.newBuilder()
+                .setLogSegmentInfo(1L, 0L)
+                .setEntryId(0L)
+                .setEnvelopeEntry(true)
+                .setData(serializedEntry, 0, serializedEntry.length)
+                .buildReader();
+        LogRecordWithDLSN record = reader.nextRecord();
+        while (null != record) {
+            blackhole.consume(record);
+            record = reader.nextRecord();
+        }
+    }
+
+    @Benchmark
+    public void readRecordsZeroCopy(Blackhole blackhole) throws IOException {
+        Entry.Reader reader = Entry.newBuilder()
+                .setLogSegmentInfo(1L, 0L)
+                .setEntryId(0L)
+                .setEnvelopeEntry(true)
+                .setData(serializedEntry, 0, serializedEntry.length)
+                .zeroCopy(true)
+                .buildReader();
+        LogRecordWithDLSN record = reader.nextRecord();
+        while (null != record) {
+            blackhole.consume(record.getPayloadBuffer());
+            record = reader.nextRecord();
+        }
+    }
+
+}
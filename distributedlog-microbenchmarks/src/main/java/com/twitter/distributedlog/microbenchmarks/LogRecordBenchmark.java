@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.microbenchmarks;
+
+import com.twitter.distributedlog.LogRecord;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for serializing and deserializing a single {@link LogRecord}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class LogRecordBenchmark {
+
+    @Param({ "64", "1024", "16384", "262144" })
+    int payloadSize;
+
+    private LogRecord record;
+    private ByteArrayOutputStream outBuffer;
+    private LogRecord.Writer writer;
+    private byte[] serializedRecord;
+
+    @Setup
+    public void setup() throws IOException {
+        record = new LogRecord(1L, BenchmarkUtils.generatePayload(payloadSize));
+        outBuffer = new ByteArrayOutputStream(payloadSize + 64);
+        writer = new LogRecord.Writer(new DataOutputStream(outBuffer));
+        writer.writeOp(record);
+        serializedRecord = outBuffer.toByteArray();
+    }
+
+    @Benchmark
+    public int writeRecord() throws IOException {
+        outBuffer.reset();
+        writer.writeOp(record);
+        return outBuffer.size();
+    }
+
+    @Benchmark
+    public LogRecordWithDLSN readRecord() throws IOException {
+        LogRecord.Reader reader = new LogRecord.Reader(
+                new BenchmarkUtils.EntryRecordStream(1L, 0L),
+                new DataInputStream(new ByteArrayInputStream(serializedRecord)),
+                0L);
+        return reader.readOp();
+    }
+
+}
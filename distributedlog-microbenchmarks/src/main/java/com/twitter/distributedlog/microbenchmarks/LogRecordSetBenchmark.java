@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.microbenchmarks;
+
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.LogRecordSet;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.io.CompressionCodec;
+import com.twitter.util.Promise;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for {@link LogRecordSet.Writer} and {@link LogRecordSet.Reader}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class LogRecordSetBenchmark {
+
+    @Param({ "64", "1024", "16384" })
+    int recordSize;
+
+    @Param({ "16", "128" })
+    int numRecords;
+
+    @Param({ "NONE", "LZ4" })
+    CompressionCodec.Type codec;
+
+    private ByteBuffer payload;
+    private byte[] serializedRecordSet;
+
+    @Setup
+    public void setup() throws IOException {
+        payload = ByteBuffer.wrap(BenchmarkUtils.generatePayload(recordSize));
+        ByteBuffer buffer = writeRecordSet();
+        serializedRecordSet = new byte[buffer.remaining()];
+        buffer.get(serializedRecordSet);
+    }
+
+    @Benchmark
+    public ByteBuffer writeRecordSet() throws IOException {
+        LogRecordSet.Writer writer = LogRecordSet.newWriter(recordSize * numRecords, codec);
+        for (int i = 0; i < numRecords; i++) {
+            writer.writeRecord(payload.duplicate(), new Promise<DLSN>());
+        }
+        return writer.getBuffer();
+    }
+
+    @Benchmark
+    public void readRecordSet(Blackhole blackhole) throws IOException {
+        LogRecordWithDLSN record = new LogRecordWithDLSN(
+                new DLSN(1L, 0L, 0L), 1L, serializedRecordSet, 0L);
+        record.setRecordSet();
+        LogRecordSet.Reader reader = LogRecordSet.of(record);
+        LogRecordWithDLSN nextRecord = reader.nextRecord();
+        while (null != nextRecord) {
+            blackhole.consume(nextRecord);
+            nextRecord = reader.nextRecord();
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.microbenchmarks;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import com.twitter.distributedlog.LogSegmentMetadata;
+import com.twitter.distributedlog.LogSegmentMetadata.LogSegmentMetadataVersion;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks comparing the text layout ({@link LogSegmentMetadataVersion#VERSION_V5_SEQUENCE_ID})
+ * and the binary layout ({@link LogSegmentMetadataVersion#VERSION_V6_BINARY}) of {@link LogSegmentMetadata}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+public class LogSegmentMetadataBenchmark {
+
+    private static final String PATH = "/messaging/distributedlog/stream/ledgers/logrecs_000000000000000001234";
+
+    @Param({ "true", "false" })
+    public boolean inprogress;
+
+    private LogSegmentMetadata textMetadata;
+    private LogSegmentMetadata binaryMetadata;
+    private byte[] textData;
+    private byte[] binaryData;
+
+    @Setup
+    public void setup() throws IOException {
+        long logSegmentId = 123456789L;
+        long firstTxId = 1476000000000L;
+        long lssn = 1234L;
+        long startSequenceId = 987654321L;
+        String data;
+        if (inprogress) {
+            data = String.format("%d;%d;%d;%d;%d;%d;%d",
+                    LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value,
+                    logSegmentId, firstTxId, lssn, 0L, 0L, startSequenceId);
+        } else {
+            long versionStatusCount = LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID.value | (100000L << 32);
+            data = String.format("%d;%d;%d;%d;%d;%d;%d;%d;%d;%d;%d",
+                    versionStatusCount, logSegmentId, firstTxId, firstTxId + 3600000L, firstTxId + 3600001L,
+                    lssn, 24999L, 3L, 0L, 0L, startSequenceId);
+        }
+        textMetadata = LogSegmentMetadata.parseData(PATH, data.getBytes(UTF_8));
+        textData = textMetadata.getFinalisedDataBytes(LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID);
+        binaryData = textMetadata.getFinalisedDataBytes(LogSegmentMetadataVersion.VERSION_V6_BINARY);
+        binaryMetadata = LogSegmentMetadata.parseData(PATH, binaryData);
+    }
+
+    @Benchmark
+    public byte[] encodeText() {
+        return textMetadata.getFinalisedDataBytes();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binaryMetadata.getFinalisedDataBytes();
+    }
+
+    @Benchmark
+    public LogSegmentMetadata decodeText() throws IOException {
+        return LogSegmentMetadata.parseData(PATH, textData);
+    }
+
+    @Benchmark
+    public LogSegmentMetadata decodeBinary() throws IOException {
+        return LogSegmentMetadata.parseData(PATH, binaryData);
+    }
+
+}
@@ -25,12 +25,11 @@ import static com.twitter.distributedlog.LogRecordSet.VERSION;
 
 import com.twitter.distributedlog.io.CompressionCodec;
 import com.twitter.distributedlog.io.CompressionUtils;
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
-
 /**
  * Record reader to read records from an enveloped entry buffer.
  */
@@ -42,6 +41,8 @@ class EnvelopedRecordSetReader implements LogRecordSet.Reader {
     private final long startSequenceId;
     private int numRecords;
     private final ByteBuffer reader;
+    // whether to slice the record payloads rather than copying them
+    private final boolean zeroCopy;
 
     // slot id
     private long slotId;
@@ -53,7 +54,8 @@ class EnvelopedRecordSetReader implements LogRecordSet.Reader {
                              long startSlotId,
                              int startPositionWithinLogSegment,
                              long startSequenceId,
-                             InputStream in)
+                             ByteBuffer src,
+                             boolean zeroCopy)
             throws IOException {
         this.logSegmentSeqNo = logSegmentSeqNo;
         this.entryId = entryId;
@@ -61,33 +63,41 @@ class EnvelopedRecordSetReader implements LogRecordSet.Reader {
         this.slotId = startSlotId;
         this.position = startPositionWithinLogSegment;
         this.startSequenceId = startSequenceId;
+        this.zeroCopy = zeroCopy;
 
         // read data
-        DataInputStream src = new DataInputStream(in);
-        int metadata = src.readInt();
-        int version = metadata & METADATA_VERSION_MASK;
-        if (version != VERSION) {
-            throw new IOException(String.format("Version mismatch while reading. Received: %d,"
-                + " Required: %d", version, VERSION));
-        }
-        int codecCode = metadata & METADATA_COMPRESSION_MASK;
-        this.numRecords = src.readInt();
-        int originDataLen = src.readInt();
-        int actualDataLen = src.readInt();
-        byte[] compressedData = new byte[actualDataLen];
-        src.readFully(compressedData);
+        try {
+            int metadata = src.getInt();
+            int version = metadata & METADATA_VERSION_MASK;
+            if (version != VERSION) {
+                throw new IOException(String.format("Version mismatch while reading. Received: %d,"
+                    + " Required: %d", version, VERSION));
+            }
+            int codecCode = metadata & METADATA_COMPRESSION_MASK;
+            this.numRecords = src.getInt();
+            int originDataLen = src.getInt();
+            int actualDataLen = src.getInt();
+            if (actualDataLen < 0 || actualDataLen > src.remaining()) {
+                throw new EOFException("Record set is corrupt: Expected " + actualDataLen
+                    + " bytes but only " + src.remaining() + " bytes left");
+            }
 
-        if (COMPRESSION_CODEC_LZ4 == codecCode) {
-            CompressionCodec codec = CompressionUtils.getCompressionCodec(CompressionCodec.Type.LZ4);
-            byte[] decompressedData = codec.decompress(compressedData, 0, actualDataLen,
-                    originDataLen, NULL_OP_STATS_LOGGER);
-            this.reader = ByteBuffer.wrap(decompressedData);
-        } else {
-            if (originDataLen != actualDataLen) {
-                throw new IOException("Inconsistent data length found for a non-compressed record set : original = "
-                        + originDataLen + ", actual = " + actualDataLen);
+            if (COMPRESSION_CODEC_LZ4 == codecCode) {
+                CompressionCodec codec = CompressionUtils.getCompressionCodec(CompressionCodec.Type.LZ4);
+                byte[] decompressedData = codec.decompress(src.array(), src.arrayOffset() + src.position(),
+                        actualDataLen, originDataLen, NULL_OP_STATS_LOGGER);
+                this.reader = ByteBuffer.wrap(decompressedData);
+            } else {
+                if (originDataLen != actualDataLen) {
+                    throw new IOException("Inconsistent data length found for a non-compressed record set : "
+                            + "original = " + originDataLen + ", actual = " + actualDataLen);
+                }
+                // the records are read directly from the record set payload
+                src.limit(src.position() + actualDataLen);
+                this.reader = src.slice();
             }
-            this.reader = ByteBuffer.wrap(compressedData);
+        } catch (BufferUnderflowException bue) {
+            throw new EOFException("Record set is corrupt: " + bue.getMessage());
         }
     }
 
@@ -97,16 +107,31 @@ class EnvelopedRecordSetReader implements LogRecordSet.Reader {
             return null;
         }
 
-        int recordLen = reader.getInt();
-        byte[] recordData = new byte[recordLen];
-        reader.get(recordData);
+        int recordLen;
+        try {
+            recordLen = reader.getInt();
+        } catch (BufferUnderflowException bue) {
+            throw new EOFException("Record set is corrupt: Failed to read the record length");
+        }
+        if (recordLen < 0 || recordLen > reader.remaining()) {
+            throw new EOFException("Record set is corrupt: Invalid record length " + recordLen);
+        }
         DLSN dlsn = new DLSN(logSegmentSeqNo, entryId, slotId);
 
         LogRecordWithDLSN record =
                 new LogRecordWithDLSN(dlsn, startSequenceId);
         record.setPositionWithinLogSegment(position);
         record.setTransactionId(transactionId);
-        record.setPayload(recordData);
+        if (zeroCopy) {
+            ByteBuffer recordData = reader.slice();
+            recordData.limit(recordLen);
+            reader.position(reader.position() + recordLen);
+            record.setPayloadBuffer(recordData);
+        } else {
+            byte[] recordData = new byte[recordLen];
+            reader.get(recordData);
+            record.setPayload(recordData);
+        }
 
         ++slotId;
         ++position;
@@ -18,12 +18,14 @@
 package com.twitter.distributedlog;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.twitter.distributedlog.exceptions.LogRecordTooLongException;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -129,6 +131,8 @@ public class LogRecord {
     private long metadata;
     private long txid;
     private byte[] payload;
+    // payload sliced from the buffer of the entry that this record is read from
+    private ByteBuffer payloadBuffer;
 
     /**
      * Construct an uninitialized log record.
@@ -184,6 +188,12 @@ public class LogRecord {
      * @return payload of this log record.
      */
     public byte[] getPayload() {
+        if (null == payload && null != payloadBuffer) {
+            // materialize the payload only when the application asks for a byte array
+            byte[] data = new byte[payloadBuffer.remaining()];
+            payloadBuffer.duplicate().get(data);
+            payload = data;
+        }
         return payload;
     }
 
@@ -194,6 +204,53 @@ public class LogRecord {
      */
     void setPayload(byte[] payload) {
         this.payload = payload;
+        this.payloadBuffer = null;
+    }
+
+    /**
+     * Return the payload as a read-only {@link ByteBuffer}.
+     *
+     * <p>If the record is read by a zero-copy reader, the returned buffer is a slice of
+     * the buffer of the entry that the record belongs to, so no bytes are copied. The
+     * slice keeps the whole entry buffer reachable as long as it is referenced.
+     * If the record has no payload, an empty buffer is returned.
+     *
+     * @return payload as a read-only byte buffer
+     */
+    public ByteBuffer getPayloadBuffer() {
+        return getPayloadByteBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Set payload for this log record as a slice of the entry buffer.
+     *
+     * @param payloadBuffer payload of this log record
+     */
+    void setPayloadBuffer(ByteBuffer payloadBuffer) {
+        this.payload = null;
+        this.payloadBuffer = payloadBuffer;
+    }
+
+    /**
+     * Whether the payload of this log record is a slice of the entry buffer.
+     *
+     * @return true if the payload is a slice of the entry buffer, otherwise false.
+     */
+    boolean hasPayloadBuffer() {
+        return null != payloadBuffer;
+    }
+
+    /**
+     * Return the payload as a writable heap buffer that is backed by an accessible array.
+     */
+    ByteBuffer getPayloadByteBuffer() {
+        if (null != payloadBuffer) {
+            return payloadBuffer.duplicate();
+        }
+        if (null == payload) {
+            return ByteBuffer.allocate(0);
+        }
+        return ByteBuffer.wrap(payload);
     }
 
     /**
@@ -202,9 +259,22 @@ public class LogRecord {
      * @return payload as input stream
      */
     public InputStream getPayLoadInputStream() {
+        if (null != payloadBuffer) {
+            return new ByteArrayInputStream(
+                    payloadBuffer.array(),
+                    payloadBuffer.arrayOffset() + payloadBuffer.position(),
+                    payloadBuffer.remaining());
+        }
         return new ByteArrayInputStream(payload);
     }
 
+    private int getPayloadLength() {
+        if (null != payloadBuffer) {
+            return payloadBuffer.remaining();
+        }
+        return payload.length;
+    }
+
     //
     // Metadata & Flags
     //
@@ -217,6 +287,15 @@ public class LogRecord {
         return this.metadata;
     }
 
+    /**
+     * Return the flags of the log record, such as whether it is a record set.
+     *
+     * @return flags of the log record.
+     */
+    public long getFlags() {
+        return this.metadata & LOGRECORD_METADATA_FLAGS_MASK;
+    }
+
     /**
      * Set the position in the log segment.
      *
@@ -347,9 +426,26 @@ public class LogRecord {
         }
         payload = new byte[length];
         in.readFully(payload);
+        payloadBuffer = null;
+    }
+
+    private void readPayload(DataInputStream in, SlicingByteArrayInputStream src) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new EOFException("Log Record is corrupt: Negative length " + length);
+        }
+        payload = null;
+        payloadBuffer = src.slice(length);
     }
 
     private void writePayload(DataOutputStream out) throws IOException {
+        if (null != payloadBuffer) {
+            out.writeInt(payloadBuffer.remaining());
+            out.write(payloadBuffer.array(),
+                    payloadBuffer.arrayOffset() + payloadBuffer.position(),
+                    payloadBuffer.remaining());
+            return;
+        }
         out.writeInt(payload.length);
         out.write(payload);
     }
@@ -369,7 +465,21 @@ public class LogRecord {
      */
     int getPersistentSize() {
         // Flags + TxId + Payload-length + payload
-        return 2 * (Long.SIZE / 8) + Integer.SIZE / 8 + payload.length;
+        return 2 * (Long.SIZE / 8) + Integer.SIZE / 8 + getPayloadLength();
+    }
+
+    /**
+     * Validate the size of the serialized log record against {@link #MAX_LOGRECORD_SIZE}.
+     *
+     * @throws LogRecordTooLongException if the serialized log record is too long
+     */
+    public void validateSize() throws LogRecordTooLongException {
+        int logRecordSize = getPersistentSize();
+        if (logRecordSize > MAX_LOGRECORD_SIZE) {
+            throw new LogRecordTooLongException(String.format(
+                    "Log Record of size %d written when only %d is allowed",
+                    logRecordSize, MAX_LOGRECORD_SIZE));
+        }
     }
 
     /**
@@ -397,12 +507,41 @@ public class LogRecord {
         }
     }
 
+    /**
+     * Byte array input stream that could slice the bytes at its current position.
+     */
+    private static class SlicingByteArrayInputStream extends ByteArrayInputStream {
+
+        SlicingByteArrayInputStream(byte[] data, int offset, int length) {
+            super(data, offset, length);
+        }
+
+        /**
+         * Slice next <i>length</i> bytes without copying them and advance the stream.
+         *
+         * @param length number of bytes to slice
+         * @return the slice of next <i>length</i> bytes
+         * @throws EOFException if there isn't enough bytes left
+         */
+        synchronized ByteBuffer slice(int length) throws EOFException {
+            if (length > count - pos) {
+                throw new EOFException("Log Record is corrupt: Expected " + length
+                    + " bytes but only " + (count - pos) + " bytes left");
+            }
+            ByteBuffer slice = ByteBuffer.wrap(buf, pos, length).slice();
+            pos += length;
+            return slice;
+        }
+    }
+
     /**
      * Reader class to read log records from an input {@code stream}.
       */
     public static class Reader {
         private final RecordStream recordStream;
         private final DataInputStream in;
+        // not null if the reader slices the payloads rather than copying them
+        private final SlicingByteArrayInputStream zeroCopySrc;
         private final long startSequenceId;
         private final boolean deserializeRecordSet;
         private static final int SKIP_BUFFER_SIZE = 512;
@@ -428,10 +567,45 @@ public class LogRecord {
                       boolean deserializeRecordSet) {
             this.recordStream = recordStream;
             this.in = in;
+            this.zeroCopySrc = null;
+            this.startSequenceId = startSequenceId;
+            this.deserializeRecordSet = deserializeRecordSet;
+        }
+
+        /**
+         * Construct a zero-copy reader to read log records from a byte array.
+         *
+         * <p>The payloads of the log records returned by this reader are slices of
+         * the provided <i>data</i>, so the array shouldn't be modified after this call.
+         *
+         * @param recordStream the record stream for generating {@code DLSN}s.
+         * @param data the byte array to read from.
+         * @param offset the offset of the log records in the array.
+         * @param length the length of the log records in the array.
+         * @param startSequenceId the start sequence id.
+         * @param deserializeRecordSet whether to deserialize record sets.
+         */
+        public Reader(RecordStream recordStream,
+                      byte[] data,
+                      int offset,
+                      int length,
+                      long startSequenceId,
+                      boolean deserializeRecordSet) {
+            this.recordStream = recordStream;
+            this.zeroCopySrc = new SlicingByteArrayInputStream(data, offset, length);
+            this.in = new DataInputStream(zeroCopySrc);
             this.startSequenceId = startSequenceId;
             this.deserializeRecordSet = deserializeRecordSet;
         }
 
+        private void readPayload(LogRecordWithDLSN record) throws IOException {
+            if (null == zeroCopySrc) {
+                record.readPayload(in);
+            } else {
+                record.readPayload(in, zeroCopySrc);
+            }
+        }
+
         /**
          * Read an log record from the input stream.
          *
@@ -470,7 +644,7 @@ public class LogRecord {
                     nextRecordInStream = new LogRecordWithDLSN(recordStream.getCurrentPosition(), startSequenceId);
                     nextRecordInStream.setMetadata(metadata);
                     nextRecordInStream.setTransactionId(in.readLong());
-                    nextRecordInStream.readPayload(in);
+                    readPayload(nextRecordInStream);
                     if (LOG.isTraceEnabled()) {
                         if (nextRecordInStream.isControl()) {
                             LOG.trace("Reading {} Control DLSN {}",
@@ -569,7 +743,7 @@ public class LogRecord {
                             new LogRecordWithDLSN(recordStream.getCurrentPosition(), startSequenceId);
                         record.setMetadata(flags);
                         record.setTransactionId(currTxId);
-                        record.readPayload(in);
+                        readPayload(record);
                         recordSetReader = LogRecordSet.of(record);
                     } else {
                         int length = in.readInt();
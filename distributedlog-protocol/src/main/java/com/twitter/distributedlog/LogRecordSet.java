@@ -23,7 +23,6 @@ import com.twitter.distributedlog.exceptions.LogRecordTooLongException;
 import com.twitter.distributedlog.exceptions.WriteException;
 import com.twitter.distributedlog.io.CompressionCodec;
 import com.twitter.util.Promise;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import org.apache.bookkeeper.stats.NullStatsLogger;
@@ -80,12 +79,14 @@ public class LogRecordSet {
     public static int numRecords(LogRecord record) throws IOException {
         checkArgument(record.isRecordSet(),
                 "record is not a recordset");
-        byte[] data = record.getPayload();
-        return numRecords(data);
+        return numRecords(record.getPayloadByteBuffer());
     }
 
     public static int numRecords(byte[] data) throws IOException {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
+        return numRecords(ByteBuffer.wrap(data));
+    }
+
+    private static int numRecords(ByteBuffer buffer) throws IOException {
         int metadata = buffer.getInt();
         int version = (metadata & METADATA_VERSION_MASK);
         if (version != VERSION) {
@@ -103,7 +104,6 @@ public class LogRecordSet {
     public static Reader of(LogRecordWithDLSN record) throws IOException {
         checkArgument(record.isRecordSet(),
                 "record is not a recordset");
-        byte[] data = record.getPayload();
         DLSN dlsn = record.getDlsn();
         int startPosition = record.getPositionWithinLogSegment();
         long startSequenceId = record.getStartSequenceIdOfCurrentSegment();
@@ -115,7 +115,8 @@ public class LogRecordSet {
                 dlsn.getSlotId(),
                 startPosition,
                 startSequenceId,
-                new ByteArrayInputStream(data));
+                record.getPayloadByteBuffer(),
+                record.hasPayloadBuffer());
     }
 
     /**
@@ -72,6 +72,30 @@ public class LogRecordWithDLSN extends LogRecord {
         this.startSequenceIdOfCurrentSegment = startSequenceIdOfCurrentSegment;
     }
 
+    /**
+     * Construct a log record that is read by a remote reader, such as the read methods of the write proxy.
+     *
+     * @param dlsn dlsn of the record
+     * @param txid transaction id of the record
+     * @param data payload of the record
+     * @param sequenceId sequence id of the record
+     * @param positionWithinLogSegment position of the record within its log segment
+     * @param flags flags of the record
+     * @see LogRecord#getFlags()
+     */
+    public LogRecordWithDLSN(DLSN dlsn,
+                             long txid,
+                             byte[] data,
+                             long sequenceId,
+                             int positionWithinLogSegment,
+                             long flags) {
+        super(txid, data);
+        this.dlsn = dlsn;
+        this.startSequenceIdOfCurrentSegment = sequenceId - positionWithinLogSegment + 1;
+        setMetadata(flags & LOGRECORD_METADATA_FLAGS_MASK);
+        setPositionWithinLogSegment(positionWithinLogSegment);
+    }
+
     long getStartSequenceIdOfCurrentSegment() {
         return startSequenceIdOfCurrentSegment;
     }
@@ -17,17 +17,155 @@
  */
 package com.twitter.distributedlog.io;
 
+import static com.google.common.base.Preconditions.checkState;
+
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link ByteArrayOutputStream} based buffer.
+ *
+ * <p>A buffer could be backed by a {@link BufferPool}. A pooled buffer grows by
+ * acquiring larger arrays from the pool, and returns its backing array to the
+ * pool when it is released. The buffer is reference counted: it starts with a
+ * reference count of one, {@link #retain()} increments the count and
+ * {@link #release()} decrements it. The backing array is recycled once the
+ * count reaches zero. The buffer must not be accessed after it is deallocated.
+ *
+ * <p>A buffer that isn't backed by a pool behaves exactly like
+ * {@link ByteArrayOutputStream}, and releasing it is a no-op beyond the
+ * reference counting.
  */
 public class Buffer extends ByteArrayOutputStream {
+
+    private static final byte[] EMPTY_DATA = new byte[0];
+
+    private final BufferPool pool;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
     public Buffer(int initialCapacity) {
         super(initialCapacity);
+        this.pool = null;
+    }
+
+    Buffer(BufferPool pool, byte[] data) {
+        super(0);
+        this.buf = data;
+        this.pool = pool;
     }
 
     public byte[] getData() {
         return buf;
     }
+
+    /**
+     * Return the capacity of the backing array.
+     *
+     * @return the capacity of the backing array.
+     */
+    public synchronized int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * Return whether this buffer is backed by a {@link BufferPool}.
+     *
+     * @return true if this buffer is pooled, otherwise false.
+     */
+    public boolean isPooled() {
+        return null != pool;
+    }
+
+    /**
+     * Skip <i>len</i> bytes, leaving them to be filled later.
+     *
+     * <p>This is used for reserving space for headers that can only be
+     * filled after the payload is written.
+     *
+     * @param len number of bytes to reserve
+     */
+    public synchronized void reserve(int len) {
+        ensureCapacity(count + len);
+        if (count + len > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + len));
+        }
+        count += len;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        ensureCapacity(count + 1);
+        super.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        super.write(b, off, len);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (null == pool || minCapacity <= buf.length) {
+            // unpooled buffers grow the same way as ByteArrayOutputStream
+            return;
+        }
+        byte[] newData = pool.allocateArray(Math.max(buf.length << 1, minCapacity));
+        System.arraycopy(buf, 0, newData, 0, count);
+        pool.recycle(buf);
+        buf = newData;
+    }
+
+    /**
+     * Return the current reference count.
+     *
+     * @return the current reference count.
+     */
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    /**
+     * Increment the reference count.
+     *
+     * @return this buffer
+     * @throws IllegalStateException if the buffer is already deallocated
+     */
+    public Buffer retain() {
+        while (true) {
+            int cnt = refCnt.get();
+            checkState(cnt > 0, "Buffer is already deallocated");
+            if (refCnt.compareAndSet(cnt, cnt + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Decrement the reference count, and deallocate the buffer if the count reaches zero.
+     *
+     * @return true if the buffer is deallocated, otherwise false.
+     * @throws IllegalStateException if the buffer is already deallocated
+     */
+    public boolean release() {
+        while (true) {
+            int cnt = refCnt.get();
+            checkState(cnt > 0, "Buffer is already deallocated");
+            if (refCnt.compareAndSet(cnt, cnt - 1)) {
+                if (cnt == 1) {
+                    deallocate();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    private synchronized void deallocate() {
+        if (null != pool) {
+            pool.recycle(buf);
+        }
+        buf = EMPTY_DATA;
+        count = 0;
+    }
 }
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * A pool of recyclable heap arrays backing {@link Buffer}s.
+ *
+ * <p>Arrays are pooled in power-of-two size classes, from {@link #MIN_POOLED_CAPACITY}
+ * to {@link #MAX_POOLED_CAPACITY}. Requests larger than the max pooled capacity are
+ * served by plain allocations and never pooled. The total bytes kept in the pool are
+ * bounded by <i>maxPooledBytes</i>; arrays recycled beyond that bound are left to
+ * the garbage collector.
+ *
+ * <p>The pool uses heap arrays rather than direct memory, since the bookkeeper add
+ * path consumes byte arrays and a direct slab would need another copy before it is
+ * handed to the ledger.
+ *
+ * <h3>Metrics</h3>
+ *
+ * <ul>
+ * <li> `scope`/hits: counter. number of allocations served by pooled arrays.
+ * <li> `scope`/misses: counter. number of allocations that had to allocate new arrays.
+ * <li> `scope`/recycled: counter. number of arrays returned to the pool.
+ * <li> `scope`/discarded: counter. number of arrays dropped because the pool is full.
+ * <li> `scope`/pooled_bytes: gauge. number of bytes currently kept in the pool.
+ * </ul>
+ */
+public class BufferPool {
+
+    static final int MIN_POOLED_CAPACITY_SHIFT = 10;
+    static final int MAX_POOLED_CAPACITY_SHIFT = 21;
+    public static final int MIN_POOLED_CAPACITY = 1 << MIN_POOLED_CAPACITY_SHIFT; // 1KB
+    public static final int MAX_POOLED_CAPACITY = 1 << MAX_POOLED_CAPACITY_SHIFT; // 2MB
+
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong(0L);
+    private final List<Queue<byte[]>> sizeClasses;
+
+    // Stats
+    private final StatsLogger statsLogger;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter recycled;
+    private final Counter discarded;
+    private final Gauge<Number> pooledBytesGauge;
+
+    public BufferPool(long maxPooledBytes, StatsLogger statsLogger) {
+        checkArgument(maxPooledBytes >= 0, "Invalid max pooled bytes : " + maxPooledBytes);
+        this.maxPooledBytes = maxPooledBytes;
+        int numSizeClasses = MAX_POOLED_CAPACITY_SHIFT - MIN_POOLED_CAPACITY_SHIFT + 1;
+        this.sizeClasses = new ArrayList<Queue<byte[]>>(numSizeClasses);
+        for (int i = 0; i < numSizeClasses; i++) {
+            this.sizeClasses.add(new ConcurrentLinkedQueue<byte[]>());
+        }
+        this.statsLogger = statsLogger;
+        this.hits = statsLogger.getCounter("hits");
+        this.misses = statsLogger.getCounter("misses");
+        this.recycled = statsLogger.getCounter("recycled");
+        this.discarded = statsLogger.getCounter("discarded");
+        this.pooledBytesGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return pooledBytes.get();
+            }
+        };
+        this.statsLogger.registerGauge("pooled_bytes", pooledBytesGauge);
+    }
+
+    /**
+     * Return the size class index for an array of <i>capacity</i> bytes.
+     *
+     * @param capacity capacity of the array
+     * @return index of the size class, or -1 if the capacity isn't pooled.
+     */
+    static int sizeClassIndex(int capacity) {
+        if (capacity > MAX_POOLED_CAPACITY) {
+            return -1;
+        }
+        int shift = capacity <= MIN_POOLED_CAPACITY
+                ? MIN_POOLED_CAPACITY_SHIFT : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift - MIN_POOLED_CAPACITY_SHIFT;
+    }
+
+    /**
+     * Allocate a buffer that could hold at least <i>initialCapacity</i> bytes without growing.
+     *
+     * @param initialCapacity initial capacity of the buffer
+     * @return a pooled buffer
+     */
+    public Buffer allocate(int initialCapacity) {
+        return new Buffer(this, allocateArray(initialCapacity));
+    }
+
+    byte[] allocateArray(int minCapacity) {
+        checkArgument(minCapacity >= 0, "Invalid capacity : " + minCapacity);
+        int idx = sizeClassIndex(minCapacity);
+        if (idx < 0) {
+            misses.inc();
+            return new byte[minCapacity];
+        }
+        byte[] data = sizeClasses.get(idx).poll();
+        if (null != data) {
+            pooledBytes.addAndGet(-data.length);
+            hits.inc();
+            return data;
+        }
+        misses.inc();
+        return new byte[1 << (idx + MIN_POOLED_CAPACITY_SHIFT)];
+    }
+
+    void recycle(byte[] data) {
+        int idx = sizeClassIndex(data.length);
+        if (idx < 0 || data.length != (1 << (idx + MIN_POOLED_CAPACITY_SHIFT))) {
+            // the array isn't allocated by this pool
+            return;
+        }
+        if (pooledBytes.addAndGet(data.length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-data.length);
+            discarded.inc();
+            return;
+        }
+        sizeClasses.get(idx).offer(data);
+        recycled.inc();
+    }
+
+    /**
+     * Return the number of bytes currently kept in the pool.
+     *
+     * @return the number of bytes currently kept in the pool.
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * Release all the pooled arrays and unregister the stats.
+     */
+    public void close() {
+        for (Queue<byte[]> sizeClass : sizeClasses) {
+            byte[] data;
+            while (null != (data = sizeClass.poll())) {
+                pooledBytes.addAndGet(-data.length);
+            }
+        }
+        this.statsLogger.unregisterGauge("pooled_bytes", pooledBytesGauge);
+    }
+}
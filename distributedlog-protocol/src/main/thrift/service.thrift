@@ -135,6 +135,22 @@ struct BulkWriteResponse {
     2: optional list<WriteResponse> writeResponses;
 }
 
+/* Record read from a stream */
+struct ReadRecord {
+    1: required string dlsn;
+    2: required i64 txid;
+    3: required binary payload;
+    4: optional i64 sequenceId;
+    5: optional i32 position;
+    6: optional i64 flags;
+}
+
+/* Read response */
+struct ReadResponse {
+    1: required ResponseHeader header;
+    2: optional list<ReadRecord> records;
+}
+
 /* Write Context */
 struct WriteContext {
     1: optional set<string> triedHosts;
@@ -147,6 +163,14 @@ struct HeartbeatOptions {
     1: optional bool sendHeartBeatToReader;
 }
 
+/* Read Context */
+struct ReadContext {
+    /* max number of records to return */
+    1: optional i32 maxRecords;
+    /* max time to wait for new records if the reader is at the tail of the stream */
+    2: optional i64 waitTimeMs;
+}
+
 /* Server Status */
 enum ServerStatus {
     /* service is writing and accepting new streams */
@@ -198,6 +222,14 @@ service DistributedLogService {
 
     WriteResponse getOwner(string stream, WriteContext ctx);
 
+    /* Read Methods */
+
+    /* Read next record starting from the given dlsn (inclusive) */
+    ReadResponse readNext(string stream, string dlsn, ReadContext ctx);
+
+    /* Read next records starting from the given dlsn (inclusive) */
+    ReadResponse readBulk(string stream, string dlsn, ReadContext ctx);
+
     /* Admin Methods */
     void setAcceptNewStream(bool enabled);
 }
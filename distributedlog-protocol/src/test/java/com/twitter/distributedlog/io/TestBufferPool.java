@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+/**
+ * Test Case for {@link BufferPool}.
+ */
+public class TestBufferPool {
+
+    @Test(timeout = 60000)
+    public void testSizeClassIndex() {
+        assertEquals(0, BufferPool.sizeClassIndex(0));
+        assertEquals(0, BufferPool.sizeClassIndex(1));
+        assertEquals(0, BufferPool.sizeClassIndex(BufferPool.MIN_POOLED_CAPACITY));
+        assertEquals(1, BufferPool.sizeClassIndex(BufferPool.MIN_POOLED_CAPACITY + 1));
+        assertEquals(1, BufferPool.sizeClassIndex(2 * BufferPool.MIN_POOLED_CAPACITY));
+        assertEquals(
+                BufferPool.MAX_POOLED_CAPACITY_SHIFT - BufferPool.MIN_POOLED_CAPACITY_SHIFT,
+                BufferPool.sizeClassIndex(BufferPool.MAX_POOLED_CAPACITY));
+        assertEquals(-1, BufferPool.sizeClassIndex(BufferPool.MAX_POOLED_CAPACITY + 1));
+    }
+
+    @Test(timeout = 60000)
+    public void testRecycleOnRelease() {
+        BufferPool pool = new BufferPool(1024 * 1024, NullStatsLogger.INSTANCE);
+        Buffer buffer = pool.allocate(1000);
+        assertTrue(buffer.isPooled());
+        assertEquals(1024, buffer.capacity());
+        byte[] data = buffer.getData();
+        buffer.write(1);
+        assertEquals(0L, pool.getPooledBytes());
+
+        assertTrue(buffer.release());
+        assertEquals(1024L, pool.getPooledBytes());
+
+        Buffer newBuffer = pool.allocate(512);
+        assertSame("Should reuse the recycled array", data, newBuffer.getData());
+        assertEquals(0, newBuffer.size());
+        assertEquals(0L, pool.getPooledBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testReferenceCounting() {
+        BufferPool pool = new BufferPool(1024 * 1024, NullStatsLogger.INSTANCE);
+        Buffer buffer = pool.allocate(1024);
+        assertEquals(1, buffer.refCnt());
+        buffer.retain();
+        assertEquals(2, buffer.refCnt());
+        assertFalse(buffer.release());
+        assertEquals(0L, pool.getPooledBytes());
+        assertTrue(buffer.release());
+        assertEquals(1024L, pool.getPooledBytes());
+        try {
+            buffer.release();
+            fail("Should fail on releasing a deallocated buffer");
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+        try {
+            buffer.retain();
+            fail("Should fail on retaining a deallocated buffer");
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testGrowFromPool() {
+        BufferPool pool = new BufferPool(1024 * 1024, NullStatsLogger.INSTANCE);
+        Buffer buffer = pool.allocate(1024);
+        byte[] initialData = buffer.getData();
+        byte[] payload = new byte[1500];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        buffer.write(payload, 0, payload.length);
+        assertNotSame(initialData, buffer.getData());
+        assertEquals(2048, buffer.capacity());
+        assertEquals(1500, buffer.size());
+        for (int i = 0; i < payload.length; i++) {
+            assertEquals(payload[i], buffer.getData()[i]);
+        }
+        // the initial array is returned to the pool when growing
+        assertEquals(1024L, pool.getPooledBytes());
+        buffer.release();
+        assertEquals(3072L, pool.getPooledBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testMaxPooledBytes() {
+        BufferPool pool = new BufferPool(1024, NullStatsLogger.INSTANCE);
+        Buffer buffer1 = pool.allocate(1024);
+        Buffer buffer2 = pool.allocate(1024);
+        buffer1.release();
+        buffer2.release();
+        assertEquals(1024L, pool.getPooledBytes());
+        pool.close();
+        assertEquals(0L, pool.getPooledBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testUnpooledCapacity() {
+        BufferPool pool = new BufferPool(16 * 1024 * 1024, NullStatsLogger.INSTANCE);
+        Buffer buffer = pool.allocate(BufferPool.MAX_POOLED_CAPACITY + 1);
+        assertEquals(BufferPool.MAX_POOLED_CAPACITY + 1, buffer.capacity());
+        buffer.release();
+        assertEquals(0L, pool.getPooledBytes());
+    }
+
+    @Test(timeout = 60000)
+    public void testReserve() {
+        Buffer buffer = new Buffer(4);
+        assertFalse(buffer.isPooled());
+        buffer.reserve(8);
+        assertEquals(8, buffer.size());
+        buffer.write(1);
+        assertEquals(9, buffer.size());
+        assertEquals(1, buffer.getData()[8]);
+    }
+}
@@ -24,16 +24,19 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.twitter.common.net.InetSocketAddressHelper;
 import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.DistributedLogConfiguration;
+import com.twitter.distributedlog.LogRecordWithDLSN;
 import com.twitter.distributedlog.acl.AccessControlManager;
 import com.twitter.distributedlog.client.resolver.DefaultRegionResolver;
 import com.twitter.distributedlog.client.resolver.RegionResolver;
 import com.twitter.distributedlog.client.routing.RoutingService;
 import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
 import com.twitter.distributedlog.exceptions.DLException;
+import com.twitter.distributedlog.exceptions.OverCapacityException;
 import com.twitter.distributedlog.exceptions.RegionUnavailableException;
 import com.twitter.distributedlog.exceptions.ServiceUnavailableException;
 import com.twitter.distributedlog.exceptions.StreamUnavailableException;
 import com.twitter.distributedlog.exceptions.TooManyStreamsException;
+import com.twitter.distributedlog.exceptions.UnexpectedException;
 import com.twitter.distributedlog.feature.AbstractFeatureProvider;
 import com.twitter.distributedlog.namespace.DistributedLogNamespace;
 import com.twitter.distributedlog.namespace.DistributedLogNamespaceBuilder;
@@ -45,6 +48,7 @@ import com.twitter.distributedlog.service.placement.LeastLoadPlacementPolicy;
 import com.twitter.distributedlog.service.placement.LoadAppraiser;
 import com.twitter.distributedlog.service.placement.PlacementPolicy;
 import com.twitter.distributedlog.service.placement.ZKPlacementStateManager;
+import com.twitter.distributedlog.service.reader.SharedStreamReaderManager;
 import com.twitter.distributedlog.service.stream.BulkWriteOp;
 import com.twitter.distributedlog.service.stream.DeleteOp;
 import com.twitter.distributedlog.service.stream.admin.CreateOp;
@@ -62,6 +66,7 @@ import com.twitter.distributedlog.service.stream.WriteOp;
 import com.twitter.distributedlog.service.stream.admin.StreamAdminOp;
 import com.twitter.distributedlog.service.stream.WriteOpWithPayload;
 import com.twitter.distributedlog.service.stream.admin.StreamAdminOp;
+import com.twitter.distributedlog.service.stream.limiter.ServiceReadRequestLimiter;
 import com.twitter.distributedlog.service.stream.limiter.ServiceRequestLimiter;
 import com.twitter.distributedlog.service.streamset.StreamPartitionConverter;
 import com.twitter.distributedlog.service.utils.ServerUtils;
@@ -69,6 +74,9 @@ import com.twitter.distributedlog.thrift.service.BulkWriteResponse;
 import com.twitter.distributedlog.thrift.service.ClientInfo;
 import com.twitter.distributedlog.thrift.service.DistributedLogService;
 import com.twitter.distributedlog.thrift.service.HeartbeatOptions;
+import com.twitter.distributedlog.thrift.service.ReadContext;
+import com.twitter.distributedlog.thrift.service.ReadRecord;
+import com.twitter.distributedlog.thrift.service.ReadResponse;
 import com.twitter.distributedlog.thrift.service.ResponseHeader;
 import com.twitter.distributedlog.thrift.service.ServerInfo;
 import com.twitter.distributedlog.thrift.service.ServerStatus;
@@ -84,12 +92,14 @@ import com.twitter.util.Function;
 import com.twitter.util.Function0;
 import com.twitter.util.Future;
 import com.twitter.util.FutureEventListener;
+import com.twitter.util.FutureTransformer;
 import com.twitter.util.ScheduledThreadPoolTimer;
 import com.twitter.util.Timer;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -131,12 +141,14 @@ public class DistributedLogServiceImpl implements DistributedLogService.ServiceI
     private final StreamConfigProvider streamConfigProvider;
     private final StreamManager streamManager;
     private final StreamFactory streamFactory;
+    private final SharedStreamReaderManager readerManager;
     private final RoutingService routingService;
     private final RegionResolver regionResolver;
     private final MovingAverageRateFactory movingAvgFactory;
     private final MovingAverageRate windowedRps;
     private final MovingAverageRate windowedBps;
     private final ServiceRequestLimiter limiter;
+    private final ServiceReadRequestLimiter readLimiter;
     private final Timer timer;
     private final HashedWheelTimer requestTimer;
 
@@ -249,6 +261,12 @@ public class DistributedLogServiceImpl implements DistributedLogService.ServiceI
                 converter,
                 streamConfigProvider,
                 dlNamespace);
+        // Shared readers serving read requests
+        this.readerManager = new SharedStreamReaderManager(
+                serverConf,
+                dlNamespace,
+                scheduler,
+                statsLogger.scope("reader"));
         this.routingService = routingService;
         this.regionResolver = new DefaultRegionResolver();
 
@@ -272,6 +290,10 @@ public class DistributedLogServiceImpl implements DistributedLogService.ServiceI
                 windowedBps,
                 streamManager,
                 limiterDisabledFeature);
+        this.readLimiter = new ServiceReadRequestLimiter(
+                dynDlConf,
+                streamOpStats.baseScope("service_read_limiter"),
+                limiterDisabledFeature);
 
         this.placementPolicy = new LeastLoadPlacementPolicy(
             loadAppraiser,
@@ -529,6 +551,69 @@ public class DistributedLogServiceImpl implements DistributedLogService.ServiceI
     }
 
 
+    //
+    // Read RPCs
+    //
+
+    @Override
+    public Future<ReadResponse> readNext(String stream, String dlsn, ReadContext ctx) {
+        return doRead(stream, dlsn, 1, ctx);
+    }
+
+    @Override
+    public Future<ReadResponse> readBulk(String stream, String dlsn, ReadContext ctx) {
+        int maxRecords = ctx.isSetMaxRecords() ? ctx.getMaxRecords() : 0;
+        return doRead(stream, dlsn, maxRecords, ctx);
+    }
+
+    private Future<ReadResponse> doRead(String stream, String dlsn, int maxRecords, ReadContext ctx) {
+        closeLock.readLock().lock();
+        try {
+            if (ServerStatus.DOWN == serverStatus) {
+                return Future.value(ResponseUtils.read(ResponseUtils.exceptionToHeader(
+                        new ServiceUnavailableException("Server " + clientId + " is closed."))));
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        try {
+            // Apply the read request limiter
+            readLimiter.apply(stream);
+        } catch (OverCapacityException oce) {
+            return Future.value(ResponseUtils.read(ResponseUtils.exceptionToHeader(oce)));
+        }
+        long waitTimeMs = ctx.isSetWaitTimeMs() ? ctx.getWaitTimeMs() : 0L;
+        Future<List<LogRecordWithDLSN>> readFuture;
+        try {
+            readFuture = readerManager.read(stream, DLSN.deserialize(dlsn), maxRecords, waitTimeMs);
+        } catch (IllegalArgumentException iae) {
+            return Future.value(ResponseUtils.read(ResponseUtils.exceptionToHeader(
+                    new UnexpectedException("Invalid dlsn " + dlsn + " : " + iae.getMessage()))));
+        }
+        return readFuture.transformedBy(new FutureTransformer<List<LogRecordWithDLSN>, ReadResponse>() {
+            @Override
+            public ReadResponse map(List<LogRecordWithDLSN> records) {
+                List<ReadRecord> readRecords = new ArrayList<ReadRecord>(records.size());
+                for (LogRecordWithDLSN record : records) {
+                    ReadRecord readRecord = new ReadRecord(
+                            record.getDlsn().serialize(),
+                            record.getTransactionId(),
+                            ByteBuffer.wrap(record.getPayload()));
+                    readRecord.setSequenceId(record.getSequenceId());
+                    readRecord.setPosition(record.getPositionWithinLogSegment());
+                    readRecord.setFlags(record.getFlags());
+                    readRecords.add(readRecord);
+                }
+                return ResponseUtils.read(ResponseUtils.successHeader()).setRecords(readRecords);
+            }
+
+            @Override
+            public ReadResponse handle(Throwable cause) {
+                return ResponseUtils.read(ResponseUtils.exceptionToHeader(cause));
+            }
+        });
+    }
+
     //
     // Admin RPCs
     //
@@ -655,8 +740,10 @@ public class DistributedLogServiceImpl implements DistributedLogService.ServiceI
             }
 
             streamManager.close();
+            readerManager.close();
             movingAvgFactory.close();
             limiter.close();
+            readLimiter.close();
 
             Stopwatch closeStreamsStopwatch = Stopwatch.createStarted();
 
@@ -760,6 +847,11 @@ public class DistributedLogServiceImpl implements DistributedLogService.ServiceI
         return DLSocketAddress.deserialize(clientId);
     }
 
+    @VisibleForTesting
+    OrderedScheduler getScheduler() {
+        return scheduler;
+    }
+
     WriteOp newWriteOp(String stream,
                        ByteBuffer data,
                        Long checksum,
@@ -21,7 +21,7 @@ package com.twitter.distributedlog.service;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.twitter.common.zookeeper.ServerSet;
@@ -30,7 +30,7 @@ import com.twitter.distributedlog.DistributedLogConstants;
 import com.twitter.distributedlog.DistributedLogManager;
 import com.twitter.distributedlog.LogSegmentMetadata;
 import com.twitter.distributedlog.callback.LogSegmentListener;
-import com.twitter.distributedlog.callback.NamespaceListener;
+import com.twitter.distributedlog.callback.NamespaceChangeListener;
 import com.twitter.distributedlog.client.monitor.MonitorServiceClient;
 import com.twitter.distributedlog.client.serverset.DLZkServerSet;
 import com.twitter.distributedlog.namespace.DistributedLogNamespace;
@@ -54,19 +54,17 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
-public class MonitorService implements NamespaceListener {
+public class MonitorService implements NamespaceChangeListener {
 
     static final Logger logger = LoggerFactory.getLogger(MonitorService.class);
 
@@ -369,37 +367,39 @@ public class MonitorService implements NamespaceListener {
         return DLZkServerSet.of(URI.create(serverSetPath), 60000);
     }
 
+    private boolean isMonitoredStream(String s) {
+        if (null != streamRegex && !s.matches(streamRegex)) {
+            return false;
+        }
+        return Math.abs(hashFunction.hashUnencodedChars(s).asInt()) % totalInstances == instanceId;
+    }
+
     @Override
-    public void onStreamsChanged(Iterator<String> streams) {
-        Set<String> newSet = new HashSet<String>();
-        while (streams.hasNext()) {
-            String s = streams.next();
-            if (null == streamRegex || s.matches(streamRegex)) {
-                if (Math.abs(hashFunction.hashUnencodedChars(s).asInt()) % totalInstances == instanceId) {
-                    newSet.add(s);
+    public void onStreamsAdded(Collection<String> streams) {
+        synchronized (knownStreams) {
+            for (String s : streams) {
+                if (!isMonitoredStream(s) || knownStreams.containsKey(s)) {
+                    continue;
                 }
+                logger.info("Added stream {}", s);
+                StreamChecker sc = new StreamChecker(s);
+                knownStreams.put(s, sc);
+                sc.run();
             }
         }
+    }
+
+    @Override
+    public void onStreamsRemoved(Collection<String> streams) {
         List<StreamChecker> tasksToCancel = new ArrayList<StreamChecker>();
         synchronized (knownStreams) {
-            Set<String> knownStreamSet = new HashSet<String>(knownStreams.keySet());
-            Set<String> removedStreams = Sets.difference(knownStreamSet, newSet).immutableCopy();
-            Set<String> addedStreams = Sets.difference(newSet, knownStreamSet).immutableCopy();
-            for (String s : removedStreams) {
+            for (String s : streams) {
                 StreamChecker task = knownStreams.remove(s);
                 if (null != task) {
                     logger.info("Removed stream {}", s);
                     tasksToCancel.add(task);
                 }
             }
-            for (String s : addedStreams) {
-                if (!knownStreams.containsKey(s)) {
-                    logger.info("Added stream {}", s);
-                    StreamChecker sc = new StreamChecker(s);
-                    knownStreams.put(s, sc);
-                    sc.run();
-                }
-            }
         }
         for (StreamChecker sc : tasksToCancel) {
             sc.close();
@@ -415,9 +415,9 @@ public class MonitorService implements NamespaceListener {
                 .uri(dlUri)
                 .build();
         if (watchNamespaceChanges) {
-            dlNamespace.registerNamespaceListener(this);
+            dlNamespace.registerNamespaceChangeListener(this);
         } else {
-            onStreamsChanged(dlNamespace.getLogs());
+            onStreamsAdded(Lists.newArrayList(dlNamespace.getLogs()));
         }
     }
 
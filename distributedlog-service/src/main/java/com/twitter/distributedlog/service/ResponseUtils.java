@@ -20,6 +20,7 @@ package com.twitter.distributedlog.service;
 import com.twitter.distributedlog.exceptions.DLException;
 import com.twitter.distributedlog.exceptions.OwnershipAcquireFailedException;
 import com.twitter.distributedlog.thrift.service.BulkWriteResponse;
+import com.twitter.distributedlog.thrift.service.ReadResponse;
 import com.twitter.distributedlog.thrift.service.ResponseHeader;
 import com.twitter.distributedlog.thrift.service.StatusCode;
 import com.twitter.distributedlog.thrift.service.WriteResponse;
@@ -83,4 +84,8 @@ public class ResponseUtils {
     public static BulkWriteResponse bulkWriteDenied() {
         return new BulkWriteResponse(deniedHeader());
     }
+
+    public static ReadResponse read(ResponseHeader responseHeader) {
+        return new ReadResponse(responseHeader);
+    }
 }
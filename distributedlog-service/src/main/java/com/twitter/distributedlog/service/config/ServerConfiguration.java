@@ -99,6 +99,28 @@ public class ServerConfiguration extends CompositeConfiguration {
     public static final String SERVER_RESOURCE_PLACEMENT_REFRESH_INTERVAL_S = "server_resource_placement_refresh_interval_sec";
     public static final int  SERVER_RESOURCE_PLACEMENT_REFRESH_INTERVAL_DEFAULT = 120;
 
+    // Server read settings
+    public static final String SERVER_READER_CACHE_MAX_BYTES_PER_STREAM = "server_reader_cache_max_bytes_per_stream";
+    public static final long SERVER_READER_CACHE_MAX_BYTES_PER_STREAM_DEFAULT = 4 * 1024 * 1024;
+    public static final String SERVER_READER_IDLE_TIMEOUT_MS = "server_reader_idle_timeout_ms";
+    public static final long SERVER_READER_IDLE_TIMEOUT_MS_DEFAULT = 60000;
+    public static final String SERVER_READ_MAX_RECORDS = "server_read_max_records";
+    public static final int SERVER_READ_MAX_RECORDS_DEFAULT = 1000;
+    public static final String SERVER_READ_MAX_WAIT_TIME_MS = "server_read_max_wait_time_ms";
+    public static final long SERVER_READ_MAX_WAIT_TIME_MS_DEFAULT = 10000;
+
+    // Server write op merging settings
+    public static final String SERVER_STREAM_OP_MERGE_ENABLED = "server_stream_op_merge_enabled";
+    public static final boolean SERVER_STREAM_OP_MERGE_ENABLED_DEFAULT = false;
+    public static final String SERVER_STREAM_OP_MERGE_MAX_OPS = "server_stream_op_merge_max_ops";
+    public static final int SERVER_STREAM_OP_MERGE_MAX_OPS_DEFAULT = 64;
+    public static final String SERVER_STREAM_OP_MERGE_MAX_BYTES = "server_stream_op_merge_max_bytes";
+    public static final long SERVER_STREAM_OP_MERGE_MAX_BYTES_DEFAULT = 256 * 1024;
+
+    // Server stream acquisition settings
+    public static final String SERVER_STREAM_ACQUIRE_CONCURRENCY = "server_stream_acquire_concurrency";
+    public static final int SERVER_STREAM_ACQUIRE_CONCURRENCY_DEFAULT = 0;
+
     public ServerConfiguration() {
         super();
         addConfiguration(new SystemConfiguration());
@@ -411,6 +433,188 @@ public class ServerConfiguration extends CompositeConfiguration {
         return getInt(SERVER_RESOURCE_PLACEMENT_REFRESH_INTERVAL_S, SERVER_RESOURCE_PLACEMENT_REFRESH_INTERVAL_DEFAULT);
     }
 
+    /**
+     * Set the max number of bytes of records cached by the shared reader of a stream.
+     *
+     * @param maxBytes max number of bytes cached per stream
+     * @return server configuration
+     * @see #getReaderCacheMaxBytesPerStream()
+     */
+    public ServerConfiguration setReaderCacheMaxBytesPerStream(long maxBytes) {
+        setProperty(SERVER_READER_CACHE_MAX_BYTES_PER_STREAM, maxBytes);
+        return this;
+    }
+
+    /**
+     * Get the max number of bytes of records cached by the shared reader of a stream.
+     *
+     * <p>All the read requests of a stream on a proxy share a single reader. The records
+     * read by the shared reader are kept in a window of at most this many bytes, so readers
+     * that are close to the tail are served from memory.
+     *
+     * @return max number of bytes cached per stream
+     */
+    public long getReaderCacheMaxBytesPerStream() {
+        return getLong(SERVER_READER_CACHE_MAX_BYTES_PER_STREAM,
+            SERVER_READER_CACHE_MAX_BYTES_PER_STREAM_DEFAULT);
+    }
+
+    /**
+     * Set the time in millis after which an idle shared reader is closed.
+     *
+     * @param idleTimeoutMs idle timeout in millis
+     * @return server configuration
+     * @see #getReaderIdleTimeoutMs()
+     */
+    public ServerConfiguration setReaderIdleTimeoutMs(long idleTimeoutMs) {
+        setProperty(SERVER_READER_IDLE_TIMEOUT_MS, idleTimeoutMs);
+        return this;
+    }
+
+    /**
+     * Get the time in millis after which an idle shared reader is closed.
+     *
+     * @return idle timeout of shared readers in millis
+     */
+    public long getReaderIdleTimeoutMs() {
+        return getLong(SERVER_READER_IDLE_TIMEOUT_MS, SERVER_READER_IDLE_TIMEOUT_MS_DEFAULT);
+    }
+
+    /**
+     * Set the max number of records returned by a read request.
+     *
+     * @param maxRecords max number of records returned by a read request
+     * @return server configuration
+     * @see #getReadMaxRecords()
+     */
+    public ServerConfiguration setReadMaxRecords(int maxRecords) {
+        setProperty(SERVER_READ_MAX_RECORDS, maxRecords);
+        return this;
+    }
+
+    /**
+     * Get the max number of records returned by a read request.
+     *
+     * @return max number of records returned by a read request
+     */
+    public int getReadMaxRecords() {
+        return getInt(SERVER_READ_MAX_RECORDS, SERVER_READ_MAX_RECORDS_DEFAULT);
+    }
+
+    /**
+     * Set the max time in millis that a read request waits for new records at the tail of a stream.
+     *
+     * @param waitTimeMs max wait time in millis
+     * @return server configuration
+     * @see #getReadMaxWaitTimeMs()
+     */
+    public ServerConfiguration setReadMaxWaitTimeMs(long waitTimeMs) {
+        setProperty(SERVER_READ_MAX_WAIT_TIME_MS, waitTimeMs);
+        return this;
+    }
+
+    /**
+     * Get the max time in millis that a read request waits for new records at the tail of a stream.
+     *
+     * @return max wait time in millis
+     */
+    public long getReadMaxWaitTimeMs() {
+        return getLong(SERVER_READ_MAX_WAIT_TIME_MS, SERVER_READ_MAX_WAIT_TIME_MS_DEFAULT);
+    }
+
+    /**
+     * Enable or disable merging write operations of a stream.
+     *
+     * <p>If enabled, consecutive write and bulk write operations submitted to a stream
+     * are merged into a single bulk write to the underlying log writer, while the ordering
+     * and the responses of the individual operations are preserved.
+     *
+     * @param enabled flag to enable/disable merging write operations
+     * @return server configuration
+     * @see #isStreamOpMergeEnabled()
+     */
+    public ServerConfiguration setStreamOpMergeEnabled(boolean enabled) {
+        setProperty(SERVER_STREAM_OP_MERGE_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Is merging write operations of a stream enabled?
+     *
+     * @return true if merging write operations is enabled, otherwise false.
+     */
+    public boolean isStreamOpMergeEnabled() {
+        return getBoolean(SERVER_STREAM_OP_MERGE_ENABLED, SERVER_STREAM_OP_MERGE_ENABLED_DEFAULT);
+    }
+
+    /**
+     * Set the max number of write operations merged into a single bulk write.
+     *
+     * @param maxOps max number of write operations merged into a single bulk write
+     * @return server configuration
+     * @see #getStreamOpMergeMaxOps()
+     */
+    public ServerConfiguration setStreamOpMergeMaxOps(int maxOps) {
+        setProperty(SERVER_STREAM_OP_MERGE_MAX_OPS, maxOps);
+        return this;
+    }
+
+    /**
+     * Get the max number of write operations merged into a single bulk write.
+     *
+     * @return max number of write operations merged into a single bulk write
+     */
+    public int getStreamOpMergeMaxOps() {
+        return getInt(SERVER_STREAM_OP_MERGE_MAX_OPS, SERVER_STREAM_OP_MERGE_MAX_OPS_DEFAULT);
+    }
+
+    /**
+     * Set the max number of payload bytes merged into a single bulk write.
+     *
+     * @param maxBytes max number of payload bytes merged into a single bulk write
+     * @return server configuration
+     * @see #getStreamOpMergeMaxBytes()
+     */
+    public ServerConfiguration setStreamOpMergeMaxBytes(long maxBytes) {
+        setProperty(SERVER_STREAM_OP_MERGE_MAX_BYTES, maxBytes);
+        return this;
+    }
+
+    /**
+     * Get the max number of payload bytes merged into a single bulk write.
+     *
+     * @return max number of payload bytes merged into a single bulk write
+     */
+    public long getStreamOpMergeMaxBytes() {
+        return getLong(SERVER_STREAM_OP_MERGE_MAX_BYTES, SERVER_STREAM_OP_MERGE_MAX_BYTES_DEFAULT);
+    }
+
+    /**
+     * Set the max number of streams that are acquired concurrently by the proxy.
+     *
+     * @param concurrency max number of streams that are acquired concurrently
+     * @return server configuration
+     * @see #getStreamAcquireConcurrency()
+     */
+    public ServerConfiguration setStreamAcquireConcurrency(int concurrency) {
+        setProperty(SERVER_STREAM_ACQUIRE_CONCURRENCY, concurrency);
+        return this;
+    }
+
+    /**
+     * Get the max number of streams that are acquired concurrently by the proxy.
+     *
+     * <p>Acquiring a stream opens its writer, which recovers the inprogress log segments
+     * left by the previous owner. When a proxy fails, the survivors acquire all its streams
+     * at once; bounding the acquisitions keeps them from overwhelming the metadata store and
+     * bookies. A non-positive value means no bound. Default is 0.
+     *
+     * @return max number of streams that are acquired concurrently
+     */
+    public int getStreamAcquireConcurrency() {
+        return getInt(SERVER_STREAM_ACQUIRE_CONCURRENCY, SERVER_STREAM_ACQUIRE_CONCURRENCY_DEFAULT);
+    }
+
     /**
      * Validate the configuration
      */
@@ -422,6 +626,8 @@ public class ServerConfiguration extends CompositeConfiguration {
                 "Invalid number of server threads : " + getServerThreads());
         Preconditions.checkArgument(getServerShardId() >= 0,
                 "Invalid server shard id : " + getServerShardId());
+        Preconditions.checkArgument(getStreamOpMergeMaxOps() > 0,
+                "Invalid max number of merged ops : " + getStreamOpMergeMaxOps());
     }
 
 }
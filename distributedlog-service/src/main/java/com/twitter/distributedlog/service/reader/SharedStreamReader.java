@@ -0,0 +1,510 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.service.reader;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.twitter.distributedlog.AsyncLogReader;
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.exceptions.ReadCancelledException;
+import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.distributedlog.util.OrderedScheduler;
+import com.twitter.util.Future;
+import com.twitter.util.FutureEventListener;
+import com.twitter.util.Promise;
+import org.apache.bookkeeper.stats.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.runtime.AbstractFunction1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reader shared by all the read requests of a stream on a proxy.
+ *
+ * <p>The shared reader keeps a single {@link AsyncLogReader} reading ahead on the stream
+ * and caches the records it read in a window bounded by bytes. Read requests are served
+ * in three ways:
+ * <ul>
+ * <li>requests starting within the window are served from the cached records.</li>
+ * <li>requests starting after the last cached record (the tail readers) wait until the
+ * shared reader delivers new records, or until their wait time expires.</li>
+ * <li>requests starting before the window (the lagging readers) are served by catch-up
+ * readers, without touching the window. A catch-up reader is kept for the next request
+ * that continues from where it stopped, until it catches up with the window or becomes idle.</li>
+ * </ul>
+ *
+ * <p>The read-ahead pauses when the window is full. The records before the position of a
+ * read request are consumed by that request, so they are evicted to make room when the window
+ * is full, and the read-ahead resumes. The clients that are slower than that fall behind the
+ * window and continue on their own catch-up readers.
+ *
+ * <p>So N readers tailing a stream only cost one read on bookkeeper.
+ */
+class SharedStreamReader implements FutureEventListener<List<LogRecordWithDLSN>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedStreamReader.class);
+
+    /**
+     * A read request waiting for new records at the tail of the stream.
+     */
+    private class PendingRead implements Runnable {
+
+        final DLSN fromDLSN;
+        final int maxRecords;
+        final Promise<List<LogRecordWithDLSN>> promise = new Promise<List<LogRecordWithDLSN>>();
+        ScheduledFuture<?> timeoutTask = null;
+
+        PendingRead(DLSN fromDLSN, int maxRecords) {
+            this.fromDLSN = fromDLSN;
+            this.maxRecords = maxRecords;
+        }
+
+        void complete(List<LogRecordWithDLSN> records) {
+            cancelTimeout();
+            FutureUtils.setValue(promise, records);
+        }
+
+        void fail(Throwable cause) {
+            cancelTimeout();
+            FutureUtils.setException(promise, cause);
+        }
+
+        private synchronized void cancelTimeout() {
+            if (null != timeoutTask) {
+                timeoutTask.cancel(false);
+            }
+        }
+
+        synchronized void setTimeoutTask(ScheduledFuture<?> timeoutTask) {
+            this.timeoutTask = timeoutTask;
+        }
+
+        @Override
+        public void run() {
+            // wait time expired
+            boolean removed;
+            synchronized (SharedStreamReader.this) {
+                removed = pendingReads.remove(this);
+            }
+            if (removed) {
+                FutureUtils.setValue(promise, Collections.<LogRecordWithDLSN>emptyList());
+            }
+        }
+    }
+
+    /**
+     * A reader serving a client lagging behind the window.
+     */
+    private static class CatchupReader {
+
+        final AsyncLogReader reader;
+        final long lastAccessTimeMs;
+
+        CatchupReader(AsyncLogReader reader, long lastAccessTimeMs) {
+            this.reader = reader;
+            this.lastAccessTimeMs = lastAccessTimeMs;
+        }
+    }
+
+    private final String streamName;
+    private final DistributedLogManager dlm;
+    private final OrderedScheduler scheduler;
+    private final long maxCachedBytes;
+    private final int readAheadBatchSize;
+
+    // Stats
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter longPolls;
+
+    // State
+    private final TreeMap<DLSN, LogRecordWithDLSN> cachedRecords = new TreeMap<DLSN, LogRecordWithDLSN>();
+    private long cachedBytes = 0L;
+    // the window covers all the records whose dlsns are not less than this
+    private DLSN windowStart;
+    private final List<PendingRead> pendingReads = new LinkedList<PendingRead>();
+    // catch-up readers keyed by the position that the next request of their clients starts from
+    private final Map<DLSN, CatchupReader> catchupReaders = new HashMap<DLSN, CatchupReader>();
+    private AsyncLogReader reader = null;
+    private boolean readAheadPending = false;
+    private Throwable lastException = null;
+    private boolean closed = false;
+    private Future<Void> closeFuture = null;
+    private volatile long lastAccessTimeMs;
+
+    SharedStreamReader(String streamName,
+                       DistributedLogManager dlm,
+                       OrderedScheduler scheduler,
+                       long maxCachedBytes,
+                       int readAheadBatchSize,
+                       Counter cacheHits,
+                       Counter cacheMisses,
+                       Counter longPolls) {
+        this.streamName = streamName;
+        this.dlm = dlm;
+        this.scheduler = scheduler;
+        this.maxCachedBytes = maxCachedBytes;
+        this.readAheadBatchSize = readAheadBatchSize;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.longPolls = longPolls;
+        this.lastAccessTimeMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Start the shared reader to read ahead from <i>fromDLSN</i>.
+     *
+     * @param fromDLSN position to start reading ahead from
+     */
+    void start(DLSN fromDLSN) {
+        synchronized (this) {
+            this.windowStart = fromDLSN;
+        }
+        dlm.openAsyncLogReader(fromDLSN).addEventListener(new FutureEventListener<AsyncLogReader>() {
+            @Override
+            public void onSuccess(AsyncLogReader openedReader) {
+                synchronized (SharedStreamReader.this) {
+                    if (!closed) {
+                        reader = openedReader;
+                        openedReader = null;
+                    }
+                }
+                if (null != openedReader) {
+                    // the shared reader was closed while opening
+                    FutureUtils.ignore(openedReader.asyncClose());
+                    return;
+                }
+                readAhead();
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                SharedStreamReader.this.onFailure(cause);
+            }
+        });
+    }
+
+    String getStreamName() {
+        return streamName;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Whether the shared reader hasn't been accessed for <i>idleTimeoutMs</i>.
+     *
+     * @param nowMs current time in millis
+     * @param idleTimeoutMs idle timeout in millis
+     * @return true if the reader is idle, otherwise false.
+     */
+    synchronized boolean isIdle(long nowMs, long idleTimeoutMs) {
+        return pendingReads.isEmpty() && nowMs - lastAccessTimeMs >= idleTimeoutMs;
+    }
+
+    @VisibleForTesting
+    synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Read at most <i>maxRecords</i> records starting from <i>fromDLSN</i> (inclusive).
+     *
+     * @param fromDLSN position to read from
+     * @param maxRecords max number of records to return
+     * @param waitTimeMs max time in millis to wait for new records if the request is at the tail.
+     * @return future representing the records read, or null if the shared reader is already closed.
+     */
+    Future<List<LogRecordWithDLSN>> read(DLSN fromDLSN, int maxRecords, long waitTimeMs) {
+        lastAccessTimeMs = System.currentTimeMillis();
+        synchronized (this) {
+            if (closed) {
+                return null;
+            }
+            if (fromDLSN.compareTo(windowStart) >= 0) {
+                return readFromWindow(fromDLSN, maxRecords, waitTimeMs);
+            }
+        }
+        cacheMisses.inc();
+        return readBehindWindow(fromDLSN, maxRecords);
+    }
+
+    private Future<List<LogRecordWithDLSN>> readFromWindow(DLSN fromDLSN, int maxRecords, long waitTimeMs) {
+        Future<List<LogRecordWithDLSN>> result;
+        boolean resumeReadAhead;
+        synchronized (this) {
+            resumeReadAhead = evictConsumedRecords(fromDLSN);
+            List<LogRecordWithDLSN> records = readFromCache(fromDLSN, maxRecords);
+            if (!records.isEmpty()) {
+                cacheHits.inc();
+                result = Future.value(records);
+            } else if (waitTimeMs <= 0) {
+                result = Future.value(records);
+            } else {
+                longPolls.inc();
+                PendingRead pendingRead = new PendingRead(fromDLSN, maxRecords);
+                pendingReads.add(pendingRead);
+                pendingRead.setTimeoutTask(
+                        scheduler.schedule(streamName, pendingRead, waitTimeMs, TimeUnit.MILLISECONDS));
+                result = pendingRead.promise;
+            }
+        }
+        if (resumeReadAhead) {
+            readAhead();
+        }
+        return result;
+    }
+
+    /**
+     * Evict the records before <i>position</i>, which are consumed by the request reading from
+     * <i>position</i>, if the window is full. They are evicted until the window is half full, so
+     * the read-ahead doesn't pause again right after it resumes.
+     *
+     * @return true if the window was full and records are evicted.
+     */
+    private boolean evictConsumedRecords(DLSN position) {
+        if (cachedBytes < maxCachedBytes) {
+            return false;
+        }
+        boolean evicted = false;
+        // always keep the last record, so the tail readers could be served from the window
+        while (cachedBytes > maxCachedBytes / 2 && cachedRecords.size() > 1) {
+            Map.Entry<DLSN, LogRecordWithDLSN> first = cachedRecords.firstEntry();
+            if (first.getKey().compareTo(position) >= 0) {
+                break;
+            }
+            cachedRecords.pollFirstEntry();
+            cachedBytes -= first.getValue().getPayloadBuffer().remaining();
+            windowStart = first.getKey().getNextDLSN();
+            evicted = true;
+        }
+        return evicted;
+    }
+
+    private List<LogRecordWithDLSN> readFromCache(DLSN fromDLSN, int maxRecords) {
+        List<LogRecordWithDLSN> records = new ArrayList<LogRecordWithDLSN>();
+        for (LogRecordWithDLSN record : cachedRecords.tailMap(fromDLSN, true).values()) {
+            if (records.size() >= maxRecords) {
+                break;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private Future<List<LogRecordWithDLSN>> readBehindWindow(DLSN fromDLSN, final int maxRecords) {
+        CatchupReader catchupReader;
+        synchronized (this) {
+            catchupReader = catchupReaders.remove(fromDLSN);
+        }
+        Future<AsyncLogReader> readerFuture;
+        if (null == catchupReader) {
+            readerFuture = dlm.openAsyncLogReader(fromDLSN);
+        } else {
+            readerFuture = Future.value(catchupReader.reader);
+        }
+        return readerFuture.flatMap(
+                new AbstractFunction1<AsyncLogReader, Future<List<LogRecordWithDLSN>>>() {
+            @Override
+            public Future<List<LogRecordWithDLSN>> apply(final AsyncLogReader reader) {
+                return reader.readBulk(maxRecords).addEventListener(
+                        new FutureEventListener<List<LogRecordWithDLSN>>() {
+                    @Override
+                    public void onSuccess(List<LogRecordWithDLSN> records) {
+                        if (records.isEmpty()) {
+                            FutureUtils.ignore(reader.asyncClose());
+                            return;
+                        }
+                        DLSN nextDLSN = records.get(records.size() - 1).getDlsn().getNextDLSN();
+                        keepCatchupReader(nextDLSN, reader);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable cause) {
+                        FutureUtils.ignore(reader.asyncClose());
+                    }
+                });
+            }
+        });
+    }
+
+    private void keepCatchupReader(DLSN nextDLSN, AsyncLogReader catchupReader) {
+        CatchupReader replacedReader = null;
+        synchronized (this) {
+            // the client caught up with the window, so its next request is served from the window.
+            if (!closed && nextDLSN.compareTo(windowStart) < 0) {
+                replacedReader = catchupReaders.put(nextDLSN,
+                        new CatchupReader(catchupReader, System.currentTimeMillis()));
+                catchupReader = null == replacedReader ? null : replacedReader.reader;
+            }
+        }
+        if (null != catchupReader) {
+            FutureUtils.ignore(catchupReader.asyncClose());
+        }
+    }
+
+    /**
+     * Close the catch-up readers that aren't used for <i>idleTimeoutMs</i>.
+     *
+     * @param nowMs current time in millis
+     * @param idleTimeoutMs idle timeout in millis
+     */
+    void closeIdleCatchupReaders(long nowMs, long idleTimeoutMs) {
+        List<CatchupReader> readersToClose = new ArrayList<CatchupReader>();
+        synchronized (this) {
+            Iterator<CatchupReader> iter = catchupReaders.values().iterator();
+            while (iter.hasNext()) {
+                CatchupReader catchupReader = iter.next();
+                if (nowMs - catchupReader.lastAccessTimeMs >= idleTimeoutMs) {
+                    iter.remove();
+                    readersToClose.add(catchupReader);
+                }
+            }
+        }
+        for (CatchupReader catchupReader : readersToClose) {
+            FutureUtils.ignore(catchupReader.reader.asyncClose());
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getNumCatchupReaders() {
+        return catchupReaders.size();
+    }
+
+    @VisibleForTesting
+    synchronized boolean isReadAheadPaused() {
+        return !readAheadPending && cachedBytes >= maxCachedBytes;
+    }
+
+    private void readAhead() {
+        AsyncLogReader readerToUse;
+        synchronized (this) {
+            // pause the read-ahead when the window is full, until the clients consume the records.
+            if (closed || null == reader || readAheadPending || cachedBytes >= maxCachedBytes) {
+                return;
+            }
+            readAheadPending = true;
+            readerToUse = reader;
+        }
+        readerToUse.readBulk(readAheadBatchSize).addEventListener(this);
+    }
+
+    @Override
+    public void onSuccess(List<LogRecordWithDLSN> records) {
+        List<PendingRead> readsToComplete = new ArrayList<PendingRead>();
+        List<List<LogRecordWithDLSN>> results = new ArrayList<List<LogRecordWithDLSN>>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            readAheadPending = false;
+            for (LogRecordWithDLSN record : records) {
+                cachedRecords.put(record.getDlsn(), record);
+                cachedBytes += record.getPayloadBuffer().remaining();
+            }
+            Iterator<PendingRead> iter = pendingReads.iterator();
+            while (iter.hasNext()) {
+                PendingRead pendingRead = iter.next();
+                List<LogRecordWithDLSN> result = readFromCache(pendingRead.fromDLSN, pendingRead.maxRecords);
+                if (!result.isEmpty()) {
+                    iter.remove();
+                    readsToComplete.add(pendingRead);
+                    results.add(result);
+                }
+            }
+        }
+        for (int i = 0; i < readsToComplete.size(); i++) {
+            readsToComplete.get(i).complete(results.get(i));
+        }
+        readAhead();
+    }
+
+    @Override
+    public void onFailure(Throwable cause) {
+        List<PendingRead> readsToFail;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            lastException = cause;
+            readsToFail = new ArrayList<PendingRead>(pendingReads);
+            pendingReads.clear();
+        }
+        logger.warn("Shared reader of stream {} encountered exception : ", streamName, cause);
+        for (PendingRead pendingRead : readsToFail) {
+            pendingRead.fail(cause);
+        }
+        asyncClose();
+    }
+
+    /**
+     * Close the shared reader. The pending read requests are failed.
+     *
+     * @return future representing the close result.
+     */
+    Future<Void> asyncClose() {
+        List<PendingRead> readsToCancel;
+        AsyncLogReader readerToClose;
+        synchronized (this) {
+            if (null != closeFuture) {
+                return closeFuture;
+            }
+            closed = true;
+            readsToCancel = new ArrayList<PendingRead>(pendingReads);
+            pendingReads.clear();
+            cachedRecords.clear();
+            cachedBytes = 0L;
+            for (CatchupReader catchupReader : catchupReaders.values()) {
+                FutureUtils.ignore(catchupReader.reader.asyncClose());
+            }
+            catchupReaders.clear();
+            readerToClose = reader;
+            reader = null;
+            Future<Void> closeReaderFuture;
+            if (null == readerToClose) {
+                closeReaderFuture = Future.Void();
+            } else {
+                closeReaderFuture = readerToClose.asyncClose();
+            }
+            closeFuture = closeReaderFuture.flatMap(new AbstractFunction1<Void, Future<Void>>() {
+                @Override
+                public Future<Void> apply(Void value) {
+                    return dlm.asyncClose();
+                }
+            });
+        }
+        Throwable cause = null == lastException
+                ? new ReadCancelledException(streamName, "Shared reader is closed") : lastException;
+        for (PendingRead pendingRead : readsToCancel) {
+            pendingRead.fail(cause);
+        }
+        return closeFuture;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.service.reader;
+
+import com.google.common.collect.Lists;
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.exceptions.ServiceUnavailableException;
+import com.twitter.distributedlog.namespace.DistributedLogNamespace;
+import com.twitter.distributedlog.service.config.ServerConfiguration;
+import com.twitter.distributedlog.util.FutureUtils;
+import com.twitter.distributedlog.util.OrderedScheduler;
+import com.twitter.util.Future;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manage the {@link SharedStreamReader}s of the streams read through a proxy.
+ *
+ * <p>A shared reader is created on the first read request of a stream, and closed when there
+ * is no read request on the stream for {@link ServerConfiguration#getReaderIdleTimeoutMs()}.
+ */
+public class SharedStreamReaderManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedStreamReaderManager.class);
+
+    private final DistributedLogNamespace namespace;
+    private final OrderedScheduler scheduler;
+    private final ConcurrentHashMap<String, SharedStreamReader> readers =
+            new ConcurrentHashMap<String, SharedStreamReader>();
+    private final long maxCachedBytesPerStream;
+    private final long idleTimeoutMs;
+    private final int maxRecordsPerRead;
+    private final long maxWaitTimeMs;
+    private final ScheduledFuture<?> idleCheckTask;
+    private boolean closed = false;
+
+    // Stats
+    private final StatsLogger statsLogger;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter longPolls;
+    private final Gauge<Number> numReadersGauge;
+
+    public SharedStreamReaderManager(ServerConfiguration serverConf,
+                                     DistributedLogNamespace namespace,
+                                     OrderedScheduler scheduler,
+                                     StatsLogger statsLogger) {
+        this.namespace = namespace;
+        this.scheduler = scheduler;
+        this.maxCachedBytesPerStream = serverConf.getReaderCacheMaxBytesPerStream();
+        this.idleTimeoutMs = serverConf.getReaderIdleTimeoutMs();
+        this.maxRecordsPerRead = serverConf.getReadMaxRecords();
+        this.maxWaitTimeMs = serverConf.getReadMaxWaitTimeMs();
+        // Stats
+        this.statsLogger = statsLogger;
+        this.cacheHits = statsLogger.getCounter("cache_hits");
+        this.cacheMisses = statsLogger.getCounter("cache_misses");
+        this.longPolls = statsLogger.getCounter("long_polls");
+        this.numReadersGauge = new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Number getSample() {
+                return readers.size();
+            }
+        };
+        statsLogger.registerGauge("num_readers", numReadersGauge);
+        // Idle check
+        long checkIntervalMs = Math.max(1000L, idleTimeoutMs / 2);
+        this.idleCheckTask = scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                closeIdleReaders();
+            }
+        }, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Read records of <i>stream</i> starting from <i>fromDLSN</i>.
+     *
+     * <p>The <i>maxRecords</i> and <i>waitTimeMs</i> are capped by the server settings
+     * {@link ServerConfiguration#getReadMaxRecords()} and {@link ServerConfiguration#getReadMaxWaitTimeMs()}.
+     *
+     * @param stream stream name
+     * @param fromDLSN position to read from (inclusive)
+     * @param maxRecords max number of records to return
+     * @param waitTimeMs max time in millis to wait for new records when reading at the tail.
+     *                   An empty list is returned if there is no new record after the wait time.
+     * @return future representing the records read.
+     */
+    public Future<List<LogRecordWithDLSN>> read(String stream,
+                                                DLSN fromDLSN,
+                                                int maxRecords,
+                                                long waitTimeMs) {
+        int numRecords = maxRecords <= 0 ? maxRecordsPerRead : Math.min(maxRecords, maxRecordsPerRead);
+        long waitTime = Math.min(Math.max(0L, waitTimeMs), maxWaitTimeMs);
+        // the reader might be closed concurrently by idle check, retry on a new reader.
+        while (true) {
+            SharedStreamReader reader;
+            try {
+                reader = getOrCreateReader(stream, fromDLSN);
+            } catch (IOException ioe) {
+                return Future.exception(ioe);
+            }
+            Future<List<LogRecordWithDLSN>> result = reader.read(fromDLSN, numRecords, waitTime);
+            if (null != result) {
+                return result;
+            }
+            readers.remove(stream, reader);
+        }
+    }
+
+    private SharedStreamReader getOrCreateReader(String stream, DLSN fromDLSN) throws IOException {
+        SharedStreamReader reader = readers.get(stream);
+        if (null != reader && !reader.isClosed()) {
+            return reader;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new ServiceUnavailableException("Reader manager is closed.");
+            }
+            reader = readers.get(stream);
+            if (null != reader && !reader.isClosed()) {
+                return reader;
+            }
+            DistributedLogManager dlm = namespace.openLog(stream);
+            SharedStreamReader newReader = new SharedStreamReader(
+                    stream,
+                    dlm,
+                    scheduler,
+                    maxCachedBytesPerStream,
+                    maxRecordsPerRead,
+                    cacheHits,
+                    cacheMisses,
+                    longPolls);
+            if (null == reader) {
+                readers.put(stream, newReader);
+            } else {
+                readers.replace(stream, reader, newReader);
+            }
+            newReader.start(fromDLSN);
+            logger.info("Created shared reader for stream {} from {}.", stream, fromDLSN);
+            return newReader;
+        }
+    }
+
+    private void closeIdleReaders() {
+        long nowMs = System.currentTimeMillis();
+        for (SharedStreamReader reader : readers.values()) {
+            if (reader.isClosed() || reader.isIdle(nowMs, idleTimeoutMs)) {
+                if (readers.remove(reader.getStreamName(), reader)) {
+                    logger.info("Closing idle shared reader for stream {}.", reader.getStreamName());
+                    FutureUtils.ignore(reader.asyncClose());
+                }
+            } else {
+                reader.closeIdleCatchupReaders(nowMs, idleTimeoutMs);
+            }
+        }
+    }
+
+    /**
+     * Close the manager and all the shared readers.
+     *
+     * @return future representing the close result.
+     */
+    public Future<List<Void>> close() {
+        synchronized (this) {
+            if (closed) {
+                return Future.value(null);
+            }
+            closed = true;
+        }
+        idleCheckTask.cancel(false);
+        statsLogger.unregisterGauge("num_readers", numReadersGauge);
+        List<Future<Void>> closeFutures = Lists.newArrayList();
+        for (SharedStreamReader reader : readers.values()) {
+            closeFutures.add(reader.asyncClose());
+        }
+        readers.clear();
+        return Future.collect(closeFutures);
+    }
+}
@@ -89,8 +89,18 @@ public abstract class AbstractStreamOp<Response> implements StreamOp {
     @Override
     public Future<Void> execute(AsyncLogWriter writer, Sequencer sequencer, Object txnLock) {
         stopwatch.reset().start();
-        return executeOp(writer, sequencer, txnLock)
-                .addEventListener(new FutureEventListener<Response>() {
+        return complete(executeOp(writer, sequencer, txnLock));
+    }
+
+    /**
+     * Complete the operation with the given <i>response</i> future.
+     *
+     * @param response
+     *          future representing the response of the operation.
+     * @return future representing the operation.
+     */
+    protected Future<Void> complete(Future<Response> response) {
+        return response.addEventListener(new FutureEventListener<Response>() {
             @Override
             public void onSuccess(Response response) {
                 opStatsLogger.registerSuccessfulEvent(stopwatch.elapsed(TimeUnit.MICROSECONDS));
@@ -54,7 +54,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 
 import scala.runtime.AbstractFunction1;
 
-public class BulkWriteOp extends AbstractStreamOp<BulkWriteResponse> implements WriteOpWithPayload {
+public class BulkWriteOp extends AbstractStreamOp<BulkWriteResponse> implements MergeableWriteOp {
     private final List<ByteBuffer> buffers;
     private final long payloadSize;
 
@@ -160,11 +160,25 @@ public class BulkWriteOp extends AbstractStreamOp<BulkWriteResponse> implements
             records = asRecordList(buffers, sequencer);
             futureList = writer.writeBulk(records);
         }
+        return toResponse(futureList);
+    }
+
+    @Override
+    public List<LogRecord> toLogRecords(Sequencer sequencer) {
+        return asRecordList(buffers, sequencer);
+    }
 
+    @Override
+    public Future<Void> executeMerged(Future<List<Future<DLSN>>> writeResults) {
+        stopwatch.reset().start();
+        return complete(toResponse(writeResults));
+    }
+
+    private Future<BulkWriteResponse> toResponse(Future<List<Future<DLSN>>> futureList) {
         // Collect into a list of tries to make it easier to extract exception or DLSN.
         Future<List<Try<DLSN>>> writes = asTryList(futureList);
 
-        Future<BulkWriteResponse> response = writes.flatMap(
+        return writes.flatMap(
             new AbstractFunction1<List<Try<DLSN>>, Future<BulkWriteResponse>>() {
                 @Override
                 public Future<BulkWriteResponse> apply(List<Try<DLSN>> results) {
@@ -209,8 +223,6 @@ public class BulkWriteOp extends AbstractStreamOp<BulkWriteResponse> implements
                 }
             }
         );
-
-        return response;
     }
 
     private List<LogRecord> asRecordList(List<ByteBuffer> buffers, Sequencer sequencer) {
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.service.stream;
+
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.LogRecord;
+import com.twitter.distributedlog.util.Sequencer;
+import com.twitter.util.Future;
+
+import java.util.List;
+
+/**
+ * A write operation whose records could be merged with the records of its adjacent
+ * write operations into a single bulk write.
+ */
+public interface MergeableWriteOp extends StreamOp, WriteOpWithPayload {
+
+    /**
+     * Convert the payload of this operation into log records.
+     *
+     * <p>The caller must hold the transaction lock so the transaction ids
+     * of the merged operations are assigned in order.
+     *
+     * @param sequencer
+     *          sequencer used for generating transaction id for stream operations
+     * @return log records of this operation.
+     */
+    List<LogRecord> toLogRecords(Sequencer sequencer);
+
+    /**
+     * Complete the operation with the write results of the records returned by
+     * {@link #toLogRecords(Sequencer)}, in the same order.
+     *
+     * @param writeResults
+     *          future representing the write results of the records of this operation.
+     * @return future representing the operation.
+     */
+    Future<Void> executeMerged(Future<List<Future<DLSN>>> writeResults);
+}
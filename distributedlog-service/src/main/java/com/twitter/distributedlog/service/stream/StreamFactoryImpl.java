@@ -24,6 +24,7 @@ import com.twitter.distributedlog.service.FatalErrorHandler;
 import com.twitter.distributedlog.service.config.ServerConfiguration;
 import com.twitter.distributedlog.service.config.StreamConfigProvider;
 import com.twitter.distributedlog.service.streamset.StreamPartitionConverter;
+import com.twitter.concurrent.AsyncSemaphore;
 import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.util.Timer;
 import org.apache.bookkeeper.feature.FeatureProvider;
@@ -42,6 +43,8 @@ public class StreamFactoryImpl implements StreamFactory {
     private final FatalErrorHandler fatalErrorHandler;
     private final HashedWheelTimer requestTimer;
     private final Timer futureTimer;
+    // bounds the stream acquisitions across all the streams created by this factory
+    private final AsyncSemaphore acquireSemaphore;
 
     public StreamFactoryImpl(String clientId,
         StreamOpStats streamOpStats,
@@ -67,6 +70,11 @@ public class StreamFactoryImpl implements StreamFactory {
         this.fatalErrorHandler = fatalErrorHandler;
         this.requestTimer = requestTimer;
         this.futureTimer = new com.twitter.finagle.util.HashedWheelTimer(requestTimer);
+        if (serverConfig.getStreamAcquireConcurrency() > 0) {
+            this.acquireSemaphore = new AsyncSemaphore(serverConfig.getStreamAcquireConcurrency());
+        } else {
+            this.acquireSemaphore = null;
+        }
     }
 
     @Override
@@ -87,6 +95,7 @@ public class StreamFactoryImpl implements StreamFactory {
             scheduler,
             fatalErrorHandler,
             requestTimer,
-            futureTimer);
+            futureTimer,
+            acquireSemaphore);
     }
 }
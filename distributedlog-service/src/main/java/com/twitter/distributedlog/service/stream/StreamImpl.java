@@ -20,10 +20,13 @@ package com.twitter.distributedlog.service.stream;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.base.Stopwatch;
+import com.twitter.concurrent.AsyncSemaphore;
 import com.twitter.distributedlog.exceptions.AlreadyClosedException;
 import com.twitter.distributedlog.AsyncLogWriter;
+import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.DistributedLogConfiguration;
 import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.LogRecord;
 import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
 import com.twitter.distributedlog.exceptions.DLException;
 import com.twitter.distributedlog.exceptions.OverCapacityException;
@@ -31,6 +34,7 @@ import com.twitter.distributedlog.exceptions.OwnershipAcquireFailedException;
 import com.twitter.distributedlog.exceptions.StreamNotReadyException;
 import com.twitter.distributedlog.exceptions.StreamUnavailableException;
 import com.twitter.distributedlog.exceptions.UnexpectedException;
+import com.twitter.distributedlog.exceptions.WriteCancelledException;
 import com.twitter.distributedlog.io.Abortables;
 import com.twitter.distributedlog.namespace.DistributedLogNamespace;
 import com.twitter.distributedlog.service.FatalErrorHandler;
@@ -40,6 +44,7 @@ import com.twitter.distributedlog.service.config.StreamConfigProvider;
 import com.twitter.distributedlog.service.stream.limiter.StreamRequestLimiter;
 import com.twitter.distributedlog.service.streamset.Partition;
 import com.twitter.distributedlog.stats.BroadCastStatsLogger;
+import com.twitter.distributedlog.util.DLUtils;
 import com.twitter.distributedlog.util.FutureUtils;
 import com.twitter.distributedlog.util.OrderedScheduler;
 import com.twitter.distributedlog.util.TimeSequencer;
@@ -51,6 +56,7 @@ import com.twitter.util.FutureEventListener;
 import com.twitter.util.Promise;
 import com.twitter.util.TimeoutException;
 import com.twitter.util.Timer;
+import com.twitter.util.Try;
 import org.apache.bookkeeper.feature.Feature;
 import org.apache.bookkeeper.feature.FeatureProvider;
 import org.apache.bookkeeper.stats.Counter;
@@ -62,14 +68,21 @@ import org.jboss.netty.util.Timeout;
 import org.jboss.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.Option;
+import scala.runtime.AbstractFunction0;
 import scala.runtime.AbstractFunction1;
 import scala.runtime.BoxedUnit;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class StreamImpl implements Stream {
@@ -136,6 +149,26 @@ public class StreamImpl implements Stream {
     private final boolean failFastOnStreamNotReady;
     private final HashedWheelTimer requestTimer;
     private final Timer futureTimer;
+    // bounds the concurrent acquisitions across streams, null if unbounded
+    private final AsyncSemaphore acquireSemaphore;
+
+    // the max number of ops drained by a single drain task, so a stream that keeps receiving
+    // ops doesn't hold its scheduler thread from the other streams.
+    static final int MAX_OPS_PER_DRAIN = 1024;
+
+    // Write op merging: ops submitted to an initialized stream are queued and drained
+    // in order on the stream's scheduler thread, consecutive write ops are merged into
+    // a single bulk write. null if op merging is disabled.
+    private final Queue<StreamOp> submittedOps;
+    private final AtomicBoolean submittedOpsDrainScheduled = new AtomicBoolean(false);
+    private final Runnable drainSubmittedOpsTask = new Runnable() {
+        @Override
+        public void run() {
+            drainSubmittedOps();
+        }
+    };
+    private final int opMergeMaxOps;
+    private final long opMergeMaxBytes;
 
     // Stats
     private final StatsLogger streamLogger;
@@ -143,10 +176,15 @@ public class StreamImpl implements Stream {
     private final StatsLogger limiterStatLogger;
     private final Counter serviceTimeout;
     private final OpStatsLogger streamAcquireStat;
+    private final OpStatsLogger streamAcquirePendingStat;
     private final OpStatsLogger writerCloseStatLogger;
     private final Counter pendingOpsCounter;
     private final Counter unexpectedExceptions;
     private final Counter writerCloseTimeoutCounter;
+    private final Counter mergedOpsCounter;
+    private final Counter mergedWritesCounter;
+    private final OpStatsLogger mergedOpsPerWriteStat;
+    private final OpStatsLogger mergedBytesPerWriteStat;
     private final StatsLogger exceptionStatLogger;
     private final ConcurrentHashMap<String, Counter> exceptionCounters =
         new ConcurrentHashMap<String, Counter>();
@@ -169,7 +207,8 @@ public class StreamImpl implements Stream {
                OrderedScheduler scheduler,
                FatalErrorHandler fatalErrorHandler,
                HashedWheelTimer requestTimer,
-               Timer futureTimer) {
+               Timer futureTimer,
+               AsyncSemaphore acquireSemaphore) {
         this.clientId = clientId;
         this.dlConfig = dlConfig;
         this.streamManager = streamManager;
@@ -194,6 +233,14 @@ public class StreamImpl implements Stream {
         this.limiter = new StreamRequestLimiter(name, dynConf, limiterStatsLogger, featureRateLimitDisabled);
         this.requestTimer = requestTimer;
         this.futureTimer = futureTimer;
+        this.acquireSemaphore = acquireSemaphore;
+        if (serverConfig.isStreamOpMergeEnabled()) {
+            this.submittedOps = new ConcurrentLinkedQueue<StreamOp>();
+        } else {
+            this.submittedOps = null;
+        }
+        this.opMergeMaxOps = serverConfig.getStreamOpMergeMaxOps();
+        this.opMergeMaxBytes = serverConfig.getStreamOpMergeMaxBytes();
 
         // Stats
         this.streamLogger = streamOpStats.streamRequestStatsLogger(partition);
@@ -202,11 +249,18 @@ public class StreamImpl implements Stream {
         this.serviceTimeout = streamOpStats.baseCounter("serviceTimeout");
         StatsLogger streamsStatsLogger = streamOpStats.baseScope("streams");
         this.streamAcquireStat = streamsStatsLogger.getOpStatsLogger("acquire");
+        this.streamAcquirePendingStat = streamsStatsLogger.getOpStatsLogger("acquire_pending");
         this.pendingOpsCounter = streamOpStats.baseCounter("pending_ops");
         this.unexpectedExceptions = streamOpStats.baseCounter("unexpected_exceptions");
         this.exceptionStatLogger = streamOpStats.requestScope("exceptions");
         this.writerCloseStatLogger = streamsStatsLogger.getOpStatsLogger("writer_close");
         this.writerCloseTimeoutCounter = streamsStatsLogger.getCounter("writer_close_timeouts");
+        // merge ratio = merged_ops / merged_writes
+        StatsLogger mergeStatsLogger = streamsStatsLogger.scope("op_merge");
+        this.mergedOpsCounter = mergeStatsLogger.getCounter("merged_ops");
+        this.mergedWritesCounter = mergeStatsLogger.getCounter("merged_writes");
+        this.mergedOpsPerWriteStat = mergeStatsLogger.getOpStatsLogger("ops_per_write");
+        this.mergedBytesPerWriteStat = mergeStatsLogger.getOpStatsLogger("bytes_per_write");
         // Gauges
         this.streamStatusGauge = new Gauge<Number>() {
             @Override
@@ -423,7 +477,11 @@ public class StreamImpl implements Stream {
             }
         }
         if (completeOpNow) {
-            executeOp(op, success);
+            if (null != submittedOps) {
+                enqueueOp(op);
+            } else {
+                executeOp(op, success);
+            }
         }
     }
 
@@ -447,63 +505,305 @@ public class StreamImpl implements Stream {
             lastException = this.lastException;
         }
         if (null != writer && success) {
-            op.execute(writer, sequencer, txnLock)
-                    .addEventListener(new FutureEventListener<Void>() {
-                @Override
-                public void onSuccess(Void value) {
-                    // nop
-                }
-                @Override
-                public void onFailure(Throwable cause) {
-                    boolean countAsException = true;
-                    if (cause instanceof DLException) {
-                        final DLException dle = (DLException) cause;
-                        switch (dle.getCode()) {
-                        case FOUND:
-                            assert(cause instanceof OwnershipAcquireFailedException);
-                            countAsException = false;
-                            handleExceptionOnStreamOp(op, cause);
-                            break;
-                        case ALREADY_CLOSED:
-                            assert(cause instanceof AlreadyClosedException);
-                            op.fail(cause);
-                            handleAlreadyClosedException((AlreadyClosedException) cause);
-                            break;
-                        // exceptions that mostly from client (e.g. too large record)
-                        case NOT_IMPLEMENTED:
-                        case METADATA_EXCEPTION:
-                        case LOG_EMPTY:
-                        case LOG_NOT_FOUND:
-                        case TRUNCATED_TRANSACTION:
-                        case END_OF_STREAM:
-                        case TRANSACTION_OUT_OF_ORDER:
-                        case INVALID_STREAM_NAME:
-                        case TOO_LARGE_RECORD:
-                        case STREAM_NOT_READY:
-                        case OVER_CAPACITY:
+            handleOpResult(op, op.execute(writer, sequencer, txnLock));
+        } else {
+            if (null != lastException) {
+                op.fail(lastException);
+            } else {
+                op.fail(new StreamUnavailableException("Stream " + name + " is closed."));
+            }
+        }
+    }
+
+    /**
+     * Handle the result of executing <i>op</i>.
+     *
+     * @param op
+     *          stream operation executed.
+     * @param result
+     *          future representing the execution of the operation.
+     */
+    private void handleOpResult(final StreamOp op, Future<Void> result) {
+        handleOpResult(op, result, null, 0);
+    }
+
+    /**
+     * Handle the result of executing <i>op</i>.
+     *
+     * @param op
+     *          stream operation executed.
+     * @param result
+     *          future representing the execution of the operation.
+     * @param mergedResults
+     *          results of the bulk write that the operation is merged into, null if the operation isn't merged.
+     * @param mergedIndex
+     *          index of the first record of the operation in the merged bulk write.
+     */
+    private void handleOpResult(final StreamOp op,
+                                Future<Void> result,
+                                @Nullable final Future<List<Future<DLSN>>> mergedResults,
+                                final int mergedIndex) {
+        result.addEventListener(new FutureEventListener<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                // nop
+            }
+            @Override
+            public void onFailure(Throwable cause) {
+                boolean countAsException = true;
+                if (cause instanceof DLException) {
+                    final DLException dle = (DLException) cause;
+                    switch (dle.getCode()) {
+                    case FOUND:
+                        assert(cause instanceof OwnershipAcquireFailedException);
+                        countAsException = false;
+                        handleExceptionOnStreamOp(op, cause);
+                        break;
+                    case ALREADY_CLOSED:
+                        assert(cause instanceof AlreadyClosedException);
+                        op.fail(cause);
+                        handleAlreadyClosedException((AlreadyClosedException) cause);
+                        break;
+                    // exceptions that mostly from client (e.g. too large record)
+                    case NOT_IMPLEMENTED:
+                    case METADATA_EXCEPTION:
+                    case LOG_EMPTY:
+                    case LOG_NOT_FOUND:
+                    case TRUNCATED_TRANSACTION:
+                    case END_OF_STREAM:
+                    case TRANSACTION_OUT_OF_ORDER:
+                    case INVALID_STREAM_NAME:
+                    case TOO_LARGE_RECORD:
+                    case STREAM_NOT_READY:
+                    case OVER_CAPACITY:
+                        op.fail(cause);
+                        break;
+                    case WRITE_CANCELLED_EXCEPTION:
+                        if (isCancelledByMergedRecords(mergedResults, mergedIndex)) {
+                            // the write is cancelled by the failure of a preceding record merged into
+                            // the same bulk write, which is handled by the operation of that record
                             op.fail(cause);
-                            break;
-                        // the DL writer hits exception, simple set the stream to error status
-                        // and fail the request
-                        default:
+                        } else {
                             handleExceptionOnStreamOp(op, cause);
-                            break;
                         }
-                    } else {
+                        break;
+                    // the DL writer hits exception, simple set the stream to error status
+                    // and fail the request
+                    default:
                         handleExceptionOnStreamOp(op, cause);
+                        break;
                     }
-                    if (countAsException) {
-                        countException(cause, streamExceptionStatLogger);
-                    }
+                } else {
+                    handleExceptionOnStreamOp(op, cause);
                 }
-            });
-        } else {
-            if (null != lastException) {
-                op.fail(lastException);
+                if (countAsException) {
+                    countException(cause, streamExceptionStatLogger);
+                }
+            }
+        });
+    }
+
+    //
+    // Merge write operations
+    //
+
+    /**
+     * Queue the <i>op</i> to be executed in submission order on the stream's scheduler.
+     *
+     * @param op
+     *          stream operation to execute.
+     */
+    private void enqueueOp(StreamOp op) {
+        submittedOps.add(op);
+        scheduleSubmittedOpsDrain();
+    }
+
+    private void scheduleSubmittedOpsDrain() {
+        if (submittedOpsDrainScheduled.compareAndSet(false, true)) {
+            scheduler.submit(name, drainSubmittedOpsTask);
+        }
+    }
+
+    /**
+     * Drain the submitted ops in order. Consecutive write ops are merged into bulk writes
+     * bounded by the configured max number of ops and max number of bytes, other ops are
+     * executed one by one. At most {@link #MAX_OPS_PER_DRAIN} ops are drained in a run,
+     * the remaining ops are drained by the next run.
+     */
+    private void drainSubmittedOps() {
+        // clear the flag before polling, so the ops queued while draining schedule another drain
+        submittedOpsDrainScheduled.set(false);
+        if (StreamStatus.isUnavailable(status)) {
+            // the stream is closed while the ops were queued, fail them rather than writing to a closed writer
+            failSubmittedOps(new StreamUnavailableException("Stream " + name + " is closed."));
+            return;
+        }
+        List<MergeableWriteOp> writeOps = new ArrayList<MergeableWriteOp>();
+        long numBytes = 0L;
+        int numOps = 0;
+        StreamOp op;
+        while (numOps < MAX_OPS_PER_DRAIN && null != (op = submittedOps.poll())) {
+            ++numOps;
+            if (op instanceof MergeableWriteOp) {
+                MergeableWriteOp writeOp = (MergeableWriteOp) op;
+                if (!writeOps.isEmpty() &&
+                        (writeOps.size() >= opMergeMaxOps || numBytes + writeOp.getPayloadSize() > opMergeMaxBytes)) {
+                    executeMergedOps(writeOps, numBytes);
+                    writeOps = new ArrayList<MergeableWriteOp>();
+                    numBytes = 0L;
+                }
+                writeOps.add(writeOp);
+                numBytes += writeOp.getPayloadSize();
             } else {
-                op.fail(new StreamUnavailableException("Stream " + name + " is closed."));
+                if (!writeOps.isEmpty()) {
+                    executeMergedOps(writeOps, numBytes);
+                    writeOps = new ArrayList<MergeableWriteOp>();
+                    numBytes = 0L;
+                }
+                executeOp(op, true);
+            }
+        }
+        if (!writeOps.isEmpty()) {
+            executeMergedOps(writeOps, numBytes);
+        }
+        // yield to the other streams sharing the scheduler thread if there are more ops to drain
+        if (!submittedOps.isEmpty()) {
+            scheduleSubmittedOpsDrain();
+        }
+    }
+
+    private void failSubmittedOps(Throwable cause) {
+        StreamOp op;
+        while (null != (op = submittedOps.poll())) {
+            op.fail(cause);
+        }
+    }
+
+    /**
+     * Execute the write <i>ops</i> as a single bulk write.
+     *
+     * <p>The records of each op are validated before they are merged, so an invalid record
+     * only fails its own op rather than cancelling the records of the ops merged after it.
+     * The ops cancelled by a record failed by the writer are failed without failing the stream,
+     * the failure is handled by the op of that record.
+     *
+     * @param ops
+     *          write operations to execute, in submission order.
+     * @param numBytes
+     *          total payload size of the write operations.
+     */
+    private void executeMergedOps(List<MergeableWriteOp> ops, long numBytes) {
+        final AsyncLogWriter writer;
+        synchronized (this) {
+            writer = this.writer;
+        }
+        if (ops.size() == 1 || null == writer || !name.equals(writer.getStreamName())) {
+            // nothing to merge, or let the ops fail individually
+            for (MergeableWriteOp op : ops) {
+                executeOp(op, true);
+            }
+            return;
+        }
+        List<MergeableWriteOp> mergedOps = new ArrayList<MergeableWriteOp>(ops.size());
+        List<Integer> numRecords = new ArrayList<Integer>(ops.size());
+        List<MergeableWriteOp> rejectedOps = new ArrayList<MergeableWriteOp>();
+        List<DLException> rejectedCauses = new ArrayList<DLException>();
+        List<LogRecord> records = new ArrayList<LogRecord>();
+        Future<List<Future<DLSN>>> writeResults = null;
+        synchronized (txnLock) {
+            for (MergeableWriteOp op : ops) {
+                List<LogRecord> opRecords = op.toLogRecords(sequencer);
+                DLException invalidRecordException = validateRecords(opRecords);
+                if (null != invalidRecordException) {
+                    rejectedOps.add(op);
+                    rejectedCauses.add(invalidRecordException);
+                    numBytes -= op.getPayloadSize();
+                    continue;
+                }
+                mergedOps.add(op);
+                numRecords.add(opRecords.size());
+                records.addAll(opRecords);
+            }
+            if (!records.isEmpty()) {
+                writeResults = writer.writeBulk(records);
+            }
+        }
+        for (int i = 0; i < rejectedOps.size(); i++) {
+            handleOpResult(rejectedOps.get(i), Future.<Void>exception(rejectedCauses.get(i)));
+        }
+        if (null == writeResults) {
+            return;
+        }
+        mergedWritesCounter.inc();
+        mergedOpsCounter.add(mergedOps.size());
+        mergedOpsPerWriteStat.registerSuccessfulEvent(mergedOps.size());
+        mergedBytesPerWriteStat.registerSuccessfulEvent(numBytes);
+        final Future<List<Future<DLSN>>> mergedResults = writeResults;
+        int startIdx = 0;
+        for (int i = 0; i < mergedOps.size(); i++) {
+            final int fromIdx = startIdx;
+            final int toIdx = startIdx + numRecords.get(i);
+            Future<List<Future<DLSN>>> opResults =
+                mergedResults.map(new AbstractFunction1<List<Future<DLSN>>, List<Future<DLSN>>>() {
+                    @Override
+                    public List<Future<DLSN>> apply(List<Future<DLSN>> results) {
+                        return results.subList(fromIdx, toIdx);
+                    }
+                });
+            handleOpResult(mergedOps.get(i), mergedOps.get(i).executeMerged(opResults), mergedResults, fromIdx);
+            startIdx = toIdx;
+        }
+    }
+
+    /**
+     * Validate the <i>records</i> of an op before merging them with the records of other ops,
+     * using the same validation as the writer applies to each record.
+     *
+     * @param records
+     *          records of an op.
+     * @return the exception the writer would fail the op with, or null if the records are valid.
+     */
+    private static DLException validateRecords(List<LogRecord> records) {
+        try {
+            for (LogRecord record : records) {
+                record.validateSize();
+                DLUtils.validateTransactionId(record.getTransactionId());
             }
+        } catch (DLException dle) {
+            return dle;
         }
+        return null;
+    }
+
+    /**
+     * Whether the records of a merged op are cancelled because a preceding record in the same
+     * bulk write failed. The writer cancels the records after a failed record only after the
+     * failed record is completed, so the failure is visible once the cancelled records are completed.
+     *
+     * @param mergedResults
+     *          results of the bulk write that the op is merged into, null if the op isn't merged.
+     * @param mergedIndex
+     *          index of the first record of the op in the bulk write.
+     * @return true if a preceding record failed with an exception other than cancellation.
+     */
+    private static boolean isCancelledByMergedRecords(@Nullable Future<List<Future<DLSN>>> mergedResults,
+                                                      int mergedIndex) {
+        if (null == mergedResults || 0 == mergedIndex) {
+            return false;
+        }
+        Option<Try<List<Future<DLSN>>>> results = mergedResults.poll();
+        if (!results.isDefined() || results.get().isThrow()) {
+            return false;
+        }
+        List<Future<DLSN>> recordResults = results.get().get();
+        for (int i = 0; i < mergedIndex; i++) {
+            Option<Try<DLSN>> recordResult = recordResults.get(i).poll();
+            if (recordResult.isDefined() && recordResult.get().isThrow()
+                    && !(recordResult.get().throwable() instanceof WriteCancelledException)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -551,7 +851,25 @@ public class StreamImpl implements Stream {
     Future<Boolean> acquireStream() {
         final Stopwatch stopwatch = Stopwatch.createStarted();
         final Promise<Boolean> acquirePromise = new Promise<Boolean>();
-        manager.openAsyncLogWriter().addEventListener(FutureUtils.OrderedFutureEventListener.of(new FutureEventListener<AsyncLogWriter>() {
+        if (null == acquireSemaphore) {
+            openWriter(stopwatch, acquirePromise);
+        } else {
+            // hold the permit until the writer is opened, which is when the log is recovered
+            acquireSemaphore.acquireAndRun(new AbstractFunction0<Future<AsyncLogWriter>>() {
+                @Override
+                public Future<AsyncLogWriter> apply() {
+                    streamAcquirePendingStat.registerSuccessfulEvent(stopwatch.elapsed(TimeUnit.MICROSECONDS));
+                    return openWriter(stopwatch, acquirePromise);
+                }
+            });
+        }
+        return acquirePromise;
+    }
+
+    private Future<AsyncLogWriter> openWriter(final Stopwatch stopwatch,
+                                              final Promise<Boolean> acquirePromise) {
+        Future<AsyncLogWriter> openFuture = manager.openAsyncLogWriter();
+        openFuture.addEventListener(FutureUtils.OrderedFutureEventListener.of(new FutureEventListener<AsyncLogWriter>() {
 
             @Override
             public void onSuccess(AsyncLogWriter w) {
@@ -564,7 +882,7 @@ public class StreamImpl implements Stream {
             }
 
         }, scheduler, getStreamName()));
-        return acquirePromise;
+        return openFuture;
     }
 
     private void onAcquireStreamSuccess(AsyncLogWriter w,
@@ -653,7 +971,12 @@ public class StreamImpl implements Stream {
             streamAcquireStat.registerFailedEvent(stopwatch.elapsed(TimeUnit.MICROSECONDS));
         }
         for (StreamOp op : oldPendingOps) {
-            executeOp(op, success);
+            if (success && null != submittedOps) {
+                // the writes buffered during acquisition are the ones benefit most from merging
+                enqueueOp(op);
+            } else {
+                executeOp(op, success);
+            }
             pendingOpsCounter.dec();
         }
         Abortables.asyncAbort(oldWriter, true);
@@ -870,6 +1193,9 @@ public class StreamImpl implements Stream {
             op.fail(closingException);
             pendingOpsCounter.dec();
         }
+        if (null != submittedOps) {
+            failSubmittedOps(closingException);
+        }
         limiter.close();
         logger.info("Closed stream {}.", name);
     }
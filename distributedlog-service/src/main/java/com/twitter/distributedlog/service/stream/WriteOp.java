@@ -17,6 +17,7 @@
  */
 package com.twitter.distributedlog.service.stream;
 
+import com.google.common.collect.Lists;
 import com.twitter.distributedlog.AsyncLogWriter;
 import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.LogRecord;
@@ -36,6 +37,7 @@ import com.twitter.util.FutureEventListener;
 import com.twitter.util.Future;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.bookkeeper.feature.Feature;
@@ -47,7 +49,7 @@ import org.slf4j.LoggerFactory;
 
 import scala.runtime.AbstractFunction1;
 
-public class WriteOp extends AbstractWriteOp implements WriteOpWithPayload {
+public class WriteOp extends AbstractWriteOp implements MergeableWriteOp {
     static final Logger logger = LoggerFactory.getLogger(WriteOp.class);
 
     private final byte[] payload;
@@ -141,16 +143,39 @@ public class WriteOp extends AbstractWriteOp implements WriteOpWithPayload {
             return Future.exception(new IllegalStateException("The stream mapping is incorrect, fail the request"));
         }
 
-        long txnId;
         Future<DLSN> writeResult;
         synchronized (txnLock) {
-            txnId = sequencer.nextId();
-            LogRecord record = new LogRecord(txnId, payload);
-            if (isRecordSet) {
-                record.setRecordSet();
-            }
-            writeResult = writer.write(record);
+            writeResult = writer.write(newLogRecord(sequencer));
         }
+        return toResponse(writeResult);
+    }
+
+    @Override
+    public List<LogRecord> toLogRecords(Sequencer sequencer) {
+        return Lists.newArrayList(newLogRecord(sequencer));
+    }
+
+    @Override
+    public Future<Void> executeMerged(Future<List<Future<DLSN>>> writeResults) {
+        stopwatch.reset().start();
+        return complete(toResponse(writeResults.flatMap(
+            new AbstractFunction1<List<Future<DLSN>>, Future<DLSN>>() {
+                @Override
+                public Future<DLSN> apply(List<Future<DLSN>> results) {
+                    return results.get(0);
+                }
+            })));
+    }
+
+    private LogRecord newLogRecord(Sequencer sequencer) {
+        LogRecord record = new LogRecord(sequencer.nextId(), payload);
+        if (isRecordSet) {
+            record.setRecordSet();
+        }
+        return record;
+    }
+
+    private Future<WriteResponse> toResponse(Future<DLSN> writeResult) {
         return writeResult.map(new AbstractFunction1<DLSN, WriteResponse>() {
             @Override
             public WriteResponse apply(DLSN value) {
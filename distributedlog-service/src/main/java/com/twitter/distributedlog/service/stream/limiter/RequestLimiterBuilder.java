@@ -25,6 +25,7 @@ import com.twitter.distributedlog.limiter.ComposableRequestLimiter.CostFunction;
 import com.twitter.distributedlog.limiter.GuavaRateLimiter;
 import com.twitter.distributedlog.limiter.RateLimiter;
 import com.twitter.distributedlog.limiter.RequestLimiter;
+import com.twitter.distributedlog.limiter.TokenBucketRateLimiter;
 import com.twitter.distributedlog.service.stream.StreamOp;
 import com.twitter.distributedlog.service.stream.WriteOpWithPayload;
 
@@ -33,7 +34,8 @@ import org.apache.bookkeeper.stats.StatsLogger;
 
 public class RequestLimiterBuilder {
     private OverlimitFunction<StreamOp> overlimitFunction = NOP_OVERLIMIT_FUNCTION;
-    private RateLimiter limiter;
+    private Integer limit;
+    private boolean tokenBucketEnabled = false;
     private CostFunction<StreamOp> costFunction;
     private StatsLogger statsLogger = NullStatsLogger.INSTANCE;
 
@@ -68,7 +70,12 @@ public class RequestLimiterBuilder {
     };
 
     public RequestLimiterBuilder limit(int limit) {
-        this.limiter = GuavaRateLimiter.of(limit);
+        this.limit = limit;
+        return this;
+    }
+
+    public RequestLimiterBuilder tokenBucketEnabled(boolean enabled) {
+        this.tokenBucketEnabled = enabled;
         return this;
     }
 
@@ -96,9 +103,10 @@ public class RequestLimiterBuilder {
     }
 
     public RequestLimiter<StreamOp> build() {
-        Preconditions.checkNotNull(limiter);
+        Preconditions.checkNotNull(limit);
         Preconditions.checkNotNull(overlimitFunction);
         Preconditions.checkNotNull(costFunction);
+        RateLimiter limiter = tokenBucketEnabled ? TokenBucketRateLimiter.of(limit) : GuavaRateLimiter.of(limit);
         return new ComposableRequestLimiter(limiter, overlimitFunction, costFunction, statsLogger);
     }
 }
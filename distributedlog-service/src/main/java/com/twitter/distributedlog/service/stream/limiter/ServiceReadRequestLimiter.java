@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.service.stream.limiter;
+
+import com.twitter.distributedlog.config.DynamicDistributedLogConfiguration;
+import com.twitter.distributedlog.exceptions.OverCapacityException;
+import com.twitter.distributedlog.limiter.ChainedRequestLimiter;
+import com.twitter.distributedlog.limiter.ComposableRequestLimiter;
+import com.twitter.distributedlog.limiter.ComposableRequestLimiter.CostFunction;
+import com.twitter.distributedlog.limiter.ComposableRequestLimiter.OverlimitFunction;
+import com.twitter.distributedlog.limiter.GuavaRateLimiter;
+import com.twitter.distributedlog.limiter.RateLimiter;
+import com.twitter.distributedlog.limiter.RequestLimiter;
+import com.twitter.distributedlog.limiter.TokenBucketRateLimiter;
+import org.apache.bookkeeper.feature.Feature;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * Request limiter on the read requests of the service instance (global read request limiter).
+ * The requests are identified by their stream names.
+ */
+public class ServiceReadRequestLimiter extends DynamicRequestLimiter<String> {
+
+    private static final CostFunction<String> READ_RPS_COST_FUNCTION = new CostFunction<String>() {
+        @Override
+        public int apply(String stream) {
+            return 1;
+        }
+    };
+
+    private static final OverlimitFunction<String> NOP_OVERLIMIT_FUNCTION = new OverlimitFunction<String>() {
+        @Override
+        public void apply(String stream) throws OverCapacityException {
+            return;
+        }
+    };
+
+    private final StatsLogger limiterStatLogger;
+
+    public ServiceReadRequestLimiter(DynamicDistributedLogConfiguration dynConf,
+                                     StatsLogger statsLogger,
+                                     Feature disabledFeature) {
+        super(dynConf, statsLogger, disabledFeature);
+        this.limiterStatLogger = statsLogger;
+        this.limiter = build();
+    }
+
+    private static RateLimiter newRateLimiter(int limit, boolean tokenBucketEnabled) {
+        return tokenBucketEnabled ? TokenBucketRateLimiter.of(limit) : GuavaRateLimiter.of(limit);
+    }
+
+    @Override
+    public RequestLimiter<String> build() {
+        int rpsSoftReadLimit = dynConf.getRpsSoftReadServiceLimit();
+        int rpsHardReadLimit = dynConf.getRpsHardReadServiceLimit();
+        boolean tokenBucketEnabled = dynConf.isTokenBucketRateLimiterEnabled();
+
+        RequestLimiter<String> rpsHardLimiter = new ComposableRequestLimiter<String>(
+                newRateLimiter(rpsHardReadLimit, tokenBucketEnabled),
+                new OverlimitFunction<String>() {
+                    @Override
+                    public void apply(String stream) throws OverCapacityException {
+                        throw new OverCapacityException(
+                                "Being rate limited: read RPS limit exceeded for the service instance");
+                    }
+                },
+                READ_RPS_COST_FUNCTION,
+                limiterStatLogger.scope("rps_hard_limit"));
+        RequestLimiter<String> rpsSoftLimiter = new ComposableRequestLimiter<String>(
+                newRateLimiter(rpsSoftReadLimit, tokenBucketEnabled),
+                NOP_OVERLIMIT_FUNCTION,
+                READ_RPS_COST_FUNCTION,
+                limiterStatLogger.scope("rps_soft_limit"));
+
+        ChainedRequestLimiter.Builder<String> builder = new ChainedRequestLimiter.Builder<String>();
+        builder.addLimiter(rpsHardLimiter);
+        builder.addLimiter(rpsSoftLimiter);
+        builder.statsLogger(limiterStatLogger);
+        return builder.build();
+    }
+}
@@ -53,6 +53,7 @@ public class ServiceRequestLimiter extends DynamicRequestLimiter<StreamOp> {
 
     @Override
     public RequestLimiter<StreamOp> build() {
+        boolean tokenBucketEnabled = dynConf.isTokenBucketRateLimiterEnabled();
         int rpsStreamAcquireLimit = dynConf.getRpsStreamAcquireServiceLimit();
         int rpsSoftServiceLimit = dynConf.getRpsSoftServiceLimit();
         int rpsHardServiceLimit = dynConf.getRpsHardServiceLimit();
@@ -63,6 +64,7 @@ public class ServiceRequestLimiter extends DynamicRequestLimiter<StreamOp> {
         RequestLimiterBuilder rpsHardLimiterBuilder = RequestLimiterBuilder.newRpsLimiterBuilder()
             .statsLogger(limiterStatLogger.scope("rps_hard_limit"))
             .limit(rpsHardServiceLimit)
+            .tokenBucketEnabled(tokenBucketEnabled)
             .overlimit(new OverlimitFunction<StreamOp>() {
                 @Override
                 public void apply(StreamOp request) throws OverCapacityException {
@@ -77,6 +79,7 @@ public class ServiceRequestLimiter extends DynamicRequestLimiter<StreamOp> {
         RequestLimiterBuilder bpsHardLimiterBuilder = RequestLimiterBuilder.newBpsLimiterBuilder()
             .statsLogger(limiterStatLogger.scope("bps_hard_limit"))
             .limit(bpsHardServiceLimit)
+            .tokenBucketEnabled(tokenBucketEnabled)
             .overlimit(new OverlimitFunction<StreamOp>() {
                 @Override
                 public void apply(StreamOp request) throws OverCapacityException {
@@ -44,11 +44,13 @@ public class StreamRequestLimiter extends DynamicRequestLimiter<StreamOp> {
 
     @Override
     public RequestLimiter<StreamOp> build() {
+        boolean tokenBucketEnabled = dynConf.isTokenBucketRateLimiterEnabled();
 
         // RPS hard, soft limits
         RequestLimiterBuilder rpsHardLimiterBuilder = RequestLimiterBuilder.newRpsLimiterBuilder()
             .statsLogger(limiterStatLogger.scope("rps_hard_limit"))
             .limit(dynConf.getRpsHardWriteLimit())
+            .tokenBucketEnabled(tokenBucketEnabled)
             .overlimit(new OverlimitFunction<StreamOp>() {
                 @Override
                 public void apply(StreamOp op) throws OverCapacityException {
@@ -63,6 +65,7 @@ public class StreamRequestLimiter extends DynamicRequestLimiter<StreamOp> {
         RequestLimiterBuilder bpsHardLimiterBuilder = RequestLimiterBuilder.newBpsLimiterBuilder()
             .statsLogger(limiterStatLogger.scope("bps_hard_limit"))
             .limit(dynConf.getBpsHardWriteLimit())
+            .tokenBucketEnabled(tokenBucketEnabled)
             .overlimit(new OverlimitFunction<StreamOp>() {
                 @Override
                 public void apply(StreamOp op) throws OverCapacityException {
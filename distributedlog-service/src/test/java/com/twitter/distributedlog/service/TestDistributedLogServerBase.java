@@ -64,6 +64,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static com.twitter.distributedlog.LogRecord.MAX_LOGRECORD_SIZE;
@@ -687,6 +688,42 @@ public abstract class TestDistributedLogServerBase extends DistributedLogServerT
         checkStream(0, 0, 0, name, dlServer.getAddress(), false, false);
     }
 
+    @Test(timeout = 60000)
+    public void testReadStream() throws Exception {
+        String name = "dlserver-read-stream";
+
+        dlClient.routingService.addHost(name, dlServer.getAddress());
+
+        int numRecords = 5;
+        for (long i = 1; i <= numRecords; i++) {
+            Await.result(dlClient.dlClient.write(name, ByteBuffer.wrap(("" + i).getBytes(UTF_8))));
+        }
+
+        // the last record might not be visible to readers until the next write,
+        // so only wait for the first (numRecords - 1) records.
+        List<LogRecordWithDLSN> records = new ArrayList<LogRecordWithDLSN>();
+        DLSN fromDLSN = DLSN.InitialDLSN;
+        while (records.size() < numRecords - 1) {
+            List<LogRecordWithDLSN> readRecords = Await.result(
+                    dlClient.dlClient.readStream(name, fromDLSN, 10, 1, TimeUnit.SECONDS));
+            for (LogRecordWithDLSN record : readRecords) {
+                records.add(record);
+                fromDLSN = record.getDlsn().getNextDLSN();
+            }
+        }
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("" + (i + 1), new String(records.get(i).getPayload(), UTF_8));
+        }
+
+        // a read at the tail waits until the next record becomes visible
+        Future<List<LogRecordWithDLSN>> tailRead =
+                dlClient.dlClient.readStream(name, fromDLSN, 10, 10, TimeUnit.SECONDS);
+        Await.result(dlClient.dlClient.write(name, ByteBuffer.wrap(("" + (numRecords + 1)).getBytes(UTF_8))));
+        List<LogRecordWithDLSN> tailRecords = Await.result(tailRead);
+        assertFalse("Tail read should return the new records", tailRecords.isEmpty());
+        assertEquals("" + (records.size() + 1), new String(tailRecords.get(0).getPayload(), UTF_8));
+    }
+
     protected void checkStream(int expectedNumProxiesInClient, int expectedClientCacheSize, int expectedServerCacheSize,
                              String name, SocketAddress owner, boolean existedInServer, boolean existedInClient) {
         Map<SocketAddress, Set<String>> distribution = dlClient.dlClient.getStreamOwnershipDistribution();
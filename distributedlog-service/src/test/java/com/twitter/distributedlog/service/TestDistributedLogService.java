@@ -20,6 +20,7 @@ package com.twitter.distributedlog.service;
 import com.google.common.collect.Lists;
 import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.DistributedLogConfiguration;
+import com.twitter.distributedlog.LogRecord;
 import com.twitter.distributedlog.util.ProtocolUtils;
 import com.twitter.distributedlog.TestDistributedLogBase;
 import com.twitter.distributedlog.acl.DefaultAccessControlManager;
@@ -29,6 +30,7 @@ import com.twitter.distributedlog.exceptions.StreamUnavailableException;
 import com.twitter.distributedlog.service.config.NullStreamConfigProvider;
 import com.twitter.distributedlog.service.config.ServerConfiguration;
 import com.twitter.distributedlog.service.placement.EqualLoadAppraiser;
+import com.twitter.distributedlog.service.stream.HeartbeatOp;
 import com.twitter.distributedlog.service.stream.WriteOp;
 import com.twitter.distributedlog.service.stream.StreamImpl.StreamStatus;
 import com.twitter.distributedlog.service.stream.StreamImpl;
@@ -38,6 +40,9 @@ import com.twitter.distributedlog.service.streamset.DelimiterStreamPartitionConv
 import com.twitter.distributedlog.service.streamset.IdentityStreamPartitionConverter;
 import com.twitter.distributedlog.service.streamset.StreamPartitionConverter;
 import com.twitter.distributedlog.thrift.service.HeartbeatOptions;
+import com.twitter.distributedlog.thrift.service.ReadContext;
+import com.twitter.distributedlog.thrift.service.ReadRecord;
+import com.twitter.distributedlog.thrift.service.ReadResponse;
 import com.twitter.distributedlog.thrift.service.StatusCode;
 import com.twitter.distributedlog.thrift.service.WriteContext;
 import com.twitter.distributedlog.thrift.service.WriteResponse;
@@ -820,4 +825,299 @@ public class TestDistributedLogService extends TestDistributedLogBase {
                 response.getHeader().getLocation());
     }
 
+    private DistributedLogServiceImpl createOpMergeService(int maxOps, long maxBytes,
+                                                           DistributedLogConfiguration confLocal)
+            throws Exception {
+        ServerConfiguration serverConfLocal = newLocalServerConf();
+        serverConfLocal.setStreamOpMergeEnabled(true)
+                .setStreamOpMergeMaxOps(maxOps)
+                .setStreamOpMergeMaxBytes(maxBytes);
+        // transmit each bulk write as one entry, so the merged ops share the entry id
+        confLocal.setOutputBufferSize(0)
+                .setImmediateFlushEnabled(true)
+                .setPeriodicFlushFrequencyMilliSeconds(0);
+        return createService(serverConfLocal, confLocal);
+    }
+
+    private StreamImpl createAcquiredStream(DistributedLogServiceImpl service,
+                                            String streamName) throws Exception {
+        StreamImpl stream = createUnstartedStream(service, streamName);
+        stream.start();
+        WriteOp op = createWriteOp(service, streamName, 0L);
+        stream.submit(op);
+        assertEquals("Op should succeed",
+                StatusCode.SUCCESS, Await.result(op.result()).getHeader().getCode());
+        return stream;
+    }
+
+    /**
+     * Block the scheduler thread of the stream, so the ops submitted are queued
+     * until the returned latch is counted down.
+     */
+    private CountDownLatch blockStreamScheduler(DistributedLogServiceImpl service,
+                                                String streamName) {
+        final CountDownLatch blockLatch = new CountDownLatch(1);
+        service.getScheduler().submit(streamName, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blockLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return blockLatch;
+    }
+
+    private List<WriteOp> submitWriteOps(DistributedLogServiceImpl service,
+                                         StreamImpl stream,
+                                         String streamName,
+                                         int numOps) {
+        List<WriteOp> ops = new ArrayList<WriteOp>(numOps);
+        for (int i = 1; i <= numOps; i++) {
+            WriteOp op = createWriteOp(service, streamName, i);
+            stream.submit(op);
+            ops.add(op);
+        }
+        return ops;
+    }
+
+    private static long getEntryId(WriteOp op) throws Exception {
+        WriteResponse response = Await.result(op.result());
+        assertEquals("Op should succeed",
+                StatusCode.SUCCESS, response.getHeader().getCode());
+        return DLSN.deserialize(response.getDlsn()).getEntryId();
+    }
+
+    private static StatusCode getStatusCode(WriteOp op) throws Exception {
+        return Await.result(op.result()).getHeader().getCode();
+    }
+
+    @Test(timeout = 60000)
+    public void testMergeQueuedWriteOps() throws Exception {
+        String streamName = testName.getMethodName();
+        DistributedLogServiceImpl localService = createOpMergeService(64, 1024 * 1024, newLocalConf());
+        StreamImpl stream = createAcquiredStream(localService, streamName);
+
+        CountDownLatch blockLatch = blockStreamScheduler(localService, streamName);
+        List<WriteOp> ops = submitWriteOps(localService, stream, streamName, 5);
+        blockLatch.countDown();
+
+        long entryId = getEntryId(ops.get(0));
+        for (WriteOp op : ops) {
+            assertEquals("Queued ops should be merged into a single entry", entryId, getEntryId(op));
+        }
+        assertEquals(StreamStatus.INITIALIZED, stream.getStatus());
+
+        localService.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testMergeStopsAtNonMergeableOps() throws Exception {
+        String streamName = testName.getMethodName();
+        DistributedLogServiceImpl localService = createOpMergeService(64, 1024 * 1024, newLocalConf());
+        StreamImpl stream = createAcquiredStream(localService, streamName);
+
+        CountDownLatch blockLatch = blockStreamScheduler(localService, streamName);
+        List<WriteOp> opsBefore = submitWriteOps(localService, stream, streamName, 2);
+        HeartbeatOp heartbeatOp = new HeartbeatOp(streamName, NullStatsLogger.INSTANCE, NullStatsLogger.INSTANCE,
+                serverConf.getDlsnVersion(), null, new SettableFeature("", 0), new DefaultAccessControlManager());
+        stream.submit(heartbeatOp);
+        List<WriteOp> opsAfter = submitWriteOps(localService, stream, streamName, 2);
+        blockLatch.countDown();
+
+        assertEquals("Heartbeat should succeed",
+                StatusCode.SUCCESS, Await.result(heartbeatOp.result()).getHeader().getCode());
+        long entryIdBefore = getEntryId(opsBefore.get(0));
+        assertEquals(entryIdBefore, getEntryId(opsBefore.get(1)));
+        long entryIdAfter = getEntryId(opsAfter.get(0));
+        assertEquals(entryIdAfter, getEntryId(opsAfter.get(1)));
+        assertTrue("Ops shouldn't be merged across a heartbeat",
+                entryIdAfter > entryIdBefore);
+
+        localService.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testMergeBoundedByMaxOps() throws Exception {
+        String streamName = testName.getMethodName();
+        DistributedLogServiceImpl localService = createOpMergeService(2, 1024 * 1024, newLocalConf());
+        StreamImpl stream = createAcquiredStream(localService, streamName);
+
+        CountDownLatch blockLatch = blockStreamScheduler(localService, streamName);
+        List<WriteOp> ops = submitWriteOps(localService, stream, streamName, 5);
+        blockLatch.countDown();
+
+        assertMergedInPairs(ops);
+
+        localService.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testMergeBoundedByMaxBytes() throws Exception {
+        String streamName = testName.getMethodName();
+        // each payload 'record-<i>' is 8 bytes, so at most two ops fit into a merged write
+        DistributedLogServiceImpl localService = createOpMergeService(64, 16, newLocalConf());
+        StreamImpl stream = createAcquiredStream(localService, streamName);
+
+        CountDownLatch blockLatch = blockStreamScheduler(localService, streamName);
+        List<WriteOp> ops = submitWriteOps(localService, stream, streamName, 5);
+        blockLatch.countDown();
+
+        assertMergedInPairs(ops);
+
+        localService.shutdown();
+    }
+
+    private void assertMergedInPairs(List<WriteOp> ops) throws Exception {
+        long prevEntryId = -1L;
+        for (int i = 0; i < ops.size(); i += 2) {
+            long entryId = getEntryId(ops.get(i));
+            assertTrue("Op " + i + " should start a new merged write", entryId > prevEntryId);
+            if (i + 1 < ops.size()) {
+                assertEquals("Op " + (i + 1) + " should be merged with op " + i,
+                        entryId, getEntryId(ops.get(i + 1)));
+            }
+            prevEntryId = entryId;
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testCloseStreamWithQueuedOps() throws Exception {
+        String streamName = testName.getMethodName();
+        DistributedLogServiceImpl localService = createOpMergeService(64, 1024 * 1024, newLocalConf());
+        StreamImpl stream = createAcquiredStream(localService, streamName);
+
+        CountDownLatch blockLatch = blockStreamScheduler(localService, streamName);
+        List<WriteOp> ops = submitWriteOps(localService, stream, streamName, 3);
+        Future<Void> closeFuture = stream.requestClose("close with queued ops");
+        blockLatch.countDown();
+
+        Await.result(closeFuture);
+        for (WriteOp op : ops) {
+            assertEquals("Queued ops should be failed when the stream is closed",
+                    StatusCode.STREAM_UNAVAILABLE, getStatusCode(op));
+        }
+        assertEquals(StreamStatus.CLOSED, stream.getStatus());
+
+        localService.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testMergedWriteOpsRejectTooLargeRecord() throws Exception {
+        String streamName = testName.getMethodName();
+        DistributedLogServiceImpl localService = createOpMergeService(64, 2 * 1024 * 1024, newLocalConf());
+        StreamImpl stream = createAcquiredStream(localService, streamName);
+
+        CountDownLatch blockLatch = blockStreamScheduler(localService, streamName);
+        WriteOp op1 = createWriteOp(localService, streamName, 1L);
+        WriteOp tooLargeOp = localService.newWriteOp(streamName,
+                ByteBuffer.wrap(new byte[LogRecord.MAX_LOGRECORD_SIZE + 1]), null);
+        WriteOp op3 = createWriteOp(localService, streamName, 3L);
+        stream.submit(op1);
+        stream.submit(tooLargeOp);
+        stream.submit(op3);
+        blockLatch.countDown();
+
+        assertEquals(StatusCode.TOO_LARGE_RECORD, getStatusCode(tooLargeOp));
+        assertEquals("The ops around the too large record should still be merged",
+                getEntryId(op1), getEntryId(op3));
+        assertEquals(StreamStatus.INITIALIZED, stream.getStatus());
+
+        localService.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testMergedWriteOpsCancelledByFailedRecord() throws Exception {
+        String streamName = testName.getMethodName();
+        DistributedLogConfiguration confLocal = newLocalConf();
+        confLocal.setPerWriterOutstandingWriteLimit(2)
+                .setOutstandingWriteLimitDarkmode(false);
+        DistributedLogServiceImpl localService = createOpMergeService(64, 1024 * 1024, confLocal);
+        StreamImpl stream = createAcquiredStream(localService, streamName);
+
+        CountDownLatch blockLatch = blockStreamScheduler(localService, streamName);
+        List<WriteOp> ops = submitWriteOps(localService, stream, streamName, 4);
+        blockLatch.countDown();
+
+        // the third record is over the writer limit, the fourth record is cancelled by it
+        assertEquals(getEntryId(ops.get(0)), getEntryId(ops.get(1)));
+        assertEquals(StatusCode.OVER_CAPACITY, getStatusCode(ops.get(2)));
+        assertEquals(StatusCode.WRITE_CANCELLED_EXCEPTION, getStatusCode(ops.get(3)));
+        assertEquals("The cancelled op shouldn't fail the stream",
+                StreamStatus.INITIALIZED, stream.getStatus());
+
+        WriteOp op = createWriteOp(localService, streamName, 5L);
+        stream.submit(op);
+        assertEquals(StatusCode.SUCCESS, getStatusCode(op));
+
+        localService.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testReadBulk() throws Exception {
+        String streamName = testName.getMethodName();
+        int numRecords = 3;
+        for (int i = 0; i < numRecords; i++) {
+            WriteResponse response = Await.result(service.write(streamName, createRecord(i)));
+            assertEquals("Write should succeed",
+                    StatusCode.SUCCESS, response.getHeader().getCode());
+        }
+
+        // the last record might not be visible to readers until the next write,
+        // so only wait for the first (numRecords - 1) records.
+        List<ReadRecord> records = new ArrayList<ReadRecord>();
+        DLSN fromDLSN = DLSN.InitialDLSN;
+        ReadContext ctx = new ReadContext().setMaxRecords(10).setWaitTimeMs(1000L);
+        while (records.size() < numRecords - 1) {
+            ReadResponse response = Await.result(service.readBulk(streamName, fromDLSN.serialize(), ctx));
+            assertEquals("Read should succeed",
+                    StatusCode.SUCCESS, response.getHeader().getCode());
+            for (ReadRecord record : response.getRecords()) {
+                records.add(record);
+                fromDLSN = DLSN.deserialize(record.getDlsn()).getNextDLSN();
+            }
+        }
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("record-" + i, new String(records.get(i).getPayload(), UTF_8));
+        }
+
+        // read from the middle should be served from the shared reader
+        ReadResponse response = Await.result(
+                service.readNext(streamName, records.get(1).getDlsn(), new ReadContext()));
+        assertEquals(StatusCode.SUCCESS, response.getHeader().getCode());
+        assertEquals(1, response.getRecords().size());
+        assertEquals(records.get(1).getDlsn(), response.getRecords().get(0).getDlsn());
+
+        // read beyond the tail should return empty records after wait time
+        response = Await.result(service.readBulk(streamName, new DLSN(Long.MAX_VALUE - 1, 0L, 0L).serialize(),
+                new ReadContext().setMaxRecords(10).setWaitTimeMs(100L)));
+        assertEquals(StatusCode.SUCCESS, response.getHeader().getCode());
+        assertTrue(response.getRecords().isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void testReadRejectedByReadLimiter() throws Exception {
+        String streamName = testName.getMethodName();
+        DistributedLogConfiguration confLocal = newLocalConf();
+        confLocal.setProperty(DistributedLogConfiguration.BKDL_RPS_HARD_READ_SERVICE_LIMIT, 0);
+        DistributedLogServiceImpl localService = createService(serverConf, confLocal);
+
+        // writes aren't limited by the read limiter
+        WriteResponse writeResponse = Await.result(localService.write(streamName, createRecord(0L)));
+        assertEquals(StatusCode.SUCCESS, writeResponse.getHeader().getCode());
+
+        ReadResponse response = Await.result(
+                localService.readNext(streamName, DLSN.InitialDLSN.serialize(), new ReadContext()));
+        assertEquals("Read should be rejected by the read limiter",
+                StatusCode.OVER_CAPACITY, response.getHeader().getCode());
+        response = Await.result(localService.readBulk(streamName, DLSN.InitialDLSN.serialize(),
+                new ReadContext().setMaxRecords(10)));
+        assertEquals("Read should be rejected by the read limiter",
+                StatusCode.OVER_CAPACITY, response.getHeader().getCode());
+
+        localService.shutdown();
+    }
+
 }
@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.service.reader;
+
+import com.twitter.distributedlog.DLMTestUtil;
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.DistributedLogManager;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.LogWriter;
+import com.twitter.distributedlog.TestDistributedLogBase;
+import com.twitter.distributedlog.util.OrderedScheduler;
+import com.twitter.distributedlog.util.SchedulerUtils;
+import com.twitter.util.Await;
+import com.twitter.util.Future;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Case for {@link SharedStreamReader}.
+ */
+public class TestSharedStreamReader extends TestDistributedLogBase {
+
+    private static final int RECORD_SIZE = 10;
+
+    @Rule
+    public TestName testName = new TestName();
+
+    private OrderedScheduler scheduler;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        scheduler = OrderedScheduler.newBuilder()
+                .name("test-shared-stream-reader")
+                .corePoolSize(1)
+                .build();
+    }
+
+    @After
+    @Override
+    public void teardown() throws Exception {
+        SchedulerUtils.shutdownScheduler(scheduler, 1, TimeUnit.SECONDS);
+        super.teardown();
+    }
+
+    private void writeRecords(String streamName, long startTxId, int numRecords) throws Exception {
+        DistributedLogManager dlm = createNewDLM(conf, streamName);
+        LogWriter writer = dlm.startLogSegmentNonPartitioned();
+        for (long txid = startTxId; txid < startTxId + numRecords; txid++) {
+            writer.write(DLMTestUtil.getLogRecordInstance(txid, RECORD_SIZE));
+        }
+        // closing the writer completes the log segment, so all the records are readable
+        writer.close();
+        dlm.close();
+    }
+
+    private SharedStreamReader createSharedReader(String streamName,
+                                                  DistributedLogManager dlm,
+                                                  long maxCachedBytes,
+                                                  int readAheadBatchSize) {
+        return new SharedStreamReader(
+                streamName,
+                dlm,
+                scheduler,
+                maxCachedBytes,
+                readAheadBatchSize,
+                NullStatsLogger.INSTANCE.getCounter("cache_hits"),
+                NullStatsLogger.INSTANCE.getCounter("cache_misses"),
+                NullStatsLogger.INSTANCE.getCounter("long_polls"));
+    }
+
+    private void waitUntilReadAheadPaused(SharedStreamReader reader) throws Exception {
+        while (!reader.isReadAheadPaused()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTailReadersShareReadAhead() throws Exception {
+        String streamName = testName.getMethodName();
+        int numReaders = 5;
+        writeRecords(streamName, 1L, 3);
+
+        DistributedLogManager dlm = spy(createNewDLM(conf, streamName));
+        SharedStreamReader reader = createSharedReader(streamName, dlm, 1024 * 1024, 10);
+        reader.start(DLSN.InitialDLSN);
+
+        // catch up with the records written so far
+        List<LogRecordWithDLSN> records = new ArrayList<LogRecordWithDLSN>();
+        while (records.size() < 3) {
+            DLSN fromDLSN = records.isEmpty()
+                    ? DLSN.InitialDLSN : records.get(records.size() - 1).getDlsn().getNextDLSN();
+            records.addAll(Await.result(reader.read(fromDLSN, 10, 1000L)));
+        }
+
+        // the tail readers wait for the records written after they issued their reads
+        DLSN tailDLSN = records.get(records.size() - 1).getDlsn().getNextDLSN();
+        List<Future<List<LogRecordWithDLSN>>> tailReads = new ArrayList<Future<List<LogRecordWithDLSN>>>();
+        for (int i = 0; i < numReaders; i++) {
+            tailReads.add(reader.read(tailDLSN, 10, 30000L));
+        }
+        for (Future<List<LogRecordWithDLSN>> tailRead : tailReads) {
+            assertFalse("Tail reads should wait for new records", tailRead.isDefined());
+        }
+        writeRecords(streamName, 4L, 1);
+
+        for (Future<List<LogRecordWithDLSN>> tailRead : tailReads) {
+            List<LogRecordWithDLSN> tailRecords = Await.result(tailRead);
+            assertEquals(1, tailRecords.size());
+            assertEquals(4L, tailRecords.get(0).getTransactionId());
+        }
+        // all the readers are served by the single read-ahead reader of the stream
+        verify(dlm, times(1)).openAsyncLogReader(any(DLSN.class));
+        assertEquals(0, reader.getNumCatchupReaders());
+
+        Await.result(reader.asyncClose());
+    }
+
+    @Test(timeout = 60000)
+    public void testReadAheadPausedByFullWindow() throws Exception {
+        String streamName = testName.getMethodName();
+        long maxCachedBytes = 3 * RECORD_SIZE;
+        int readAheadBatchSize = 2;
+        writeRecords(streamName, 1L, 10);
+
+        DistributedLogManager dlm = createNewDLM(conf, streamName);
+        SharedStreamReader reader = createSharedReader(streamName, dlm, maxCachedBytes, readAheadBatchSize);
+        reader.start(DLSN.InitialDLSN);
+
+        // the read-ahead pauses once the window is full, overshooting by at most one batch
+        waitUntilReadAheadPaused(reader);
+        long cachedBytes = reader.getCachedBytes();
+        assertTrue("Window should be full : " + cachedBytes, cachedBytes >= maxCachedBytes);
+        assertTrue("Window should be bounded : " + cachedBytes,
+                cachedBytes < maxCachedBytes + readAheadBatchSize * RECORD_SIZE);
+
+        // reading from the start of the window doesn't consume any record, so nothing is evicted
+        List<LogRecordWithDLSN> records = Await.result(reader.read(DLSN.InitialDLSN, 10, 0L));
+        assertEquals(1L, records.get(0).getTransactionId());
+        assertEquals(cachedBytes, reader.getCachedBytes());
+        assertTrue(reader.isReadAheadPaused());
+        long lastTxId = records.get(records.size() - 1).getTransactionId();
+
+        // reading from the third record consumes the first two, they are evicted and the read-ahead resumes
+        DLSN thirdDLSN = records.get(2).getDlsn();
+        Await.result(reader.read(thirdDLSN, 10, 0L));
+        waitUntilReadAheadPaused(reader);
+        List<LogRecordWithDLSN> windowRecords = Await.result(reader.read(thirdDLSN, 10, 0L));
+        assertEquals(3L, windowRecords.get(0).getTransactionId());
+        assertTrue("Read-ahead should resume after eviction",
+                windowRecords.get(windowRecords.size() - 1).getTransactionId() > lastTxId);
+        assertTrue(reader.getCachedBytes() < maxCachedBytes + readAheadBatchSize * RECORD_SIZE);
+
+        Await.result(reader.asyncClose());
+    }
+
+    @Test(timeout = 60000)
+    public void testLaggingReaderSplitOffToCatchupReader() throws Exception {
+        String streamName = testName.getMethodName();
+        writeRecords(streamName, 1L, 10);
+
+        DistributedLogManager dlm = spy(createNewDLM(conf, streamName));
+        SharedStreamReader reader = createSharedReader(streamName, dlm, 3 * RECORD_SIZE, 2);
+        reader.start(DLSN.InitialDLSN);
+        waitUntilReadAheadPaused(reader);
+
+        // a fast reader moves the window past the first two records
+        List<LogRecordWithDLSN> records = Await.result(reader.read(DLSN.InitialDLSN, 10, 0L));
+        DLSN thirdDLSN = records.get(2).getDlsn();
+        Await.result(reader.read(thirdDLSN, 10, 0L));
+
+        // the lagging reader is split off to its own catch-up reader
+        List<LogRecordWithDLSN> laggingRecords = Await.result(reader.read(DLSN.InitialDLSN, 1, 0L));
+        assertEquals(1, laggingRecords.size());
+        assertEquals(1L, laggingRecords.get(0).getTransactionId());
+        assertEquals(1, reader.getNumCatchupReaders());
+        verify(dlm, times(2)).openAsyncLogReader(any(DLSN.class));
+
+        // the next request of the lagging reader continues on the same catch-up reader
+        laggingRecords = Await.result(reader.read(laggingRecords.get(0).getDlsn().getNextDLSN(), 1, 0L));
+        assertEquals(1, laggingRecords.size());
+        assertEquals(2L, laggingRecords.get(0).getTransactionId());
+        verify(dlm, times(2)).openAsyncLogReader(any(DLSN.class));
+        // the lagging reader caught up with the window, its catch-up reader is closed
+        assertEquals(0, reader.getNumCatchupReaders());
+
+        // idle catch-up readers are closed
+        laggingRecords = Await.result(reader.read(DLSN.InitialDLSN, 1, 0L));
+        assertEquals(1L, laggingRecords.get(0).getTransactionId());
+        assertEquals(1, reader.getNumCatchupReaders());
+        reader.closeIdleCatchupReaders(System.currentTimeMillis(), 0L);
+        assertEquals(0, reader.getNumCatchupReaders());
+
+        Await.result(reader.asyncClose());
+    }
+
+}
@@ -17,14 +17,17 @@
  */
 package com.twitter.distributedlog.service.stream;
 
+import com.google.common.collect.Lists;
 import com.twitter.distributedlog.AsyncLogWriter;
 import com.twitter.distributedlog.DLSN;
 import com.twitter.distributedlog.LogRecord;
 import com.twitter.distributedlog.acl.DefaultAccessControlManager;
 import com.twitter.distributedlog.exceptions.InternalServerException;
+import com.twitter.distributedlog.exceptions.TransactionIdOutOfOrderException;
 import com.twitter.distributedlog.service.ResponseUtils;
 import com.twitter.distributedlog.service.config.ServerConfiguration;
 import com.twitter.distributedlog.service.streamset.IdentityStreamPartitionConverter;
+import com.twitter.distributedlog.thrift.service.BulkWriteResponse;
 import com.twitter.distributedlog.thrift.service.StatusCode;
 import com.twitter.distributedlog.thrift.service.WriteResponse;
 import com.twitter.distributedlog.util.Sequencer;
@@ -39,6 +42,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.CRC32;
 
 import static org.junit.Assert.*;
@@ -103,4 +108,50 @@ public class TestStreamOp {
         WriteResponse response = Await.result(writeOp.result());
         assertEquals(StatusCode.SUCCESS, response.getHeader().getCode());
     }
+
+    @Test(timeout = 60000)
+    public void testMergedWriteOps() throws Exception {
+        WriteOp writeOp = getWriteOp();
+        BulkWriteOp bulkWriteOp = new BulkWriteOp("test",
+            Lists.newArrayList(ByteBuffer.wrap("bulk-0".getBytes()), ByteBuffer.wrap("bulk-1".getBytes())),
+            new NullStatsLogger(),
+            new NullStatsLogger(),
+            new IdentityStreamPartitionConverter(),
+            null,
+            new SettableFeature("", 0),
+            DefaultAccessControlManager.INSTANCE);
+        Sequencer sequencer = new Sequencer() {
+            long txnId = 0L;
+            public long nextId() {
+                return ++txnId;
+            }
+        };
+
+        List<LogRecord> records = new ArrayList<LogRecord>();
+        records.addAll(writeOp.toLogRecords(sequencer));
+        records.addAll(bulkWriteOp.toLogRecords(sequencer));
+        assertEquals(3, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i + 1, records.get(i).getTransactionId());
+        }
+
+        List<Future<DLSN>> results = new ArrayList<Future<DLSN>>();
+        results.add(Future.value(new DLSN(1, 0, 0)));
+        results.add(Future.value(new DLSN(1, 1, 0)));
+        results.add(Future.<DLSN>exception(new TransactionIdOutOfOrderException(3L, 2L)));
+        writeOp.executeMerged(Future.value(results.subList(0, 1)));
+        bulkWriteOp.executeMerged(Future.value(results.subList(1, 3)));
+
+        WriteResponse writeResponse = Await.result(writeOp.result());
+        assertEquals(StatusCode.SUCCESS, writeResponse.getHeader().getCode());
+        assertEquals(new DLSN(1, 0, 0).serialize((byte) 0), writeResponse.getDlsn());
+
+        BulkWriteResponse bulkWriteResponse = Await.result(bulkWriteOp.result());
+        assertEquals(StatusCode.SUCCESS, bulkWriteResponse.getHeader().getCode());
+        assertEquals(2, bulkWriteResponse.getWriteResponses().size());
+        assertEquals(StatusCode.SUCCESS, bulkWriteResponse.getWriteResponses().get(0).getHeader().getCode());
+        assertEquals(new DLSN(1, 1, 0).serialize(), bulkWriteResponse.getWriteResponses().get(0).getDlsn());
+        assertEquals(StatusCode.TRANSACTION_OUT_OF_ORDER,
+            bulkWriteResponse.getWriteResponses().get(1).getHeader().getCode());
+    }
 }
@@ -284,4 +284,38 @@ public class TestServiceRequestLimiter {
         assertEquals(3, softLimiter.getLimitHitCount());
         assertEquals(1, hardLimiter.getLimitHitCount());
     }
+
+    private static int applyUntilRejected(RequestLimiter<String> limiter, String stream) {
+        int numAdmitted = 0;
+        while (true) {
+            try {
+                limiter.apply(stream);
+                ++numAdmitted;
+            } catch (OverCapacityException oce) {
+                return numAdmitted;
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testServiceReadRequestLimiterWithTokenBucket() throws Exception {
+        DistributedLogConfiguration guavaConf = new DistributedLogConfiguration();
+        guavaConf.setProperty(DistributedLogConfiguration.BKDL_RPS_HARD_READ_SERVICE_LIMIT, 100);
+        ServiceReadRequestLimiter guavaLimiter = new ServiceReadRequestLimiter(
+                new DynamicDistributedLogConfiguration(new ConcurrentConstConfiguration(guavaConf)),
+                NullStatsLogger.INSTANCE, new SettableFeature("", 0));
+        // the guava rate limiter starts with no stored permits, so it doesn't admit a burst
+        assertTrue(applyUntilRejected(guavaLimiter, "stream") < 100);
+
+        DistributedLogConfiguration tokenBucketConf = new DistributedLogConfiguration();
+        tokenBucketConf.setProperty(DistributedLogConfiguration.BKDL_RPS_HARD_READ_SERVICE_LIMIT, 100);
+        tokenBucketConf.setProperty(DistributedLogConfiguration.BKDL_TOKEN_BUCKET_RATE_LIMITER_ENABLED, true);
+        ServiceReadRequestLimiter tokenBucketLimiter = new ServiceReadRequestLimiter(
+                new DynamicDistributedLogConfiguration(new ConcurrentConstConfiguration(tokenBucketConf)),
+                NullStatsLogger.INSTANCE, new SettableFeature("", 0));
+        // the token bucket starts full, so it admits a burst of one second of its limit
+        int numAdmitted = applyUntilRejected(tokenBucketLimiter, "stream");
+        assertTrue("Token bucket should admit a burst : " + numAdmitted, numAdmitted >= 100);
+        assertTrue("Token bucket should be bounded : " + numAdmitted, numAdmitted < 200);
+    }
 }
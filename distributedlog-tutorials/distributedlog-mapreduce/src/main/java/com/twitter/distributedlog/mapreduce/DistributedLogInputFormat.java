@@ -26,6 +26,7 @@ import com.twitter.distributedlog.LogSegmentMetadata;
 import com.twitter.distributedlog.impl.BKNamespaceDriver;
 import com.twitter.distributedlog.namespace.DistributedLogNamespace;
 import com.twitter.distributedlog.namespace.DistributedLogNamespaceBuilder;
+import com.twitter.distributedlog.namespace.NamespaceDriver;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.client.BookKeeperAccessor;
@@ -44,8 +45,8 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * InputFormat to read data from a distributedlog stream.
@@ -55,6 +56,17 @@ public class DistributedLogInputFormat
 
     private static final String DL_URI = "distributedlog.uri";
     private static final String DL_STREAM = "distributedlog.stream";
+    // max number of entries of a split, completed log segments larger than it are split by entry ranges
+    private static final String DL_SPLIT_MAX_ENTRIES = "distributedlog.split.max.entries";
+    private static final long DEFAULT_SPLIT_MAX_ENTRIES = 100000L;
+    // number of entries read by a single read request
+    private static final String DL_READ_BATCH_SIZE = "distributedlog.read.batch.size";
+    private static final int DEFAULT_READ_BATCH_SIZE = 100;
+    // max number of outstanding read requests of a split
+    private static final String DL_READ_WINDOW = "distributedlog.read.window";
+    private static final int DEFAULT_READ_WINDOW = 4;
+    // decode the records without copying their payloads
+    private static final String DL_READ_ZERO_COPY = "distributedlog.read.zerocopy";
 
     protected Configuration conf;
     protected DistributedLogConfiguration dlConf;
@@ -68,6 +80,7 @@ public class DistributedLogInputFormat
     public void setConf(Configuration configuration) {
         this.conf = configuration;
         dlConf = new DistributedLogConfiguration();
+        dlConf.setReaderZeroCopyEnabled(configuration.getBoolean(DL_READ_ZERO_COPY, true));
         dlUri = URI.create(configuration.get(DL_URI, ""));
         streamName = configuration.get(DL_STREAM, "");
         try {
@@ -90,28 +103,46 @@ public class DistributedLogInputFormat
     public List<InputSplit> getSplits(JobContext jobContext)
             throws IOException, InterruptedException {
         List<LogSegmentMetadata> segments = dlm.getLogSegments();
-        List<InputSplit> inputSplits = Lists.newArrayListWithCapacity(segments.size());
         BookKeeper bk = ((BKNamespaceDriver) namespace.getNamespaceDriver()).getReaderBKC().get();
         LedgerManager lm = BookKeeperAccessor.getLedgerManager(bk);
-        final AtomicInteger rcHolder = new AtomicInteger(0);
-        final AtomicReference<LedgerMetadata> metadataHolder = new AtomicReference<LedgerMetadata>(null);
-        for (LogSegmentMetadata segment : segments) {
-            final CountDownLatch latch = new CountDownLatch(1);
-            lm.readLedgerMetadata(segment.getLogSegmentId(),
+        // read the ledger metadata of all the log segments in parallel
+        final int numSegments = segments.size();
+        final AtomicIntegerArray rcs = new AtomicIntegerArray(numSegments);
+        final AtomicReferenceArray<LedgerMetadata> ledgerMetadatas =
+                new AtomicReferenceArray<LedgerMetadata>(numSegments);
+        final CountDownLatch latch = new CountDownLatch(numSegments);
+        for (int i = 0; i < numSegments; i++) {
+            final int idx = i;
+            lm.readLedgerMetadata(segments.get(i).getLogSegmentId(),
                     new BookkeeperInternalCallbacks.GenericCallback<LedgerMetadata>() {
                 @Override
                 public void operationComplete(int rc, LedgerMetadata ledgerMetadata) {
-                    metadataHolder.set(ledgerMetadata);
-                    rcHolder.set(rc);
+                    ledgerMetadatas.set(idx, ledgerMetadata);
+                    rcs.set(idx, rc);
                     latch.countDown();
                 }
             });
-            latch.await();
-            if (BKException.Code.OK != rcHolder.get()) {
+        }
+        latch.await();
+        long maxEntriesPerSplit = Math.max(1L, conf.getLong(DL_SPLIT_MAX_ENTRIES, DEFAULT_SPLIT_MAX_ENTRIES));
+        List<InputSplit> inputSplits = Lists.newArrayListWithCapacity(numSegments);
+        for (int i = 0; i < numSegments; i++) {
+            LogSegmentMetadata segment = segments.get(i);
+            if (BKException.Code.OK != rcs.get(i)) {
                 throw new IOException("Faild to get log segment metadata for " + segment + " : "
-                        + BKException.getMessage(rcHolder.get()));
+                        + BKException.getMessage(rcs.get(i)));
+            }
+            LedgerMetadata ledgerMetadata = ledgerMetadatas.get(i);
+            long lastEntryId = segment.getLastEntryId();
+            if (segment.isInProgress() || lastEntryId < 0) {
+                // the end of an inprogress log segment is only known when it is read
+                inputSplits.add(new LogSegmentSplit(segment, ledgerMetadata));
+                continue;
+            }
+            for (long startEntryId = 0L; startEntryId <= lastEntryId; startEntryId += maxEntriesPerSplit) {
+                long endEntryId = Math.min(lastEntryId, startEntryId + maxEntriesPerSplit - 1);
+                inputSplits.add(new LogSegmentSplit(segment, ledgerMetadata, startEntryId, endEntryId));
             }
-            inputSplits.add(new LogSegmentSplit(segment, metadataHolder.get()));
         }
         return inputSplits;
     }
@@ -122,8 +153,9 @@ public class DistributedLogInputFormat
             throws IOException, InterruptedException {
         return new LogSegmentReader(
                 streamName,
-                dlConf,
-                ((BKNamespaceDriver) namespace.getNamespaceDriver()).getReaderBKC().get(),
-                (LogSegmentSplit) inputSplit);
+                namespace.getNamespaceDriver().getLogSegmentEntryStore(NamespaceDriver.Role.READER),
+                (LogSegmentSplit) inputSplit,
+                conf.getInt(DL_READ_BATCH_SIZE, DEFAULT_READ_BATCH_SIZE),
+                conf.getInt(DL_READ_WINDOW, DEFAULT_READ_WINDOW));
     }
 }
@@ -17,54 +17,41 @@
  */
 package com.twitter.distributedlog.mapreduce;
 
-import com.twitter.distributedlog.*;
-import org.apache.bookkeeper.client.BKException;
-import org.apache.bookkeeper.client.BookKeeper;
-import org.apache.bookkeeper.client.LedgerEntry;
-import org.apache.bookkeeper.client.LedgerHandle;
+import com.twitter.distributedlog.DLSN;
+import com.twitter.distributedlog.LogRecordWithDLSN;
+import com.twitter.distributedlog.logsegment.LogSegmentEntryStore;
+import com.twitter.distributedlog.logsegment.LogSegmentScanner;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
-import java.util.Enumeration;
-
-import static com.google.common.base.Charsets.UTF_8;
 
 /**
- * Record Reader to read from a log segment split
+ * Record Reader to read from a log segment split, using a {@link LogSegmentScanner}
+ * to pipeline batched reads of the entry range of the split.
  */
 class LogSegmentReader extends RecordReader<DLSN, LogRecordWithDLSN> {
 
     final String streamName;
-    final BookKeeper bk;
-    final LedgerHandle lh;
-    final LogSegmentMetadata metadata;
+    final LogSegmentScanner scanner;
 
-    long entryId = -1L;
-    Entry.Reader reader = null;
     LogRecordWithDLSN currentRecord = null;
-    int readPos = 0;
 
     LogSegmentReader(String streamName,
-                     DistributedLogConfiguration conf,
-                     BookKeeper bk,
-                     LogSegmentSplit split)
+                     LogSegmentEntryStore entryStore,
+                     LogSegmentSplit split,
+                     int readBatchSize,
+                     int readWindow)
             throws IOException {
         this.streamName = streamName;
-        this.bk = bk;
-        this.metadata = split.getMetadata();
-        try {
-            this.lh = bk.openLedgerNoRecovery(
-                    split.getLogSegmentId(),
-                    BookKeeper.DigestType.CRC32,
-                    conf.getBKDigestPW().getBytes(UTF_8));
-        } catch (BKException e) {
-            throw new IOException(e);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException(e);
-        }
+        this.scanner = LogSegmentScanner.open(
+                entryStore,
+                split.getMetadata(),
+                split.getStartEntryId(),
+                split.getEndEntryId(),
+                readBatchSize,
+                readWindow);
     }
 
     @Override
@@ -76,41 +63,8 @@ class LogSegmentReader extends RecordReader<DLSN, LogRecordWithDLSN> {
     @Override
     public boolean nextKeyValue()
             throws IOException, InterruptedException {
-        LogRecordWithDLSN record;
-        currentRecord = null;
-        if (null != reader) {
-            record = reader.nextRecord();
-            if (null != record) {
-                currentRecord = record;
-                readPos = record.getPositionWithinLogSegment();
-                return true;
-            } else {
-                return false;
-            }
-        }
-        ++entryId;
-        if (entryId > lh.getLastAddConfirmed()) {
-            return false;
-        }
-        try {
-            Enumeration<LedgerEntry> entries =
-                    lh.readEntries(entryId, entryId);
-            if (entries.hasMoreElements()) {
-                LedgerEntry entry = entries.nextElement();
-                reader = Entry.newBuilder()
-                        .setLogSegmentInfo(metadata.getLogSegmentSequenceNumber(),
-                                metadata.getStartSequenceId())
-                        .setEntryId(entry.getEntryId())
-                        .setEnvelopeEntry(
-                                LogSegmentMetadata.supportsEnvelopedEntries(metadata.getVersion()))
-                        .deserializeRecordSet(true)
-                        .setInputStream(entry.getEntryInputStream())
-                        .buildReader();
-            }
-            return nextKeyValue();
-        } catch (BKException e) {
-            throw new IOException(e);
-        }
+        currentRecord = scanner.nextRecord();
+        return null != currentRecord;
     }
 
     @Override
@@ -128,21 +82,11 @@ class LogSegmentReader extends RecordReader<DLSN, LogRecordWithDLSN> {
     @Override
     public float getProgress()
             throws IOException, InterruptedException {
-        if (metadata.getRecordCount() > 0) {
-            return ((float) (readPos + 1)) / metadata.getRecordCount();
-        }
-        return 1;
+        return scanner.getProgress();
     }
 
     @Override
     public void close() throws IOException {
-        try {
-            lh.close();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException(e);
-        } catch (BKException e) {
-            throw new IOException(e);
-        }
+        scanner.close();
     }
 }
@@ -19,6 +19,7 @@ package com.twitter.distributedlog.mapreduce;
 
 import com.google.common.collect.Sets;
 import com.twitter.distributedlog.LogSegmentMetadata;
+import com.twitter.distributedlog.logsegment.LogSegmentScanner;
 import org.apache.bookkeeper.client.LedgerMetadata;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.versioning.Version;
@@ -31,8 +32,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Set;
 
-import static com.google.common.base.Charsets.UTF_8;
-
 /**
  * A input split that reads from a log segment.
  */
@@ -40,13 +39,33 @@ public class LogSegmentSplit extends InputSplit implements Writable {
 
     private LogSegmentMetadata logSegmentMetadata;
     private LedgerMetadata ledgerMetadata;
+    private long startEntryId;
+    private long endEntryId;
 
     public LogSegmentSplit() {}
 
     public LogSegmentSplit(LogSegmentMetadata logSegmentMetadata,
                            LedgerMetadata ledgerMetadata) {
+        this(logSegmentMetadata, ledgerMetadata, 0L, LogSegmentScanner.LAST_ADD_CONFIRMED);
+    }
+
+    /**
+     * Split of the entries [<i>startEntryId</i>, <i>endEntryId</i>] of a log segment.
+     *
+     * @param logSegmentMetadata metadata of the log segment
+     * @param ledgerMetadata metadata of the ledger of the log segment
+     * @param startEntryId start entry id of the split
+     * @param endEntryId end entry id of the split, or {@link LogSegmentScanner#LAST_ADD_CONFIRMED}
+     *                   to the end of the log segment
+     */
+    public LogSegmentSplit(LogSegmentMetadata logSegmentMetadata,
+                           LedgerMetadata ledgerMetadata,
+                           long startEntryId,
+                           long endEntryId) {
         this.logSegmentMetadata = logSegmentMetadata;
         this.ledgerMetadata = ledgerMetadata;
+        this.startEntryId = startEntryId;
+        this.endEntryId = endEntryId;
     }
 
     public LogSegmentMetadata getMetadata() {
@@ -57,10 +76,23 @@ public class LogSegmentSplit extends InputSplit implements Writable {
         return logSegmentMetadata.getLogSegmentId();
     }
 
+    public long getStartEntryId() {
+        return startEntryId;
+    }
+
+    public long getEndEntryId() {
+        return endEntryId;
+    }
+
     @Override
     public long getLength()
             throws IOException, InterruptedException {
-        return logSegmentMetadata.getRecordCount();
+        long lastEntryId = logSegmentMetadata.getLastEntryId();
+        if (LogSegmentScanner.LAST_ADD_CONFIRMED == endEntryId || lastEntryId < 0) {
+            return logSegmentMetadata.getRecordCount();
+        }
+        // estimate the records of the entry range proportionally
+        return logSegmentMetadata.getRecordCount() * (endEntryId - startEntryId + 1) / (lastEntryId + 1);
     }
 
     @Override
@@ -77,19 +109,29 @@ public class LogSegmentSplit extends InputSplit implements Writable {
 
     @Override
     public void write(DataOutput dataOutput) throws IOException {
-        String lsMetadataStr = logSegmentMetadata.getFinalisedData();
-        dataOutput.writeUTF(lsMetadataStr);
-        String lhMetadataStr = new String(ledgerMetadata.serialize(), UTF_8);
-        dataOutput.writeUTF(lhMetadataStr);
+        // the log segment metadata might be in the binary layout, so it is written as raw bytes
+        writeBytes(dataOutput, logSegmentMetadata.getFinalisedDataBytes());
+        writeBytes(dataOutput, ledgerMetadata.serialize());
+        dataOutput.writeLong(startEntryId);
+        dataOutput.writeLong(endEntryId);
     }
 
     @Override
     public void readFields(DataInput dataInput) throws IOException {
-        String lsMetadataStr = dataInput.readUTF();
-        logSegmentMetadata = LogSegmentMetadata.parseData("",
-                lsMetadataStr.getBytes(UTF_8));
-        String lhMetadataStr = dataInput.readUTF();
-        ledgerMetadata = LedgerMetadata.parseConfig(lhMetadataStr.getBytes(UTF_8),
-                Version.ANY);
+        logSegmentMetadata = LogSegmentMetadata.parseData("", readBytes(dataInput));
+        ledgerMetadata = LedgerMetadata.parseConfig(readBytes(dataInput), Version.ANY);
+        startEntryId = dataInput.readLong();
+        endEntryId = dataInput.readLong();
+    }
+
+    private static void writeBytes(DataOutput dataOutput, byte[] data) throws IOException {
+        dataOutput.writeInt(data.length);
+        dataOutput.write(data);
+    }
+
+    private static byte[] readBytes(DataInput dataInput) throws IOException {
+        byte[] data = new byte[dataInput.readInt()];
+        dataInput.readFully(data);
+        return data;
     }
 }
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.distributedlog.mapreduce;
+
+import com.twitter.distributedlog.LogSegmentMetadata;
+import com.twitter.distributedlog.LogSegmentMetadata.LogSegmentMetadataVersion;
+import com.twitter.distributedlog.logsegment.LogSegmentScanner;
+import org.apache.bookkeeper.client.LedgerMetadata;
+import org.apache.bookkeeper.versioning.Version;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * Test Case for {@link LogSegmentSplit}.
+ */
+public class TestLogSegmentSplit {
+
+    private static LogSegmentMetadata newLogSegmentMetadata(LogSegmentMetadataVersion version)
+            throws Exception {
+        // a completed log segment in the text layout : version;ledger id;first txid;last txid;completion time;
+        // log segment sequence number;last entry id;last slot id;min active entry id;min active slot id;
+        // start sequence id
+        String data = "5;1000;1;100;1234567;2;99;0;0;0;1";
+        return LogSegmentMetadata.parseData("/segment", data.getBytes(UTF_8))
+                .mutator()
+                .setVersion(version)
+                .build();
+    }
+
+    private static LedgerMetadata newLedgerMetadata() throws Exception {
+        String config = "BookieMetadataFormatVersion\t2\n"
+                + "quorumSize: 2\n"
+                + "ensembleSize: 3\n"
+                + "length: 0\n"
+                + "lastEntryId: 99\n"
+                + "state: CLOSED\n"
+                + "segment {\n"
+                + "  ensembleMember: \"127.0.0.1:3181\"\n"
+                + "  ensembleMember: \"127.0.0.2:3181\"\n"
+                + "  ensembleMember: \"127.0.0.3:3181\"\n"
+                + "  firstEntryId: 0\n"
+                + "}\n"
+                + "digestType: CRC32\n"
+                + "password: \"\"\n"
+                + "ackQuorumSize: 2\n";
+        return LedgerMetadata.parseConfig(config.getBytes(UTF_8), Version.ANY);
+    }
+
+    private static byte[] serialize(LogSegmentSplit split) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        split.write(new DataOutputStream(out));
+        return out.toByteArray();
+    }
+
+    private static LogSegmentSplit deserialize(byte[] data) throws Exception {
+        LogSegmentSplit readSplit = new LogSegmentSplit();
+        readSplit.readFields(new DataInputStream(new ByteArrayInputStream(data)));
+        return readSplit;
+    }
+
+    /**
+     * Read the log segment metadata bytes written at the head of a serialized split.
+     */
+    private static byte[] readMetadataBytes(byte[] data) throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte[] metadataBytes = new byte[in.readInt()];
+        in.readFully(metadataBytes);
+        return metadataBytes;
+    }
+
+    private static void assertSplitEquals(LogSegmentSplit split, LogSegmentSplit readSplit) throws Exception {
+        assertEquals(split.getMetadata(), readSplit.getMetadata());
+        assertEquals(split.getLogSegmentId(), readSplit.getLogSegmentId());
+        assertEquals(split.getStartEntryId(), readSplit.getStartEntryId());
+        assertEquals(split.getEndEntryId(), readSplit.getEndEntryId());
+        assertEquals(split.getLength(), readSplit.getLength());
+        String[] locations = split.getLocations();
+        String[] readLocations = readSplit.getLocations();
+        Arrays.sort(locations);
+        Arrays.sort(readLocations);
+        assertArrayEquals(locations, readLocations);
+    }
+
+    @Test(timeout = 60000)
+    public void testRoundTripTextLayout() throws Exception {
+        LogSegmentMetadata segment = newLogSegmentMetadata(LogSegmentMetadataVersion.VERSION_V5_SEQUENCE_ID);
+        LogSegmentSplit split = new LogSegmentSplit(segment, newLedgerMetadata(), 10L, 49L);
+        byte[] data = serialize(split);
+
+        // the metadata is carried in its text layout
+        byte[] metadataBytes = readMetadataBytes(data);
+        assertArrayEquals(segment.getFinalisedDataBytes(), metadataBytes);
+        assertTrue(new String(metadataBytes, UTF_8).startsWith("5;1000;1;100;"));
+
+        LogSegmentSplit readSplit = deserialize(data);
+        assertSplitEquals(split, readSplit);
+        assertEquals(1000L, readSplit.getLogSegmentId());
+        assertEquals(10L, readSplit.getStartEntryId());
+        assertEquals(49L, readSplit.getEndEntryId());
+        // the entry range covers 40 of the 100 entries of the log segment
+        assertEquals(segment.getRecordCount() * 40 / 100, readSplit.getLength());
+    }
+
+    @Test(timeout = 60000)
+    public void testRoundTripBinaryLayout() throws Exception {
+        LogSegmentMetadata segment = newLogSegmentMetadata(LogSegmentMetadataVersion.VERSION_V6_BINARY);
+        LogSegmentSplit split = new LogSegmentSplit(segment, newLedgerMetadata());
+        byte[] data = serialize(split);
+
+        // the binary layout isn't valid text, so the metadata is carried as raw bytes
+        byte[] metadataBytes = readMetadataBytes(data);
+        assertArrayEquals(segment.getFinalisedDataBytes(), metadataBytes);
+        assertFalse(Arrays.equals(metadataBytes, new String(metadataBytes, UTF_8).getBytes(UTF_8)));
+
+        LogSegmentSplit readSplit = deserialize(data);
+        assertSplitEquals(split, readSplit);
+        // the split covers the whole log segment
+        assertEquals(0L, readSplit.getStartEntryId());
+        assertEquals(LogSegmentScanner.LAST_ADD_CONFIRMED, readSplit.getEndEntryId());
+        assertEquals(segment.getRecordCount(), readSplit.getLength());
+    }
+}